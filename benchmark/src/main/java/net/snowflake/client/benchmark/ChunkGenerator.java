@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.benchmark;
+
+import net.snowflake.client.jdbc.SnowflakeColumnMetadata;
+import net.snowflake.client.jdbc.SnowflakeType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates synthetic result chunks in the JSON format of the result chunks
+ * stored by the server: rows as JSON arrays of strings separated by commas,
+ * without enclosing brackets.
+ */
+public final class ChunkGenerator
+{
+  /**
+   * Kind of the values of a column
+   */
+  public enum ColumnKind
+  {
+    // NUMBER(38,0) of varying length
+    INTEGER,
+
+    // NUMBER(38,4)
+    DECIMAL,
+
+    // FLOAT
+    DOUBLE,
+
+    // short alphanumeric VARCHAR
+    TEXT,
+
+    // VARCHAR with quotes, backslashes, control characters and unicode
+    // escapes
+    ESCAPED_TEXT,
+
+    // TIMESTAMP_NTZ(9) as seconds since the epoch
+    TIMESTAMP
+  }
+
+  /**
+   * Predefined chunk shapes
+   */
+  public enum Shape
+  {
+    NARROW_NUMERIC(0, ColumnKind.INTEGER, ColumnKind.INTEGER,
+                   ColumnKind.DECIMAL, ColumnKind.DOUBLE),
+    WIDE_NUMERIC(0, repeat(64, ColumnKind.INTEGER, ColumnKind.DECIMAL,
+                           ColumnKind.DOUBLE, ColumnKind.INTEGER)),
+    NARROW_TEXT(0, ColumnKind.TEXT, ColumnKind.TEXT, ColumnKind.TEXT,
+                ColumnKind.TEXT),
+    WIDE_TEXT(0, repeat(64, ColumnKind.TEXT, ColumnKind.TEXT,
+                        ColumnKind.TIMESTAMP, ColumnKind.TEXT)),
+    ESCAPE_HEAVY(0, repeat(8, ColumnKind.ESCAPED_TEXT)),
+    NULL_HEAVY(0.9, repeat(16, ColumnKind.INTEGER, ColumnKind.TEXT,
+                           ColumnKind.DOUBLE, ColumnKind.TIMESTAMP));
+
+    private final double nullRatio;
+    private final List<ColumnKind> columns;
+
+    Shape(double nullRatio, ColumnKind... columns)
+    {
+      this.nullRatio = nullRatio;
+      this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    public double getNullRatio()
+    {
+      return nullRatio;
+    }
+
+    public List<ColumnKind> getColumns()
+    {
+      return columns;
+    }
+  }
+
+  /**
+   * A generated chunk
+   */
+  public static final class Chunk
+  {
+    private final List<SnowflakeColumnMetadata> columnMetadata;
+    private final String[][] rows;
+    private final byte[] json;
+    private final byte[] gzip;
+
+    private Chunk(List<SnowflakeColumnMetadata> columnMetadata,
+                  String[][] rows, byte[] json, byte[] gzip)
+    {
+      this.columnMetadata = columnMetadata;
+      this.rows = rows;
+      this.json = json;
+      this.gzip = gzip;
+    }
+
+    public List<SnowflakeColumnMetadata> getColumnMetadata()
+    {
+      return columnMetadata;
+    }
+
+    public int getRowCount()
+    {
+      return rows.length;
+    }
+
+    public int getColumnCount()
+    {
+      return columnMetadata.size();
+    }
+
+    /**
+     * @return the cells of every row, null for null values
+     */
+    public String[][] getRows()
+    {
+      return rows;
+    }
+
+    /**
+     * @return the chunk in UTF-8
+     */
+    public byte[] getJson()
+    {
+      return json;
+    }
+
+    /**
+     * @return the gzip compressed chunk, as it is downloaded
+     */
+    public byte[] getGzip()
+    {
+      return gzip;
+    }
+  }
+
+  private static final char[] ALPHANUMERIC =
+      "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"
+          .toCharArray();
+
+  private static final String[] ESCAPE_PIECES = {
+      "\\\"", "\\\\", "\\n", "\\t", "\\/", "\\u00e4", "\\u2605",
+      "\\ud83d\\ude00", "ü", "plain"};
+
+  private ChunkGenerator()
+  {
+  }
+
+  public static Chunk generate(Shape shape, int rowCount, long seed)
+  throws IOException
+  {
+    return generate(shape.getColumns(), rowCount, shape.getNullRatio(), seed);
+  }
+
+  /**
+   * Generate a chunk
+   *
+   * @param columns   kind of every column
+   * @param rowCount  number of rows
+   * @param nullRatio share of null values
+   * @param seed      seed of the random values, the same seed generates the
+   *                  same chunk
+   * @return the chunk
+   * @throws IOException if the chunk can not be compressed
+   */
+  public static Chunk generate(List<ColumnKind> columns, int rowCount,
+                               double nullRatio, long seed)
+  throws IOException
+  {
+    Random random = new Random(seed);
+    String[][] rows = new String[rowCount][columns.size()];
+    StringBuilder json = new StringBuilder();
+    for (int row = 0; row < rowCount; row++)
+    {
+      if (row > 0)
+      {
+        json.append(',');
+      }
+      json.append('[');
+      for (int col = 0; col < columns.size(); col++)
+      {
+        if (col > 0)
+        {
+          json.append(',');
+        }
+        if (random.nextDouble() < nullRatio)
+        {
+          json.append("null");
+          continue;
+        }
+        ColumnKind kind = columns.get(col);
+        String text = generateValue(kind, random);
+        json.append('"').append(text).append('"');
+        rows[row][col] = kind == ColumnKind.ESCAPED_TEXT ? unescape(text) : text;
+      }
+      json.append(']');
+    }
+
+    byte[] jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip))
+    {
+      out.write(jsonBytes);
+    }
+
+    List<SnowflakeColumnMetadata> columnMetadata = new ArrayList<>();
+    for (int col = 0; col < columns.size(); col++)
+    {
+      columnMetadata.add(createColumnMetadata("C" + col, columns.get(col)));
+    }
+    return new Chunk(columnMetadata, rows, jsonBytes, gzip.toByteArray());
+  }
+
+  private static String generateValue(ColumnKind kind, Random random)
+  {
+    switch (kind)
+    {
+      case INTEGER:
+        return Long.toString(random.nextLong() >> random.nextInt(64));
+
+      case DECIMAL:
+        return BigDecimal.valueOf(random.nextLong() >> random.nextInt(64), 4)
+            .toPlainString();
+
+      case DOUBLE:
+        return Double.toString((random.nextDouble() - 0.5) *
+                               Math.pow(10, random.nextInt(12)));
+
+      case TEXT:
+      {
+        char[] text = new char[1 + random.nextInt(32)];
+        for (int i = 0; i < text.length; i++)
+        {
+          text[i] = ALPHANUMERIC[random.nextInt(ALPHANUMERIC.length)];
+        }
+        return new String(text);
+      }
+
+      case ESCAPED_TEXT:
+      {
+        StringBuilder text = new StringBuilder();
+        int pieces = 1 + random.nextInt(16);
+        for (int i = 0; i < pieces; i++)
+        {
+          text.append(ESCAPE_PIECES[random.nextInt(ESCAPE_PIECES.length)]);
+        }
+        return text.toString();
+      }
+
+      case TIMESTAMP:
+        return BigDecimal.valueOf(
+            1500000000L * 1000000000L +
+            (long) (random.nextDouble() * 100000000L * 1000000000L), 9)
+            .toPlainString();
+
+      default:
+        throw new IllegalArgumentException(kind.name());
+    }
+  }
+
+  /**
+   * @return the string a JSON parser reads from the escaped text
+   */
+  private static String unescape(String text)
+  {
+    return text.replace("\\\"", "\"")
+        .replace("\\n", "\n")
+        .replace("\\t", "\t")
+        .replace("\\/", "/")
+        .replace("\\u00e4", "ä")
+        .replace("\\u2605", "★")
+        .replace("\\ud83d\\ude00", "😀")
+        .replace("\\\\", "\\");
+  }
+
+  private static SnowflakeColumnMetadata createColumnMetadata(String name,
+                                                              ColumnKind kind)
+  {
+    switch (kind)
+    {
+      case INTEGER:
+        return new SnowflakeColumnMetadata(name, Types.BIGINT, true, 0, 38, 0,
+                                           "NUMBER", true, SnowflakeType.FIXED,
+                                           null, null, null);
+      case DECIMAL:
+        return new SnowflakeColumnMetadata(name, Types.DECIMAL, true, 0, 38, 4,
+                                           "NUMBER", true, SnowflakeType.FIXED,
+                                           null, null, null);
+      case DOUBLE:
+        return new SnowflakeColumnMetadata(name, Types.DOUBLE, true, 0, 0, 0,
+                                           "FLOAT", false, SnowflakeType.REAL,
+                                           null, null, null);
+      case TIMESTAMP:
+        return new SnowflakeColumnMetadata(name, Types.TIMESTAMP, true, 0, 0, 9,
+                                           "TIMESTAMPNTZ", false,
+                                           SnowflakeType.TIMESTAMP_NTZ,
+                                           null, null, null);
+      default:
+        return new SnowflakeColumnMetadata(name, Types.VARCHAR, true, 256, 0,
+                                           0, "VARCHAR", false,
+                                           SnowflakeType.TEXT, null, null,
+                                           null);
+    }
+  }
+
+  private static ColumnKind[] repeat(int count, ColumnKind... pattern)
+  {
+    ColumnKind[] columns = new ColumnKind[count];
+    for (int i = 0; i < count; i++)
+    {
+      columns[i] = pattern[i % pattern.length];
+    }
+    return columns;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.benchmark;
+
+import net.snowflake.client.core.SFBaseResultSet;
+import net.snowflake.client.core.SFResultSetMetaData;
+import net.snowflake.client.core.SFStatementType;
+import net.snowflake.client.jdbc.SnowflakeColumnMetadata;
+import net.snowflake.client.jdbc.SnowflakeResultChunk;
+
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Result set over a single parsed chunk without a session, to measure the
+ * conversions of SFBaseResultSet in isolation from the download
+ */
+public class ChunkResultSet extends SFBaseResultSet
+{
+  private final SnowflakeResultChunk chunk;
+
+  private int rowIndex = -1;
+
+  public ChunkResultSet(SnowflakeResultChunk chunk,
+                        List<SnowflakeColumnMetadata> columnMetadata)
+  {
+    this.chunk = chunk;
+    this.resultSetMetaData = new SFResultSetMetaData(columnMetadata, null,
+                                                     null, null, null, null,
+                                                     null);
+    this.timeZone = TimeZone.getTimeZone("UTC");
+  }
+
+  /**
+   * Move before the first row
+   */
+  public void rewind()
+  {
+    rowIndex = -1;
+  }
+
+  @Override
+  public boolean next()
+  {
+    return ++rowIndex < chunk.getRowCount();
+  }
+
+  @Override
+  public boolean isLast()
+  {
+    return rowIndex == chunk.getRowCount() - 1;
+  }
+
+  @Override
+  public boolean isAfterLast()
+  {
+    return rowIndex >= chunk.getRowCount();
+  }
+
+  @Override
+  protected Object getObjectInternal(int columnIndex)
+  {
+    Object cell = chunk.getCell(rowIndex, columnIndex - 1);
+    wasNull = cell == null;
+    return cell;
+  }
+
+  @Override
+  public SFStatementType getStatementType()
+  {
+    return SFStatementType.SELECT;
+  }
+
+  @Override
+  public void setStatementType(SFStatementType statementType)
+  {
+  }
+
+  @Override
+  public String getQueryId()
+  {
+    return null;
+  }
+}
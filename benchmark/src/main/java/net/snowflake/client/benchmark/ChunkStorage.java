@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.benchmark;
+
+import net.snowflake.client.jdbc.ResultJsonParserV2;
+import net.snowflake.client.jdbc.SnowflakeChunkDownloader;
+import net.snowflake.client.jdbc.SnowflakeResultChunk;
+import net.snowflake.client.jdbc.SnowflakeSQLException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Storage of the cells of a result chunk
+ */
+public enum ChunkStorage
+{
+  // BlockResultChunkData, filled row by row as by the Jackson parser
+  V1(false, false),
+
+  // BlockResultChunkDataV2, filled by ResultJsonParserV2
+  V2(true, false),
+
+  // OffHeapResultChunkData, filled by ResultJsonParserV2
+  OFF_HEAP(true, true);
+
+  // size of the slices handed to the parser, as read from the network
+  static final int PARSE_SLICE_SIZE = 1024 * 1024;
+
+  private final boolean useJsonParserV2;
+  private final boolean offHeap;
+
+  ChunkStorage(boolean useJsonParserV2, boolean offHeap)
+  {
+    this.useJsonParserV2 = useJsonParserV2;
+    this.offHeap = offHeap;
+  }
+
+  /**
+   * Create an empty result chunk for the generated chunk
+   *
+   * @param chunk         generated chunk
+   * @param columnVectors decode numeric columns to primitive vectors
+   * @return the result chunk
+   */
+  public SnowflakeResultChunk newResultChunk(ChunkGenerator.Chunk chunk,
+                                             boolean columnVectors)
+  {
+    SnowflakeResultChunk resultChunk = new SnowflakeResultChunk(
+        "", chunk.getRowCount(), chunk.getColumnCount(),
+        chunk.getJson().length, useJsonParserV2, offHeap);
+    if (columnVectors && useJsonParserV2)
+    {
+      resultChunk.setColumnVectorTypes(
+          SnowflakeChunkDownloader.getColumnVectorTypes(
+              chunk.getColumnMetadata()));
+    }
+    return resultChunk;
+  }
+
+  /**
+   * Create a result chunk and fill it with the cells of the generated chunk
+   *
+   * @param chunk         generated chunk
+   * @param columnVectors decode numeric columns to primitive vectors
+   * @return the filled result chunk
+   * @throws SnowflakeSQLException if the chunk can not be filled
+   */
+  public SnowflakeResultChunk load(ChunkGenerator.Chunk chunk,
+                                   boolean columnVectors)
+  throws SnowflakeSQLException
+  {
+    SnowflakeResultChunk resultChunk = newResultChunk(chunk, columnVectors);
+    if (useJsonParserV2)
+    {
+      parse(new ResultJsonParserV2(), resultChunk, chunk.getJson());
+    }
+    else
+    {
+      for (String[] row : chunk.getRows())
+      {
+        resultChunk.addRow(row);
+      }
+      resultChunk.ensureRowsComplete();
+    }
+    return resultChunk;
+  }
+
+  /**
+   * Parse the JSON text of a chunk in slices
+   *
+   * @param parser      parser
+   * @param resultChunk empty result chunk
+   * @param json        JSON text of the chunk
+   * @throws SnowflakeSQLException if the chunk can not be parsed
+   */
+  static void parse(ResultJsonParserV2 parser,
+                    SnowflakeResultChunk resultChunk, byte[] json)
+  throws SnowflakeSQLException
+  {
+    parser.startParsing(resultChunk);
+    for (int offset = 0; offset < json.length; offset += PARSE_SLICE_SIZE)
+    {
+      parser.continueParsing(ByteBuffer.wrap(
+          json, offset, Math.min(PARSE_SLICE_SIZE, json.length - offset)));
+    }
+    parser.endParsing();
+  }
+}
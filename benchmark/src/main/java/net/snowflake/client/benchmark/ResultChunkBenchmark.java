@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.benchmark;
+
+import net.snowflake.client.jdbc.SnowflakeResultChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading every cell of a parsed chunk with SnowflakeResultChunk.getCell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultChunkBenchmark
+{
+  @Param({"NARROW_NUMERIC", "WIDE_NUMERIC", "NARROW_TEXT", "WIDE_TEXT",
+          "ESCAPE_HEAVY", "NULL_HEAVY"})
+  public ChunkGenerator.Shape shape;
+
+  @Param({"V1", "V2", "OFF_HEAP"})
+  public ChunkStorage storage;
+
+  @Param("100000")
+  public int rowCount;
+
+  private SnowflakeResultChunk resultChunk;
+
+  @Setup(Level.Trial)
+  public void load() throws Exception
+  {
+    resultChunk = storage.load(ChunkGenerator.generate(shape, rowCount, 42),
+                               false);
+  }
+
+  @TearDown(Level.Trial)
+  public void free()
+  {
+    resultChunk.freeData();
+  }
+
+  @Benchmark
+  public void getCell(Blackhole blackhole)
+  {
+    final int rows = resultChunk.getRowCount();
+    final int cols = resultChunk.getColCount();
+    for (int row = 0; row < rows; row++)
+    {
+      for (int col = 0; col < cols; col++)
+      {
+        blackhole.consume(resultChunk.getCell(row, col));
+      }
+    }
+  }
+}
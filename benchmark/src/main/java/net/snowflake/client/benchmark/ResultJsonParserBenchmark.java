@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.benchmark;
+
+import net.snowflake.client.jdbc.ResultJsonParserV2;
+import net.snowflake.client.jdbc.SnowflakeResultChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Parsing of a whole chunk by ResultJsonParserV2, from the JSON text and from
+ * the compressed chunk as it is downloaded
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultJsonParserBenchmark
+{
+  @Param({"NARROW_NUMERIC", "WIDE_NUMERIC", "NARROW_TEXT", "WIDE_TEXT",
+          "ESCAPE_HEAVY", "NULL_HEAVY"})
+  public ChunkGenerator.Shape shape;
+
+  @Param({"V2", "OFF_HEAP"})
+  public ChunkStorage storage;
+
+  @Param({"false", "true"})
+  public boolean columnVectors;
+
+  @Param("100000")
+  public int rowCount;
+
+  private ChunkGenerator.Chunk chunk;
+
+  private SnowflakeResultChunk resultChunk;
+
+  private final byte[] buffer = new byte[ChunkStorage.PARSE_SLICE_SIZE];
+
+  @Setup(Level.Trial)
+  public void generate() throws Exception
+  {
+    chunk = ChunkGenerator.generate(shape, rowCount, 42);
+  }
+
+  @Setup(Level.Invocation)
+  public void createChunk()
+  {
+    resultChunk = storage.newResultChunk(chunk, columnVectors);
+  }
+
+  @TearDown(Level.Invocation)
+  public void freeChunk()
+  {
+    resultChunk.freeData();
+  }
+
+  @Benchmark
+  public SnowflakeResultChunk parse() throws Exception
+  {
+    ChunkStorage.parse(new ResultJsonParserV2(), resultChunk, chunk.getJson());
+    return resultChunk;
+  }
+
+  @Benchmark
+  public SnowflakeResultChunk inflateAndParse() throws Exception
+  {
+    ResultJsonParserV2 parser = new ResultJsonParserV2();
+    parser.startParsing(resultChunk);
+    try (InputStream in =
+             new GZIPInputStream(new ByteArrayInputStream(chunk.getGzip())))
+    {
+      int len;
+      while ((len = in.read(buffer)) != -1)
+      {
+        parser.continueParsing(ByteBuffer.wrap(buffer, 0, len));
+      }
+    }
+    parser.endParsing();
+    return resultChunk;
+  }
+}
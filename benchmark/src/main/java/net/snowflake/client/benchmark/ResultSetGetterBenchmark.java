@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.benchmark;
+
+import net.snowflake.client.core.SFException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the cells of a parsed chunk by the getters of SFBaseResultSet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetGetterBenchmark
+{
+  @Param("100000")
+  public int rowCount;
+
+  @Param("0.1")
+  public double nullRatio;
+
+  private ChunkResultSet resultSet;
+
+  // column index of every column kind
+  private int integerColumn;
+  private int decimalColumn;
+  private int doubleColumn;
+  private int textColumn;
+  private int timestampColumn;
+
+  private final TimeZone timeZone = TimeZone.getTimeZone("UTC");
+
+  @Setup
+  public void load() throws Exception
+  {
+    List<ChunkGenerator.ColumnKind> kinds = Arrays.asList(
+        ChunkGenerator.ColumnKind.INTEGER, ChunkGenerator.ColumnKind.DECIMAL,
+        ChunkGenerator.ColumnKind.DOUBLE, ChunkGenerator.ColumnKind.TEXT,
+        ChunkGenerator.ColumnKind.TIMESTAMP);
+    integerColumn = kinds.indexOf(ChunkGenerator.ColumnKind.INTEGER) + 1;
+    decimalColumn = kinds.indexOf(ChunkGenerator.ColumnKind.DECIMAL) + 1;
+    doubleColumn = kinds.indexOf(ChunkGenerator.ColumnKind.DOUBLE) + 1;
+    textColumn = kinds.indexOf(ChunkGenerator.ColumnKind.TEXT) + 1;
+    timestampColumn = kinds.indexOf(ChunkGenerator.ColumnKind.TIMESTAMP) + 1;
+
+    ChunkGenerator.Chunk chunk =
+        ChunkGenerator.generate(kinds, rowCount, nullRatio, 42);
+    resultSet = new ChunkResultSet(
+        ChunkStorage.V2.load(chunk, false), chunk.getColumnMetadata());
+  }
+
+  @Benchmark
+  public void getString(Blackhole blackhole) throws SFException
+  {
+    resultSet.rewind();
+    while (resultSet.next())
+    {
+      blackhole.consume(resultSet.getString(textColumn));
+      blackhole.consume(resultSet.getString(integerColumn));
+    }
+  }
+
+  @Benchmark
+  public void getLong(Blackhole blackhole) throws SFException
+  {
+    resultSet.rewind();
+    while (resultSet.next())
+    {
+      blackhole.consume(resultSet.getLong(integerColumn));
+    }
+  }
+
+  @Benchmark
+  public void getDouble(Blackhole blackhole) throws SFException
+  {
+    resultSet.rewind();
+    while (resultSet.next())
+    {
+      blackhole.consume(resultSet.getDouble(doubleColumn));
+    }
+  }
+
+  @Benchmark
+  public void getBigDecimal(Blackhole blackhole) throws SFException
+  {
+    resultSet.rewind();
+    while (resultSet.next())
+    {
+      blackhole.consume(resultSet.getBigDecimal(decimalColumn));
+    }
+  }
+
+  @Benchmark
+  public void getTimestamp(Blackhole blackhole) throws SFException
+  {
+    resultSet.rewind();
+    while (resultSet.next())
+    {
+      blackhole.consume(resultSet.getTimestamp(timestampColumn, timeZone));
+    }
+  }
+}
@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.SnowflakeUtil;
+import net.snowflake.common.core.SFBinary;
+import net.snowflake.common.core.SFBinaryFormat;
+import net.snowflake.common.core.SFTime;
+import net.snowflake.common.core.SFTimestamp;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.TimeZone;
+
+/**
+ * Conversion of the cells of one column of a result set. The result set
+ * creates a converter per column from the metadata when it is opened, so the
+ * getters call the conversion of the column type directly instead of looking
+ * up the type and switching on it for every cell.
+ * <p>
+ * The session dependent formatters and settings are read from the result
+ * set, as they are set by the subclasses.
+ */
+abstract class ColumnConverter
+{
+  private static final TimeZone timeZoneUTC = TimeZone.getTimeZone("UTC");
+
+  // JDBC type of the column
+  final int columnType;
+
+  // Snowflake type of the column, which tells the timestamp types apart
+  final int internalColumnType;
+
+  final int scale;
+
+  ColumnConverter(int columnType, int internalColumnType, int scale)
+  {
+    this.columnType = columnType;
+    this.internalColumnType = internalColumnType;
+    this.scale = scale;
+  }
+
+  /**
+   * Create the converters of the columns of a result set
+   *
+   * @param metaData metadata of the result set
+   * @return converters, the first one is for column 1
+   * @throws SFException if a column has no type
+   */
+  static ColumnConverter[] create(SFResultSetMetaData metaData)
+  throws SFException
+  {
+    ColumnConverter[] converters =
+        new ColumnConverter[metaData.getColumnCount()];
+    for (int col = 1; col <= converters.length; col++)
+    {
+      int columnType = metaData.getColumnType(col);
+      int internalColumnType = metaData.getInternalColumnType(col);
+      int scale = metaData.getScale(col);
+
+      ColumnConverter converter;
+      switch (internalColumnType)
+      {
+        case Types.VARCHAR:
+        case Types.CHAR:
+          converter = new TextConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.INTEGER:
+          converter =
+              new IntegerConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.DECIMAL:
+          converter =
+              new DecimalConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.BIGINT:
+          converter = new BigIntConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.DOUBLE:
+          converter = new DoubleConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.BOOLEAN:
+          converter =
+              new BooleanConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.TIMESTAMP:
+        case SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_LTZ:
+        case SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ:
+          converter =
+              new TimestampConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.DATE:
+          converter = new DateConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.TIME:
+          converter = new TimeConverter(columnType, internalColumnType, scale);
+          break;
+
+        case Types.BINARY:
+          converter = new BinaryConverter(columnType, internalColumnType, scale);
+          break;
+
+        default:
+          converter =
+              new UnsupportedConverter(columnType, internalColumnType, scale);
+          break;
+      }
+      converters[col - 1] = converter;
+    }
+    return converters;
+  }
+
+  /**
+   * Get the cell as a String
+   *
+   * @param rs          result set
+   * @param columnIndex column index
+   * @param obj         the cell, not null
+   * @return the text
+   * @throws SFException if the cell can not be formatted
+   */
+  String getString(SFBaseResultSet rs, int columnIndex, Object obj)
+  throws SFException
+  {
+    return obj.toString();
+  }
+
+  /**
+   * Get the cell as the Java object of the column type
+   *
+   * @param rs          result set
+   * @param columnIndex column index, the cell is not null
+   * @return the object
+   * @throws SFException if the cell can not be converted
+   */
+  abstract Object getObject(SFBaseResultSet rs, int columnIndex)
+  throws SFException;
+
+  /**
+   * Get the cell as a Date
+   *
+   * @param rs          result set
+   * @param columnIndex column index
+   * @param obj         the cell, not null
+   * @param tz          time zone of the date
+   * @return the date
+   * @throws SFException if the column is not a date or a timestamp
+   */
+  Date getDate(SFBaseResultSet rs, int columnIndex, Object obj, TimeZone tz)
+  throws SFException
+  {
+    throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType, "DATE",
+                          obj);
+  }
+
+  /**
+   * Get the cell as a Time
+   *
+   * @param rs          result set
+   * @param columnIndex column index
+   * @return the time, or null if the cell is null
+   * @throws SFException if the column is not a time or a timestamp
+   */
+  Time getTime(SFBaseResultSet rs, int columnIndex) throws SFException
+  {
+    throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType, "Time",
+                          rs.getObjectInternal(columnIndex));
+  }
+
+  /**
+   * Get the cell as a Timestamp
+   *
+   * @param rs          result set
+   * @param columnIndex column index
+   * @param tz          time zone of a TIMESTAMP_NTZ or a date
+   * @return the timestamp, or null if the cell is null
+   * @throws SFException if the column is not a timestamp, date or time
+   */
+  Timestamp getTimestamp(SFBaseResultSet rs, int columnIndex, TimeZone tz)
+  throws SFException
+  {
+    throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType,
+                          "Timestamp", rs.getObjectInternal(columnIndex));
+  }
+
+  /**
+   * Get the cell as a java.time value
+   *
+   * @param rs          result set
+   * @param columnIndex column index
+   * @param obj         the cell, not null
+   * @param type        java.time class
+   * @return the value
+   * @throws SFException if the cell can not be converted to the type
+   */
+  Object getJavaTime(SFBaseResultSet rs, int columnIndex, Object obj,
+                     Class<?> type) throws SFException
+  {
+    throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType,
+                          type.getSimpleName(), obj);
+  }
+
+  private static final class TextConverter extends ColumnConverter
+  {
+    TextConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getString(columnIndex);
+    }
+  }
+
+  private static final class IntegerConverter extends ColumnConverter
+  {
+    IntegerConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getInt(columnIndex);
+    }
+  }
+
+  private static final class DecimalConverter extends ColumnConverter
+  {
+    DecimalConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getBigDecimal(columnIndex);
+    }
+  }
+
+  private static final class BigIntConverter extends ColumnConverter
+  {
+    BigIntConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getLong(columnIndex);
+    }
+  }
+
+  private static final class DoubleConverter extends ColumnConverter
+  {
+    DoubleConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getDouble(columnIndex);
+    }
+  }
+
+  private static final class BooleanConverter extends ColumnConverter
+  {
+    BooleanConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    String getString(SFBaseResultSet rs, int columnIndex, Object obj)
+    throws SFException
+    {
+      return ResultUtil.getBooleanAsString(
+          ResultUtil.getBoolean(obj.toString()));
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getBoolean(columnIndex);
+    }
+  }
+
+  private static final class TimestampConverter extends ColumnConverter
+  {
+    TimestampConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    String getString(SFBaseResultSet rs, int columnIndex, Object obj)
+    throws SFException
+    {
+      SFTimestamp sfTS = rs.getSFTimestamp(columnIndex);
+
+      String timestampStr = ResultUtil.getSFTimestampAsString(
+          sfTS, internalColumnType, scale, rs.timestampNTZFormatter,
+          rs.timestampLTZFormatter, rs.timestampTZFormatter, rs.session);
+
+      if (SFBaseResultSet.logger.isDebugEnabled())
+      {
+        SFBaseResultSet.logger.debug(
+            "Converting timestamp to string from: {} to: {}",
+            obj.toString(), timestampStr);
+      }
+
+      return timestampStr;
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getTimestamp(columnIndex, TimeZone.getDefault());
+    }
+
+    @Override
+    Date getDate(SFBaseResultSet rs, int columnIndex, Object obj, TimeZone tz)
+    throws SFException
+    {
+      return new Date(rs.getTimestamp(columnIndex, tz).getTime());
+    }
+
+    @Override
+    Time getTime(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return new Time(
+          rs.getTimestamp(columnIndex, TimeZone.getDefault()).getTime());
+    }
+
+    @Override
+    Timestamp getTimestamp(SFBaseResultSet rs, int columnIndex, TimeZone tz)
+    throws SFException
+    {
+      SFTimestamp sfTS = rs.getSFTimestamp(columnIndex);
+
+      if (sfTS == null)
+      {
+        return null;
+      }
+
+      Timestamp res = sfTS.getTimestamp();
+
+      if (res == null)
+      {
+        return null;
+      }
+      // SNOW-14777: for timestamp_ntz, we should treat the time as in client time
+      // zone so adjust the timestamp by subtracting the offset of the client
+      // timezone
+      if (rs.honorClientTZForTimestampNTZ &&
+          internalColumnType == Types.TIMESTAMP)
+      {
+        res = sfTS.moveToTimeZone(tz).getTimestamp();
+      }
+
+      return ResultUtil.adjustTimestamp(res);
+    }
+
+    @Override
+    Object getJavaTime(SFBaseResultSet rs, int columnIndex, Object obj,
+                       Class<?> type) throws SFException
+    {
+      SFTimestamp sfTS = rs.getSFTimestamp(columnIndex);
+      Object value = DateTimeDecoder.timestampToJavaTime(
+          type, internalColumnType, rs.honorClientTZForTimestampNTZ,
+          sfTS.getSeconds().longValue(), sfTS.getNanos(),
+          sfTS.getTimeZoneOffsetMillis() / 1000);
+      if (value == null)
+      {
+        return super.getJavaTime(rs, columnIndex, obj, type);
+      }
+      return value;
+    }
+  }
+
+  private static final class DateConverter extends ColumnConverter
+  {
+    DateConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    String getString(SFBaseResultSet rs, int columnIndex, Object obj)
+    throws SFException
+    {
+      Date date = rs.getDate(columnIndex, timeZoneUTC);
+
+      if (rs.dateFormatter == null)
+      {
+        throw IncidentUtil.
+            generateIncidentWithException(rs.session, null, null,
+                                          ErrorCode.INTERNAL_ERROR,
+                                          "missing date formatter");
+      }
+
+      String dateStr = ResultUtil.getDateAsString(date, rs.dateFormatter);
+
+      if (SFBaseResultSet.logger.isDebugEnabled())
+      {
+        SFBaseResultSet.logger.debug(
+            "Converting date to string from: {} to: {}",
+            obj.toString(), dateStr);
+      }
+      return dateStr;
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getDate(columnIndex);
+    }
+
+    @Override
+    Date getDate(SFBaseResultSet rs, int columnIndex, Object obj, TimeZone tz)
+    throws SFException
+    {
+      return ResultUtil.getDate(obj.toString(), tz, rs.session);
+    }
+
+    @Override
+    Timestamp getTimestamp(SFBaseResultSet rs, int columnIndex, TimeZone tz)
+    throws SFException
+    {
+      return new Timestamp(rs.getDate(columnIndex, tz).getTime());
+    }
+
+    @Override
+    Object getJavaTime(SFBaseResultSet rs, int columnIndex, Object obj,
+                       Class<?> type) throws SFException
+    {
+      Object value;
+      try
+      {
+        value = DateTimeDecoder.dateToJavaTime(type,
+                                               Long.parseLong(obj.toString()));
+      }
+      catch (NumberFormatException ex)
+      {
+        throw new SFException(ErrorCode.INTERNAL_ERROR,
+                              "Invalid date value: " + obj);
+      }
+      if (value == null)
+      {
+        return super.getJavaTime(rs, columnIndex, obj, type);
+      }
+      return value;
+    }
+  }
+
+  private static final class TimeConverter extends ColumnConverter
+  {
+    TimeConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    String getString(SFBaseResultSet rs, int columnIndex, Object obj)
+    throws SFException
+    {
+      SFTime sfTime = rs.getSFTime(columnIndex);
+
+      if (rs.timeFormatter == null)
+      {
+        throw IncidentUtil
+            .generateIncidentWithException(rs.session, null, null,
+                                           ErrorCode.INTERNAL_ERROR,
+                                           "missing time formatter");
+      }
+
+      String timeStr =
+          ResultUtil.getSFTimeAsString(sfTime, scale, rs.timeFormatter);
+
+      if (SFBaseResultSet.logger.isDebugEnabled())
+      {
+        SFBaseResultSet.logger.debug(
+            "Converting time to string from: {} to: {}",
+            obj.toString(), timeStr);
+      }
+      return timeStr;
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getTime(columnIndex);
+    }
+
+    @Override
+    Time getTime(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      SFTime sfTime = rs.getSFTime(columnIndex);
+      if (sfTime == null)
+      {
+        return null;
+      }
+      return new Time(sfTime.getFractionalSeconds(3));
+    }
+
+    @Override
+    Timestamp getTimestamp(SFBaseResultSet rs, int columnIndex, TimeZone tz)
+    throws SFException
+    {
+      return new Timestamp(rs.getTime(columnIndex).getTime());
+    }
+
+    @Override
+    Object getJavaTime(SFBaseResultSet rs, int columnIndex, Object obj,
+                       Class<?> type) throws SFException
+    {
+      Object value = DateTimeDecoder.timeToJavaTime(
+          type, rs.getSFTime(columnIndex).getNanoseconds());
+      if (value == null)
+      {
+        return super.getJavaTime(rs, columnIndex, obj, type);
+      }
+      return value;
+    }
+  }
+
+  private static final class BinaryConverter extends ColumnConverter
+  {
+    BinaryConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    String getString(SFBaseResultSet rs, int columnIndex, Object obj)
+    throws SFException
+    {
+      if (rs.binaryFormatter == null)
+      {
+        throw IncidentUtil
+            .generateIncidentWithException(rs.session, null, null,
+                                           ErrorCode.INTERNAL_ERROR,
+                                           "missing binary formatter");
+      }
+
+      if (rs.binaryFormatter == SFBinaryFormat.HEX)
+      {
+        // Shortcut: the values are already passed with hex encoding, so just
+        // return the string unchanged rather than constructing an SFBinary.
+        return obj.toString();
+      }
+
+      SFBinary sfb = new SFBinary(rs.getBytes(columnIndex));
+      return rs.binaryFormatter.format(sfb);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      return rs.getBytes(columnIndex);
+    }
+  }
+
+  /**
+   * Column of a type getObject does not support, the other getters convert
+   * its text
+   */
+  private static final class UnsupportedConverter extends ColumnConverter
+  {
+    UnsupportedConverter(int columnType, int internalColumnType, int scale)
+    {
+      super(columnType, internalColumnType, scale);
+    }
+
+    @Override
+    Object getObject(SFBaseResultSet rs, int columnIndex) throws SFException
+    {
+      throw IncidentUtil.
+          generateIncidentWithException(rs.session, null, null,
+                                        ErrorCode.FEATURE_UNSUPPORTED,
+                                        "data type: " + columnType);
+    }
+  }
+}
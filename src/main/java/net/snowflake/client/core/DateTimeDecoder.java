@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.SnowflakeUtil;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Decodes the text of timestamp, date and time cells from their UTF-8 bytes
+ * to the same values TimeUtil, SFTimestamp and SFTime produce, without the
+ * BigDecimal arithmetic and the calendars. Only the returned Timestamp, Date
+ * or Time is allocated.
+ * <p>
+ * Cells are decoded if they are seconds since the epoch with at most nine
+ * fractional digits, optionally followed by a time zone index, and fall on
+ * or after the Gregorian cutover of 1582-10-15. Anything else is left to the
+ * callers, which decode it with TimeUtil.
+ * <p>
+ * The time zone offset of a day is computed once and cached, as the cells of
+ * a result are mostly on a few days. An instance is used by one result set
+ * and is not thread safe.
+ * <p>
+ * The java.time values are built from the seconds, days or nanoseconds of
+ * the cells directly, so they have the proleptic Gregorian calendar of
+ * java.time for all dates.
+ */
+final class DateTimeDecoder
+{
+  private static final long MILLIS_PER_DAY = 86400000L;
+
+  private static final int NANOS_PER_SECOND = 1000000000;
+
+  // 1582-10-15, before it the calendars and the results are Julian
+  private static final long GREGORIAN_CUTOVER_MILLIS = -12219292800000L;
+
+  // seconds since the epoch of 9999-12-31, larger values are not decoded
+  private static final long MAX_SECONDS = 253402300799L;
+
+  // time zone indexes are minutes of offset plus 1440
+  private static final int UTC_TIME_ZONE_INDEX = 1440;
+
+  private static final int MAX_ZONE_OFFSET_SECONDS = 18 * 3600;
+
+  private static final int MAX_TIME_ZONE_INDEX = 2880;
+
+  private static final int[] POWERS_OF_TEN = {
+      1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+      1000000000};
+
+  // days whose offset is cached, a day maps to one slot
+  private static final int OFFSET_CACHE_SIZE = 64;
+
+  private final long[] cachedDays = new long[OFFSET_CACHE_SIZE];
+
+  private final int[] cachedOffsets = new int[OFFSET_CACHE_SIZE];
+
+  // time zone of the cached offsets
+  private TimeZone cachedTimeZone;
+
+  // seconds and nanoseconds parsed by parseSeconds
+  private long seconds;
+
+  private int nanos;
+
+  // offset parsed by parseTimestamp
+  private int offsetSeconds;
+
+  /**
+   * Decode a timestamp, i.e. seconds since the epoch
+   *
+   * @param buf           text
+   * @param offset        position of the text in buf
+   * @param length        length of the text
+   * @param timeZoneIndex true if the seconds are followed by a space and a
+   *                      time zone index, the encoding of TIMESTAMP_TZ in
+   *                      result versions above 0. The index does not change
+   *                      the instant.
+   * @param moveTo        time zone the wall clock time of the timestamp in
+   *                      UTC is moved to, like SFTimestamp.moveToTimeZone
+   *                      does for TIMESTAMP_NTZ, or null
+   * @return the timestamp, or null if the text must be decoded by TimeUtil
+   */
+  Timestamp decodeTimestamp(byte[] buf, int offset, int length,
+                            boolean timeZoneIndex, TimeZone moveTo)
+  {
+    if (!parseTimestamp(buf, offset, length, timeZoneIndex))
+    {
+      return null;
+    }
+
+    long millis = seconds * 1000 + nanos / 1000000;
+    if (millis < GREGORIAN_CUTOVER_MILLIS)
+    {
+      return null;
+    }
+    if (moveTo != null)
+    {
+      millis -= getOffset(moveTo, millis);
+      if (millis < GREGORIAN_CUTOVER_MILLIS)
+      {
+        return null;
+      }
+    }
+    Timestamp timestamp = new Timestamp(millis);
+    timestamp.setNanos(nanos);
+    return timestamp;
+  }
+
+  /**
+   * Parse a timestamp to the seconds, nanoseconds and offset returned by
+   * getSeconds, getNanos and getOffsetSeconds
+   *
+   * @param buf           text
+   * @param offset        position of the text in buf
+   * @param length        length of the text
+   * @param timeZoneIndex true if the seconds are followed by a space and a
+   *                      time zone index
+   * @return false if the text must be decoded by TimeUtil
+   */
+  boolean parseTimestamp(byte[] buf, int offset, int length,
+                         boolean timeZoneIndex)
+  {
+    int end = offset + length;
+    offsetSeconds = 0;
+    if (timeZoneIndex)
+    {
+      int space = indexOf(buf, offset, end, (byte) ' ');
+      int index = space < 0 ? -1 : parseTimeZoneIndex(buf, space + 1, end);
+      if (index < 0)
+      {
+        return false;
+      }
+      offsetSeconds = (index - UTC_TIME_ZONE_INDEX) * 60;
+      if (Math.abs(offsetSeconds) == 24 * 3600)
+      {
+        // like the GMT+24:00 and GMT-24:00 time zones TimeUtil falls back
+        // to GMT for
+        offsetSeconds = 0;
+      }
+      end = space;
+    }
+    return parseSeconds(buf, offset, end, 9);
+  }
+
+  /**
+   * @return seconds since the epoch parsed by parseTimestamp, rounded down
+   */
+  long getSeconds()
+  {
+    return seconds;
+  }
+
+  /**
+   * @return nanoseconds of the second parsed by parseTimestamp
+   */
+  int getNanos()
+  {
+    return nanos;
+  }
+
+  /**
+   * @return time zone offset parsed by parseTimestamp, 0 without a time zone
+   * index
+   */
+  int getOffsetSeconds()
+  {
+    return offsetSeconds;
+  }
+
+  /**
+   * Decode a date, i.e. days since the epoch, to midnight of the day in a
+   * time zone
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @param tz     time zone of the date
+   * @return the date, or null if the text must be decoded by ResultUtil
+   */
+  Date decodeDate(byte[] buf, int offset, int length, TimeZone tz)
+  {
+    final int end = offset + length;
+    int pos = offset;
+    boolean negative = pos < end && buf[pos] == '-';
+    if (negative)
+    {
+      pos++;
+    }
+    // at most 7 digits, beyond the years Snowflake supports
+    if (pos == end || end - pos > 7)
+    {
+      return null;
+    }
+    long days = 0;
+    for (; pos < end; pos++)
+    {
+      int digit = buf[pos] - '0';
+      if (digit < 0 || digit > 9)
+      {
+        return null;
+      }
+      days = days * 10 + digit;
+    }
+
+    long millis = (negative ? -days : days) * MILLIS_PER_DAY;
+    if (millis < GREGORIAN_CUTOVER_MILLIS)
+    {
+      return null;
+    }
+    millis -= getOffset(tz, millis);
+    if (millis < GREGORIAN_CUTOVER_MILLIS)
+    {
+      return null;
+    }
+    return new Date(millis);
+  }
+
+  /**
+   * Decode a time, i.e. seconds since midnight
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @param scale  number of fractional digits of the column, the digits
+   *               beyond it are ignored like TimeUtil.getSFTime does
+   * @return the time, or null if the text must be decoded by TimeUtil
+   */
+  Time decodeTime(byte[] buf, int offset, int length, int scale)
+  {
+    long nanoOfDay = decodeNanoOfDay(buf, offset, length, scale);
+    return nanoOfDay < 0 ? null : new Time(nanoOfDay / 1000000);
+  }
+
+  /**
+   * Decode a time, i.e. seconds since midnight, to nanoseconds
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @param scale  number of fractional digits of the column, the digits
+   *               beyond it are ignored like TimeUtil.getSFTime does
+   * @return nanoseconds since midnight, or -1 if the text must be decoded by
+   * TimeUtil
+   */
+  long decodeNanoOfDay(byte[] buf, int offset, int length, int scale)
+  {
+    if (scale < 0 || scale > 9 || length == 0 || buf[offset] == '-' ||
+        !parseSeconds(buf, offset, offset + length, Integer.MAX_VALUE))
+    {
+      return -1;
+    }
+    if (seconds >= MILLIS_PER_DAY / 1000)
+    {
+      return -1;
+    }
+    // truncated to the scale of the column
+    int fraction = nanos / POWERS_OF_TEN[9 - scale] * POWERS_OF_TEN[9 - scale];
+    return seconds * NANOS_PER_SECOND + fraction;
+  }
+
+  /**
+   * Convert a timestamp to a java.time type. Without a time zone of its
+   * own, a timestamp is in the default time zone, the same as for the
+   * java.sql.Timestamp of the getters.
+   *
+   * @param type                         java.time class
+   * @param internalColumnType           type of the timestamp column
+   * @param honorClientTZForTimestampNTZ true if TIMESTAMP_NTZ is a wall
+   *                                     clock time in the default time zone
+   * @param seconds                      seconds since the epoch
+   * @param nanos                        nanoseconds of the second
+   * @param offsetSeconds                offset of TIMESTAMP_TZ
+   * @return the value, or null if the type is not supported
+   */
+  static Object timestampToJavaTime(Class<?> type, int internalColumnType,
+                                    boolean honorClientTZForTimestampNTZ,
+                                    long seconds, int nanos, int offsetSeconds)
+  {
+    Instant instant = Instant.ofEpochSecond(seconds, nanos);
+    if (internalColumnType == Types.TIMESTAMP && honorClientTZForTimestampNTZ)
+    {
+      // the wall clock time in UTC moved to the default time zone, by the
+      // same offset SFTimestamp.moveToTimeZone uses for the getters
+      long millis = instant.toEpochMilli();
+      instant = instant.minusMillis(
+          getOffset(TimeZone.getDefault(),
+                    Math.floorDiv(millis, MILLIS_PER_DAY),
+                    (int) Math.floorMod(millis, MILLIS_PER_DAY)));
+    }
+    if (type == Instant.class)
+    {
+      return instant;
+    }
+    if (type == ZonedDateTime.class || type == OffsetDateTime.class)
+    {
+      if (internalColumnType != SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ)
+      {
+        ZonedDateTime zoned = instant.atZone(ZoneId.systemDefault());
+        return type == ZonedDateTime.class ? zoned : zoned.toOffsetDateTime();
+      }
+      // a time zone index may be up to a day away from UTC, beyond the
+      // range of ZoneOffset
+      if (Math.abs(offsetSeconds) > MAX_ZONE_OFFSET_SECONDS)
+      {
+        return null;
+      }
+      OffsetDateTime offsetDateTime =
+          instant.atOffset(ZoneOffset.ofTotalSeconds(offsetSeconds));
+      return type == OffsetDateTime.class ?
+             offsetDateTime : offsetDateTime.toZonedDateTime();
+    }
+
+    // the wall clock time of the getters, in the default time zone
+    ZonedDateTime zoned = instant.atZone(ZoneId.systemDefault());
+    if (type == LocalDateTime.class)
+    {
+      return zoned.toLocalDateTime();
+    }
+    if (type == LocalDate.class)
+    {
+      return zoned.toLocalDate();
+    }
+    if (type == LocalTime.class)
+    {
+      return zoned.toLocalTime();
+    }
+    return null;
+  }
+
+  /**
+   * Convert a date to a java.time type
+   *
+   * @param type     LocalDate or LocalDateTime, the start of the day
+   * @param epochDay days since the epoch
+   * @return the value, or null if the type is not supported
+   */
+  static Object dateToJavaTime(Class<?> type, long epochDay)
+  {
+    if (type == LocalDate.class)
+    {
+      return LocalDate.ofEpochDay(epochDay);
+    }
+    if (type == LocalDateTime.class)
+    {
+      return LocalDate.ofEpochDay(epochDay).atStartOfDay();
+    }
+    return null;
+  }
+
+  /**
+   * Convert a time to a java.time type
+   *
+   * @param type      LocalTime
+   * @param nanoOfDay nanoseconds since midnight
+   * @return the value, or null if the type is not supported
+   */
+  static Object timeToJavaTime(Class<?> type, long nanoOfDay)
+  {
+    return type == LocalTime.class ? LocalTime.ofNanoOfDay(nanoOfDay) : null;
+  }
+
+  /**
+   * Parse [-]digits[.digits] to whole seconds, rounded down, and nanoseconds
+   *
+   * @param maxFractionDigits fractional digits allowed, further digits are
+   *                          ignored if more than nine are allowed
+   * @return false if the text is not in this form, has more fractional
+   * digits than allowed or is out of range
+   */
+  private boolean parseSeconds(byte[] buf, int offset, int end,
+                               int maxFractionDigits)
+  {
+    int pos = offset;
+    boolean negative = pos < end && buf[pos] == '-';
+    if (negative)
+    {
+      pos++;
+    }
+
+    long whole = 0;
+    int digits = 0;
+    for (; pos < end && buf[pos] != '.'; pos++)
+    {
+      int digit = buf[pos] - '0';
+      if (digit < 0 || digit > 9 || ++digits > 12)
+      {
+        return false;
+      }
+      whole = whole * 10 + digit;
+    }
+    if (digits == 0 || whole > MAX_SECONDS)
+    {
+      return false;
+    }
+
+    int fraction = 0;
+    if (pos < end)
+    {
+      // skip the dot
+      pos++;
+      int fractionDigits = end - pos;
+      if (fractionDigits == 0 || fractionDigits > maxFractionDigits)
+      {
+        return false;
+      }
+      for (int i = 0; i < fractionDigits; i++, pos++)
+      {
+        int digit = buf[pos] - '0';
+        if (digit < 0 || digit > 9)
+        {
+          return false;
+        }
+        if (i < 9)
+        {
+          fraction = fraction * 10 + digit;
+        }
+      }
+      if (fractionDigits < 9)
+      {
+        fraction *= POWERS_OF_TEN[9 - fractionDigits];
+      }
+    }
+
+    if (negative && fraction > 0)
+    {
+      seconds = -whole - 1;
+      nanos = NANOS_PER_SECOND - fraction;
+    }
+    else
+    {
+      seconds = negative ? -whole : whole;
+      nanos = fraction;
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] buf, int from, int end, byte b)
+  {
+    for (int i = from; i < end; i++)
+    {
+      if (buf[i] == b)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the time zone index, or -1 if the text is not an index TimeUtil
+   * accepts
+   */
+  private static int parseTimeZoneIndex(byte[] buf, int from, int end)
+  {
+    if (from == end || end - from > 4)
+    {
+      return -1;
+    }
+    int index = 0;
+    for (int i = from; i < end; i++)
+    {
+      int digit = buf[i] - '0';
+      if (digit < 0 || digit > 9)
+      {
+        return -1;
+      }
+      index = index * 10 + digit;
+    }
+    return index <= MAX_TIME_ZONE_INDEX ? index : -1;
+  }
+
+  /**
+   * Get the offset SFTimestamp.moveToTimeZone subtracts to move an instant,
+   * i.e. the offset of tz when its wall clock shows the time of the instant
+   * in UTC
+   *
+   * @param tz     time zone
+   * @param millis milliseconds since the epoch, on or after the cutover
+   * @return offset in milliseconds
+   */
+  private int getOffset(TimeZone tz, long millis)
+  {
+    if (tz != cachedTimeZone)
+    {
+      Arrays.fill(cachedDays, Long.MIN_VALUE);
+      cachedTimeZone = tz;
+    }
+    long day = Math.floorDiv(millis, MILLIS_PER_DAY);
+    int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+    int slot = (int) (day & (OFFSET_CACHE_SIZE - 1));
+    if (cachedDays[slot] == day)
+    {
+      return cachedOffsets[slot];
+    }
+
+    // the offset is cached if it does not change during the day
+    int offset = getOffset(tz, day, millisOfDay);
+    if (offset == getOffset(tz, day, 0) &&
+        offset == getOffset(tz, day, (int) MILLIS_PER_DAY - 1))
+    {
+      cachedDays[slot] = day;
+      cachedOffsets[slot] = offset;
+    }
+    return offset;
+  }
+
+  /**
+   * Get the offset of tz at a wall clock time, with the fields a Gregorian
+   * calendar in UTC has for the day
+   */
+  private static int getOffset(TimeZone tz, long day, int millisOfDay)
+  {
+    // civil date of the day, see http://howardhinnant.github.io/date_algorithms.html
+    long z = day + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long dayOfEra = z - era * 146097;
+    long yearOfEra =
+        (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096)
+        / 365;
+    long dayOfYear =
+        dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long shiftedMonth = (5 * dayOfYear + 2) / 153;
+    int dayOfMonth = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+    int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+    int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+    // the epoch is a Thursday, Calendar.SUNDAY is 1
+    int dayOfWeek = (int) Math.floorMod(day + 4, 7) + 1;
+
+    return tz.getOffset(GregorianCalendar.AD, year, month - 1, dayOfMonth,
+                        dayOfWeek, millisOfDay);
+  }
+}
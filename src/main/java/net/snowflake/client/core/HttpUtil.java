@@ -5,6 +5,7 @@
 package net.snowflake.client.core;
 
 import com.amazonaws.http.apache.SdkProxyRoutePlanner;
+import com.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.RestRequest;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
@@ -273,6 +274,21 @@ public class HttpUtil
         .build();
   }
 
+  /**
+   * Return a request configuration inheriting from the default request
+   * configuration of the shared HttpClient with transparent decompression
+   * of the response disabled, so the caller reads the compressed content.
+   *
+   * @return RequestConfig object
+   */
+  public static RequestConfig getRequestConfigWithoutContentCompression()
+  {
+    getHttpClient();
+    return RequestConfig.copy(DefaultRequestConfig)
+        .setContentCompressionEnabled(false)
+        .build();
+  }
+
   /**
    * Accessor for the HTTP client singleton.
    *
@@ -329,7 +345,8 @@ public class HttpUtil
         canceling,
         true,
         false,
-        true);
+        true,
+        STRING_READER);
   }
 
   /**
@@ -384,9 +401,77 @@ public class HttpUtil
         canceling,
         false,
         includeRetryParameters,
-        true);
+        true,
+        STRING_READER);
+  }
+
+  /**
+   * Executes a HTTP request for a query result and reads the response while
+   * it arrives. The rows returned with the response are not stored as
+   * String or as a node per cell, see {@link QueryResultReader}.
+   *
+   * @param httpRequest            HttpRequestBase
+   * @param retryTimeout           retry timeout
+   * @param injectSocketTimeout    injecting socket timeout
+   * @param canceling              canceling?
+   * @param includeRetryParameters whether to include retry parameters in
+   *                               retried requests
+   * @return response as JSON tree, null if the response is empty
+   * @throws SnowflakeSQLException if Snowflake error occurs
+   * @throws IOException           raises if a general IO error occurs or
+   *                               the response is not JSON
+   */
+  public static JsonNode executeRequestForResult(
+      HttpRequestBase httpRequest,
+      int retryTimeout,
+      int injectSocketTimeout,
+      AtomicBoolean canceling,
+      boolean includeRetryParameters)
+  throws SnowflakeSQLException, IOException
+  {
+    return executeRequestInternal(
+        httpRequest,
+        retryTimeout,
+        injectSocketTimeout,
+        canceling,
+        false,
+        includeRetryParameters,
+        true,
+        RESULT_READER);
   }
 
+  /**
+   * Reads the body of a successful response
+   *
+   * @param <T> type of the response
+   */
+  private interface ResponseReader<T>
+  {
+    T read(InputStream ins) throws IOException;
+  }
+
+  private static final ResponseReader<String> STRING_READER =
+      new ResponseReader<String>()
+      {
+        @Override
+        public String read(InputStream ins) throws IOException
+        {
+          StringWriter writer = new StringWriter();
+          IOUtils.copy(ins, writer, "UTF-8");
+          return writer.toString();
+        }
+      };
+
+  private static final ResponseReader<JsonNode> RESULT_READER =
+      new ResponseReader<JsonNode>()
+      {
+        @Override
+        public JsonNode read(InputStream ins) throws IOException
+        {
+          return QueryResultReader.read(ins);
+        }
+      };
+
   /**
    * Helper to execute a request with retry and check and throw exception if
    * response is not success.
@@ -403,17 +488,20 @@ public class HttpUtil
    * @param includeRetryParameters whether to include retry parameters in
    *                               retried requests
    * @param includeRequestGuid     whether to include request_guid
-   * @return response in String
+   * @param reader                 reads the response body
+   * @param <T>                    type of the response
+   * @return response read by the reader
    * @throws SnowflakeSQLException if Snowflake error occurs
    * @throws IOException           raises if a general IO error occurs
    */
-  private static String executeRequestInternal(HttpRequestBase httpRequest,
-                                               int retryTimeout,
-                                               int injectSocketTimeout,
-                                               AtomicBoolean canceling,
-                                               boolean withoutCookies,
-                                               boolean includeRetryParameters,
-                                               boolean includeRequestGuid)
+  private static <T> T executeRequestInternal(HttpRequestBase httpRequest,
+                                              int retryTimeout,
+                                              int injectSocketTimeout,
+                                              AtomicBoolean canceling,
+                                              boolean withoutCookies,
+                                              boolean includeRetryParameters,
+                                              boolean includeRequestGuid,
+                                              ResponseReader<T> reader)
   throws SnowflakeSQLException, IOException
   {
     if (logger.isDebugEnabled())
@@ -423,8 +511,7 @@ public class HttpUtil
                    httpRequest);
     }
 
-    String theString;
-    StringWriter writer = null;
+    T result;
     CloseableHttpResponse response = null;
     try
     {
@@ -458,17 +545,13 @@ public class HttpUtil
                                            "null response"));
       }
 
-      writer = new StringWriter();
       try (InputStream ins = response.getEntity().getContent())
       {
-        IOUtils.copy(ins, writer, "UTF-8");
+        result = reader.read(ins);
       }
-
-      theString = writer.toString();
     }
     finally
     {
-      IOUtils.closeQuietly(writer);
       IOUtils.closeQuietly(response);
     }
 
@@ -480,7 +563,7 @@ public class HttpUtil
           httpRequest);
     }
 
-    return theString;
+    return result;
   }
 
   // This is a workaround for JDK-7036144.
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import net.snowflake.client.jdbc.JsonRowset;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a query response from the HTTP stream.
+ * <p>
+ * The response becomes a JSON tree like before, except for the rows
+ * returned with the response, data.rowset. They are copied token by token
+ * into compact JSON text, held by a {@link JsonRowset} in a POJONode, so
+ * neither the whole response as String nor a node per cell is created.
+ * Only the start of the body is kept, to report a response that is not
+ * JSON, e.g. the error page of a proxy.
+ */
+final class QueryResultReader
+{
+  private static final ObjectMapper mapper =
+      ObjectMapperFactory.getObjectMapper();
+
+  // bytes of the body kept for a response that is not JSON
+  static final int MAX_RESPONSE_PREFIX_BYTES = 4096;
+
+  private QueryResultReader()
+  {
+  }
+
+  /**
+   * Read a query response
+   *
+   * @param in response body
+   * @return the response as JSON tree, null if the response is empty
+   * @throws BadResponseException if the response is not JSON
+   * @throws IOException          if the response cannot be read
+   */
+  static JsonNode read(InputStream in) throws IOException
+  {
+    PrefixInputStream prefixIn = new PrefixInputStream(in);
+    try (JsonParser parser = mapper.getFactory().createParser(prefixIn))
+    {
+      return readResponse(parser);
+    }
+    catch (JsonProcessingException ex)
+    {
+      throw new BadResponseException(ex, prefixIn.getPrefix());
+    }
+  }
+
+  private static JsonNode readResponse(JsonParser parser) throws IOException
+  {
+    JsonToken token = parser.nextToken();
+    if (token == null)
+    {
+      // empty response
+      return null;
+    }
+    if (token != JsonToken.START_OBJECT)
+    {
+      // not a response with data, read it as it is
+      return readValue(parser);
+    }
+
+    ObjectNode root = mapper.createObjectNode();
+    while (parser.nextToken() == JsonToken.FIELD_NAME)
+    {
+      String name = parser.getCurrentName();
+      if (parser.nextToken() == JsonToken.START_OBJECT &&
+          "data".equals(name))
+      {
+        root.set(name, readData(parser));
+      }
+      else
+      {
+        root.set(name, readValue(parser));
+      }
+    }
+    return root;
+  }
+
+  private static ObjectNode readData(JsonParser parser) throws IOException
+  {
+    ObjectNode data = mapper.createObjectNode();
+    while (parser.nextToken() == JsonToken.FIELD_NAME)
+    {
+      String name = parser.getCurrentName();
+      if (parser.nextToken() == JsonToken.START_ARRAY &&
+          "rowset".equals(name))
+      {
+        data.set(name, new POJONode(readRowset(parser)));
+      }
+      else
+      {
+        data.set(name, readValue(parser));
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Copy the rows, the parser is at the start of the rowset array
+   */
+  private static JsonRowset readRowset(JsonParser parser) throws IOException
+  {
+    RowsetOutputStream out = new RowsetOutputStream();
+    int rowCount = 0;
+    try (JsonGenerator generator =
+             mapper.getFactory().createGenerator(out, JsonEncoding.UTF8))
+    {
+      generator.writeStartArray();
+      JsonToken token;
+      while ((token = parser.nextToken()) != JsonToken.END_ARRAY)
+      {
+        if (token != JsonToken.START_ARRAY)
+        {
+          throw new JsonParseException(parser, "Expected a row, got " + token);
+        }
+        generator.copyCurrentStructure(parser);
+        rowCount++;
+      }
+      generator.writeEndArray();
+    }
+    return new JsonRowset(out.getBuffer(), out.size(), rowCount);
+  }
+
+  /**
+   * @return the value the parser is at as tree
+   */
+  private static JsonNode readValue(JsonParser parser) throws IOException
+  {
+    JsonNode node = mapper.readTree(parser);
+    return node != null ? node : NullNode.getInstance();
+  }
+
+  /**
+   * A response that is not JSON, with the start of its body
+   */
+  static final class BadResponseException extends JsonProcessingException
+  {
+    private final String responsePrefix;
+
+    BadResponseException(JsonProcessingException cause,
+                         String responsePrefix)
+    {
+      super(cause.getOriginalMessage(), cause.getLocation(), cause);
+      this.responsePrefix = responsePrefix;
+    }
+
+    /**
+     * @return at most MAX_RESPONSE_PREFIX_BYTES of the body read so far,
+     * followed by ... if more was read
+     */
+    String getResponsePrefix()
+    {
+      return responsePrefix;
+    }
+  }
+
+  /**
+   * Keeps the first bytes read from the body
+   */
+  private static final class PrefixInputStream extends FilterInputStream
+  {
+    private final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+
+    private boolean truncated = false;
+
+    PrefixInputStream(InputStream in)
+    {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      int b = super.read();
+      if (b >= 0)
+      {
+        keep(new byte[]{(byte) b}, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      int n = super.read(b, off, len);
+      if (n > 0)
+      {
+        keep(b, off, n);
+      }
+      return n;
+    }
+
+    private void keep(byte[] b, int off, int len)
+    {
+      int kept = Math.min(len, MAX_RESPONSE_PREFIX_BYTES - prefix.size());
+      prefix.write(b, off, kept);
+      truncated |= kept < len;
+    }
+
+    String getPrefix()
+    {
+      return new String(prefix.toByteArray(), StandardCharsets.UTF_8) +
+             (truncated ? "..." : "");
+    }
+  }
+
+  /**
+   * Gives access to its buffer, so the rows are not copied once more
+   */
+  private static final class RowsetOutputStream extends ByteArrayOutputStream
+  {
+    RowsetOutputStream()
+    {
+      super(8192);
+    }
+
+    byte[] getBuffer()
+    {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,787 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.SnowflakeChunkDownloader;
+import net.snowflake.client.jdbc.SnowflakeType;
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the rows of a result for client side sorting.
+ * <p>
+ * Every chunk of the result is sorted when it is added and kept as a sorted
+ * run. The memory of the runs is reserved from the memory budget shared with
+ * the result chunks of all result sets. When a run does not fit into the
+ * budget, the runs held in memory are merged into one run written to a
+ * temporary file and their memory is released. Every MERGE_FAN_IN run files
+ * of the same level are merged into one file of the next level, so the
+ * number of open files stays bounded however many runs are spilled. Once
+ * all chunks are added, the runs are merged while the rows are read, and
+ * the memory of the runs is released when the sorter is closed.
+ * <p>
+ * Rows are ordered column by column. Cells are compared according to the
+ * type of their column: numbers, dates, times and timestamps by value,
+ * booleans false first, all other types as text. Nulls come after all
+ * values. Rows which compare equal keep the order of the result, so the
+ * order is deterministic.
+ */
+final class ResultSetSorter implements Closeable
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ResultSetSorter.class);
+
+  // estimated bytes of a row and of a cell besides their content
+  private static final int ROW_OVERHEAD = 16;
+  private static final int CELL_OVERHEAD = 48;
+
+  // most run files merged at once
+  static final int MERGE_FAN_IN = 64;
+
+  private final Comparator<String[]> rowComparator;
+
+  private final long memoryLimit;
+
+  private final File spillDirectory;
+
+  // sorted runs held in memory, in the order of the result
+  private final List<String[][]> memoryRuns = new ArrayList<>();
+
+  // estimated bytes of the runs held in memory, reserved from the budget
+  private long memoryRunBytes = 0;
+
+  // runs written to files, each holds chunks before the next one. The
+  // levels of the runs never increase along the list.
+  private final List<FileRun> fileRuns = new ArrayList<>();
+
+  private final List<RunCursor> cursors = new ArrayList<>();
+
+  private PriorityQueue<RunCursor> mergeQueue = null;
+
+  private long rowCount = 0;
+
+  /**
+   * @param columnTypes    types of the columns, null for a text column
+   * @param memoryLimit    memory limit of the result, shared with the chunks
+   * @param spillDirectory directory of the run files, null for the default
+   *                       temporary directory
+   */
+  ResultSetSorter(SnowflakeType[] columnTypes, long memoryLimit,
+                  File spillDirectory)
+  {
+    this.rowComparator = new RowComparator(columnTypes);
+    this.memoryLimit = memoryLimit;
+    this.spillDirectory = spillDirectory;
+  }
+
+  /**
+   * Add the rows of a chunk. The rows are sorted in place.
+   *
+   * @param rows rows of the chunk
+   * @throws IOException if the runs cannot be written
+   */
+  void add(String[][] rows) throws IOException
+  {
+    add(rows, 0);
+  }
+
+  /**
+   * Add the rows of a chunk with memory reserved for them already, e.g. the
+   * memory of the chunk they are copied from. The sorter releases the
+   * memory. The rows are sorted in place.
+   *
+   * @param rows          rows of the chunk
+   * @param reservedBytes memory reserved from the budget for the rows
+   * @throws IOException if the runs cannot be written
+   */
+  void add(String[][] rows, long reservedBytes) throws IOException
+  {
+    memoryRunBytes += reservedBytes;
+    if (mergeQueue != null)
+    {
+      throw new IllegalStateException("rows added after the merge started");
+    }
+    if (rows.length == 0)
+    {
+      return;
+    }
+
+    Arrays.sort(rows, rowComparator);
+    memoryRuns.add(rows);
+    rowCount += rows.length;
+    long bytes = 0;
+    for (String[] row : rows)
+    {
+      bytes += estimateBytes(row);
+    }
+
+    if (bytes <= reservedBytes ||
+        SnowflakeChunkDownloader.tryReserveMemory(bytes - reservedBytes,
+                                                  memoryLimit))
+    {
+      memoryRunBytes += Math.max(bytes - reservedBytes, 0);
+    }
+    else
+    {
+      spillMemoryRuns();
+    }
+  }
+
+  /**
+   * @return number of rows added
+   */
+  long getRowCount()
+  {
+    return rowCount;
+  }
+
+  /**
+   * @return number of runs written to files
+   */
+  int getFileRunCount()
+  {
+    return fileRuns.size();
+  }
+
+  /**
+   * Get the next row in sorted order. The first call ends adding rows.
+   *
+   * @return the row or null if all rows are read
+   * @throws IOException if a run file cannot be read
+   */
+  String[] next() throws IOException
+  {
+    if (mergeQueue == null)
+    {
+      startMerge();
+    }
+
+    RunCursor cursor = mergeQueue.poll();
+    if (cursor == null)
+    {
+      return null;
+    }
+    String[] row = cursor.head;
+    if (cursor.advance())
+    {
+      mergeQueue.add(cursor);
+    }
+    return row;
+  }
+
+  /**
+   * Delete the run files
+   */
+  @Override
+  public void close()
+  {
+    for (RunCursor cursor : cursors)
+    {
+      cursor.close();
+    }
+    cursors.clear();
+    for (FileRun run : fileRuns)
+    {
+      deleteFile(run.file);
+    }
+    fileRuns.clear();
+    memoryRuns.clear();
+    releaseMemory();
+    mergeQueue = null;
+  }
+
+  private static long estimateBytes(String[] row)
+  {
+    long bytes = ROW_OVERHEAD + 4L * row.length;
+    for (String cell : row)
+    {
+      if (cell != null)
+      {
+        bytes += CELL_OVERHEAD + 2L * cell.length();
+      }
+    }
+    return bytes;
+  }
+
+  private static void deleteFile(File file)
+  {
+    if (!file.delete())
+    {
+      logger.debug("Failed to delete sort run file {}", file);
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Merge the runs held in memory into one run file
+   */
+  private void spillMemoryRuns() throws IOException
+  {
+    File file = File.createTempFile("result-sort-", ".run", spillDirectory);
+    fileRuns.add(new FileRun(file, 0));
+
+    PriorityQueue<RunCursor> queue = createMergeQueue();
+    for (int i = 0; i < memoryRuns.size(); i++)
+    {
+      queue.add(new MemoryRunCursor(i, memoryRuns.get(i)));
+    }
+    long rows = writeRun(queue, file);
+
+    logger.debug("Spilled sorted run of {} rows to {}", rows, file);
+    memoryRuns.clear();
+    releaseMemory();
+
+    // fewer than MERGE_FAN_IN runs of each level, every row is written
+    // once per level
+    int size;
+    while ((size = fileRuns.size()) >= MERGE_FAN_IN &&
+           fileRuns.get(size - MERGE_FAN_IN).level ==
+           fileRuns.get(size - 1).level)
+    {
+      mergeFileRuns(size - MERGE_FAN_IN, fileRuns.get(size - 1).level + 1);
+    }
+  }
+
+  /**
+   * Merge the last run files into one
+   *
+   * @param fromIndex index of the first run file to merge
+   * @param level     level of the merged run file
+   */
+  private void mergeFileRuns(int fromIndex, int level) throws IOException
+  {
+    File file = File.createTempFile("result-sort-", ".run", spillDirectory);
+    List<FileRun> runs = fileRuns.subList(fromIndex, fileRuns.size());
+    List<FileRun> merged = new ArrayList<>(runs);
+    runs.clear();
+    fileRuns.add(new FileRun(file, level));
+
+    PriorityQueue<RunCursor> queue = createMergeQueue();
+    List<RunCursor> inputs = new ArrayList<>();
+    long rows;
+    try
+    {
+      for (int i = 0; i < merged.size(); i++)
+      {
+        FileRunCursor cursor = new FileRunCursor(i, merged.get(i).file);
+        inputs.add(cursor);
+        if (cursor.advance())
+        {
+          queue.add(cursor);
+        }
+      }
+      rows = writeRun(queue, file);
+    }
+    finally
+    {
+      for (RunCursor cursor : inputs)
+      {
+        cursor.close();
+      }
+      for (FileRun run : merged)
+      {
+        deleteFile(run.file);
+      }
+    }
+
+    logger.debug("Merged {} sorted run files of {} rows to {}",
+                 merged.size(), rows, file);
+  }
+
+  /**
+   * Write the rows of the runs in the queue to a run file in sorted order
+   *
+   * @return number of rows written
+   */
+  private static long writeRun(PriorityQueue<RunCursor> queue, File file)
+  throws IOException
+  {
+    long rows = 0;
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file))))
+    {
+      RunCursor cursor;
+      while ((cursor = queue.poll()) != null)
+      {
+        writeRow(out, cursor.head);
+        rows++;
+        if (cursor.advance())
+        {
+          queue.add(cursor);
+        }
+      }
+    }
+    return rows;
+  }
+
+  private void releaseMemory()
+  {
+    if (memoryRunBytes > 0)
+    {
+      SnowflakeChunkDownloader.releaseMemory(memoryRunBytes);
+      memoryRunBytes = 0;
+    }
+  }
+
+  private void startMerge() throws IOException
+  {
+    // at most MERGE_FAN_IN files are open while the rows are read
+    while (fileRuns.size() > MERGE_FAN_IN)
+    {
+      mergeFileRuns(fileRuns.size() - MERGE_FAN_IN,
+                    fileRuns.get(fileRuns.size() - MERGE_FAN_IN).level + 1);
+    }
+    mergeQueue = createMergeQueue();
+
+    // the file runs hold the chunks before the runs in memory
+    int sequence = 0;
+    for (FileRun run : fileRuns)
+    {
+      FileRunCursor cursor = new FileRunCursor(sequence++, run.file);
+      cursors.add(cursor);
+      if (cursor.advance())
+      {
+        mergeQueue.add(cursor);
+      }
+    }
+    for (String[][] run : memoryRuns)
+    {
+      RunCursor cursor = new MemoryRunCursor(sequence++, run);
+      cursors.add(cursor);
+      mergeQueue.add(cursor);
+    }
+    memoryRuns.clear();
+
+    logger.debug("Merging {} sorted runs, {} from files",
+                 sequence, fileRuns.size());
+  }
+
+  /**
+   * @return a queue of run cursors ordered by their current row and, for
+   * equal rows, by the order of the runs in the result
+   */
+  private PriorityQueue<RunCursor> createMergeQueue()
+  {
+    return new PriorityQueue<>(11, new Comparator<RunCursor>()
+    {
+      @Override
+      public int compare(RunCursor a, RunCursor b)
+      {
+        int res = rowComparator.compare(a.head, b.head);
+        return res != 0 ? res : Integer.compare(a.sequence, b.sequence);
+      }
+    });
+  }
+
+  private static void writeRow(DataOutputStream out, String[] row)
+  throws IOException
+  {
+    out.writeInt(row.length);
+    for (String cell : row)
+    {
+      if (cell == null)
+      {
+        out.writeInt(-1);
+      }
+      else
+      {
+        byte[] bytes = cell.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * @return the next row or null at the end of the file
+   */
+  private static String[] readRow(DataInputStream in) throws IOException
+  {
+    int columnCount;
+    try
+    {
+      columnCount = in.readInt();
+    }
+    catch (EOFException ex)
+    {
+      return null;
+    }
+
+    String[] row = new String[columnCount];
+    for (int i = 0; i < columnCount; i++)
+    {
+      int length = in.readInt();
+      if (length >= 0)
+      {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        row[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return row;
+  }
+
+  /**
+   * A sorted run written to a file
+   */
+  private static final class FileRun
+  {
+    final File file;
+
+    // 0 for a run spilled from memory, one more than the highest level of
+    // the runs merged into it otherwise
+    final int level;
+
+    FileRun(File file, int level)
+    {
+      this.file = file;
+      this.level = level;
+    }
+  }
+
+  /**
+   * Position in a sorted run
+   */
+  private abstract static class RunCursor
+  {
+    // order of the run in the result
+    final int sequence;
+
+    // current row
+    String[] head;
+
+    RunCursor(int sequence)
+    {
+      this.sequence = sequence;
+    }
+
+    /**
+     * Move to the next row
+     *
+     * @return false if the run has no more rows
+     */
+    abstract boolean advance() throws IOException;
+
+    void close()
+    {
+    }
+  }
+
+  private static final class MemoryRunCursor extends RunCursor
+  {
+    private String[][] rows;
+    private int index = 0;
+
+    MemoryRunCursor(int sequence, String[][] rows)
+    {
+      super(sequence);
+      this.rows = rows;
+      this.head = rows[0];
+    }
+
+    @Override
+    boolean advance()
+    {
+      // let GC collect the rows already read
+      rows[index] = null;
+      if (++index < rows.length)
+      {
+        head = rows[index];
+        return true;
+      }
+      rows = null;
+      head = null;
+      return false;
+    }
+  }
+
+  private static final class FileRunCursor extends RunCursor
+  {
+    private final DataInputStream in;
+
+    FileRunCursor(int sequence, File file) throws IOException
+    {
+      super(sequence);
+      this.in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    @Override
+    boolean advance() throws IOException
+    {
+      head = readRow(in);
+      if (head == null)
+      {
+        close();
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    void close()
+    {
+      try
+      {
+        in.close();
+      }
+      catch (IOException ex)
+      {
+        logger.debug("Failed to close sort run file: {}", ex);
+      }
+    }
+  }
+
+  /**
+   * Orders rows column by column, nulls after all values
+   */
+  static final class RowComparator implements Comparator<String[]>
+  {
+    private final SnowflakeType[] columnTypes;
+
+    RowComparator(SnowflakeType[] columnTypes)
+    {
+      this.columnTypes = columnTypes;
+    }
+
+    @Override
+    public int compare(String[] a, String[] b)
+    {
+      for (int colIdx = 0; colIdx < a.length; colIdx++)
+      {
+        String x = a[colIdx];
+        String y = b[colIdx];
+        if (x == null || y == null)
+        {
+          if (x != y)
+          {
+            return x == null ? 1 : -1;
+          }
+          continue;
+        }
+
+        int res = compareCells(
+            colIdx < columnTypes.length ? columnTypes[colIdx] : null, x, y);
+        if (res != 0)
+        {
+          return res;
+        }
+      }
+
+      // all columns are the same
+      return 0;
+    }
+  }
+
+  /**
+   * Compare two cells of a column by the value their text represents
+   *
+   * @param type type of the column, null for text
+   * @param x    first cell
+   * @param y    second cell
+   * @return a negative number, zero or a positive number if x is less than,
+   * equal to or greater than y
+   */
+  static int compareCells(SnowflakeType type, String x, String y)
+  {
+    if (type == null)
+    {
+      return x.compareTo(y);
+    }
+
+    switch (type)
+    {
+      case INTEGER:
+      case FIXED:
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+      case TIMESTAMP_LTZ:
+      case TIMESTAMP_NTZ:
+        return compareDecimals(x, y);
+
+      case TIMESTAMP_TZ:
+        // seconds since the epoch followed by the time zone
+        return compareDecimals(firstToken(x), firstToken(y));
+
+      case REAL:
+        return Double.compare(parseDouble(x), parseDouble(y));
+
+      case BOOLEAN:
+        return Boolean.compare(ResultUtil.getBoolean(x),
+                               ResultUtil.getBoolean(y));
+
+      default:
+        return x.compareTo(y);
+    }
+  }
+
+  private static String firstToken(String value)
+  {
+    int end = value.indexOf(' ');
+    return end < 0 ? value : value.substring(0, end);
+  }
+
+  private static double parseDouble(String value)
+  {
+    switch (value)
+    {
+      case "inf":
+        return Double.POSITIVE_INFINITY;
+      case "-inf":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        try
+        {
+          return Double.parseDouble(value);
+        }
+        catch (NumberFormatException ex)
+        {
+          return Double.NaN;
+        }
+    }
+  }
+
+  /**
+   * Compare two plain decimal numbers, e.g. -12.5, without parsing them.
+   * Values in any other notation are compared as BigDecimal and, if they are
+   * not numbers at all, as text.
+   */
+  static int compareDecimals(String x, String y)
+  {
+    if (!isPlainDecimal(x) || !isPlainDecimal(y))
+    {
+      try
+      {
+        return new BigDecimal(x).compareTo(new BigDecimal(y));
+      }
+      catch (NumberFormatException ex)
+      {
+        return x.compareTo(y);
+      }
+    }
+
+    boolean xNegative = x.charAt(0) == '-';
+    boolean yNegative = y.charAt(0) == '-';
+    if (xNegative != yNegative)
+    {
+      // -0 and 0 are equal
+      if (isZero(x) && isZero(y))
+      {
+        return 0;
+      }
+      return xNegative ? -1 : 1;
+    }
+    int res = compareMagnitudes(x, xNegative ? 1 : 0, y, yNegative ? 1 : 0);
+    return xNegative ? -res : res;
+  }
+
+  private static boolean isPlainDecimal(String value)
+  {
+    int length = value.length();
+    int i = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+    boolean digits = false;
+    boolean point = false;
+    for (; i < length; i++)
+    {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9')
+      {
+        digits = true;
+      }
+      else if (c == '.' && !point)
+      {
+        point = true;
+      }
+      else
+      {
+        return false;
+      }
+    }
+    return digits;
+  }
+
+  private static boolean isZero(String value)
+  {
+    for (int i = 0; i < value.length(); i++)
+    {
+      char c = value.charAt(i);
+      if (c >= '1' && c <= '9')
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compare the absolute values of two plain decimal numbers
+   */
+  private static int compareMagnitudes(String x, int xStart,
+                                       String y, int yStart)
+  {
+    // skip leading zeros
+    while (xStart < x.length() && x.charAt(xStart) == '0')
+    {
+      xStart++;
+    }
+    while (yStart < y.length() && y.charAt(yStart) == '0')
+    {
+      yStart++;
+    }
+    int xPoint = x.indexOf('.', xStart);
+    int yPoint = y.indexOf('.', yStart);
+    int xEnd = xPoint < 0 ? x.length() : xPoint;
+    int yEnd = yPoint < 0 ? y.length() : yPoint;
+
+    // more integer digits is a greater magnitude
+    if (xEnd - xStart != yEnd - yStart)
+    {
+      return xEnd - xStart < yEnd - yStart ? -1 : 1;
+    }
+    for (int i = 0; i < xEnd - xStart; i++)
+    {
+      int res = Character.compare(x.charAt(xStart + i), y.charAt(yStart + i));
+      if (res != 0)
+      {
+        return res;
+      }
+    }
+
+    // fractions, the shorter one padded with zeros
+    int xFraction = xPoint < 0 ? x.length() : xPoint + 1;
+    int yFraction = yPoint < 0 ? y.length() : yPoint + 1;
+    int fractionLength = Math.max(x.length() - xFraction,
+                                  y.length() - yFraction);
+    for (int i = 0; i < fractionLength; i++)
+    {
+      char xc = xFraction + i < x.length() ? x.charAt(xFraction + i) : '0';
+      char yc = yFraction + i < y.length() ? y.charAt(yFraction + i) : '0';
+      if (xc != yc)
+      {
+        return xc < yc ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+}
@@ -6,14 +6,19 @@ package net.snowflake.client.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.QueryResultFormat;
+import net.snowflake.client.jdbc.ResultArrowParser;
+import net.snowflake.client.jdbc.ResultJsonParserV2;
 import net.snowflake.client.jdbc.SnowflakeChunkDownloader;
 import net.snowflake.client.jdbc.SnowflakeColumnMetadata;
+import net.snowflake.client.jdbc.SnowflakeResultChunk;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
 import net.snowflake.client.jdbc.SnowflakeUtil;
 import net.snowflake.common.core.SFBinaryFormat;
 import net.snowflake.common.core.SFTime;
 import net.snowflake.common.core.SFTimestamp;
 import net.snowflake.common.core.SnowflakeDateTimeFormat;
+import net.snowflake.common.core.SqlState;
 import net.snowflake.common.util.TimeUtil;
 
 import java.math.BigDecimal;
@@ -23,6 +28,7 @@ import java.sql.Types;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
@@ -95,12 +101,16 @@ public class ResultUtil
     int columnCount;
     private List<SnowflakeColumnMetadata> resultColumnMetadata =
         new ArrayList<SnowflakeColumnMetadata>();
-    private JsonNode currentChunkRowset = null;
+    // first rows of the result
+    private SnowflakeResultChunk currentChunk = null;
     int currentChunkRowCount;
+    QueryResultFormat queryResultFormat = QueryResultFormat.JSON;
     long resultVersion;
     int numberOfBinds;
     boolean arrayBindSupported;
     SnowflakeChunkDownloader chunkDownloader;
+    // memory limit in bytes of the chunks and other buffers of results
+    long memoryLimit;
     SnowflakeDateTimeFormat timestampNTZFormatter;
     SnowflakeDateTimeFormat timestampLTZFormatter;
     SnowflakeDateTimeFormat timestampTZFormatter;
@@ -171,11 +181,16 @@ public class ResultUtil
       return resultColumnMetadata;
     }
 
-    public JsonNode getAndClearCurrentChunkRowset()
+    public SnowflakeResultChunk getAndClearCurrentChunk()
     {
-      JsonNode currentChunkRowset = this.currentChunkRowset;
-      this.currentChunkRowset = null;
-      return currentChunkRowset;
+      SnowflakeResultChunk currentChunk = this.currentChunk;
+      this.currentChunk = null;
+      return currentChunk;
+    }
+
+    public QueryResultFormat getQueryResultFormat()
+    {
+      return queryResultFormat;
     }
 
     public int getCurrentChunkRowCount()
@@ -198,6 +213,11 @@ public class ResultUtil
       return chunkDownloader;
     }
 
+    public long getMemoryLimit()
+    {
+      return memoryLimit;
+    }
+
     public SnowflakeDateTimeFormat getTimestampNTZFormatter()
     {
       return timestampNTZFormatter;
@@ -313,21 +333,60 @@ public class ResultUtil
       }
     }
 
-    resultOutput.currentChunkRowset = rootNode.path("data").path("rowset");
+    // results are JSON unless the server returns Arrow
+    resultOutput.queryResultFormat = QueryResultFormat.lookupByName(
+        rootNode.path("data").path("queryResultFormat").asText(null));
 
-    if (resultOutput.currentChunkRowset == null ||
-        resultOutput.currentChunkRowset.isMissingNode())
+    if (resultOutput.queryResultFormat == QueryResultFormat.ARROW)
     {
-      resultOutput.currentChunkRowCount = 0;
+      // the first rows are returned as a base64 encoded Arrow stream
+      String rowsetBase64 =
+          rootNode.path("data").path("rowsetBase64").asText(null);
+      if (rowsetBase64 == null || rowsetBase64.isEmpty())
+      {
+        resultOutput.currentChunkRowCount = 0;
+      }
+      else
+      {
+        byte[] rowset;
+        try
+        {
+          rowset = Base64.getDecoder().decode(rowsetBase64);
+        }
+        catch (IllegalArgumentException ex)
+        {
+          throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
+                                          ErrorCode.INTERNAL_ERROR
+                                              .getMessageCode(),
+                                          "Invalid Arrow rowset");
+        }
+        resultOutput.currentChunk = ResultArrowParser.parseChunk(
+            rowset, resultOutput.columnCount,
+            SnowflakeChunkDownloader.getColumnVectorTypes(
+                resultOutput.resultColumnMetadata));
+        resultOutput.currentChunkRowCount =
+            resultOutput.currentChunk.getRowCount();
+      }
     }
     else
     {
-      resultOutput.currentChunkRowCount = resultOutput.currentChunkRowset.size();
+      // the first rows are stored like the rows of downloaded chunks
+      // instead of reading every cell from the JSON tree
+      resultOutput.currentChunk = ResultJsonParserV2.parseRowset(
+          rootNode.path("data").path("rowset"), resultOutput.columnCount,
+          sfSession.isResultColumnVectors() ?
+          SnowflakeChunkDownloader.getColumnVectorTypes(
+              resultOutput.resultColumnMetadata) : null);
+      resultOutput.currentChunkRowCount = resultOutput.currentChunk == null ?
+                                          0 :
+                                          resultOutput.currentChunk.getRowCount();
     }
 
     logger.debug("First chunk row count: {}",
                  resultOutput.currentChunkRowCount);
 
+    resultOutput.memoryLimit = initMemoryLimit(resultOutput);
+
     JsonNode chunksNode = rootNode.path("data").path("chunks");
 
     if (!chunksNode.isMissingNode())
@@ -375,7 +434,10 @@ public class ResultUtil
                                          chunkHeaders,
                                          resultData.networkTimeoutInMilli,
                                          useJsonParserV2,
-                                         initMemoryLimit(resultOutput));
+                                         resultOutput.memoryLimit,
+                                         sfSession,
+                                         resultOutput.resultColumnMetadata,
+                                         resultOutput.queryResultFormat);
       }
     }
 
@@ -486,16 +548,16 @@ public class ResultUtil
   {
     // default setting
     long memoryLimit = SessionUtil.DEFAULT_CLIENT_MEMORY_LIMIT * 1024 * 1024;
-    if (resultOutput.parameters.get(CLIENT_MEMORY_LIMIT) != null)
+    Object clientMemoryLimit = resultOutput.parameters.get(CLIENT_MEMORY_LIMIT);
+    if (clientMemoryLimit != null)
     {
       // use the settings from the customer
-      memoryLimit =
-          (int) resultOutput.parameters.get(CLIENT_MEMORY_LIMIT) * 1024L * 1024L;
+      memoryLimit = (int) clientMemoryLimit * 1024L * 1024L;
     }
 
     long maxMemoryToUse = Runtime.getRuntime().maxMemory() * 8 / 10;
-    if ((int) resultOutput.parameters.get(CLIENT_MEMORY_LIMIT)
-        == SessionUtil.DEFAULT_CLIENT_MEMORY_LIMIT)
+    if (clientMemoryLimit == null ||
+        (int) clientMemoryLimit == SessionUtil.DEFAULT_CLIENT_MEMORY_LIMIT)
     {
       // if the memory limit is the default value and best effort memory is enabled
       // set the memory limit to 80% of the maximum as the best effort
@@ -5,8 +5,8 @@
 package net.snowflake.client.core;
 
 import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.SnowflakeColumnBatch;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
-import net.snowflake.client.jdbc.SnowflakeUtil;
 import net.snowflake.common.core.SFBinary;
 import net.snowflake.common.core.SFBinaryFormat;
 import net.snowflake.common.core.SFTime;
@@ -20,7 +20,9 @@ import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -44,9 +46,6 @@ public abstract class SFBaseResultSet
 
   protected TimeZone timeZone;
 
-  // Timezone used for TimestampNTZ
-  private static TimeZone timeZoneUTC = TimeZone.getTimeZone("UTC");
-
   // Formatters for different datatypes
   protected SnowflakeDateTimeFormat timestampNTZFormatter;
   protected SnowflakeDateTimeFormat timestampLTZFormatter;
@@ -66,6 +65,9 @@ public abstract class SFBaseResultSet
   // indicate whether the result set has been closed or not.
   protected boolean isClosed;
 
+  // conversions of the columns, created from the metadata
+  private ColumnConverter[] columnConverters;
+
   abstract public boolean isLast();
 
   abstract public boolean isAfterLast();
@@ -82,12 +84,79 @@ public abstract class SFBaseResultSet
     return false;
   }
 
+  /**
+   * Fetch the rows after the current row column by column. This default
+   * implementation reads the cells row by row and returns them as text.
+   *
+   * @param maxRows maximum number of rows
+   * @return the rows, null if there are no more rows
+   * @throws SFException           if the rows can not be read
+   * @throws SnowflakeSQLException if the rows can not be fetched
+   */
+  public SnowflakeColumnBatch nextBatch(int maxRows)
+  throws SFException, SnowflakeSQLException
+  {
+    final int columnCount = resultSetMetaData.getColumnCount();
+    List<String[]> rows = new ArrayList<>();
+    while (rows.size() < maxRows && next())
+    {
+      String[] row = new String[columnCount];
+      for (int col = 0; col < columnCount; col++)
+      {
+        Object cell = getObjectInternal(col + 1);
+        row[col] = cell == null ? null : cell.toString();
+      }
+      rows.add(row);
+    }
+    if (rows.isEmpty())
+    {
+      return null;
+    }
+
+    SnowflakeColumnBatch batch =
+        new SnowflakeColumnBatch(columnCount, rows.size());
+    for (int col = 0; col < columnCount; col++)
+    {
+      String[] values = new String[rows.size()];
+      boolean[] nulls = new boolean[rows.size()];
+      for (int i = 0; i < values.length; i++)
+      {
+        values[i] = rows.get(i)[col];
+        nulls[i] = values[i] == null;
+      }
+      batch.setStrings(col + 1, values, nulls);
+    }
+    return batch;
+  }
+
+  /**
+   * Create the converters of the columns, once the subclass has set the
+   * metadata and the formatters
+   *
+   * @throws SFException if the metadata is incomplete
+   */
+  protected void createColumnConverters() throws SFException
+  {
+    columnConverters = ColumnConverter.create(resultSetMetaData);
+  }
+
+  ColumnConverter getColumnConverter(int columnIndex) throws SFException
+  {
+    if (columnConverters == null ||
+        columnIndex < 1 || columnIndex > columnConverters.length)
+    {
+      throw new SFException(ErrorCode.COLUMN_DOES_NOT_EXIST, columnIndex);
+    }
+    return columnConverters[columnIndex - 1];
+  }
+
   public void close()
   {
     logger.debug("public void close()");
 
     // no exception even if already closed.
     resultSetMetaData = null;
+    columnConverters = null;
     isClosed = true;
   }
 
@@ -109,98 +178,7 @@ public abstract class SFBaseResultSet
       return null;
     }
 
-    // print timestamp in string format
-    int columnType = resultSetMetaData.getInternalColumnType(columnIndex);
-    switch (columnType)
-    {
-      case Types.BOOLEAN:
-        return ResultUtil.getBooleanAsString(
-            ResultUtil.getBoolean(obj.toString()));
-
-      case Types.TIMESTAMP:
-      case SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_LTZ:
-      case SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ:
-
-        SFTimestamp sfTS = getSFTimestamp(columnIndex);
-        int columnScale = resultSetMetaData.getScale(columnIndex);
-
-        String timestampStr = ResultUtil.getSFTimestampAsString(
-            sfTS, columnType, columnScale, timestampNTZFormatter,
-            timestampLTZFormatter, timestampTZFormatter, session);
-
-        if (logger.isDebugEnabled())
-        {
-          logger.debug("Converting timestamp to string from: {} to: {}",
-                       obj.toString(), timestampStr);
-        }
-
-        return timestampStr;
-
-      case Types.DATE:
-        Date date = getDate(columnIndex, timeZoneUTC);
-
-        if (dateFormatter == null)
-        {
-          throw IncidentUtil.
-              generateIncidentWithException(session, null, null,
-                                            ErrorCode.INTERNAL_ERROR,
-                                            "missing date formatter");
-        }
-
-        String dateStr = ResultUtil.getDateAsString(date, dateFormatter);
-
-        if (logger.isDebugEnabled())
-        {
-          logger.debug("Converting date to string from: {} to: {}",
-                       obj.toString(), dateStr);
-        }
-        return dateStr;
-
-      case Types.TIME:
-        SFTime sfTime = getSFTime(columnIndex);
-
-        if (timeFormatter == null)
-        {
-          throw IncidentUtil
-              .generateIncidentWithException(session, null, null,
-                                             ErrorCode.INTERNAL_ERROR,
-                                             "missing time formatter");
-        }
-
-        int scale = resultSetMetaData.getScale(columnIndex);
-        String timeStr = ResultUtil.getSFTimeAsString(sfTime, scale, timeFormatter);
-
-        if (logger.isDebugEnabled())
-        {
-          logger.debug("Converting time to string from: {} to: {}",
-                       obj.toString(), timeStr);
-        }
-        return timeStr;
-
-      case Types.BINARY:
-        if (binaryFormatter == null)
-        {
-          throw IncidentUtil
-              .generateIncidentWithException(session, null, null,
-                                             ErrorCode.INTERNAL_ERROR,
-                                             "missing binary formatter");
-        }
-
-        if (binaryFormatter == SFBinaryFormat.HEX)
-        {
-          // Shortcut: the values are already passed with hex encoding, so just
-          // return the string unchanged rather than constructing an SFBinary.
-          return obj.toString();
-        }
-
-        SFBinary sfb = new SFBinary(getBytes(columnIndex));
-        return binaryFormatter.format(sfb);
-
-      default:
-        break;
-    }
-
-    return obj.toString();
+    return getColumnConverter(columnIndex).getString(this, columnIndex, obj);
   }
 
   public boolean getBoolean(int columnIndex) throws SFException
@@ -440,21 +418,7 @@ public abstract class SFBaseResultSet
       return null;
     }
 
-    int columnType = resultSetMetaData.getColumnType(columnIndex);
-
-    if (Types.TIMESTAMP == columnType)
-    {
-      return new Date(getTimestamp(columnIndex, tz).getTime());
-    }
-    else if (Types.DATE == columnType)
-    {
-      return ResultUtil.getDate(obj.toString(), tz, session);
-    }
-    // for Types.TIME and all other type, throw user error
-    else
-    {
-      throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType, "DATE", obj);
-    }
+    return getColumnConverter(columnIndex).getDate(this, columnIndex, obj, tz);
   }
 
   public Date getDate(int columnIndex) throws SFException
@@ -466,28 +430,10 @@ public abstract class SFBaseResultSet
   {
     logger.debug("public Time getTime(int columnIndex)");
 
-    int columnType = resultSetMetaData.getColumnType(columnIndex);
-    if (Types.TIME == columnType)
-    {
-      SFTime sfTime = getSFTime(columnIndex);
-      if (sfTime == null)
-      {
-        return null;
-      }
-      return new Time(sfTime.getFractionalSeconds(3));
-    }
-    else if (Types.TIMESTAMP == columnType)
-    {
-      return new Time(getTimestamp(columnIndex).getTime());
-    }
-    else
-    {
-      throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType, "Time",
-                            getObjectInternal(columnIndex));
-    }
+    return getColumnConverter(columnIndex).getTime(this, columnIndex);
   }
 
-  private SFTime getSFTime(int columnIndex) throws SFException
+  SFTime getSFTime(int columnIndex) throws SFException
   {
     Object obj = getObjectInternal(columnIndex);
 
@@ -500,59 +446,13 @@ public abstract class SFBaseResultSet
     return ResultUtil.getSFTime(obj.toString(), scale, session);
   }
 
-  private Timestamp getTimestamp(int columnIndex) throws SFException
-  {
-    return getTimestamp(columnIndex, TimeZone.getDefault());
-  }
-
   public Timestamp getTimestamp(int columnIndex, TimeZone tz)
   throws SFException
   {
-    int columnType = resultSetMetaData.getColumnType(columnIndex);
-    if (Types.TIMESTAMP == columnType)
-    {
-      SFTimestamp sfTS = getSFTimestamp(columnIndex);
-
-      if (sfTS == null)
-      {
-        return null;
-      }
-
-      Timestamp res = sfTS.getTimestamp();
-
-      if (res == null)
-      {
-        return null;
-      }
-      // SNOW-14777: for timestamp_ntz, we should treat the time as in client time
-      // zone so adjust the timestamp by subtracting the offset of the client
-      // timezone
-      if (honorClientTZForTimestampNTZ &&
-          resultSetMetaData.getInternalColumnType(columnIndex) == Types.TIMESTAMP)
-      {
-        res = sfTS.moveToTimeZone(tz).getTimestamp();
-      }
-
-      Timestamp adjustedTimestamp = ResultUtil.adjustTimestamp(res);
-
-      return adjustedTimestamp;
-    }
-    else if (Types.DATE == columnType)
-    {
-      return new Timestamp(getDate(columnIndex, tz).getTime());
-    }
-    else if (Types.TIME == columnType)
-    {
-      return new Timestamp(getTime(columnIndex).getTime());
-    }
-    else
-    {
-      throw new SFException(ErrorCode.INVALID_VALUE_CONVERT, columnType, "Timestamp",
-                            getObjectInternal(columnIndex));
-    }
+    return getColumnConverter(columnIndex).getTimestamp(this, columnIndex, tz);
   }
 
-  private SFTimestamp getSFTimestamp(int columnIndex) throws SFException
+  SFTimestamp getSFTimestamp(int columnIndex) throws SFException
   {
     logger.debug(
         "public Timestamp getTimestamp(int columnIndex)");
@@ -585,7 +485,7 @@ public abstract class SFBaseResultSet
     logger.debug(
         "public Object getObject(int columnIndex)");
 
-    int type = resultSetMetaData.getColumnType(columnIndex);
+    ColumnConverter converter = getColumnConverter(columnIndex);
 
     Object obj = getObjectInternal(columnIndex);
     if (obj == null)
@@ -593,45 +493,88 @@ public abstract class SFBaseResultSet
       return null;
     }
 
-    switch (type)
-    {
-      case Types.VARCHAR:
-      case Types.CHAR:
-        return getString(columnIndex);
-
-      case Types.BINARY:
-        return getBytes(columnIndex);
-
-      case Types.INTEGER:
-        return getInt(columnIndex);
-
-      case Types.DECIMAL:
-        return getBigDecimal(columnIndex);
-
-      case Types.BIGINT:
-        return getLong(columnIndex);
-
-      case Types.DOUBLE:
-        return getDouble(columnIndex);
-
-      case Types.TIMESTAMP:
-        return getTimestamp(columnIndex);
-
-      case Types.DATE:
-        return getDate(columnIndex);
+    return converter.getObject(this, columnIndex);
+  }
 
-      case Types.TIME:
-        return getTime(columnIndex);
+  /**
+   * Get the cell as an instance of a class, i.e. as the object of a getter
+   * or as a java.time value decoded from the cell
+   *
+   * @param columnIndex column index
+   * @param type        class of the value
+   * @param <T>         class of the value
+   * @return the value, or null if the cell is null
+   * @throws SFException if the cell can not be converted to the class
+   */
+  public <T> T getObject(int columnIndex, Class<T> type) throws SFException
+  {
+    logger.debug(
+        "public <T> T getObject(int columnIndex, Class<T> type)");
 
-      case Types.BOOLEAN:
-        return getBoolean(columnIndex);
+    Object obj = getObjectInternal(columnIndex);
+    if (obj == null)
+    {
+      return null;
+    }
 
-      default:
-        throw IncidentUtil.
-            generateIncidentWithException(session, null, null,
-                                          ErrorCode.FEATURE_UNSUPPORTED,
-                                          "data type: " + type);
+    if (type == String.class)
+    {
+      return type.cast(getString(columnIndex));
+    }
+    else if (type == Boolean.class)
+    {
+      return type.cast(getBoolean(columnIndex));
+    }
+    else if (type == Byte.class)
+    {
+      return type.cast(getByte(columnIndex));
+    }
+    else if (type == Short.class)
+    {
+      return type.cast(getShort(columnIndex));
+    }
+    else if (type == Integer.class)
+    {
+      return type.cast(getInt(columnIndex));
+    }
+    else if (type == Long.class)
+    {
+      return type.cast(getLong(columnIndex));
+    }
+    else if (type == Float.class)
+    {
+      return type.cast(getFloat(columnIndex));
+    }
+    else if (type == Double.class)
+    {
+      return type.cast(getDouble(columnIndex));
+    }
+    else if (type == BigDecimal.class)
+    {
+      return type.cast(getBigDecimal(columnIndex));
+    }
+    else if (type == byte[].class)
+    {
+      return type.cast(getBytes(columnIndex));
+    }
+    else if (type == Date.class)
+    {
+      return type.cast(getDate(columnIndex));
+    }
+    else if (type == Time.class)
+    {
+      return type.cast(getTime(columnIndex));
+    }
+    else if (type == Timestamp.class)
+    {
+      return type.cast(getTimestamp(columnIndex, TimeZone.getDefault()));
+    }
+    else if (type == Object.class)
+    {
+      return type.cast(getObject(columnIndex));
     }
+    return type.cast(getColumnConverter(columnIndex)
+                         .getJavaTime(this, columnIndex, obj, type));
   }
 
   public BigDecimal getBigDecimal(int columnIndex) throws SFException
@@ -47,7 +47,6 @@ public class SFFixedViewResultSet extends SFBaseResultSet
                                     timestampTZFormatter,
                                     dateFormatter,
                                     timeFormatter);
-
     }
     catch (Exception ex)
     {
@@ -56,6 +55,15 @@ public class SFFixedViewResultSet extends SFBaseResultSet
                                       "Failed to describe fixed view: "
                                       + fixedView.getClass().getName());
     }
+
+    try
+    {
+      createColumnConverters();
+    }
+    catch (SFException ex)
+    {
+      throw new SnowflakeSQLException(ex);
+    }
   }
 
   /**
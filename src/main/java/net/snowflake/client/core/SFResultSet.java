@@ -6,10 +6,17 @@ package net.snowflake.client.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.core.BasicEvent.QueryState;
+import net.snowflake.client.jdbc.AsciiNumbers;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.SnowflakeChunkDownloader;
+import net.snowflake.client.jdbc.SnowflakeColumnBatch;
+import net.snowflake.client.jdbc.SnowflakeColumnMetadata;
 import net.snowflake.client.jdbc.SnowflakeResultChunk;
+import net.snowflake.client.jdbc.SnowflakeResultChunk.CellBytes;
+import net.snowflake.client.jdbc.SnowflakeResultChunk.ColumnVectorType;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
+import net.snowflake.client.jdbc.SnowflakeType;
+import net.snowflake.client.jdbc.SnowflakeUtil;
 import net.snowflake.client.jdbc.telemetry.Telemetry;
 import net.snowflake.client.jdbc.telemetry.TelemetryData;
 import net.snowflake.client.jdbc.telemetry.TelemetryField;
@@ -18,9 +25,16 @@ import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.common.core.SqlState;
 
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
 import java.sql.SQLException;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.TimeZone;
 
 import static net.snowflake.client.core.StmtUtil.eventHandler;
 
@@ -40,10 +54,14 @@ public class SFResultSet extends SFBaseResultSet
 
   private int currentChunkRowIndex = -1;
 
-  private JsonNode firstChunkRowset = null;
-
   private SnowflakeResultChunk currentChunk = null;
 
+  // bytes of the cell a numeric or date time getter parses
+  private final CellBytes cellBytes = new CellBytes();
+
+  // decodes timestamps, dates and times from the cell bytes
+  private final DateTimeDecoder dateTimeDecoder = new DateTimeDecoder();
+
   private String queryId;
 
   private SFStatementType statementType;
@@ -52,7 +70,16 @@ public class SFResultSet extends SFBaseResultSet
 
   private boolean sortResult = false;
 
-  private Object[][] firstChunkSortedRowSet;
+  // sorts the rows of all chunks when the first row is fetched
+  private ResultSetSorter sorter;
+
+  private boolean sortedRowsLoaded = false;
+
+  private String[] currentSortedRow;
+
+  private long sortedRowCount = 0;
+
+  private long sortedRowIndex = -1;
 
   // time the first chunk is consumed at (timestamp taken at object creation)
   private final long firstChunkTime;
@@ -109,7 +136,9 @@ public class SFResultSet extends SFBaseResultSet
     this.totalRowCountTruncated = resultOutput.isTotalRowCountTruncated();
     this.parameters = resultOutput.getParameters();
     this.columnCount = resultOutput.getColumnCount();
-    this.firstChunkRowset = resultOutput.getAndClearCurrentChunkRowset();
+    // the first rows are parsed into a chunk, which the chunk downloader
+    // does not own
+    this.currentChunk = resultOutput.getAndClearCurrentChunk();
     this.currentChunkRowCount = resultOutput.getCurrentChunkRowCount();
     this.chunkCount = resultOutput.getChunkCount();
     this.chunkDownloader = resultOutput.getChunkDownloader();
@@ -134,17 +163,14 @@ public class SFResultSet extends SFBaseResultSet
     // update the driver/session with common parameters from GS
     SessionUtil.updateSfDriverParamValues(this.parameters, statement.getSession());
 
-    // sort result set if needed
+    // sort result set if needed, the rows are sorted when the first row is
+    // fetched as all chunks have to be downloaded first
     if (sortResult)
     {
-      // we don't support sort result when there are offline chunks
-      if (chunkCount > 0)
-      {
-        throw new SnowflakeSQLException(SqlState.FEATURE_NOT_SUPPORTED,
-                                        ErrorCode.CLIENT_SIDE_SORTING_NOT_SUPPORTED.getMessageCode());
-      }
-
-      sortResultSet();
+      sorter = new ResultSetSorter(
+          getColumnTypes(resultOutput.getResultColumnMetadata()),
+          resultOutput.getMemoryLimit(),
+          getSortSpillDirectory(session));
     }
 
     // if server gives a send time, log time it took to arrive
@@ -165,6 +191,7 @@ public class SFResultSet extends SFBaseResultSet
                                                 this.timestampTZFormatter,
                                                 this.dateFormatter,
                                                 this.timeFormatter);
+    createColumnConverters();
   }
 
   private boolean fetchNextRow() throws SFException, SnowflakeSQLException
@@ -180,18 +207,32 @@ public class SFResultSet extends SFBaseResultSet
   }
 
   private boolean fetchNextRowSorted()
+  throws SFException, SnowflakeSQLException
   {
-    currentChunkRowIndex++;
+    try
+    {
+      if (!sortedRowsLoaded)
+      {
+        sortResultSet();
+      }
+      currentSortedRow = sorter.next();
+    }
+    catch (IOException ex)
+    {
+      throw new SnowflakeSQLException(ex, SqlState.IO_ERROR,
+                                      ErrorCode.IO_ERROR.getMessageCode(),
+                                      "failed to sort result: " +
+                                      ex.getMessage());
+    }
 
-    if (currentChunkRowIndex < currentChunkRowCount)
+    sortedRowIndex++;
+    if (currentSortedRow != null)
     {
       return true;
     }
 
-    firstChunkSortedRowSet = null;
-
-    // no more chunks as sorted is only supported
-    // for one chunk
+    // delete the run files as soon as the rows are read
+    sorter.close();
     return false;
   }
 
@@ -203,11 +244,26 @@ public class SFResultSet extends SFBaseResultSet
 
     if (currentChunkRowIndex < currentChunkRowCount)
     {
+      // the current chunk may still be being parsed
+      if (currentChunk != null &&
+          currentChunkRowIndex >= currentChunk.getRowsReady())
+      {
+        try
+        {
+          chunkDownloader.waitForChunkRows(currentChunk,
+                                           currentChunkRowIndex + 1);
+        }
+        catch (InterruptedException ex)
+        {
+          throw new SnowflakeSQLException(SqlState.QUERY_CANCELED,
+                                          ErrorCode.INTERRUPTED.getMessageCode());
+        }
+      }
       return true;
     }
 
-    // let GC collect first rowset
-    firstChunkRowset = null;
+    // the first chunk is not freed by the chunk downloader
+    freeFirstChunk();
 
     if (nextChunkIndex < chunkCount)
     {
@@ -318,6 +374,85 @@ public class SFResultSet extends SFBaseResultSet
     }
   }
 
+  /**
+   * Fetch the rows after the current row from the current chunk. Columns
+   * with primitive vectors are copied as a whole, the other columns are read
+   * cell by cell without formatting.
+   */
+  @Override
+  public SnowflakeColumnBatch nextBatch(int maxRows)
+  throws SFException, SnowflakeSQLException
+  {
+    if (sortResult)
+    {
+      return super.nextBatch(maxRows);
+    }
+
+    // fetch the first row like next() does, which moves to the next chunk
+    // and waits for its rows if necessary
+    if (maxRows <= 0 || !next())
+    {
+      return null;
+    }
+
+    final int firstRow = currentChunkRowIndex;
+    int rowCount = Math.min(maxRows, currentChunkRowCount - firstRow);
+    if (currentChunk != null)
+    {
+      // only take the rows which are parsed already
+      rowCount = Math.min(rowCount, currentChunk.getRowsReady() - firstRow);
+    }
+
+    SnowflakeColumnBatch batch = new SnowflakeColumnBatch(columnCount, rowCount);
+    for (int col = 0; col < columnCount; col++)
+    {
+      if (currentChunk != null)
+      {
+        ColumnVectorType type = currentChunk.getColumnVectorType(col);
+        if (type == ColumnVectorType.LONG)
+        {
+          long[] values = new long[rowCount];
+          boolean[] nulls = new boolean[rowCount];
+          if (currentChunk.copyLongValues(col, firstRow, values, nulls))
+          {
+            batch.setLongs(col + 1, values, nulls);
+            continue;
+          }
+        }
+        else if (type == ColumnVectorType.DOUBLE)
+        {
+          double[] values = new double[rowCount];
+          boolean[] nulls = new boolean[rowCount];
+          if (currentChunk.copyDoubleValues(col, firstRow, values, nulls))
+          {
+            batch.setDoubles(col + 1, values, nulls);
+            continue;
+          }
+        }
+      }
+
+      String[] values = new String[rowCount];
+      boolean[] nulls = new boolean[rowCount];
+      for (int i = 0; i < rowCount; i++)
+      {
+        Object cell = currentChunk.getCell(firstRow + i, col);
+        values[i] = cell == null ? null : cell.toString();
+        nulls[i] = cell == null;
+      }
+      batch.setStrings(col + 1, values, nulls);
+    }
+
+    // the last row of the batch becomes the current row
+    currentChunkRowIndex += rowCount - 1;
+    row += rowCount - 1;
+    if (rowCount > 1 && isLast())
+    {
+      long timeConsumeLastResult = System.currentTimeMillis() - this.firstChunkTime;
+      logMetric(TelemetryField.TIME_CONSUME_LAST_RESULT, timeConsumeLastResult);
+    }
+    return batch;
+  }
+
   @Override
   protected Object getObjectInternal(int columnIndex) throws SFException
   {
@@ -331,14 +466,11 @@ public class SFResultSet extends SFBaseResultSet
     Object retValue;
     if (sortResult)
     {
-      retValue = firstChunkSortedRowSet[
-          currentChunkRowIndex][internalColumnIndex];
-    }
-    else if (firstChunkRowset != null)
-    {
-      retValue = SnowflakeResultChunk.extractCell(firstChunkRowset,
-                                                  currentChunkRowIndex,
-                                                  internalColumnIndex);
+      if (currentSortedRow == null)
+      {
+        throw new SFException(ErrorCode.COLUMN_DOES_NOT_EXIST, columnIndex);
+      }
+      retValue = currentSortedRow[internalColumnIndex];
     }
     else if (currentChunk != null)
     {
@@ -352,69 +484,473 @@ public class SFResultSet extends SFBaseResultSet
     return retValue;
   }
 
-  private void sortResultSet()
+  /**
+   * Get the type of the column vector holding the cell of the current row.
+   * The numeric getters read such cells without creating a String.
+   *
+   * @param columnIndex column index
+   * @return the vector type, or null if the cell is only available as text
+   */
+  private ColumnVectorType getVectorType(int columnIndex)
   {
-    // first fetch rows into firstChunkSortedRowSet
-    firstChunkSortedRowSet = new Object[currentChunkRowCount][];
+    if (sortResult || currentChunk == null ||
+        columnIndex <= 0 || columnIndex > columnCount ||
+        !currentChunk.isVectorValue(currentChunkRowIndex, columnIndex - 1))
+    {
+      return null;
+    }
+    wasNull = currentChunk.isNullValue(currentChunkRowIndex, columnIndex - 1);
+    return currentChunk.getColumnVectorType(columnIndex - 1);
+  }
 
-    for (int rowIdx = 0; rowIdx < currentChunkRowCount; rowIdx++)
+  private long getVectorLong(int columnIndex)
+  {
+    return wasNull ?
+           0 : currentChunk.getLongValue(currentChunkRowIndex, columnIndex - 1);
+  }
+
+  /**
+   * Locate the UTF-8 bytes of the cell of the current row, for the numeric
+   * and date time getters to parse without creating a String. Text the byte
+   * parsers do not handle is left to the getters of the base class, which
+   * also report invalid values.
+   *
+   * @param columnIndex column index
+   * @return false if the cell is only available as an object
+   */
+  private boolean getCellBytes(int columnIndex)
+  {
+    if (sortResult || currentChunk == null ||
+        columnIndex <= 0 || columnIndex > columnCount ||
+        !currentChunk.getCellBytes(currentChunkRowIndex, columnIndex - 1,
+                                   cellBytes))
     {
-      firstChunkSortedRowSet[rowIdx] = new Object[columnCount];
-      for (int colIdx = 0; colIdx < columnCount; colIdx++)
+      return false;
+    }
+    wasNull = cellBytes.isNull();
+    return true;
+  }
+
+  @Override
+  public short getShort(int columnIndex) throws SFException
+  {
+    if (getVectorType(columnIndex) == ColumnVectorType.LONG)
+    {
+      long value = getVectorLong(columnIndex);
+      if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+      {
+        return (short) value;
+      }
+    }
+    else if (getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return 0;
+      }
+      try
       {
-        firstChunkSortedRowSet[rowIdx][colIdx] =
-            SnowflakeResultChunk.extractCell(firstChunkRowset,
-                                             rowIdx, colIdx);
+        int value = AsciiNumbers.parseInt(cellBytes.getBytes(),
+                                          cellBytes.getOffset(),
+                                          cellBytes.getLength());
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+        {
+          return (short) value;
+        }
+      }
+      catch (NumberFormatException ex)
+      {
+        // reported by the base class
       }
     }
+    return super.getShort(columnIndex);
+  }
 
-    // now sort it
-    Arrays.sort(firstChunkSortedRowSet,
-                new Comparator<Object[]>()
-                {
-                  public int compare(Object[] a, Object[] b)
-                  {
-                    int numCols = a.length;
+  @Override
+  public int getInt(int columnIndex) throws SFException
+  {
+    if (getVectorType(columnIndex) == ColumnVectorType.LONG)
+    {
+      long value = getVectorLong(columnIndex);
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+      {
+        return (int) value;
+      }
+    }
+    else if (getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return 0;
+      }
+      try
+      {
+        return AsciiNumbers.parseInt(cellBytes.getBytes(),
+                                     cellBytes.getOffset(),
+                                     cellBytes.getLength());
+      }
+      catch (NumberFormatException ex)
+      {
+        // reported by the base class
+      }
+    }
+    return super.getInt(columnIndex);
+  }
 
-                    for (int colIdx = 0; colIdx < numCols; colIdx++)
-                    {
-                      if (a[colIdx] == null && b[colIdx] == null)
-                      {
-                        continue;
-                      }
+  @Override
+  public long getLong(int columnIndex) throws SFException
+  {
+    if (getVectorType(columnIndex) == ColumnVectorType.LONG)
+    {
+      return getVectorLong(columnIndex);
+    }
+    else if (getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return 0;
+      }
+      try
+      {
+        return AsciiNumbers.parseLong(cellBytes.getBytes(),
+                                      cellBytes.getOffset(),
+                                      cellBytes.getLength());
+      }
+      catch (NumberFormatException ex)
+      {
+        // reported by the base class
+      }
+    }
+    return super.getLong(columnIndex);
+  }
 
-                      // null is considered bigger than all values
-                      if (a[colIdx] == null)
-                      {
-                        return 1;
-                      }
+  @Override
+  public float getFloat(int columnIndex) throws SFException
+  {
+    if (getVectorType(columnIndex) == ColumnVectorType.LONG)
+    {
+      return getVectorLong(columnIndex);
+    }
+    return super.getFloat(columnIndex);
+  }
 
-                      if (b[colIdx] == null)
-                      {
-                        return -1;
-                      }
+  @Override
+  public double getDouble(int columnIndex) throws SFException
+  {
+    ColumnVectorType type = getVectorType(columnIndex);
+    if (type == ColumnVectorType.LONG)
+    {
+      return getVectorLong(columnIndex);
+    }
+    else if (type == ColumnVectorType.DOUBLE)
+    {
+      return wasNull ?
+             0 : currentChunk.getDoubleValue(currentChunkRowIndex,
+                                             columnIndex - 1);
+    }
+    else if (getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return 0;
+      }
+      double value = AsciiNumbers.parseDouble(cellBytes.getBytes(),
+                                              cellBytes.getOffset(),
+                                              cellBytes.getLength());
+      if (!Double.isNaN(value))
+      {
+        return value;
+      }
+    }
+    return super.getDouble(columnIndex);
+  }
 
-                      int res
-                          = a[colIdx].toString().compareTo(b[colIdx].toString());
+  @Override
+  public BigDecimal getBigDecimal(int columnIndex) throws SFException
+  {
+    if (getVectorType(columnIndex) == ColumnVectorType.LONG)
+    {
+      return wasNull ? null : BigDecimal.valueOf(getVectorLong(columnIndex));
+    }
+    else if (getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return null;
+      }
+      BigDecimal value = AsciiNumbers.parseBigDecimal(cellBytes.getBytes(),
+                                                      cellBytes.getOffset(),
+                                                      cellBytes.getLength());
+      if (value != null)
+      {
+        return value;
+      }
+    }
+    return super.getBigDecimal(columnIndex);
+  }
 
-                      // continue to next column if no difference
-                      if (res == 0)
-                      {
-                        continue;
-                      }
+  @Override
+  public Timestamp getTimestamp(int columnIndex, TimeZone tz)
+  throws SFException
+  {
+    ColumnConverter converter = getColumnConverter(columnIndex);
+    if (converter.columnType == Types.TIMESTAMP && getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return null;
+      }
+      int internalType = converter.internalColumnType;
+      boolean timeZoneIndex = false;
+      TimeZone moveTo = null;
+      boolean decode;
+      if (internalType == Types.TIMESTAMP)
+      {
+        moveTo = honorClientTZForTimestampNTZ ? tz : null;
+        decode = !honorClientTZForTimestampNTZ || tz != null;
+      }
+      else if (internalType == SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ)
+      {
+        // result version 0 encodes the time zone in the digits
+        timeZoneIndex = resultVersion > 0;
+        decode = timeZoneIndex;
+      }
+      else
+      {
+        decode = timeZone != null;
+      }
+      Timestamp value = decode ? dateTimeDecoder.decodeTimestamp(
+          cellBytes.getBytes(), cellBytes.getOffset(), cellBytes.getLength(),
+          timeZoneIndex, moveTo) : null;
+      if (value != null)
+      {
+        return value;
+      }
+    }
+    return super.getTimestamp(columnIndex, tz);
+  }
 
-                      return res;
-                    }
+  @Override
+  public Date getDate(int columnIndex, TimeZone tz) throws SFException
+  {
+    ColumnConverter converter = getColumnConverter(columnIndex);
+    if (converter.columnType == Types.DATE && getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return null;
+      }
+      Date value = dateTimeDecoder.decodeDate(
+          cellBytes.getBytes(), cellBytes.getOffset(), cellBytes.getLength(),
+          tz == null ? TimeZone.getDefault() : tz);
+      if (value != null)
+      {
+        return value;
+      }
+    }
+    return super.getDate(columnIndex, tz);
+  }
 
-                    // all columns are the same
-                    return 0;
-                  }
-                });
+  @Override
+  public Time getTime(int columnIndex) throws SFException
+  {
+    ColumnConverter converter = getColumnConverter(columnIndex);
+    if (converter.columnType == Types.TIME && getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return null;
+      }
+      Time value = dateTimeDecoder.decodeTime(
+          cellBytes.getBytes(), cellBytes.getOffset(), cellBytes.getLength(),
+          converter.scale);
+      if (value != null)
+      {
+        return value;
+      }
+    }
+    return super.getTime(columnIndex);
+  }
+
+  @Override
+  public <T> T getObject(int columnIndex, Class<T> type) throws SFException
+  {
+    ColumnConverter converter = getColumnConverter(columnIndex);
+    if ((converter.columnType == Types.TIMESTAMP ||
+         converter.columnType == Types.DATE ||
+         converter.columnType == Types.TIME) && getCellBytes(columnIndex))
+    {
+      if (wasNull)
+      {
+        return null;
+      }
+      Object value = decodeJavaTime(converter, type);
+      if (value != null)
+      {
+        return type.cast(value);
+      }
+    }
+    return super.getObject(columnIndex, type);
+  }
+
+  /**
+   * Decode the cell bytes of a timestamp, date or time column to a java.time
+   * value
+   *
+   * @return the value, or null if the class is not a java.time class of the
+   * column or the cell is left to the base class
+   */
+  private Object decodeJavaTime(ColumnConverter converter, Class<?> type)
+  {
+    byte[] buf = cellBytes.getBytes();
+    int offset = cellBytes.getOffset();
+    int length = cellBytes.getLength();
+    switch (converter.columnType)
+    {
+      case Types.TIMESTAMP:
+        // result version 0 encodes the time zone in the digits
+        boolean timeZoneIndex = converter.internalColumnType ==
+                                SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ;
+        if ((timeZoneIndex && resultVersion == 0) ||
+            !dateTimeDecoder.parseTimestamp(buf, offset, length,
+                                            timeZoneIndex))
+        {
+          return null;
+        }
+        return DateTimeDecoder.timestampToJavaTime(
+            type, converter.internalColumnType, honorClientTZForTimestampNTZ,
+            dateTimeDecoder.getSeconds(), dateTimeDecoder.getNanos(),
+            dateTimeDecoder.getOffsetSeconds());
+
+      case Types.DATE:
+        try
+        {
+          return DateTimeDecoder.dateToJavaTime(
+              type, AsciiNumbers.parseLong(buf, offset, length));
+        }
+        catch (NumberFormatException ex)
+        {
+          // reported by the base class
+          return null;
+        }
+
+      default:
+        long nanoOfDay = dateTimeDecoder.decodeNanoOfDay(buf, offset, length,
+                                                         converter.scale);
+        return nanoOfDay < 0 ?
+               null : DateTimeDecoder.timeToJavaTime(type, nanoOfDay);
+    }
+  }
+
+  private static SnowflakeType[] getColumnTypes(
+      List<SnowflakeColumnMetadata> columnMetadata)
+  {
+    SnowflakeType[] columnTypes = new SnowflakeType[columnMetadata.size()];
+    for (int i = 0; i < columnTypes.length; i++)
+    {
+      columnTypes[i] = columnMetadata.get(i).getBase();
+    }
+    return columnTypes;
+  }
+
+  private static File getSortSpillDirectory(SFSession session)
+  {
+    if (session.getResultChunkSpillDirectory() != null)
+    {
+      File directory = new File(session.getResultChunkSpillDirectory());
+      if (directory.isDirectory())
+      {
+        return directory;
+      }
+    }
+    // the default temporary directory
+    return null;
+  }
+
+  /**
+   * Add the rows of the first chunk and of all downloaded chunks to the
+   * sorter. Every chunk is sorted as it arrives, the chunks are merged while
+   * the rows are read.
+   */
+  private void sortResultSet()
+  throws SnowflakeSQLException, IOException
+  {
+    sortedRowsLoaded = true;
+    try
+    {
+      sorter.add(copyCurrentChunkRows());
+      freeFirstChunk();
+
+      while (nextChunkIndex < chunkCount)
+      {
+        SnowflakeResultChunk nextChunk =
+            chunkDownloader.getNextChunkToConsume();
+        if (nextChunk == null)
+        {
+          throw new SnowflakeSQLException(
+              SqlState.INTERNAL_ERROR,
+              ErrorCode.INTERNAL_ERROR.getMessageCode(),
+              "Expect chunk but got null for chunk index " + nextChunkIndex);
+        }
+        currentChunk = nextChunk;
+        currentChunkRowCount = nextChunk.getRowCount();
+        nextChunkIndex++;
+
+        // the memory of the chunk goes to its rows in the sorter before
+        // the next chunks are prefetched with it
+        String[][] rows = copyCurrentChunkRows();
+        sorter.add(rows, chunkDownloader.takeConsumedChunkMemory());
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      throw new SnowflakeSQLException(SqlState.QUERY_CANCELED,
+                                      ErrorCode.INTERRUPTED.getMessageCode());
+    }
+
+    // let GC collect the last chunk, its rows are copied
+    currentChunk = null;
+    sortedRowCount = sorter.getRowCount();
+
+    if (chunkCount > 0)
+    {
+      logger.debug("End of chunks, sorted {} rows in {} runs on disk",
+                   sortedRowCount, sorter.getFileRunCount());
+      SnowflakeChunkDownloader.Metrics metrics = chunkDownloader.terminate();
+      logChunkDownloaderMetrics(metrics);
+    }
+  }
+
+  private String[][] copyCurrentChunkRows()
+  throws SnowflakeSQLException, InterruptedException
+  {
+    if (currentChunk != null &&
+        currentChunk.getRowsReady() < currentChunkRowCount)
+    {
+      chunkDownloader.waitForChunkRows(currentChunk, currentChunkRowCount);
+    }
+
+    String[][] rows = new String[currentChunkRowCount][];
+    for (int rowIdx = 0; rowIdx < currentChunkRowCount; rowIdx++)
+    {
+      String[] row = new String[columnCount];
+      for (int colIdx = 0; colIdx < columnCount; colIdx++)
+      {
+        Object cell = currentChunk.getCell(rowIdx, colIdx);
+        row[colIdx] = cell == null ? null : cell.toString();
+      }
+      rows[rowIdx] = row;
+    }
+    return rows;
   }
 
   @Override
   public boolean isLast()
   {
+    if (sortResult)
+    {
+      return sortedRowsLoaded && sortedRowIndex + 1 == sortedRowCount;
+    }
     return nextChunkIndex == chunkCount &&
            currentChunkRowIndex + 1 == currentChunkRowCount;
   }
@@ -422,6 +958,10 @@ public class SFResultSet extends SFBaseResultSet
   @Override
   public boolean isAfterLast()
   {
+    if (sortResult)
+    {
+      return sortedRowsLoaded && sortedRowIndex >= sortedRowCount;
+    }
     return nextChunkIndex == chunkCount &&
            currentChunkRowIndex >= currentChunkRowCount;
   }
@@ -431,13 +971,32 @@ public class SFResultSet extends SFBaseResultSet
   {
     super.close();
 
+    if (sorter != null)
+    {
+      sorter.close();
+      currentSortedRow = null;
+    }
+
+    freeFirstChunk();
+
     if (chunkDownloader != null)
     {
       chunkDownloader.releaseAllChunkMemoryUsage();
       SnowflakeChunkDownloader.Metrics metrics = chunkDownloader.terminate();
       logChunkDownloaderMetrics(metrics);
-      firstChunkSortedRowSet = null;
-      firstChunkRowset = null;
+      currentChunk = null;
+    }
+  }
+
+  /**
+   * Give the blocks of the first chunk back to the pool once the result set
+   * moved past it. Downloaded chunks are freed by the chunk downloader.
+   */
+  private void freeFirstChunk()
+  {
+    if (nextChunkIndex == 0 && currentChunk != null)
+    {
+      currentChunk.freeData();
       currentChunk = null;
     }
   }
@@ -187,6 +187,27 @@ public class SFSession
   // service name for multi clustering support
   private String serviceName;
 
+  // hand over rows of a result chunk to the consumer while the chunk is
+  // still being parsed
+  private boolean resultChunkStreaming = false;
+
+  // store downloaded result chunks in direct buffers outside of the heap
+  private boolean resultChunkOffHeap = false;
+
+  // read, inflate and parse a result chunk on separate threads
+  private boolean resultChunkPipelining = false;
+
+  // directory prefetched result chunks are spilled to when the memory
+  // limit is reached; null if chunks are not spilled
+  private String resultChunkSpillDirectory = null;
+
+  // percentile of the response times of the chunks fetched so far after
+  // which a second request is sent for a chunk; 0 if requests are not hedged
+  private int resultChunkHedgePercentile = 0;
+
+  // decode numeric result columns to primitive vectors while parsing
+  private boolean resultColumnVectors = false;
+
   public void addProperty(SFSessionProperty sfSessionProperty,
                           Object propertyValue)
   throws SFException
@@ -273,6 +294,43 @@ public class SFSession
           }
           break;
 
+        case RESULT_CHUNK_STREAMING:
+          resultChunkStreaming =
+              (propertyValue != null && (Boolean) propertyValue);
+          break;
+
+        case RESULT_CHUNK_OFF_HEAP:
+          resultChunkOffHeap =
+              (propertyValue != null && (Boolean) propertyValue);
+          break;
+
+        case RESULT_CHUNK_PIPELINING:
+          resultChunkPipelining =
+              (propertyValue != null && (Boolean) propertyValue);
+          break;
+
+        case RESULT_CHUNK_SPILL_DIRECTORY:
+          resultChunkSpillDirectory = (String) propertyValue;
+          break;
+
+        case RESULT_CHUNK_HEDGE_PERCENTILE:
+          if (propertyValue != null)
+          {
+            int percentile = (Integer) propertyValue;
+            if (percentile < 0 || percentile > 99)
+            {
+              throw new SFException(ErrorCode.INVALID_PARAMETER_VALUE,
+                                    propertyValue, connectionProperty);
+            }
+            resultChunkHedgePercentile = percentile;
+          }
+          break;
+
+        case RESULT_COLUMN_VECTORS:
+          resultColumnVectors =
+              (propertyValue != null && (Boolean) propertyValue);
+          break;
+
         case DISABLE_SOCKS_PROXY:
           // note: if any session has this parameter, it will be used for all
           // sessions on the current JVM.
@@ -913,6 +971,36 @@ public class SFSession
     return isClosed;
   }
 
+  public boolean isResultChunkStreaming()
+  {
+    return resultChunkStreaming;
+  }
+
+  public boolean isResultChunkOffHeap()
+  {
+    return resultChunkOffHeap;
+  }
+
+  public boolean isResultChunkPipelining()
+  {
+    return resultChunkPipelining;
+  }
+
+  public String getResultChunkSpillDirectory()
+  {
+    return resultChunkSpillDirectory;
+  }
+
+  public int getResultChunkHedgePercentile()
+  {
+    return resultChunkHedgePercentile;
+  }
+
+  public boolean isResultColumnVectors()
+  {
+    return resultColumnVectors;
+  }
+
   public int getInjectClientPause()
   {
     return injectClientPause;
@@ -50,7 +50,14 @@ public enum SFSessionProperty
   PROXY_PORT("proxyPort", false, String.class),
   PROXY_USER("proxyUser", false, String.class),
   PROXY_PASSWORD("proxyPassword", false, String.class),
-  NON_PROXY_HOSTS("nonProxyHosts", false, String.class);
+  NON_PROXY_HOSTS("nonProxyHosts", false, String.class),
+  // result chunk download
+  RESULT_CHUNK_STREAMING("resultChunkStreaming", false, Boolean.class),
+  RESULT_CHUNK_OFF_HEAP("resultChunkOffHeap", false, Boolean.class),
+  RESULT_CHUNK_PIPELINING("resultChunkPipelining", false, Boolean.class),
+  RESULT_CHUNK_SPILL_DIRECTORY("resultChunkSpillDirectory", false, String.class),
+  RESULT_CHUNK_HEDGE_PERCENTILE("resultChunkHedgePercentile", false, Integer.class),
+  RESULT_COLUMN_VECTORS("resultColumnVectors", false, Boolean.class);
 
   // property key in string
   private String propertyKey;
@@ -116,6 +116,7 @@ public class SessionUtil
       "TIME_OUTPUT_FORMAT",
       "BINARY_OUTPUT_FORMAT",
       "CLIENT_TIMESTAMP_TYPE_MAPPING",
+      "JDBC_QUERY_RESULT_FORMAT",
       SERVICE_NAME));
   private static Set<String> INT_PARAMS = new HashSet<>(Arrays.asList(
       "CLIENT_RESULT_PREFETCH_SLOTS",
@@ -92,6 +92,7 @@ public class StmtUtil
     AtomicBoolean canceling = null; // canceling flag
     boolean retry;
     String prevGetResultURL = null; // previous get result URL from ping pong
+    String badResponse = null; // start of the last response that is not JSON
 
     boolean combineDescribe = false;
 
@@ -286,7 +287,7 @@ public class StmtUtil
 
     try
     {
-      String resultAsString = null;
+      JsonNode result = null;
 
       // SNOW-20443: if we are retrying and there is get result URL, we
       // don't need to execute the query again
@@ -357,16 +358,15 @@ public class StmtUtil
         eventHandler.triggerStateTransition(BasicEvent.QueryState.SENDING_QUERY,
                                             String.format(QueryState.SENDING_QUERY.getArgString(), stmtInput.requestId));
 
-        resultAsString =
-            HttpUtil.executeRequest(httpRequest,
-                                    stmtInput.networkTimeoutInMillis / 1000,
+        result =
+            executeRequestForResult(httpRequest,
+                                    stmtInput,
                                     stmtInput.injectSocketTimeout,
-                                    stmtInput.canceling,
                                     true // include retry parameters
             );
       }
 
-      return pollForOutput(resultAsString, stmtInput, httpRequest);
+      return pollForOutput(result, stmtInput, httpRequest);
     }
     catch (Exception ex)
     {
@@ -414,7 +414,42 @@ public class StmtUtil
     }
   }
 
-  private static StmtOutput pollForOutput(String resultAsString,
+  /**
+   * Executes a HTTP request for a query result, a response that is not JSON
+   * is returned as null so that the get result call is retried. The start
+   * of its body is kept in stmtInput.badResponse for the incident.
+   */
+  private static JsonNode executeRequestForResult(
+      HttpRequestBase httpRequest,
+      StmtInput stmtInput,
+      int injectSocketTimeout,
+      boolean includeRetryParameters)
+  throws SnowflakeSQLException, IOException
+  {
+    stmtInput.badResponse = null;
+    try
+    {
+      return HttpUtil.executeRequestForResult(
+          httpRequest,
+          stmtInput.networkTimeoutInMillis / 1000,
+          injectSocketTimeout,
+          stmtInput.canceling,
+          includeRetryParameters);
+    }
+    catch (QueryResultReader.BadResponseException ex)
+    {
+      stmtInput.badResponse = ex.getResponsePrefix();
+      logger.error("Bad result json: {}, " +
+                   "JSON parsing exception: {}, http request: {}",
+                   stmtInput.badResponse, ex.getLocalizedMessage(),
+                   httpRequest);
+
+      logger.error("Exception stack trace", ex);
+      return null;
+    }
+  }
+
+  private static StmtOutput pollForOutput(JsonNode result,
                                           StmtInput stmtInput,
                                           HttpPost httpRequest)
   throws SFException, SnowflakeSQLException
@@ -435,24 +470,7 @@ public class StmtUtil
 
     do
     {
-      pingPongResponseJson = null;
-
-      if (resultAsString != null)
-      {
-        try
-        {
-          pingPongResponseJson = mapper.readTree(resultAsString);
-        }
-        catch (Exception ex)
-        {
-          logger.error("Bad result json: {}, " +
-                       "JSON parsing exception: {}, http request: {}",
-                       resultAsString, ex.getLocalizedMessage(),
-                       httpRequest);
-
-          logger.error("Exception stack trace", ex);
-        }
-      }
+      pingPongResponseJson = result;
 
       eventHandler.triggerStateTransition(BasicEvent.QueryState.WAITING_FOR_RESULT,
                                           "{requestId: " + stmtInput.requestId + "," +
@@ -469,7 +487,9 @@ public class StmtUtil
           throw IncidentUtil.generateIncidentWithException(
               stmtInput.sessionToken,
               stmtInput.serverUrl, stmtInput.requestId, null,
-              ErrorCode.BAD_RESPONSE, resultAsString);
+              ErrorCode.BAD_RESPONSE,
+              stmtInput.badResponse != null ?
+              stmtInput.badResponse : "no JSON response");
         }
         else
         {
@@ -489,12 +509,12 @@ public class StmtUtil
       {
         try
         {
-          String json = mapper.writeValueAsString(resultAsString);
+          String json = mapper.writeValueAsString(pingPongResponseJson);
           logger.debug("Response: {}", json);
         }
         catch (JsonProcessingException ex)
         {
-          logger.debug("Response: {}", resultAsString);
+          logger.debug("Response: {}", pingPongResponseJson);
         }
       }
 
@@ -538,9 +558,9 @@ public class StmtUtil
           }
         }
 
-        resultAsString = getQueryResult(pingPongResponseJson,
-                                        previousGetResultPath,
-                                        stmtInput);
+        result = getQueryResult(pingPongResponseJson,
+                                previousGetResultPath,
+                                stmtInput);
 
         // save the previous get result path in case we run into session
         // expiration
@@ -576,13 +596,13 @@ public class StmtUtil
    * @param inProgressResponse    In progress response in JSON form
    * @param previousGetResultPath previous get results path
    * @param stmtInput             input statement
-   * @return results in string form
+   * @return results in JSON, null if the response is not JSON
    * @throws SFException           exception raised from Snowflake components
    * @throws SnowflakeSQLException exception raised from Snowflake components
    */
-  static protected String getQueryResult(JsonNode inProgressResponse,
-                                         String previousGetResultPath,
-                                         StmtInput stmtInput)
+  static protected JsonNode getQueryResult(JsonNode inProgressResponse,
+                                           String previousGetResultPath,
+                                           StmtInput stmtInput)
   throws SFException, SnowflakeSQLException
   {
     String getResultPath = null;
@@ -620,12 +640,12 @@ public class StmtUtil
    *
    * @param getResultPath path to results
    * @param stmtInput     object with context information
-   * @return results in string form
+   * @return results in JSON, null if the response is not JSON
    * @throws SFException           exception raised from Snowflake components
    * @throws SnowflakeSQLException exception raised from Snowflake components
    */
-  static protected String getQueryResult(String getResultPath,
-                                         StmtInput stmtInput)
+  static protected JsonNode getQueryResult(String getResultPath,
+                                           StmtInput stmtInput)
   throws SFException, SnowflakeSQLException
   {
     HttpGet httpRequest = null;
@@ -650,10 +670,10 @@ public class StmtUtil
 
       setServiceNameHeader(stmtInput, httpRequest);
 
-      return HttpUtil.executeRequest(httpRequest,
-                                     stmtInput.networkTimeoutInMillis / 1000,
+      return executeRequestForResult(httpRequest,
+                                     stmtInput,
                                      0,
-                                     stmtInput.canceling);
+                                     false);
     }
     catch (URISyntaxException | IOException ex)
     {
@@ -688,9 +708,9 @@ public class StmtUtil
         .setMediaType(SF_MEDIA_TYPE)
         .setServiceName(session.getServiceName());
 
-    String resultAsString = getQueryResult(getResultPath, stmtInput);
+    JsonNode result = getQueryResult(getResultPath, stmtInput);
 
-    StmtOutput stmtOutput = pollForOutput(resultAsString, stmtInput, null);
+    StmtOutput stmtOutput = pollForOutput(result, stmtInput, null);
     return stmtOutput.getResult();
   }
 
@@ -9,6 +9,7 @@ import net.snowflake.client.core.SFBaseResultSet;
 import net.snowflake.client.core.SFException;
 import net.snowflake.client.core.SFSession;
 import net.snowflake.client.core.SFStatement;
+import net.snowflake.client.jdbc.LexicalDateTime;
 import net.snowflake.client.jdbc.SnowflakeFileTransferAgent;
 import net.snowflake.client.jdbc.SnowflakeType;
 import net.snowflake.client.log.SFLogger;
@@ -22,15 +23,9 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.zip.GZIPOutputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -75,9 +70,6 @@ public class BindUploader implements Closeable
   // size (bytes) per file in upload, 100MB default
   private long fileSize = 100 * 1024 * 1024;
 
-  private final DateFormat timestampFormat;
-  private final DateFormat dateFormat;
-
   static class ColumnTypeDataPair
   {
     public String type;
@@ -103,26 +95,27 @@ public class BindUploader implements Closeable
     this.session = session;
     this.stagePath = "@" + STAGE_NAME + "/" + stageDir;
     this.bindDir = bindDir;
-    Calendar calendarUTC = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
-    calendarUTC.clear();
-
-    this.timestampFormat = new SimpleDateFormat(
-        "yyyy-MM-dd HH:mm:ss.");
-    this.timestampFormat.setCalendar(calendarUTC);
-    this.dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    this.dateFormat.setCalendar(calendarUTC);
   }
 
-  private synchronized String synchronizedDateFormat(String o)
+  /**
+   * Format milliseconds since the epoch as a date in UTC, yyyy-MM-dd
+   */
+  private static String formatDate(String o)
   {
     if (o == null)
     {
       return null;
     }
-    return dateFormat.format(new java.sql.Date(Long.parseLong(o)));
+    StringBuilder sb = new StringBuilder(10);
+    LexicalDateTime.appendDate(sb, Long.parseLong(o));
+    return sb.toString();
   }
 
-  private synchronized String synchronizedTimestampFormat(String o)
+  /**
+   * Format nanoseconds since the epoch as a timestamp in UTC,
+   * yyyy-MM-dd HH:mm:ss.nnnnnnnnn +00:00
+   */
+  private static String formatTimestamp(String o)
   {
     if (o == null)
     {
@@ -158,8 +151,14 @@ public class BindUploader implements Closeable
         sec--;
       }
     }
-    Timestamp v1 = new Timestamp(sec * 1000);
-    return timestampFormat.format(v1) + String.format("%09d", nano) + " +00:00";
+    StringBuilder sb = new StringBuilder(36);
+    LexicalDateTime.appendDate(sb, sec * 1000);
+    sb.append(' ');
+    LexicalDateTime.appendTime(sb, sec * 1000);
+    sb.append('.');
+    LexicalDateTime.appendNanos(sb, nano);
+    sb.append(" +00:00");
+    return sb.toString();
   }
 
   /**
@@ -246,14 +245,14 @@ public class BindUploader implements Closeable
         {
           for (String e : list)
           {
-            convertedList.add(synchronizedTimestampFormat(e));
+            convertedList.add(formatTimestamp(e));
           }
         }
         else if ("DATE".equals(type))
         {
           for (String e : list)
           {
-            convertedList.add(synchronizedDateFormat(e));
+            convertedList.add(formatDate(e));
           }
         }
         else
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.math.BigDecimal;
+
+/**
+ * Parsers of numbers from the UTF-8 text of result cells, which do not
+ * create a String. A parser returns the same value as the JDK parser of the
+ * text, and reports the text it does not handle, so that the caller can fall
+ * back to the JDK parser.
+ */
+public final class AsciiNumbers
+{
+  // powers of ten which are exact doubles
+  private static final double[] POW10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  // digits of an unscaled BigDecimal value which always fit in a long
+  private static final int MAX_UNSCALED_DIGITS = 18;
+
+  private AsciiNumbers()
+  {
+  }
+
+  /**
+   * Parse a long the same way Long.parseLong does for ASCII digits
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @return the value
+   * @throws NumberFormatException if the text is not an integer in the range
+   *                               of a long
+   */
+  public static long parseLong(byte[] buf, int offset, int length)
+  {
+    final int end = offset + length;
+    int pos = offset;
+    if (length == 0)
+    {
+      throw new NumberFormatException("empty text");
+    }
+
+    boolean negative = false;
+    byte first = buf[pos];
+    if (first == 0x2d /* '-' */ || first == 0x2b /* '+' */)
+    {
+      negative = first == 0x2d;
+      if (++pos == end)
+      {
+        throw new NumberFormatException("no digits");
+      }
+    }
+
+    // accumulate negatively to cover Long.MIN_VALUE
+    long value = 0;
+    for (; pos < end; pos++)
+    {
+      int digit = buf[pos] - 0x30 /* '0' */;
+      if (digit < 0 || digit > 9)
+      {
+        throw new NumberFormatException("not a digit at " + (pos - offset));
+      }
+      if (value < Long.MIN_VALUE / 10)
+      {
+        throw new NumberFormatException("out of range");
+      }
+      value *= 10;
+      if (value < Long.MIN_VALUE + digit)
+      {
+        throw new NumberFormatException("out of range");
+      }
+      value -= digit;
+    }
+    if (!negative)
+    {
+      if (value == Long.MIN_VALUE)
+      {
+        throw new NumberFormatException("out of range");
+      }
+      value = -value;
+    }
+    return value;
+  }
+
+  /**
+   * Parse an int the same way Integer.parseInt does for ASCII digits
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @return the value
+   * @throws NumberFormatException if the text is not an integer in the range
+   *                               of an int
+   */
+  public static int parseInt(byte[] buf, int offset, int length)
+  {
+    long value = parseLong(buf, offset, length);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+    {
+      throw new NumberFormatException("out of range");
+    }
+    return (int) value;
+  }
+
+  /**
+   * Parse a double to the value the getters return for its text, i.e. inf
+   * and -inf are infinite. Plain decimals with at most 15 significant digits
+   * and a small exponent are computed exactly from the digits.
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @return the value, or NaN if the text needs Double.parseDouble
+   */
+  public static double parseDouble(byte[] buf, int offset, int length)
+  {
+    if (length == 0)
+    {
+      return Double.NaN;
+    }
+    if (isText(buf, offset, length, "inf"))
+    {
+      return Double.POSITIVE_INFINITY;
+    }
+    if (isText(buf, offset, length, "-inf"))
+    {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    final int end = offset + length;
+    int pos = offset;
+    boolean negative = false;
+    if (buf[pos] == 0x2d /* '-' */)
+    {
+      negative = true;
+      pos++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean seenDigit = false;
+    boolean seenDot = false;
+    for (; pos < end; pos++)
+    {
+      byte b = buf[pos];
+      if (b >= 0x30 /* '0' */ && b <= 0x39 /* '9' */)
+      {
+        seenDigit = true;
+        if (mantissa != 0 || b != 0x30)
+        {
+          if (++digits > 15)
+          {
+            return Double.NaN;
+          }
+        }
+        mantissa = mantissa * 10 + (b - 0x30);
+        if (seenDot)
+        {
+          exponent--;
+        }
+      }
+      else if (b == 0x2e /* '.' */ && !seenDot)
+      {
+        seenDot = true;
+      }
+      else
+      {
+        break;
+      }
+    }
+    if (!seenDigit)
+    {
+      return Double.NaN;
+    }
+
+    if (pos < end)
+    {
+      if (buf[pos] != 0x65 /* 'e' */ && buf[pos] != 0x45 /* 'E' */)
+      {
+        return Double.NaN;
+      }
+      pos++;
+      boolean negativeExponent = false;
+      if (pos < end && (buf[pos] == 0x2d || buf[pos] == 0x2b))
+      {
+        negativeExponent = buf[pos] == 0x2d;
+        pos++;
+      }
+      if (pos == end || end - pos > 3)
+      {
+        return Double.NaN;
+      }
+      int explicitExponent = 0;
+      for (; pos < end; pos++)
+      {
+        int digit = buf[pos] - 0x30;
+        if (digit < 0 || digit > 9)
+        {
+          return Double.NaN;
+        }
+        explicitExponent = explicitExponent * 10 + digit;
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+
+    double value;
+    if (exponent >= 0 && exponent < POW10.length)
+    {
+      value = mantissa * POW10[exponent];
+    }
+    else if (exponent < 0 && -exponent < POW10.length)
+    {
+      value = mantissa / POW10[-exponent];
+    }
+    else
+    {
+      return Double.NaN;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parse [+|-]digits[.digits] with at most 18 digits to the same
+   * BigDecimal, including its scale, new BigDecimal(String) returns
+   *
+   * @param buf    text
+   * @param offset position of the text in buf
+   * @param length length of the text
+   * @return the value, or null if the text needs new BigDecimal(String)
+   */
+  public static BigDecimal parseBigDecimal(byte[] buf, int offset, int length)
+  {
+    final int end = offset + length;
+    int pos = offset;
+    if (length == 0)
+    {
+      return null;
+    }
+
+    boolean negative = false;
+    if (buf[pos] == 0x2d /* '-' */ || buf[pos] == 0x2b /* '+' */)
+    {
+      negative = buf[pos] == 0x2d;
+      pos++;
+    }
+
+    long unscaled = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean seenDot = false;
+    for (; pos < end; pos++)
+    {
+      byte b = buf[pos];
+      if (b >= 0x30 /* '0' */ && b <= 0x39 /* '9' */)
+      {
+        if (++digits > MAX_UNSCALED_DIGITS)
+        {
+          return null;
+        }
+        unscaled = unscaled * 10 + (b - 0x30);
+        if (seenDot)
+        {
+          scale++;
+        }
+      }
+      else if (b == 0x2e /* '.' */ && !seenDot)
+      {
+        seenDot = true;
+      }
+      else
+      {
+        // an exponent or not a number
+        return null;
+      }
+    }
+    if (digits == 0)
+    {
+      return null;
+    }
+    return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+  }
+
+  private static boolean isText(byte[] buf, int offset, int length,
+                                String text)
+  {
+    if (length != text.length())
+    {
+      return false;
+    }
+    for (int i = 0; i < length; i++)
+    {
+      if (buf[offset + i] != text.charAt(i))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+}
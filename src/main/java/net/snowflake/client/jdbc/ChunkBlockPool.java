@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * JVM wide pool of the blocks result chunks store their cells in.
+ * <p>
+ * Every block size, a size class, has its own stack of idle blocks. A block
+ * freed by a consumed chunk is reused by the next chunk of any result that
+ * needs a block of its size class, the most recently freed block first.
+ * Idle blocks are evicted when
+ * <ul>
+ * <li>the idle blocks of all size classes exceed the size of the pool, the
+ * least recently freed blocks first, or</li>
+ * <li>they were not reused for a minute.</li>
+ * </ul>
+ * The size of the pool defaults to an eighth of the maximum heap size and at
+ * most 256 MB. It can be set in bytes with the system property
+ * net.snowflake.jdbc.chunkBlockPoolSize.
+ */
+final class ChunkBlockPool
+{
+  static final String MAX_SIZE_PROPERTY =
+      "net.snowflake.jdbc.chunkBlockPoolSize";
+
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ChunkBlockPool.class);
+
+  // 8 MB data blocks
+  static final int DATA_BLOCK_BITS = 23;
+
+  // 16M chars data blocks of the legacy chunk data
+  static final int CHAR_BLOCK_BITS = 24;
+
+  // 32K entries offset, length and null bitmap blocks
+  static final int META_BLOCK_BITS = 15;
+
+  private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+  // time an idle block is kept without being reused
+  private static final long IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+  private static final class InstanceHolder
+  {
+    private static final ChunkBlockPool INSTANCE =
+        new ChunkBlockPool(getDefaultMaxSize(), IDLE_TIMEOUT_MILLIS);
+  }
+
+  private final long maxIdleBytes;
+
+  private final long idleTimeoutMillis;
+
+  private final List<BlockClass<?>> blockClasses = new ArrayList<>();
+
+  // bytes of all idle blocks, guarded by this
+  private long idleBytes = 0;
+
+  // number of blocks freed so far, orders the idle blocks of all size
+  // classes, guarded by this
+  private long releaseCount = 0;
+
+  final BlockClass<byte[]> dataBlocks =
+      new BlockClass<byte[]>(1L << DATA_BLOCK_BITS)
+      {
+        @Override
+        byte[] allocate()
+        {
+          return new byte[1 << DATA_BLOCK_BITS];
+        }
+      };
+
+  final BlockClass<char[]> charBlocks =
+      new BlockClass<char[]>(2L << CHAR_BLOCK_BITS)
+      {
+        @Override
+        char[] allocate()
+        {
+          return new char[1 << CHAR_BLOCK_BITS];
+        }
+      };
+
+  final BlockClass<int[]> metaBlocks =
+      new BlockClass<int[]>(4L << META_BLOCK_BITS)
+      {
+        @Override
+        int[] allocate()
+        {
+          return new int[1 << META_BLOCK_BITS];
+        }
+      };
+
+  final BlockClass<BitSet> nullBlocks =
+      new BlockClass<BitSet>(1L << META_BLOCK_BITS >> 3)
+      {
+        @Override
+        BitSet allocate()
+        {
+          return new BitSet(1 << META_BLOCK_BITS);
+        }
+
+        @Override
+        void reset(BitSet block)
+        {
+          block.clear();
+        }
+      };
+
+  final BlockClass<ByteBuffer> directDataBlocks =
+      new BlockClass<ByteBuffer>(1L << DATA_BLOCK_BITS)
+      {
+        @Override
+        ByteBuffer allocate()
+        {
+          return ByteBuffer.allocateDirect(1 << DATA_BLOCK_BITS);
+        }
+      };
+
+  final BlockClass<IntBuffer> directMetaBlocks =
+      new BlockClass<IntBuffer>(4L << META_BLOCK_BITS)
+      {
+        @Override
+        IntBuffer allocate()
+        {
+          return ByteBuffer.allocateDirect(4 << META_BLOCK_BITS)
+              .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+      };
+
+  final BlockClass<ByteBuffer> directNullBlocks =
+      new BlockClass<ByteBuffer>(1L << META_BLOCK_BITS >> 3)
+      {
+        @Override
+        ByteBuffer allocate()
+        {
+          return ByteBuffer.allocateDirect(1 << META_BLOCK_BITS >> 3);
+        }
+
+        @Override
+        void reset(ByteBuffer block)
+        {
+          for (int i = 0; i < block.capacity(); i++)
+          {
+            block.put(i, (byte) 0);
+          }
+        }
+      };
+
+  /**
+   * @param maxIdleBytes      maximum bytes of the idle blocks
+   * @param idleTimeoutMillis time an idle block is kept without being reused
+   */
+  ChunkBlockPool(long maxIdleBytes, long idleTimeoutMillis)
+  {
+    this.maxIdleBytes = maxIdleBytes;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  static ChunkBlockPool getInstance()
+  {
+    return InstanceHolder.INSTANCE;
+  }
+
+  private static long getDefaultMaxSize()
+  {
+    String value = System.getProperty(MAX_SIZE_PROPERTY);
+    if (value != null)
+    {
+      try
+      {
+        long maxSize = Long.parseLong(value.trim());
+        if (maxSize >= 0)
+        {
+          return maxSize;
+        }
+      }
+      catch (NumberFormatException ex)
+      {
+        // fall through to the default
+      }
+      logger.debug("ignore invalid {}: {}", MAX_SIZE_PROPERTY, value);
+    }
+    return Math.min(DEFAULT_MAX_SIZE, Runtime.getRuntime().maxMemory() / 8);
+  }
+
+  /**
+   * @return bytes of the idle blocks
+   */
+  synchronized long getIdleBytes()
+  {
+    return idleBytes;
+  }
+
+  /**
+   * @return number of blocks reused, over all size classes
+   */
+  synchronized long getHits()
+  {
+    long hits = 0;
+    for (BlockClass<?> blockClass : blockClasses)
+    {
+      hits += blockClass.hits;
+    }
+    return hits;
+  }
+
+  /**
+   * @return number of blocks allocated as no idle block was available, over
+   * all size classes
+   */
+  synchronized long getMisses()
+  {
+    long misses = 0;
+    for (BlockClass<?> blockClass : blockClasses)
+    {
+      misses += blockClass.misses;
+    }
+    return misses;
+  }
+
+  /**
+   * @return number of freed blocks dropped, over all size classes
+   */
+  synchronized long getEvictions()
+  {
+    long evictions = 0;
+    for (BlockClass<?> blockClass : blockClasses)
+    {
+      evictions += blockClass.evictions;
+    }
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "ChunkBlockPool{idleBytes=" + idleBytes +
+           ", hits=" + getHits() +
+           ", misses=" + getMisses() +
+           ", evictions=" + getEvictions() + "}";
+  }
+
+  /**
+   * Evict the blocks idle for too long and, while the idle blocks exceed the
+   * size of the pool, the least recently freed ones. Called with the lock
+   * held.
+   */
+  private void evict(long now)
+  {
+    for (BlockClass<?> blockClass : blockClasses)
+    {
+      while (!blockClass.idle.isEmpty() &&
+             now - blockClass.idle.peekLast().freedAt >= idleTimeoutMillis)
+      {
+        blockClass.evictOldest();
+      }
+    }
+    while (idleBytes > maxIdleBytes)
+    {
+      BlockClass<?> oldest = null;
+      for (BlockClass<?> blockClass : blockClasses)
+      {
+        if (!blockClass.idle.isEmpty() &&
+            (oldest == null ||
+             blockClass.idle.peekLast().sequence <
+             oldest.idle.peekLast().sequence))
+        {
+          oldest = blockClass;
+        }
+      }
+      oldest.evictOldest();
+    }
+  }
+
+  private static final class IdleBlock<T>
+  {
+    private final T block;
+    private final long freedAt;
+    private final long sequence;
+
+    private IdleBlock(T block, long freedAt, long sequence)
+    {
+      this.block = block;
+      this.freedAt = freedAt;
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * Idle blocks of one size
+   *
+   * @param <T> type of the blocks
+   */
+  abstract class BlockClass<T>
+  {
+    private final long blockBytes;
+
+    // most recently freed block first, guarded by the lock of the pool
+    private final ArrayDeque<IdleBlock<T>> idle = new ArrayDeque<>();
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private BlockClass(long blockBytes)
+    {
+      this.blockBytes = blockBytes;
+      blockClasses.add(this);
+    }
+
+    /**
+     * @return a new block
+     */
+    abstract T allocate();
+
+    /**
+     * Prepare a freed block for its next use
+     *
+     * @param block the freed block
+     */
+    void reset(T block)
+    {
+    }
+
+    /**
+     * @return an idle block or a new one
+     */
+    T acquire()
+    {
+      IdleBlock<T> idleBlock;
+      synchronized (ChunkBlockPool.this)
+      {
+        evict(System.currentTimeMillis());
+        idleBlock = idle.pollFirst();
+        if (idleBlock != null)
+        {
+          idleBytes -= blockBytes;
+          hits++;
+        }
+        else
+        {
+          misses++;
+        }
+      }
+      return idleBlock != null ? idleBlock.block : allocate();
+    }
+
+    /**
+     * Give a block back to the pool. The block must not be used afterwards.
+     *
+     * @param block the freed block
+     */
+    void release(T block)
+    {
+      reset(block);
+      synchronized (ChunkBlockPool.this)
+      {
+        long now = System.currentTimeMillis();
+        idle.addFirst(new IdleBlock<>(block, now, releaseCount++));
+        idleBytes += blockBytes;
+        evict(now);
+      }
+    }
+
+    /**
+     * @param blocks the freed blocks
+     */
+    void releaseAll(List<T> blocks)
+    {
+      for (T block : blocks)
+      {
+        release(block);
+      }
+    }
+
+    private void evictOldest()
+    {
+      idle.pollLast();
+      idleBytes -= blockBytes;
+      evictions++;
+    }
+
+    /**
+     * @return number of idle blocks
+     */
+    int getIdleCount()
+    {
+      synchronized (ChunkBlockPool.this)
+      {
+        return idle.size();
+      }
+    }
+  }
+}
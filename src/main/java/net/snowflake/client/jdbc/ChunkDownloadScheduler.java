@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM wide scheduler for the download of result chunks.
+ * <p>
+ * All chunk downloaders share one pool of threads, so the number of download
+ * threads is capped no matter how many result sets are open. Every downloader
+ * gets its own queue with a quota, the maximum number of its chunks that are
+ * prefetched at the same time. Idle threads pick the next task as follows:
+ * <ol>
+ * <li>a chunk a consumer needs next, i.e. the chunk its result set reads
+ * after the current one, even if its queue has used up its quota</li>
+ * <li>otherwise the oldest chunk of a queue below its quota</li>
+ * </ol>
+ * Queues are visited in turn in both steps, so one result set with many
+ * chunks does not delay the others. Threads are started on demand and stop
+ * after they are idle for a while.
+ * <p>
+ * Downloads also run helper tasks on the same threads, e.g. the stages of a
+ * pipelined download. A helper task runs right away if a thread is idle or
+ * the cap allows another one, otherwise it is refused and the download does
+ * the work itself, so helper tasks never wait for a thread.
+ * <p>
+ * The thread cap defaults to four threads per processor and at least 8. It
+ * can be set with the system property
+ * net.snowflake.jdbc.maxChunkDownloadThreads.
+ */
+final class ChunkDownloadScheduler
+{
+  static final String MAX_THREADS_PROPERTY =
+      "net.snowflake.jdbc.maxChunkDownloadThreads";
+
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ChunkDownloadScheduler.class);
+
+  // time an idle thread waits for a task before it stops
+  private static final long KEEP_ALIVE_MILLIS = 60 * 1000;
+
+  private static final class InstanceHolder
+  {
+    private static final ChunkDownloadScheduler INSTANCE =
+        new ChunkDownloadScheduler(getDefaultMaxThreads(), KEEP_ALIVE_MILLIS,
+                                   SnowflakeChunkDownloader.createThreadFactory(
+                                       "result-chunk-downloader-"));
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // signaled when a task is submitted or a task finishes, as a queue may
+  // be below its quota again
+  private final Condition taskAvailable = lock.newCondition();
+
+  // registered queues, visited in turn starting at nextQueue
+  private final List<DownloadQueue> queues = new ArrayList<>();
+
+  private int nextQueue = 0;
+
+  // helper tasks accepted by tryExecute, run before any download
+  private final ArrayDeque<Task> helperTasks = new ArrayDeque<>();
+
+  private final List<Worker> workers = new ArrayList<>();
+
+  private int idleWorkers = 0;
+
+  private final int maxThreads;
+
+  private final long keepAliveMillis;
+
+  private final ThreadFactory threadFactory;
+
+  /**
+   * @param maxThreads      maximum number of download threads
+   * @param keepAliveMillis time an idle thread waits for a task before it
+   *                        stops
+   * @param threadFactory   factory of the download threads
+   */
+  ChunkDownloadScheduler(int maxThreads, long keepAliveMillis,
+                         ThreadFactory threadFactory)
+  {
+    this.maxThreads = maxThreads;
+    this.keepAliveMillis = keepAliveMillis;
+    this.threadFactory = threadFactory;
+  }
+
+  static ChunkDownloadScheduler getInstance()
+  {
+    return InstanceHolder.INSTANCE;
+  }
+
+  static int getDefaultMaxThreads()
+  {
+    String value = System.getProperty(MAX_THREADS_PROPERTY);
+    if (value != null)
+    {
+      try
+      {
+        int maxThreads = Integer.parseInt(value.trim());
+        if (maxThreads > 0)
+        {
+          return maxThreads;
+        }
+      }
+      catch (NumberFormatException ex)
+      {
+        // fall through to the default
+      }
+      logger.debug("ignore invalid {}: {}", MAX_THREADS_PROPERTY, value);
+    }
+    return Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Register the queue of a chunk downloader
+   *
+   * @param quota maximum number of chunks prefetched at the same time
+   * @return the queue
+   */
+  DownloadQueue register(int quota)
+  {
+    DownloadQueue queue = new DownloadQueue(Math.max(1, quota));
+    lock.lock();
+    try
+    {
+      queues.add(queue);
+    }
+    finally
+    {
+      lock.unlock();
+    }
+    return queue;
+  }
+
+  /**
+   * Run a helper task on a download thread, if a thread is idle or the cap
+   * allows another one
+   *
+   * @param runnable helper task
+   * @return the future of the task, or null if no thread is available
+   */
+  Future<?> tryExecute(Runnable runnable)
+  {
+    lock.lock();
+    try
+    {
+      if (helperTasks.size() >= idleWorkers && workers.size() >= maxThreads)
+      {
+        return null;
+      }
+      FutureTask<Void> future = new FutureTask<>(runnable, null);
+      helperTasks.addLast(new Task(null, -1, Executors.callable(future)));
+      startWorkerIfNeeded();
+      taskAvailable.signalAll();
+      return future;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return number of download threads currently started
+   */
+  int getThreadCount()
+  {
+    lock.lock();
+    try
+    {
+      return workers.size();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the next task to run. Called with the lock held.
+   *
+   * @return the task or null if no task can run
+   */
+  private Task pollTask()
+  {
+    if (!helperTasks.isEmpty())
+    {
+      return helperTasks.pollFirst();
+    }
+    final int queueCount = queues.size();
+    for (int i = 0; i < queueCount; i++)
+    {
+      DownloadQueue queue = queues.get((nextQueue + i) % queueCount);
+      Task task = queue.pollNeededChunk();
+      if (task != null)
+      {
+        nextQueue = (nextQueue + i + 1) % queueCount;
+        return task;
+      }
+    }
+    for (int i = 0; i < queueCount; i++)
+    {
+      DownloadQueue queue = queues.get((nextQueue + i) % queueCount);
+      if (queue.running < queue.quota && !queue.pending.isEmpty())
+      {
+        nextQueue = (nextQueue + i + 1) % queueCount;
+        return queue.pending.pollFirst();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return true if a pending task can run. Called with the lock held.
+   */
+  private boolean hasRunnableTask()
+  {
+    for (DownloadQueue queue : queues)
+    {
+      if (!queue.pending.isEmpty() &&
+          (queue.running < queue.quota || queue.hasNeededChunk()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Start a thread if no thread is idle, apart from the threads the
+   * accepted helper tasks are waiting for, and the cap is not reached.
+   * Called with the lock held.
+   */
+  private void startWorkerIfNeeded()
+  {
+    if (idleWorkers > helperTasks.size() || workers.size() >= maxThreads)
+    {
+      return;
+    }
+    Worker worker = new Worker();
+    worker.thread = threadFactory.newThread(worker);
+    workers.add(worker);
+    worker.thread.start();
+  }
+
+  private static final class Task
+  {
+    // null for a helper task
+    private final DownloadQueue queue;
+    private final int chunkIndex;
+    private final Callable<?> callable;
+
+    private Task(DownloadQueue queue, int chunkIndex, Callable<?> callable)
+    {
+      this.queue = queue;
+      this.chunkIndex = chunkIndex;
+      this.callable = callable;
+    }
+  }
+
+  /**
+   * Chunks of one downloader waiting to be downloaded
+   */
+  final class DownloadQueue
+  {
+    // guarded by the lock of the scheduler
+    private int quota;
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+    private int running = 0;
+    private int nextChunkToConsume = 0;
+    private boolean closed = false;
+
+    private DownloadQueue(int quota)
+    {
+      this.quota = quota;
+    }
+
+    /**
+     * Queue the download of a chunk
+     *
+     * @param chunkIndex index of the chunk in the result
+     * @param callable   downloads the chunk
+     */
+    void submit(int chunkIndex, Callable<?> callable)
+    {
+      lock.lock();
+      try
+      {
+        if (closed)
+        {
+          return;
+        }
+        pending.addLast(new Task(this, chunkIndex, callable));
+        if (running < quota || chunkIndex == nextChunkToConsume)
+        {
+          startWorkerIfNeeded();
+        }
+        taskAvailable.signalAll();
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Set the chunk the consumer needs next, its download is run before the
+     * prefetching of all queues
+     *
+     * @param chunkIndex index of the chunk in the result
+     */
+    void setNextChunkToConsume(int chunkIndex)
+    {
+      lock.lock();
+      try
+      {
+        if (nextChunkToConsume != chunkIndex)
+        {
+          nextChunkToConsume = chunkIndex;
+          if (!pending.isEmpty())
+          {
+            startWorkerIfNeeded();
+          }
+          taskAvailable.signalAll();
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Change the maximum number of chunks prefetched at the same time.
+     * Running downloads above a lowered quota finish.
+     *
+     * @param quota maximum number of chunks prefetched at the same time
+     */
+    void setQuota(int quota)
+    {
+      lock.lock();
+      try
+      {
+        int previousQuota = this.quota;
+        this.quota = Math.max(1, quota);
+        if (this.quota > previousQuota && !pending.isEmpty())
+        {
+          startWorkerIfNeeded();
+          taskAvailable.signalAll();
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Drop the pending downloads and interrupt the running ones
+     */
+    void close()
+    {
+      lock.lock();
+      try
+      {
+        if (closed)
+        {
+          return;
+        }
+        closed = true;
+        pending.clear();
+        int index = queues.indexOf(this);
+        queues.remove(index);
+        if (index < nextQueue)
+        {
+          nextQueue--;
+        }
+        if (nextQueue >= queues.size())
+        {
+          nextQueue = 0;
+        }
+        for (Worker worker : workers)
+        {
+          if (worker.runningQueue == this)
+          {
+            worker.thread.interrupt();
+          }
+        }
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+
+    private boolean hasNeededChunk()
+    {
+      for (Task task : pending)
+      {
+        if (task.chunkIndex == nextChunkToConsume)
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return the pending task of the chunk the consumer needs next, or null
+     */
+    private Task pollNeededChunk()
+    {
+      Iterator<Task> it = pending.iterator();
+      while (it.hasNext())
+      {
+        Task task = it.next();
+        if (task.chunkIndex == nextChunkToConsume)
+        {
+          it.remove();
+          return task;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final class Worker implements Runnable
+  {
+    private Thread thread;
+
+    // queue of the running task, guarded by the lock of the scheduler
+    private DownloadQueue runningQueue;
+
+    @Override
+    public void run()
+    {
+      while (true)
+      {
+        Task task = takeTask();
+        if (task == null)
+        {
+          return;
+        }
+        try
+        {
+          task.callable.call();
+        }
+        catch (Throwable ex)
+        {
+          logger.error("Exception in chunk download task: {}", ex);
+        }
+        finally
+        {
+          lock.lock();
+          try
+          {
+            runningQueue = null;
+            if (task.queue != null)
+            {
+              task.queue.running--;
+            }
+            taskAvailable.signalAll();
+          }
+          finally
+          {
+            lock.unlock();
+          }
+          // an interrupt meant for the finished task must not hit the next
+          Thread.interrupted();
+        }
+      }
+    }
+
+    /**
+     * @return the next task, or null if the thread was idle too long
+     */
+    private Task takeTask()
+    {
+      lock.lock();
+      try
+      {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(keepAliveMillis);
+        Task task;
+        while ((task = pollTask()) == null)
+        {
+          if (nanos <= 0)
+          {
+            workers.remove(this);
+            return null;
+          }
+          idleWorkers++;
+          try
+          {
+            nanos = taskAvailable.awaitNanos(nanos);
+          }
+          catch (InterruptedException ex)
+          {
+            // only running tasks are interrupted
+          }
+          finally
+          {
+            idleWorkers--;
+          }
+        }
+        if (task.queue != null)
+        {
+          task.queue.running++;
+          runningQueue = task.queue;
+        }
+
+        // idle threads are already woken up, but more tasks may be able to
+        // run than threads are idle
+        if (hasRunnableTask())
+        {
+          startWorkerIfNeeded();
+        }
+        return task;
+      }
+      finally
+      {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM wide budget for the memory used by downloaded result chunks.
+ * <p>
+ * Chunk downloaders reserve the memory of a chunk before the chunk is
+ * downloaded and release it once the chunk is consumed. A reservation which
+ * has to wait for memory is queued and woken up as soon as enough memory is
+ * released. Waiting reservations are served in arrival order, and a
+ * non-blocking reservation never jumps ahead of a waiting one, so a result set
+ * that needs memory to make progress is not starved by result sets that only
+ * prefetch.
+ */
+final class ChunkMemoryBudget
+{
+  private static final ChunkMemoryBudget INSTANCE = new ChunkMemoryBudget();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // signaled whenever memory is released or the first waiter changes
+  private final Condition memoryReleased = lock.newCondition();
+
+  // reservations waiting for memory, in arrival order
+  private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+
+  // the current memory usage across JVM
+  private long currentUsage = 0;
+
+  static ChunkMemoryBudget getInstance()
+  {
+    return INSTANCE;
+  }
+
+  /**
+   * @return memory in bytes currently reserved
+   */
+  long getCurrentUsage()
+  {
+    lock.lock();
+    try
+    {
+      return currentUsage;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reserve memory if it is available right now
+   *
+   * @param bytes memory to reserve
+   * @param limit the usage must not exceed this limit after the reservation
+   * @return true if the memory is reserved
+   */
+  boolean tryReserve(long bytes, long limit)
+  {
+    lock.lock();
+    try
+    {
+      if (!waiters.isEmpty() || currentUsage + bytes > limit)
+      {
+        return false;
+      }
+      currentUsage += bytes;
+      return true;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reserve memory, waiting until enough memory is released if necessary
+   *
+   * @param bytes   memory to reserve
+   * @param limit   the usage must not exceed this limit after the reservation
+   * @param timeout maximum time to wait
+   * @param unit    unit of the timeout
+   * @return true if the memory is reserved, false if the timeout elapsed
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  boolean reserve(long bytes, long limit, long timeout, TimeUnit unit)
+  throws InterruptedException
+  {
+    lock.lockInterruptibly();
+    try
+    {
+      if (waiters.isEmpty() && currentUsage + bytes <= limit)
+      {
+        currentUsage += bytes;
+        return true;
+      }
+
+      Object ticket = new Object();
+      waiters.addLast(ticket);
+      try
+      {
+        long nanos = unit.toNanos(timeout);
+        while (waiters.peekFirst() != ticket ||
+               currentUsage + bytes > limit)
+        {
+          if (nanos <= 0)
+          {
+            return false;
+          }
+          nanos = memoryReleased.awaitNanos(nanos);
+        }
+        currentUsage += bytes;
+        return true;
+      }
+      finally
+      {
+        waiters.remove(ticket);
+        // the next waiter may be able to proceed now
+        memoryReleased.signalAll();
+      }
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Release reserved memory and wake up waiting reservations
+   *
+   * @param bytes memory to release
+   */
+  void release(long bytes)
+  {
+    lock.lock();
+    try
+    {
+      currentUsage -= bytes;
+      memoryReleased.signalAll();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+}
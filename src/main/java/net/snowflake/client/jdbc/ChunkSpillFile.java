@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+/**
+ * Content of a result chunk downloaded ahead of time into a local file,
+ * because the memory limit did not allow to load the chunk yet.
+ * <p>
+ * The content is stored as received, usually gzip compressed, and memory
+ * mapped when the chunk is loaded. A chunk can be loaded before its content
+ * is completely written. Its loader is then deferred and run by the thread
+ * writing the file as soon as it is done. If the content cannot be written,
+ * the loader downloads the chunk again.
+ */
+final class ChunkSpillFile
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ChunkSpillFile.class);
+
+  private enum State
+  {
+    WRITING,
+    WRITTEN,
+    FAILED,
+    DELETED
+  }
+
+  private final File directory;
+
+  // guarded by this
+  private State state = State.WRITING;
+
+  private File file = null;
+
+  private boolean gzip = false;
+
+  // loader of the chunk, run once the content is written
+  private Callable<?> deferredLoader = null;
+
+  /**
+   * @param directory directory the file is created in
+   */
+  ChunkSpillFile(File directory)
+  {
+    this.directory = directory;
+  }
+
+  /**
+   * Write the content of the chunk to a new file
+   *
+   * @param content content of the chunk, closed when it is written
+   * @param gzip    true if the content is gzip compressed
+   * @return the deferred loader of the chunk to run, or null
+   */
+  Callable<?> write(InputStream content, boolean gzip)
+  {
+    File written = null;
+    try (InputStream in = content)
+    {
+      written = File.createTempFile("result-chunk-", ".spill", directory);
+      Files.copy(in, written.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException ex)
+    {
+      logger.debug("Failed to spill chunk to {}: {}", directory, ex);
+      if (written != null && !written.delete())
+      {
+        logger.debug("Failed to delete spill file {}", written);
+      }
+      return fail();
+    }
+
+    synchronized (this)
+    {
+      if (state == State.DELETED)
+      {
+        deleteFile(written);
+        return null;
+      }
+      file = written;
+      this.gzip = gzip;
+      state = State.WRITTEN;
+      logger.debug("Spilled chunk to {}, size={}", written, written.length());
+      return takeDeferredLoader();
+    }
+  }
+
+  /**
+   * Give up writing the content, the chunk is downloaded again when it is
+   * loaded
+   *
+   * @return the deferred loader of the chunk to run, or null
+   */
+  synchronized Callable<?> fail()
+  {
+    if (state == State.DELETED)
+    {
+      return null;
+    }
+    state = State.FAILED;
+    return takeDeferredLoader();
+  }
+
+  private Callable<?> takeDeferredLoader()
+  {
+    Callable<?> loader = deferredLoader;
+    deferredLoader = null;
+    return loader;
+  }
+
+  /**
+   * Defer the loader of the chunk until its content is written
+   *
+   * @param loader loader of the chunk
+   * @return true if the loader is deferred, false if the content is already
+   * written or failed and the loader can run right away
+   */
+  synchronized boolean deferUntilWritten(Callable<?> loader)
+  {
+    if (state != State.WRITING)
+    {
+      return false;
+    }
+    deferredLoader = loader;
+    return true;
+  }
+
+  /**
+   * @return true if the content is gzip compressed
+   */
+  synchronized boolean isGzip()
+  {
+    return gzip;
+  }
+
+  /**
+   * Open the written content
+   *
+   * @return the content or null if it could not be written
+   * @throws IOException if the file cannot be read
+   */
+  InputStream open() throws IOException
+  {
+    File spilled;
+    synchronized (this)
+    {
+      if (state != State.WRITTEN)
+      {
+        return null;
+      }
+      spilled = file;
+    }
+
+    try (FileChannel channel = FileChannel.open(spilled.toPath(),
+                                                StandardOpenOption.READ))
+    {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE)
+      {
+        // too large to be mapped at once
+        return new BufferedInputStream(Files.newInputStream(spilled.toPath()));
+      }
+      return new MappedInputStream(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  /**
+   * Delete the file. A file still being written is deleted once it is done.
+   */
+  synchronized void delete()
+  {
+    if (state == State.WRITTEN)
+    {
+      deleteFile(file);
+    }
+    state = State.DELETED;
+    file = null;
+    deferredLoader = null;
+  }
+
+  private static void deleteFile(File file)
+  {
+    if (!file.delete())
+    {
+      logger.debug("Failed to delete spill file {}", file);
+      file.deleteOnExit();
+    }
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "spill file " + (file != null ? file : directory);
+  }
+
+  /**
+   * Input stream reading a memory mapped file
+   */
+  private static final class MappedInputStream extends InputStream
+  {
+    private final ByteBuffer buf;
+
+    private MappedInputStream(ByteBuffer buf)
+    {
+      this.buf = buf;
+    }
+
+    @Override
+    public int read()
+    {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+      if (len == 0)
+      {
+        return 0;
+      }
+      if (!buf.hasRemaining())
+      {
+        return -1;
+      }
+      int count = Math.min(len, buf.remaining());
+      buf.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available()
+    {
+      return buf.remaining();
+    }
+  }
+}
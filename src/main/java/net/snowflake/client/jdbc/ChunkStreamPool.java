@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+
+/**
+ * JVM wide pool of the objects a chunk download needs to read its content:
+ * the stream buffers, the inflaters of gzip content and the parsers.
+ * <p>
+ * A chunk takes the objects from the pool when its download starts and gives
+ * them back when the content is parsed, so the next chunk of any result
+ * reuses them instead of allocating a 1 MB buffer and native inflater memory
+ * again. Every kind of object keeps at most twice as many idle objects as
+ * there are download threads, as a download of gzip content uses two
+ * buffers. The most recently freed object is reused first, objects not
+ * reused for a minute are dropped.
+ */
+final class ChunkStreamPool
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ChunkStreamPool.class);
+
+  // size of the buffers reading and inflating the content
+  static final int BUFFER_SIZE = 1024 * 1024;
+
+  // time an idle object is kept without being reused
+  private static final long IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+  private static final class InstanceHolder
+  {
+    private static final ChunkStreamPool INSTANCE =
+        new ChunkStreamPool(2 * ChunkDownloadScheduler.getDefaultMaxThreads(),
+                            IDLE_TIMEOUT_MILLIS);
+  }
+
+  private final int maxIdleCount;
+
+  private final long idleTimeoutMillis;
+
+  private final List<Kind<?>> kinds = new ArrayList<>();
+
+  final Kind<byte[]> buffers = new Kind<byte[]>("buffers")
+  {
+    @Override
+    byte[] allocate()
+    {
+      return new byte[BUFFER_SIZE];
+    }
+  };
+
+  final Kind<Inflater> inflaters = new Kind<Inflater>("inflaters")
+  {
+    @Override
+    Inflater allocate()
+    {
+      // gzip content, the header and trailer are read by the stream
+      return new Inflater(true);
+    }
+
+    @Override
+    void reset(Inflater inflater)
+    {
+      inflater.reset();
+    }
+
+    @Override
+    void discard(Inflater inflater)
+    {
+      // release the native memory now instead of on finalization
+      inflater.end();
+    }
+  };
+
+  final Kind<ResultJsonParserV2> parsers =
+      new Kind<ResultJsonParserV2>("parsers")
+      {
+        @Override
+        ResultJsonParserV2 allocate()
+        {
+          return new ResultJsonParserV2();
+        }
+
+        @Override
+        void reset(ResultJsonParserV2 parser)
+        {
+          parser.reset();
+        }
+      };
+
+  /**
+   * @param maxIdleCount      maximum number of idle objects of every kind
+   * @param idleTimeoutMillis time an idle object is kept without being
+   *                          reused
+   */
+  ChunkStreamPool(int maxIdleCount, long idleTimeoutMillis)
+  {
+    this.maxIdleCount = maxIdleCount;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  static ChunkStreamPool getInstance()
+  {
+    return InstanceHolder.INSTANCE;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    StringBuilder builder = new StringBuilder("ChunkStreamPool{");
+    for (Kind<?> kind : kinds)
+    {
+      if (kind != kinds.get(0))
+      {
+        builder.append(", ");
+      }
+      builder.append(kind.name)
+          .append("={idle=").append(kind.idle.size())
+          .append(", reused=").append(kind.reused)
+          .append(", allocated=").append(kind.allocated)
+          .append(", dropped=").append(kind.dropped).append('}');
+    }
+    return builder.append('}').toString();
+  }
+
+  private static final class IdleObject<T>
+  {
+    private final T object;
+    private final long freedAt;
+
+    private IdleObject(T object, long freedAt)
+    {
+      this.object = object;
+      this.freedAt = freedAt;
+    }
+  }
+
+  /**
+   * Idle objects of one kind
+   *
+   * @param <T> type of the objects
+   */
+  abstract class Kind<T>
+  {
+    private final String name;
+
+    // most recently freed object first, guarded by the lock of the pool
+    private final ArrayDeque<IdleObject<T>> idle = new ArrayDeque<>();
+    private long reused = 0;
+    private long allocated = 0;
+    private long dropped = 0;
+
+    private Kind(String name)
+    {
+      this.name = name;
+      kinds.add(this);
+    }
+
+    /**
+     * @return a new object
+     */
+    abstract T allocate();
+
+    /**
+     * Prepare a freed object for its next use
+     *
+     * @param object the freed object
+     */
+    void reset(T object)
+    {
+    }
+
+    /**
+     * Release the resources of an object dropped by the pool
+     *
+     * @param object the dropped object
+     */
+    void discard(T object)
+    {
+    }
+
+    /**
+     * @return an idle object or a new one
+     */
+    T acquire()
+    {
+      IdleObject<T> idleObject;
+      List<T> expired;
+      synchronized (ChunkStreamPool.this)
+      {
+        expired = evictExpired(System.currentTimeMillis());
+        idleObject = idle.pollFirst();
+        if (idleObject != null)
+        {
+          reused++;
+        }
+        else
+        {
+          allocated++;
+        }
+      }
+      discardAll(expired);
+      return idleObject != null ? idleObject.object : allocate();
+    }
+
+    /**
+     * Give an object back to the pool. The object must not be used
+     * afterwards.
+     *
+     * @param object the freed object
+     */
+    void release(T object)
+    {
+      try
+      {
+        reset(object);
+      }
+      catch (RuntimeException ex)
+      {
+        logger.debug("drop {} which cannot be reset: {}", name, ex);
+        discard(object);
+        return;
+      }
+      List<T> expired;
+      synchronized (ChunkStreamPool.this)
+      {
+        long now = System.currentTimeMillis();
+        idle.addFirst(new IdleObject<>(object, now));
+        expired = evictExpired(now);
+        while (idle.size() > maxIdleCount)
+        {
+          expired.add(idle.pollLast().object);
+          dropped++;
+        }
+      }
+      discardAll(expired);
+    }
+
+    /**
+     * Remove the objects idle for too long. Called with the lock held.
+     *
+     * @return the removed objects
+     */
+    private List<T> evictExpired(long now)
+    {
+      List<T> expired = new ArrayList<>(0);
+      while (!idle.isEmpty() &&
+             now - idle.peekLast().freedAt >= idleTimeoutMillis)
+      {
+        expired.add(idle.pollLast().object);
+        dropped++;
+      }
+      return expired;
+    }
+
+    private void discardAll(List<T> objects)
+    {
+      for (T object : objects)
+      {
+        discard(object);
+      }
+    }
+
+    /**
+     * @return number of idle objects
+     */
+    int getIdleCount()
+    {
+      synchronized (ChunkStreamPool.this)
+      {
+        return idle.size();
+      }
+    }
+
+    /**
+     * @return number of objects reused from the pool
+     */
+    long getReusedCount()
+    {
+      synchronized (ChunkStreamPool.this)
+      {
+        return reused;
+      }
+    }
+
+    /**
+     * @return number of objects allocated as no idle object was available
+     */
+    long getAllocatedCount()
+    {
+      synchronized (ChunkStreamPool.this)
+      {
+        return allocated;
+      }
+    }
+
+    /**
+     * @return number of freed objects dropped
+     */
+    long getDroppedCount()
+    {
+      synchronized (ChunkStreamPool.this)
+      {
+        return dropped;
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rows of a query response kept as compact JSON text, an array of arrays,
+ * instead of a tree of nodes. A streamed response holds the rowset as a
+ * POJONode with this value. It is written back as the original JSON when the
+ * response is serialized.
+ */
+public final class JsonRowset implements JsonSerializable
+{
+  private final byte[] data;
+
+  private final int length;
+
+  private final int rowCount;
+
+  /**
+   * @param data     UTF-8 JSON text of the rows
+   * @param length   number of bytes of the text
+   * @param rowCount number of rows
+   */
+  public JsonRowset(byte[] data, int length, int rowCount)
+  {
+    this.data = data;
+    this.length = length;
+    this.rowCount = rowCount;
+  }
+
+  /**
+   * @return the UTF-8 JSON text of the rows, starting at offset 0
+   */
+  public byte[] getData()
+  {
+    return data;
+  }
+
+  /**
+   * @return number of bytes of the JSON text
+   */
+  public int getLength()
+  {
+    return length;
+  }
+
+  public int getRowCount()
+  {
+    return rowCount;
+  }
+
+  @Override
+  public void serialize(JsonGenerator gen, SerializerProvider serializers)
+  throws IOException
+  {
+    gen.writeRawValue(toString());
+  }
+
+  @Override
+  public void serializeWithType(JsonGenerator gen,
+                                SerializerProvider serializers,
+                                TypeSerializer typeSer)
+  throws IOException
+  {
+    serialize(gen, serializers);
+  }
+
+  @Override
+  public String toString()
+  {
+    return new String(data, 0, length, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+/**
+ * Formatters of the date and time fields of bind and load values, which
+ * append the text SimpleDateFormat produces with a GregorianCalendar to a
+ * StringBuilder. They hold no state, so unlike a SimpleDateFormat they are
+ * used by many threads without a lock, and they allocate nothing.
+ * <p>
+ * The fields are taken from local milliseconds, i.e. milliseconds since the
+ * epoch plus the offset of the time zone at that instant. Days before
+ * 1582-10-15 are in the Julian calendar, and years before 1 AD are printed
+ * as years of the BC era, like a GregorianCalendar does.
+ */
+public final class LexicalDateTime
+{
+  private static final long MILLIS_PER_DAY = 86400000L;
+
+  // 1582-10-15, the first day of the Gregorian calendar
+  private static final long GREGORIAN_CUTOVER_DAY = -141427L;
+
+  private LexicalDateTime()
+  {
+  }
+
+  /**
+   * Append the date as yyyy-MM-dd
+   *
+   * @param sb          text
+   * @param localMillis local milliseconds
+   */
+  public static void appendDate(StringBuilder sb, long localMillis)
+  {
+    long day = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+
+    long year;
+    int month;
+    int dayOfMonth;
+    if (day >= GREGORIAN_CUTOVER_DAY)
+    {
+      // see http://howardhinnant.github.io/date_algorithms.html
+      long z = day + 719468;
+      long era = Math.floorDiv(z, 146097);
+      long dayOfEra = z - era * 146097;
+      long yearOfEra =
+          (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096)
+          / 365;
+      long dayOfYear =
+          dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+      long shiftedMonth = (5 * dayOfYear + 2) / 153;
+      dayOfMonth = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+      month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+      year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    }
+    else
+    {
+      // Julian calendar, counted in cycles of 4 years from 1 March 0
+      long z = day + 719470;
+      long cycle = Math.floorDiv(z, 1461);
+      long dayOfCycle = z - cycle * 1461;
+      long yearOfCycle = (dayOfCycle - dayOfCycle / 1460) / 365;
+      long dayOfYear = dayOfCycle - 365 * yearOfCycle;
+      long shiftedMonth = (5 * dayOfYear + 2) / 153;
+      dayOfMonth = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+      month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+      year = yearOfCycle + cycle * 4 + (month <= 2 ? 1 : 0);
+    }
+
+    // the year of the era, as yyyy does not print the era
+    appendDigits(sb, year > 0 ? year : 1 - year, 4);
+    sb.append('-');
+    appendDigits(sb, month, 2);
+    sb.append('-');
+    appendDigits(sb, dayOfMonth, 2);
+  }
+
+  /**
+   * Append the time of the day as HH:mm:ss
+   *
+   * @param sb          text
+   * @param localMillis local milliseconds
+   */
+  public static void appendTime(StringBuilder sb, long localMillis)
+  {
+    int seconds = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / 1000);
+    appendDigits(sb, seconds / 3600, 2);
+    sb.append(':');
+    appendDigits(sb, seconds / 60 % 60, 2);
+    sb.append(':');
+    appendDigits(sb, seconds % 60, 2);
+  }
+
+  /**
+   * Append the milliseconds of the second as SSS
+   *
+   * @param sb          text
+   * @param localMillis local milliseconds
+   */
+  public static void appendMillis(StringBuilder sb, long localMillis)
+  {
+    appendDigits(sb, Math.floorMod(localMillis, 1000L), 3);
+  }
+
+  /**
+   * Append the nanoseconds of the second as nine digits
+   *
+   * @param sb    text
+   * @param nanos nanoseconds, 0 to 999999999
+   */
+  public static void appendNanos(StringBuilder sb, int nanos)
+  {
+    appendDigits(sb, nanos, 9);
+  }
+
+  /**
+   * Append the time zone offset as XXX, i.e. Z for UTC and +HH:mm otherwise
+   *
+   * @param sb     text
+   * @param offset offset in milliseconds
+   */
+  public static void appendOffset(StringBuilder sb, int offset)
+  {
+    if (offset == 0)
+    {
+      sb.append('Z');
+      return;
+    }
+    // seconds of the offset are dropped
+    int minutes = offset / 60000;
+    if (minutes >= 0)
+    {
+      sb.append('+');
+    }
+    else
+    {
+      sb.append('-');
+      minutes = -minutes;
+    }
+    appendDigits(sb, minutes / 60, 2);
+    sb.append(':');
+    appendDigits(sb, minutes % 60, 2);
+  }
+
+  /**
+   * Append a non-negative number with at least the given number of digits
+   */
+  private static void appendDigits(StringBuilder sb, long value, int width)
+  {
+    int digits = 1;
+    for (long rest = value; rest >= 10; rest /= 10)
+    {
+      digits++;
+    }
+    for (int i = digits; i < width; i++)
+    {
+      sb.append('0');
+    }
+    sb.append(value);
+  }
+}
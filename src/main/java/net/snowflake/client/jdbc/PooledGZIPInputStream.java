@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates gzip content like {@link java.util.zip.GZIPInputStream}, with the
+ * inflater and the input buffer taken from the {@link ChunkStreamPool}. They
+ * are given back when the stream is closed.
+ * <p>
+ * Concatenated gzip members are read one after the other.
+ */
+final class PooledGZIPInputStream extends InflaterInputStream
+{
+  private static final int GZIP_MAGIC = 0x8b1f;
+
+  // header flags
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private final ChunkStreamPool pool;
+
+  private final CRC32 crc = new CRC32();
+
+  private boolean eos = false;
+
+  private boolean released = false;
+
+  /**
+   * Read the gzip header from the source
+   *
+   * @param in   gzip content
+   * @param pool pool of the inflater and the buffer
+   * @throws IOException if the header is invalid or cannot be read
+   */
+  PooledGZIPInputStream(InputStream in, ChunkStreamPool pool)
+  throws IOException
+  {
+    super(in, pool.inflaters.acquire(), 1);
+    this.pool = pool;
+    buf = pool.buffers.acquire();
+    try
+    {
+      readHeader(in);
+    }
+    catch (IOException | RuntimeException ex)
+    {
+      release();
+      throw ex;
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (released)
+    {
+      throw new IOException("Stream closed");
+    }
+    while (!eos)
+    {
+      int n = super.read(b, off, len);
+      if (n != -1)
+      {
+        crc.update(b, off, n);
+        return n;
+      }
+      eos = readTrailer();
+    }
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    if (!released)
+    {
+      try
+      {
+        super.close();
+      }
+      finally
+      {
+        release();
+      }
+    }
+  }
+
+  private void release()
+  {
+    released = true;
+    eos = true;
+    pool.inflaters.release(inf);
+    pool.buffers.release(buf);
+  }
+
+  /**
+   * Read a member header, the CRC is used for the header checksum
+   *
+   * @return number of bytes of the header
+   */
+  private int readHeader(InputStream source) throws IOException
+  {
+    CheckedInputStream in = new CheckedInputStream(source, crc);
+    crc.reset();
+    if (readUShort(in) != GZIP_MAGIC)
+    {
+      throw new ZipException("Not in GZIP format");
+    }
+    if (readUByte(in) != 8)
+    {
+      throw new ZipException("Unsupported compression method");
+    }
+    int flags = readUByte(in);
+    // modification time, extra flags and operating system
+    skipBytes(in, 6);
+    int n = 2 + 2 + 6;
+    if ((flags & FEXTRA) == FEXTRA)
+    {
+      int length = readUShort(in);
+      skipBytes(in, length);
+      n += length + 2;
+    }
+    if ((flags & FNAME) == FNAME)
+    {
+      do
+      {
+        n++;
+      }
+      while (readUByte(in) != 0);
+    }
+    if ((flags & FCOMMENT) == FCOMMENT)
+    {
+      do
+      {
+        n++;
+      }
+      while (readUByte(in) != 0);
+    }
+    if ((flags & FHCRC) == FHCRC)
+    {
+      int headerCrc = (int) crc.getValue() & 0xffff;
+      if (readUShort(in) != headerCrc)
+      {
+        throw new ZipException("Corrupt GZIP header");
+      }
+      n += 2;
+    }
+    crc.reset();
+    return n;
+  }
+
+  /**
+   * Check the trailer of the member, then start the next member if there is
+   * one
+   *
+   * @return true if the content ends
+   */
+  private boolean readTrailer() throws IOException
+  {
+    InputStream in = this.in;
+    int remaining = inf.getRemaining();
+    if (remaining > 0)
+    {
+      in = new SequenceInputStream(
+          new ByteArrayInputStream(buf, len - remaining, remaining),
+          new FilterInputStream(in)
+          {
+            @Override
+            public void close()
+            {
+            }
+          });
+    }
+    if (readUInt(in) != crc.getValue() ||
+        readUInt(in) != (inf.getBytesWritten() & 0xffffffffL))
+    {
+      throw new ZipException("Corrupt GZIP trailer");
+    }
+
+    // the header of a next member follows the trailer
+    if (this.in.available() > 0 || remaining > 26)
+    {
+      int n = 8;
+      try
+      {
+        n += readHeader(in);
+      }
+      catch (IOException ex)
+      {
+        // trailing garbage is ignored like GZIPInputStream does
+        return true;
+      }
+      inf.reset();
+      if (remaining > n)
+      {
+        inf.setInput(buf, len - remaining + n, remaining - n);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private long readUInt(InputStream in) throws IOException
+  {
+    long s = readUShort(in);
+    return ((long) readUShort(in) << 16) | s;
+  }
+
+  private int readUShort(InputStream in) throws IOException
+  {
+    int b = readUByte(in);
+    return (readUByte(in) << 8) | b;
+  }
+
+  private int readUByte(InputStream in) throws IOException
+  {
+    int b = in.read();
+    if (b == -1)
+    {
+      throw new EOFException();
+    }
+    return b;
+  }
+
+  private void skipBytes(InputStream in, int n) throws IOException
+  {
+    while (n > 0)
+    {
+      readUByte(in);
+      n--;
+    }
+  }
+}
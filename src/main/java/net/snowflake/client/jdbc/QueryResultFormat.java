@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+/**
+ * Encoding of the rows of a query result
+ */
+public enum QueryResultFormat
+{
+  // rows are JSON arrays of strings
+  JSON,
+
+  // rows are Apache Arrow IPC record batches
+  ARROW;
+
+  /**
+   * Look up the format by the name the server uses for it
+   *
+   * @param name format name, case insensitive
+   * @return the format, JSON if the name is null or unknown
+   */
+  public static QueryResultFormat lookupByName(String name)
+  {
+    if (name != null)
+    {
+      for (QueryResultFormat format : QueryResultFormat.values())
+      {
+        if (format.name().equalsIgnoreCase(name))
+        {
+          return format;
+        }
+      }
+    }
+    return JSON;
+  }
+}
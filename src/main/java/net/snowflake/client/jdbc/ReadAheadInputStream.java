@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Input stream which reads its source on another thread, one stage of the
+ * pipeline that downloads, inflates and parses a result chunk.
+ * <p>
+ * The reading thread hands the data over in buffers through a bounded queue,
+ * so it reads at most a fixed number of buffers ahead of the consumer and
+ * blocks until the consumer catches up. Every read of the source is handed
+ * over as soon as it returns, so data arriving slowly is not held back until
+ * a buffer is full. A failure of the source is thrown by the read after the
+ * data read before the failure.
+ */
+final class ReadAheadInputStream extends InputStream
+{
+  // marks the end of the source in the queue of filled buffers
+  private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+  private final InputStream source;
+
+  private final int bufferSize;
+
+  // buffers filled by the reading thread, in the order of the source
+  private final BlockingQueue<ByteBuffer> filled;
+
+  // buffers given back by the consumer
+  private final BlockingQueue<byte[]> free;
+
+  // set before the stream is handed out
+  private Future<?> reader;
+
+  // set by whichever comes first, the reading thread or close(), which then
+  // owns the source
+  private final AtomicBoolean sourceClaimed = new AtomicBoolean(false);
+
+  // buffer the consumer is reading from
+  private ByteBuffer current = null;
+
+  // failure of the reading thread, thrown after the data read before it
+  private volatile Throwable readError = null;
+
+  private volatile boolean closed = false;
+
+  /**
+   * Start reading the source on a thread of the executor
+   *
+   * @param source      source stream, closed by the reading thread once it
+   *                    is read or this stream is closed
+   * @param bufferSize  size of the buffers handed over
+   * @param bufferCount number of buffers the reading thread can read ahead
+   * @param executor    executor running the reading thread
+   */
+  ReadAheadInputStream(InputStream source, int bufferSize, int bufferCount,
+                       ExecutorService executor)
+  {
+    this(source, bufferSize, bufferCount);
+    this.reader = executor.submit(readTask());
+  }
+
+  private ReadAheadInputStream(InputStream source, int bufferSize,
+                               int bufferCount)
+  {
+    this.source = source;
+    this.bufferSize = bufferSize;
+    this.filled = new ArrayBlockingQueue<>(bufferCount + 1);
+    this.free = new ArrayBlockingQueue<>(bufferCount + 1);
+    for (int i = 0; i < bufferCount; i++)
+    {
+      free.add(new byte[bufferSize]);
+    }
+  }
+
+  /**
+   * Read the source ahead on a thread of the download scheduler, so the
+   * reading thread counts against the cap of the download threads
+   *
+   * @param source      source stream
+   * @param bufferSize  size of the buffers handed over
+   * @param bufferCount number of buffers the reading thread can read ahead
+   * @param scheduler   scheduler running the reading thread
+   * @return the stream reading ahead, or the source itself if the scheduler
+   * has no thread to spare
+   */
+  static InputStream readAhead(InputStream source, int bufferSize,
+                               int bufferCount,
+                               ChunkDownloadScheduler scheduler)
+  {
+    ReadAheadInputStream stream =
+        new ReadAheadInputStream(source, bufferSize, bufferCount);
+    Future<?> reader = scheduler.tryExecute(stream.readTask());
+    if (reader == null)
+    {
+      return source;
+    }
+    stream.reader = reader;
+    return stream;
+  }
+
+  private Runnable readTask()
+  {
+    return new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        readSource();
+      }
+    };
+  }
+
+  private void readSource()
+  {
+    if (!sourceClaimed.compareAndSet(false, true))
+    {
+      // closed before the reading thread started
+      return;
+    }
+    try
+    {
+      while (!closed)
+      {
+        byte[] buf = free.take();
+        int len = source.read(buf, 0, bufferSize);
+        if (len == -1)
+        {
+          break;
+        }
+        if (len == 0)
+        {
+          free.put(buf);
+          continue;
+        }
+        filled.put(ByteBuffer.wrap(buf, 0, len));
+      }
+    }
+    catch (Throwable ex)
+    {
+      readError = ex;
+    }
+    finally
+    {
+      try
+      {
+        source.close();
+      }
+      catch (IOException ex)
+      {
+        if (readError == null)
+        {
+          readError = ex;
+        }
+      }
+      // the queue has a free slot for the marker as one buffer more than
+      // the buffers in use fits
+      filled.offer(END_OF_STREAM);
+    }
+  }
+
+  /**
+   * @return the buffer to read from, null at the end of the stream
+   */
+  private ByteBuffer currentBuffer() throws IOException
+  {
+    if (closed)
+    {
+      throw new IOException("Stream closed");
+    }
+    if (current != null && current.hasRemaining())
+    {
+      return current;
+    }
+    if (current == END_OF_STREAM)
+    {
+      return null;
+    }
+    if (current != null)
+    {
+      free.offer(current.array());
+    }
+    try
+    {
+      current = filled.take();
+    }
+    catch (InterruptedException ex)
+    {
+      current = null;
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for data");
+    }
+    if (current == END_OF_STREAM)
+    {
+      Throwable ex = readError;
+      if (ex != null)
+      {
+        throw ex instanceof IOException ?
+              (IOException) ex : new IOException(ex);
+      }
+      return null;
+    }
+    return current;
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    ByteBuffer buf = currentBuffer();
+    return buf == null ? -1 : buf.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException
+  {
+    if (len == 0)
+    {
+      return 0;
+    }
+    ByteBuffer buf = currentBuffer();
+    if (buf == null)
+    {
+      return -1;
+    }
+    int count = Math.min(len, buf.remaining());
+    buf.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public int available()
+  {
+    return current == null ? 0 : current.remaining();
+  }
+
+  /**
+   * Stop the reading thread. The source is closed by the reading thread as
+   * soon as its current read returns, or right away if the thread has not
+   * started yet.
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (closed)
+    {
+      return;
+    }
+    closed = true;
+    reader.cancel(true);
+    filled.clear();
+    if (sourceClaimed.compareAndSet(false, true))
+    {
+      source.close();
+    }
+  }
+}
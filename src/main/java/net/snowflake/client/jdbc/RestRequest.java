@@ -108,6 +108,9 @@ public class RestRequest
     // label the reason to break retry
     String breakRetryReason = "";
 
+    // true if the caller stopped the request, which is not a failure
+    boolean canceled = false;
+
     // try request till we get a good response or retry timeout
     while (true)
     {
@@ -216,7 +219,7 @@ public class RestRequest
         logger.debug("HTTP response code: {}",
                      response.getStatusLine().getStatusCode());
 
-        if (response.getStatusLine().getStatusCode() != 200)
+        if (!isSuccess(httpRequest, response))
         {
           logger.debug("Error response not retriable, " +
                        "HTTP Response Code={}, request={}",
@@ -260,6 +263,7 @@ public class RestRequest
           logger.debug(
               "Stop retrying since canceling is requested");
           breakRetryReason = "canceling is requested";
+          canceled = true;
           break;
         }
 
@@ -364,20 +368,28 @@ public class RestRequest
       }
     }
 
+    if (canceled)
+    {
+      // e.g. an aborted request for a result chunk that was fetched by
+      // another request, no error to log or report
+      logger.debug("Returning response of canceled request: {}",
+                   httpRequest);
+      return response;
+    }
+
     if (response == null)
     {
       logger.error("Returning null response for request: {}",
                    httpRequest);
     }
-    else if (response.getStatusLine().getStatusCode() != 200)
+    else if (!isSuccess(httpRequest, response))
     {
       logger.error(
           "Error response: HTTP Response code={}, request={}",
           response.getStatusLine().getStatusCode(),
           httpRequest);
     }
-    if ((response == null ||
-         response.getStatusLine().getStatusCode() != 200))
+    if (response == null || !isSuccess(httpRequest, response))
     {
 
       String eventName;
@@ -413,4 +425,18 @@ public class RestRequest
     }
     return response;
   }
+
+  /**
+   * @param httpRequest request
+   * @param response    response to the request
+   * @return true if the status code of the response is OK, or Partial
+   * Content for a range request
+   */
+  private static boolean isSuccess(HttpRequestBase httpRequest,
+                                   CloseableHttpResponse response)
+  {
+    int statusCode = response.getStatusLine().getStatusCode();
+    return statusCode == 200 ||
+           (statusCode == 206 && httpRequest.containsHeader("Range"));
+  }
 }
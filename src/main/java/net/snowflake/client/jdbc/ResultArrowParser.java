@@ -0,0 +1,942 @@
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.jdbc.SnowflakeResultChunk.ColumnVectorType;
+import net.snowflake.common.core.SqlState;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Reads result chunks encoded as an Apache Arrow IPC stream.
+ * <p>
+ * Only the part of the format the server produces is supported: a schema
+ * message followed by record batches of flat columns and timestamp structs,
+ * without dictionaries or buffer compression. The flatbuffer metadata is
+ * decoded directly, the column buffers are kept as they are received and a
+ * cell is only converted to text when it is accessed. The text is the same as
+ * the one of the JSON result format, so the result set converts it the same
+ * way.
+ */
+public class ResultArrowParser
+{
+  // message header types
+  private static final int HEADER_SCHEMA = 1;
+  private static final int HEADER_RECORD_BATCH = 3;
+
+  // types of the Type union
+  private static final int TYPE_INT = 2;
+  private static final int TYPE_FLOATING_POINT = 3;
+  private static final int TYPE_BINARY = 4;
+  private static final int TYPE_UTF8 = 5;
+  private static final int TYPE_BOOL = 6;
+  private static final int TYPE_DECIMAL = 7;
+  private static final int TYPE_DATE = 8;
+  private static final int TYPE_STRUCT = 13;
+
+  private static final int PRECISION_SINGLE = 1;
+  private static final int PRECISION_DOUBLE = 2;
+
+  private static final int DATE_UNIT_DAY = 0;
+  private static final int DATE_UNIT_MILLISECOND = 1;
+
+  private static final long MILLIS_PER_DAY = 86400000L;
+
+  // precedes the length of a message since format version 0.15
+  private static final int CONTINUATION_MARKER = 0xFFFFFFFF;
+
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private final InputStream in;
+
+  private final byte[] lengthBuffer = new byte[4];
+
+  // columns of the stream, known once the schema message is read
+  private ArrowField[] fields;
+
+  // record batch which is currently read
+  private ByteBuffer batchMetadata;
+  private ByteBuffer batchBody;
+  private int nodesStart;
+  private int nodeCount;
+  private int nodeIndex;
+  private int buffersStart;
+  private int bufferCount;
+  private int bufferIndex;
+
+  public ResultArrowParser(InputStream in)
+  {
+    this.in = in;
+  }
+
+  /**
+   * Read the whole stream into a chunk. The rows of a record batch can be
+   * consumed as soon as the record batch is read.
+   *
+   * @param resultChunk     chunk to fill
+   * @param streamingChunks signal the consumer after every record batch
+   * @throws SnowflakeSQLException if the stream is not a valid result
+   * @throws IOException           if the stream can not be read
+   */
+  public void parse(SnowflakeResultChunk resultChunk, boolean streamingChunks)
+  throws SnowflakeSQLException, IOException
+  {
+    resultChunk.allocateColumnVectors();
+
+    int firstRow = 0;
+    ArrowBatch batch;
+    while ((batch = nextBatch(firstRow)) != null)
+    {
+      addBatch(resultChunk, batch);
+      firstRow += batch.rowCount;
+      if (streamingChunks)
+      {
+        resultChunk.signalRowsReady();
+      }
+    }
+    resultChunk.ensureRowsComplete();
+  }
+
+  /**
+   * Read a complete Arrow result into a new chunk. Used for the rows which
+   * are returned with the query response, whose row count is not known
+   * upfront.
+   *
+   * @param data              Arrow IPC stream
+   * @param colCount          number of columns
+   * @param columnVectorTypes vector type per column, may be null
+   * @return chunk with all rows of the stream
+   * @throws SnowflakeSQLException if the data is not a valid result
+   */
+  public static SnowflakeResultChunk parseChunk(
+      byte[] data, int colCount, ColumnVectorType[] columnVectorTypes)
+  throws SnowflakeSQLException
+  {
+    ResultArrowParser parser =
+        new ResultArrowParser(new ByteArrayInputStream(data));
+    List<ArrowBatch> batches = new ArrayList<>();
+    int rowCount = 0;
+    try
+    {
+      ArrowBatch batch;
+      while ((batch = parser.nextBatch(rowCount)) != null)
+      {
+        batches.add(batch);
+        rowCount += batch.rowCount;
+      }
+    }
+    catch (IOException ex)
+    {
+      // not expected when reading from memory
+      throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
+                                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                      ex.getLocalizedMessage());
+    }
+
+    SnowflakeResultChunk chunk = SnowflakeResultChunk.createArrowChunk(
+        null, rowCount, colCount, data.length);
+    chunk.setColumnVectorTypes(columnVectorTypes);
+    chunk.allocateColumnVectors();
+    for (ArrowBatch batch : batches)
+    {
+      addBatch(chunk, batch);
+    }
+    chunk.ensureRowsComplete();
+    chunk.setDownloadState(SnowflakeResultChunk.DownloadState.SUCCESS);
+    return chunk;
+  }
+
+  private static void addBatch(SnowflakeResultChunk chunk, ArrowBatch batch)
+  throws SnowflakeSQLException
+  {
+    if (batch.columns.length != chunk.getColCount())
+    {
+      throw error("Exception: expected " + chunk.getColCount() +
+                  " columns and received " + batch.columns.length);
+    }
+    if (batch.firstRow + batch.rowCount > chunk.getRowCount())
+    {
+      throw error("Exception: expected " + chunk.getRowCount() +
+                  " rows and received " + (batch.firstRow + batch.rowCount));
+    }
+    fillColumnVectors(chunk, batch);
+    chunk.addArrowBatch(batch);
+  }
+
+  /**
+   * Copy the values of the vector columns of a record batch to the vectors of
+   * the chunk. Values which do not fit the vector type are left to the text
+   * conversion.
+   */
+  private static void fillColumnVectors(SnowflakeResultChunk chunk,
+                                        ArrowBatch batch)
+  {
+    for (int col = 0; col < batch.columns.length; col++)
+    {
+      ColumnVectorType type = chunk.getColumnVectorType(col);
+      if (type == null)
+      {
+        continue;
+      }
+      ArrowColumn column = batch.columns[col];
+      ArrowField field = column.field;
+      boolean isLong = type == ColumnVectorType.LONG &&
+                       field.typeId == TYPE_INT && field.scale == 0;
+      boolean isLongDecimal = type == ColumnVectorType.LONG &&
+                              field.typeId == TYPE_DECIMAL &&
+                              field.decimalScale == 0;
+      boolean isDouble = type == ColumnVectorType.DOUBLE &&
+                         field.typeId == TYPE_FLOATING_POINT;
+      if (!isLong && !isLongDecimal && !isDouble)
+      {
+        continue;
+      }
+
+      for (int i = 0; i < batch.rowCount; i++)
+      {
+        int row = batch.firstRow + i;
+        if (column.isNull(i))
+        {
+          chunk.setNullValue(row, col);
+        }
+        else if (isLong)
+        {
+          chunk.setLongValue(row, col, column.getLong(i));
+        }
+        else if (isLongDecimal)
+        {
+          if (column.isLongDecimal(i))
+          {
+            chunk.setLongValue(row, col, column.getDecimalLow(i));
+          }
+        }
+        else
+        {
+          chunk.setDoubleValue(row, col, column.getDouble(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Read messages up to the next record batch
+   *
+   * @param firstRow row of the chunk the first row of the batch is stored at
+   * @return the record batch, null at the end of the stream
+   */
+  ArrowBatch nextBatch(int firstRow) throws SnowflakeSQLException, IOException
+  {
+    while (true)
+    {
+      ByteBuffer metadata = readMessage();
+      if (metadata == null)
+      {
+        return null;
+      }
+      try
+      {
+        FlatTable message = FlatTable.root(metadata);
+        int headerType = message.getByte(1, (byte) 0);
+        long bodyLength = message.getLong(3, 0);
+        if (bodyLength < 0 || bodyLength > Integer.MAX_VALUE)
+        {
+          throw error("Invalid Arrow message body length " + bodyLength);
+        }
+        byte[] body = new byte[(int) bodyLength];
+        readFully(body, false);
+
+        FlatTable header = message.getTable(2);
+        if (header == null)
+        {
+          throw error("Arrow message without header");
+        }
+        if (headerType == HEADER_SCHEMA)
+        {
+          fields = readSchema(header);
+        }
+        else if (headerType == HEADER_RECORD_BATCH)
+        {
+          if (fields == null)
+          {
+            throw error("Arrow record batch before the schema");
+          }
+          return readRecordBatch(header, body, firstRow);
+        }
+        else
+        {
+          throw error("Unsupported Arrow message type " + headerType);
+        }
+      }
+      catch (IndexOutOfBoundsException ex)
+      {
+        throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
+                                        ErrorCode.INTERNAL_ERROR
+                                            .getMessageCode(),
+                                        "Invalid Arrow message");
+      }
+    }
+  }
+
+  /**
+   * @return the metadata of the next message, null at the end of the stream
+   */
+  private ByteBuffer readMessage() throws SnowflakeSQLException, IOException
+  {
+    if (!readFully(lengthBuffer, true))
+    {
+      return null;
+    }
+    int length = readLength();
+    if (length == CONTINUATION_MARKER)
+    {
+      readFully(lengthBuffer, false);
+      length = readLength();
+    }
+    if (length == 0)
+    {
+      return null;
+    }
+    if (length < 0)
+    {
+      throw error("Invalid Arrow message length " + length);
+    }
+    byte[] metadata = new byte[length];
+    readFully(metadata, false);
+    return ByteBuffer.wrap(metadata).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private int readLength()
+  {
+    return (lengthBuffer[0] & 0xff) |
+           (lengthBuffer[1] & 0xff) << 8 |
+           (lengthBuffer[2] & 0xff) << 16 |
+           (lengthBuffer[3] & 0xff) << 24;
+  }
+
+  /**
+   * @param eofAllowed return false instead of failing if the stream ends
+   *                   before the first byte
+   * @return false if the stream ended
+   */
+  private boolean readFully(byte[] buffer, boolean eofAllowed)
+  throws SnowflakeSQLException, IOException
+  {
+    int read = 0;
+    while (read < buffer.length)
+    {
+      int len = in.read(buffer, read, buffer.length - read);
+      if (len < 0)
+      {
+        if (read == 0 && eofAllowed)
+        {
+          return false;
+        }
+        throw error("Unexpected end of Arrow stream");
+      }
+      read += len;
+    }
+    return true;
+  }
+
+  private static ArrowField[] readSchema(FlatTable schema)
+  throws SnowflakeSQLException
+  {
+    ArrowField[] fields = new ArrowField[schema.getVectorLength(1)];
+    for (int i = 0; i < fields.length; i++)
+    {
+      fields[i] = readField(schema.getVectorTable(1, i));
+    }
+    return fields;
+  }
+
+  private static ArrowField readField(FlatTable table)
+  throws SnowflakeSQLException
+  {
+    ArrowField field = new ArrowField();
+    field.name = table.getString(0);
+    field.typeId = table.getByte(2, (byte) 0) & 0xff;
+
+    for (int i = 0; i < table.getVectorLength(6); i++)
+    {
+      FlatTable keyValue = table.getVectorTable(6, i);
+      String key = keyValue.getString(0);
+      String value = keyValue.getString(1);
+      if ("logicalType".equals(key))
+      {
+        field.logicalType = value;
+      }
+      else if ("scale".equals(key) && value != null)
+      {
+        field.scale = Integer.parseInt(value);
+      }
+    }
+
+    field.children = new ArrowField[table.getVectorLength(5)];
+    for (int i = 0; i < field.children.length; i++)
+    {
+      field.children[i] = readField(table.getVectorTable(5, i));
+    }
+
+    if (table.getTable(4) != null)
+    {
+      throw error("Unsupported dictionary encoded Arrow column " + field.name);
+    }
+
+    FlatTable type = table.getTable(3);
+    switch (field.typeId)
+    {
+      case TYPE_INT:
+        field.bitWidth = type.getInt(0, 0);
+        if (!type.getBoolean(1, false) ||
+            (field.bitWidth != 8 && field.bitWidth != 16 &&
+             field.bitWidth != 32 && field.bitWidth != 64))
+        {
+          throw error("Unsupported Arrow integer type of column " + field.name);
+        }
+        break;
+
+      case TYPE_FLOATING_POINT:
+        field.precision = type.getShort(0, (short) 0);
+        if (field.precision != PRECISION_SINGLE &&
+            field.precision != PRECISION_DOUBLE)
+        {
+          throw error("Unsupported Arrow floating point type of column " +
+                      field.name);
+        }
+        break;
+
+      case TYPE_DECIMAL:
+        field.decimalScale = type.getInt(1, 0);
+        if (type.getInt(2, 128) != 128)
+        {
+          throw error("Unsupported Arrow decimal type of column " + field.name);
+        }
+        break;
+
+      case TYPE_DATE:
+        field.bitWidth =
+            type.getShort(0, (short) DATE_UNIT_MILLISECOND) == DATE_UNIT_DAY ?
+            32 : 64;
+        break;
+
+      case TYPE_STRUCT:
+        field.epoch = findChild(field, "epoch");
+        field.fraction = findChild(field, "fraction");
+        field.timezone = findChild(field, "timezone");
+        if (field.epoch < 0)
+        {
+          throw error("Unsupported Arrow struct column " + field.name);
+        }
+        for (ArrowField child : field.children)
+        {
+          if (child.typeId != TYPE_INT)
+          {
+            throw error("Unsupported Arrow struct column " + field.name);
+          }
+        }
+        break;
+
+      case TYPE_UTF8:
+      case TYPE_BINARY:
+      case TYPE_BOOL:
+        break;
+
+      default:
+        throw error("Unsupported Arrow type " + field.typeId + " of column " +
+                    field.name);
+    }
+    return field;
+  }
+
+  private static int findChild(ArrowField field, String name)
+  {
+    for (int i = 0; i < field.children.length; i++)
+    {
+      if (name.equals(field.children[i].name))
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private ArrowBatch readRecordBatch(FlatTable recordBatch, byte[] body,
+                                     int firstRow)
+  throws SnowflakeSQLException
+  {
+    long length = recordBatch.getLong(0, 0);
+    if (length < 0 || length > Integer.MAX_VALUE)
+    {
+      throw error("Invalid Arrow record batch length " + length);
+    }
+    if (recordBatch.getTable(3) != null)
+    {
+      throw error("Unsupported compressed Arrow record batch");
+    }
+
+    batchMetadata = recordBatch.bb;
+    batchBody = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+    nodesStart = recordBatch.getVectorStart(1);
+    nodeCount = recordBatch.getVectorLength(1);
+    nodeIndex = 0;
+    buffersStart = recordBatch.getVectorStart(2);
+    bufferCount = recordBatch.getVectorLength(2);
+    bufferIndex = 0;
+
+    ArrowColumn[] columns = new ArrowColumn[fields.length];
+    for (int i = 0; i < fields.length; i++)
+    {
+      columns[i] = readColumn(fields[i], (int) length);
+    }
+    batchMetadata = null;
+    batchBody = null;
+    return new ArrowBatch(firstRow, (int) length, columns);
+  }
+
+  /**
+   * Read the field node and the buffers of a column of the current record
+   * batch. The buffers of a struct are followed by the ones of its children.
+   */
+  private ArrowColumn readColumn(ArrowField field, int rowCount)
+  throws SnowflakeSQLException
+  {
+    if (nodeIndex >= nodeCount)
+    {
+      throw error("Arrow record batch has too few field nodes");
+    }
+    int node = nodesStart + 16 * nodeIndex++;
+    long length = batchMetadata.getLong(node);
+    long nullCount = batchMetadata.getLong(node + 8);
+    if (length != rowCount || nullCount < 0 || nullCount > length)
+    {
+      throw error("Invalid Arrow field node of column " + field.name);
+    }
+
+    ArrowColumn column = new ArrowColumn(field, batchBody);
+    int validity = nextBuffer(nullCount > 0 ? (rowCount + 7) / 8 : 0);
+    column.validity = nullCount > 0 ? validity : -1;
+
+    switch (field.typeId)
+    {
+      case TYPE_UTF8:
+      case TYPE_BINARY:
+        column.offsets = nextBuffer(4L * (rowCount + 1));
+        column.data = nextBuffer(0);
+        // offsets are increasing, so the first and the last one bound all
+        int first = batchBody.getInt(column.offsets);
+        int last = batchBody.getInt(column.offsets + 4 * rowCount);
+        if (first < 0 || last < first || last > bufferLength(bufferIndex - 1))
+        {
+          throw error("Invalid Arrow offsets of column " + field.name);
+        }
+        break;
+
+      case TYPE_BOOL:
+        column.data = nextBuffer((rowCount + 7) / 8);
+        break;
+
+      case TYPE_DECIMAL:
+        column.data = nextBuffer(16L * rowCount);
+        break;
+
+      case TYPE_FLOATING_POINT:
+        column.data = nextBuffer(
+            (field.precision == PRECISION_DOUBLE ? 8L : 4L) * rowCount);
+        break;
+
+      case TYPE_STRUCT:
+        column.children = new ArrowColumn[field.children.length];
+        for (int i = 0; i < field.children.length; i++)
+        {
+          column.children[i] = readColumn(field.children[i], rowCount);
+        }
+        break;
+
+      default:
+        column.data = nextBuffer(field.bitWidth / 8L * rowCount);
+        break;
+    }
+    return column;
+  }
+
+  /**
+   * @param minLength minimum length of the buffer in bytes
+   * @return offset of the next buffer of the current record batch in the body
+   */
+  private int nextBuffer(long minLength) throws SnowflakeSQLException
+  {
+    if (bufferIndex >= bufferCount)
+    {
+      throw error("Arrow record batch has too few buffers");
+    }
+    int buffer = buffersStart + 16 * bufferIndex++;
+    long offset = batchMetadata.getLong(buffer);
+    long length = batchMetadata.getLong(buffer + 8);
+    if (offset < 0 || length < minLength ||
+        offset + length > batchBody.capacity())
+    {
+      throw error("Invalid Arrow buffer");
+    }
+    return (int) offset;
+  }
+
+  private int bufferLength(int index)
+  {
+    return (int) batchMetadata.getLong(buffersStart + 16 * index + 8);
+  }
+
+  private static SnowflakeSQLException error(String message)
+  {
+    return new SnowflakeSQLException(SqlState.INTERNAL_ERROR,
+                                     ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                     message);
+  }
+
+  /**
+   * Column of the schema
+   */
+  private static final class ArrowField
+  {
+    private String name;
+    private int typeId;
+
+    // bits per value of integers and dates
+    private int bitWidth;
+
+    // precision of floating point numbers
+    private int precision;
+
+    // scale of decimals
+    private int decimalScale;
+
+    // Snowflake type and scale from the field metadata
+    private String logicalType;
+    private int scale;
+
+    private ArrowField[] children;
+
+    // members of timestamp structs, -1 if missing
+    private int epoch = -1;
+    private int fraction = -1;
+    private int timezone = -1;
+  }
+
+  /**
+   * Rows of a record batch
+   */
+  static final class ArrowBatch
+  {
+    // row of the chunk the first row of the batch is stored at
+    final int firstRow;
+    final int rowCount;
+    final ArrowColumn[] columns;
+
+    ArrowBatch(int firstRow, int rowCount, ArrowColumn[] columns)
+    {
+      this.firstRow = firstRow;
+      this.rowCount = rowCount;
+      this.columns = columns;
+    }
+  }
+
+  /**
+   * Values of one column of a record batch
+   */
+  static final class ArrowColumn
+  {
+    private final ArrowField field;
+
+    // little endian body of the record batch
+    private final ByteBuffer body;
+
+    // offsets of the buffers in the body, -1 if there is no validity buffer
+    private int validity = -1;
+    private int offsets;
+    private int data;
+
+    private ArrowColumn[] children;
+
+    ArrowColumn(ArrowField field, ByteBuffer body)
+    {
+      this.field = field;
+      this.body = body;
+    }
+
+    boolean isNull(int row)
+    {
+      return validity >= 0 &&
+             (body.get(validity + (row >> 3)) & (1 << (row & 7))) == 0;
+    }
+
+    long getLong(int row)
+    {
+      switch (field.bitWidth)
+      {
+        case 8:
+          return body.get(data + row);
+        case 16:
+          return body.getShort(data + 2 * row);
+        case 32:
+          return body.getInt(data + 4 * row);
+        default:
+          return body.getLong(data + 8 * row);
+      }
+    }
+
+    double getDouble(int row)
+    {
+      return field.precision == PRECISION_DOUBLE ?
+             body.getDouble(data + 8 * row) :
+             body.getFloat(data + 4 * row);
+    }
+
+    /**
+     * @return true if the 128 bit decimal is in the range of a long
+     */
+    boolean isLongDecimal(int row)
+    {
+      long high = body.getLong(data + 16 * row + 8);
+      return high == getDecimalLow(row) >> 63;
+    }
+
+    long getDecimalLow(int row)
+    {
+      return body.getLong(data + 16 * row);
+    }
+
+    BigInteger getDecimal(int row)
+    {
+      byte[] bigEndian = new byte[16];
+      for (int i = 0; i < 16; i++)
+      {
+        bigEndian[i] = body.get(data + 16 * row + 15 - i);
+      }
+      return new BigInteger(bigEndian);
+    }
+
+    /**
+     * @return the value of the cell in the text format of JSON results,
+     * null for a null value
+     */
+    String getText(int row)
+    {
+      if (isNull(row))
+      {
+        return null;
+      }
+      switch (field.typeId)
+      {
+        case TYPE_INT:
+          long value = getLong(row);
+          return field.scale == 0 ?
+                 Long.toString(value) :
+                 BigDecimal.valueOf(value, field.scale).toPlainString();
+
+        case TYPE_DECIMAL:
+          if (isLongDecimal(row))
+          {
+            return BigDecimal.valueOf(getDecimalLow(row), field.decimalScale)
+                .toPlainString();
+          }
+          return new BigDecimal(getDecimal(row), field.decimalScale)
+              .toPlainString();
+
+        case TYPE_FLOATING_POINT:
+          double d = getDouble(row);
+          if (d == Double.POSITIVE_INFINITY)
+          {
+            return "inf";
+          }
+          else if (d == Double.NEGATIVE_INFINITY)
+          {
+            return "-inf";
+          }
+          return Double.toString(d);
+
+        case TYPE_UTF8:
+        {
+          int start = body.getInt(offsets + 4 * row);
+          int end = body.getInt(offsets + 4 * row + 4);
+          return new String(body.array(), data + start, end - start,
+                            StandardCharsets.UTF_8);
+        }
+
+        case TYPE_BINARY:
+        {
+          int start = body.getInt(offsets + 4 * row);
+          int end = body.getInt(offsets + 4 * row + 4);
+          char[] hex = new char[2 * (end - start)];
+          for (int i = start; i < end; i++)
+          {
+            int b = body.get(data + i);
+            hex[2 * (i - start)] = HEX_DIGITS[(b >> 4) & 0xf];
+            hex[2 * (i - start) + 1] = HEX_DIGITS[b & 0xf];
+          }
+          return new String(hex);
+        }
+
+        case TYPE_BOOL:
+          return (body.get(data + (row >> 3)) & (1 << (row & 7))) != 0 ?
+                 "1" : "0";
+
+        case TYPE_DATE:
+          return field.bitWidth == 32 ?
+                 Long.toString(getLong(row)) :
+                 Long.toString(Math.floorDiv(getLong(row), MILLIS_PER_DAY));
+
+        case TYPE_STRUCT:
+          return getTimestampText(row);
+
+        default:
+          // rejected when the schema is read
+          throw new IllegalStateException("Unsupported Arrow type " +
+                                          field.typeId);
+      }
+    }
+
+    /**
+     * Timestamps are stored as seconds or scaled epoch, optionally nanoseconds
+     * and for TIMESTAMP_TZ the time zone index. The text is the decimal epoch
+     * with the scale of the column followed by the time zone index.
+     */
+    private String getTimestampText(int row)
+    {
+      long epoch = children[field.epoch].getLong(row);
+      BigDecimal value;
+      if (field.fraction >= 0)
+      {
+        value = BigDecimal.valueOf(epoch)
+            .add(BigDecimal.valueOf(children[field.fraction].getLong(row), 9))
+            .setScale(field.scale, RoundingMode.DOWN);
+      }
+      else
+      {
+        value = BigDecimal.valueOf(epoch, field.scale);
+      }
+      if (field.timezone >= 0)
+      {
+        return value.toPlainString() + " " +
+               children[field.timezone].getLong(row);
+      }
+      return value.toPlainString();
+    }
+  }
+
+  /**
+   * Table of a flatbuffer
+   */
+  private static final class FlatTable
+  {
+    private final ByteBuffer bb;
+    private final int position;
+    private final int vtable;
+    private final int vtableLength;
+
+    private FlatTable(ByteBuffer bb, int position)
+    {
+      this.bb = bb;
+      this.position = position;
+      this.vtable = position - bb.getInt(position);
+      this.vtableLength = bb.getShort(vtable) & 0xffff;
+    }
+
+    static FlatTable root(ByteBuffer bb)
+    {
+      return new FlatTable(bb, bb.getInt(0));
+    }
+
+    /**
+     * @return position of a field, 0 if the field is not set
+     */
+    private int fieldPosition(int slot)
+    {
+      int entry = 4 + 2 * slot;
+      if (entry >= vtableLength)
+      {
+        return 0;
+      }
+      int offset = bb.getShort(vtable + entry) & 0xffff;
+      return offset == 0 ? 0 : position + offset;
+    }
+
+    private int indirect(int pos)
+    {
+      return pos + bb.getInt(pos);
+    }
+
+    byte getByte(int slot, byte defaultValue)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? defaultValue : bb.get(pos);
+    }
+
+    boolean getBoolean(int slot, boolean defaultValue)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? defaultValue : bb.get(pos) != 0;
+    }
+
+    short getShort(int slot, short defaultValue)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? defaultValue : bb.getShort(pos);
+    }
+
+    int getInt(int slot, int defaultValue)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? defaultValue : bb.getInt(pos);
+    }
+
+    long getLong(int slot, long defaultValue)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? defaultValue : bb.getLong(pos);
+    }
+
+    FlatTable getTable(int slot)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? null : new FlatTable(bb, indirect(pos));
+    }
+
+    String getString(int slot)
+    {
+      int pos = fieldPosition(slot);
+      if (pos == 0)
+      {
+        return null;
+      }
+      int string = indirect(pos);
+      return new String(bb.array(), string + 4, bb.getInt(string),
+                        StandardCharsets.UTF_8);
+    }
+
+    int getVectorLength(int slot)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? 0 : bb.getInt(indirect(pos));
+    }
+
+    int getVectorStart(int slot)
+    {
+      int pos = fieldPosition(slot);
+      return pos == 0 ? 0 : indirect(pos) + 4;
+    }
+
+    FlatTable getVectorTable(int slot, int index)
+    {
+      return new FlatTable(bb, indirect(getVectorStart(slot) + 4 * index));
+    }
+  }
+}
@@ -1,8 +1,17 @@
 package net.snowflake.client.jdbc;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.POJONode;
+import net.snowflake.client.core.ObjectMapperFactory;
+import net.snowflake.client.jdbc.SnowflakeResultChunk.ColumnVectorType;
 import net.snowflake.common.core.SqlState;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Copyright (c) 2018-2019 Snowflake Computing Inc. All rights reserved.
@@ -26,6 +35,18 @@ public class ResultJsonParserV2
   }
 
   private static final byte[] BNULL = {0x6e, 0x75, 0x6c, 0x6c};
+
+  private static final ObjectMapper mapper =
+      ObjectMapperFactory.getObjectMapper();
+
+  // longest text of a double decoded to a column vector
+  private static final int MAX_DOUBLE_LENGTH = 64;
+
+  // the byte repeated in every byte of a long, to scan 8 bytes at a time
+  private static final long QUOTES = 0x2222222222222222L;
+  private static final long BACKSLASHES = 0x5c5c5c5c5c5c5c5cL;
+  private static final long LOW_7_BITS = 0x7f7f7f7f7f7f7f7fL;
+
   private State state = State.UNINITIALIZED;
   private int currentColumn;
   private int outputCurValuePosition;
@@ -36,9 +57,12 @@ public class ResultJsonParserV2
   private ByteBuffer partialEscapedUnicode;
 
   private int outputDataLength;
-//  private int currentRow;
+  private int currentRow;
   private SnowflakeResultChunk resultChunk;
 
+  // scratch space to decode doubles
+  private final byte[] numberBuffer = new byte[MAX_DOUBLE_LENGTH];
+
   public void startParsing(SnowflakeResultChunk resultChunk) throws SnowflakeSQLException
   {
     this.resultChunk = resultChunk;
@@ -60,6 +84,8 @@ public class ResultJsonParserV2
       partialEscapedUnicode.clear();
     }
     currentColumn = 0;
+    currentRow = 0;
+    resultChunk.allocateColumnVectors();
 
     // outputDataLength can be smaller as no ',' and '[' are stored
     outputDataLength = resultChunk.computeCharactersNeeded();
@@ -88,6 +114,94 @@ public class ResultJsonParserV2
     state = State.UNINITIALIZED;
   }
 
+  /**
+   * Stop parsing, also if parsing failed, so the parser can be used for the
+   * next chunk. The chunk is not referenced any more.
+   */
+  void reset()
+  {
+    if (partialEscapedUnicode != null)
+    {
+      partialEscapedUnicode.clear();
+    }
+    resultChunk = null;
+    currentColumn = 0;
+    state = State.UNINITIALIZED;
+  }
+
+  /**
+   * Parse the rows which are returned with the query response into a new
+   * chunk, so they are stored like the rows of downloaded chunks.
+   *
+   * @param rowset            rows of the response, an array of arrays or a
+   *                          {@link JsonRowset} of a streamed response
+   * @param colCount          number of columns
+   * @param columnVectorTypes vector type per column, may be null
+   * @return chunk with all rows, or null if there are no rows
+   * @throws SnowflakeSQLException if the rows are not a valid result
+   */
+  public static SnowflakeResultChunk parseRowset(
+      JsonNode rowset, int colCount, ColumnVectorType[] columnVectorTypes)
+  throws SnowflakeSQLException
+  {
+    byte[] data;
+    int length;
+    int rowCount;
+    if (rowset instanceof POJONode &&
+        ((POJONode) rowset).getPojo() instanceof JsonRowset)
+    {
+      // rows of a streamed response are kept as JSON text already
+      JsonRowset jsonRowset = (JsonRowset) ((POJONode) rowset).getPojo();
+      data = jsonRowset.getData();
+      length = jsonRowset.getLength();
+      rowCount = jsonRowset.getRowCount();
+    }
+    else if (rowset != null && rowset.isArray())
+    {
+      try
+      {
+        data = mapper.writeValueAsBytes(rowset);
+      }
+      catch (JsonProcessingException ex)
+      {
+        throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
+                                        ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                        "Invalid rowset");
+      }
+      length = data.length;
+      rowCount = rowset.size();
+    }
+    else
+    {
+      return null;
+    }
+    if (rowCount == 0)
+    {
+      return null;
+    }
+
+    SnowflakeResultChunk chunk = new SnowflakeResultChunk(
+        null, rowCount, colCount, length, true);
+    chunk.setColumnVectorTypes(columnVectorTypes);
+
+    // the rows of a chunk are not enclosed in an array
+    ResultJsonParserV2 jp = new ResultJsonParserV2();
+    jp.startParsing(chunk);
+    jp.continueParsing(ByteBuffer.wrap(data, 1, length - 2));
+    jp.endParsing();
+    if (chunk.getRowsReady() != chunk.getRowCount())
+    {
+      throw new SnowflakeSQLException(SqlState.INTERNAL_ERROR,
+                                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                      "Exception: expected " +
+                                      chunk.getRowCount() +
+                                      " rows and received " +
+                                      chunk.getRowsReady());
+    }
+    chunk.setDownloadState(SnowflakeResultChunk.DownloadState.SUCCESS);
+    return chunk;
+  }
+
   /**
    * Continue parsing with the given data
    * @param in readOnly byteBuffer backed by an array (the data to be reed is from position to limit)
@@ -101,8 +215,9 @@ public class ResultJsonParserV2
                                       "Json parser hasn't been initialized!");
     }
 
-    // If stopped during a \\u, continue here
-    if (partialEscapedUnicode.position() > 0)
+    // If stopped during a \\u, continue here. The cached bytes are parsed
+    // from a copy, as they can end in another \\u which is cached again.
+    while (partialEscapedUnicode.position() > 0)
     {
       int lenToCopy = Math.min(12 - partialEscapedUnicode.position(), in.remaining());
       if (lenToCopy > partialEscapedUnicode.remaining())
@@ -117,10 +232,11 @@ public class ResultJsonParserV2
         // Not enough data to parse escaped unicode
         return;
       }
-      ByteBuffer toBeParsed = partialEscapedUnicode.duplicate();
-      toBeParsed.flip();
-      continueParsingInternal(toBeParsed, false);
+      ByteBuffer toBeParsed = ByteBuffer.wrap(
+          Arrays.copyOf(partialEscapedUnicode.array(),
+                        partialEscapedUnicode.position()));
       partialEscapedUnicode.clear();
+      continueParsingInternal(toBeParsed, false);
     }
     continueParsingInternal(in, false);
   }
@@ -257,74 +373,59 @@ public class ResultJsonParserV2
           }
           break;
         case IN_VALUE:
-          switch (in.get())
+        {
+          // copy the value up to the byte ending it with one call
+          int valueEnd = findValueEnd(in, in.position());
+          addByteArrayToOutput(in.array(), in.arrayOffset() + in.position(),
+                               valueEnd - in.position());
+          in.position(valueEnd);
+          if (!in.hasRemaining())
           {
-            case 0x20: // ' '
-            case 0x9: // '\t'
-            case 0xa: // '\n'
-            case 0xd: // '\r\
-            case 0x2c: // ','
-            case 0x5d: // ']'
-            {
-              // value ended
-              int length = outputPosition - outputCurValuePosition;
+            // the value goes on in the next data
+            break;
+          }
 
-              // Check if value is null
-              if (length == 4 && isNull())
-              {
-                resultChunk.setIsNull();
-                outputPosition = outputCurValuePosition;
-              }
-              else
-              {
-                resultChunk.setLastLength(length);
-              }
-              state = State.WAIT_FOR_NEXT;
-              in.position(in.position()-1);
-              continue;// reread this char in WAIT_FOR_NEXT
-            }
-            default:
-              addByteToOutput(in.get(in.position()-1));
-              break;
+          // value ended
+          int length = outputPosition - outputCurValuePosition;
+
+          // Check if value is null
+          if (length == 4 && isNull())
+          {
+            resultChunk.setIsNull();
+            outputPosition = outputCurValuePosition;
+            addVectorNull();
           }
-          break;
+          else
+          {
+            resultChunk.setLastLength(length);
+            addVectorValue(outputCurValuePosition, length);
+          }
+          state = State.WAIT_FOR_NEXT;
+          continue;// read the ending char in WAIT_FOR_NEXT
+        }
         case IN_STRING:
           switch (in.get())
           {
             case 0x22: // '"'
               resultChunk.setLastLength(outputPosition - outputCurValuePosition);
+              addVectorValue(outputCurValuePosition,
+                             outputPosition - outputCurValuePosition);
               state = State.WAIT_FOR_NEXT;
               break;
             case 0x5c: // '\\'
               state = State.ESCAPE;
               break;
             default:
-              // Check how many characters don't have escape characters
-              // copy those with one memcpy
+              // Find the characters without escape characters 8 bytes at a
+              // time and copy those with one memcpy
               int inputPositionStart = in.position()-1;
-              while (in.hasRemaining())
-              {
-                byte cur = in.get();
-
-                if (cur == 0x22 /* '"' */ ||
-                    cur == 0x5c /* '\\' */)
-                {
-                  // end of string chunk
-                  in.position(in.position()-1);
-                  break;
-                }
-              }
+              in.position(findStringEnd(in, in.position()));
 
               addByteArrayToOutput(in.array(), in.arrayOffset()+inputPositionStart,
                                    in.position()-inputPositionStart);
 
-              if (in.hasRemaining() &&
-                  (in.get(in.position()) == 0x22 /* '"' */ ||
-                   in.get(in.position()) == 0x5c /* '\\' */))
-              {
-                // Those need special parsing
-                continue;
-              }
+              // the quote or backslash needs special parsing
+              continue;
           }
           break;
         case ESCAPE:
@@ -369,7 +470,7 @@ public class ResultJsonParserV2
 
               // have to have at least 4+2+4=10 chars left to read
               // already saw "\\u", now missing "AAAA\\uAAAA"
-              if (in.remaining() >= 9 ||
+              if (in.remaining() >= 10 ||
                   (lastData && in.remaining() >= 3))
               {
                 if (!parseCodepoint(in))
@@ -424,6 +525,7 @@ public class ResultJsonParserV2
               currentColumn = 0;
               resultChunk.nextIndex();
               state = State.ROW_FINISHED;
+              publishRow();
               break;
             case 0x20: // ' '
             case 0x9: // '\t'
@@ -445,6 +547,224 @@ public class ResultJsonParserV2
     }
   }
 
+  /**
+   * Find the end of the unescaped characters of a string, comparing 8 bytes
+   * at a time
+   *
+   * @param in   data being parsed
+   * @param from position to start at
+   * @return the position of the next quote or backslash, or the limit of
+   * the data if there is none
+   */
+  private static int findStringEnd(ByteBuffer in, int from)
+  {
+    final int limit = in.limit();
+    final boolean bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+    int pos = from;
+    for (; pos + 8 <= limit; pos += 8)
+    {
+      long word = in.getLong(pos);
+      long found = matchBytes(word, QUOTES) | matchBytes(word, BACKSLASHES);
+      if (found != 0)
+      {
+        // the first byte of the data is the highest byte in big endian
+        return pos + ((bigEndian ?
+                       Long.numberOfLeadingZeros(found) :
+                       Long.numberOfTrailingZeros(found)) >>> 3);
+      }
+    }
+    for (; pos < limit; pos++)
+    {
+      byte b = in.get(pos);
+      if (b == 0x22 /* '"' */ || b == 0x5c /* '\\' */)
+      {
+        return pos;
+      }
+    }
+    return limit;
+  }
+
+  /**
+   * @param word    8 bytes of data
+   * @param pattern the byte to match, repeated 8 times
+   * @return 0x80 in every byte of the word equal to the byte of the pattern
+   * and 0 in all other bytes
+   */
+  private static long matchBytes(long word, long pattern)
+  {
+    // equal bytes are 0, adding 0x7f to the lower 7 bits only sets the high
+    // bit of the other bytes, without a carry into the next byte
+    long diff = word ^ pattern;
+    return ~(((diff & LOW_7_BITS) + LOW_7_BITS) | diff | LOW_7_BITS);
+  }
+
+  /**
+   * Find the end of a value which is not a string
+   *
+   * @param in   data being parsed
+   * @param from position to start at
+   * @return the position of the whitespace, comma or bracket ending the
+   * value, or the limit of the data if there is none
+   */
+  private static int findValueEnd(ByteBuffer in, int from)
+  {
+    final int limit = in.limit();
+    for (int pos = from; pos < limit; pos++)
+    {
+      switch (in.get(pos))
+      {
+        case 0x20: // ' '
+        case 0x9: // '\t'
+        case 0xa: // '\n'
+        case 0xd: // '\r\
+        case 0x2c: // ','
+        case 0x5d: // ']'
+          return pos;
+        default:
+          break;
+      }
+    }
+    return limit;
+  }
+
+  /**
+   * Make the row just finished visible to the consumer. The length of the
+   * last cell is derived from the offset of the next cell, so that offset is
+   * written now; it is the same value the next cell will write later because
+   * nothing is output between rows.
+   */
+  private void publishRow() throws SnowflakeSQLException
+  {
+    currentRow++;
+    if (currentRow < resultChunk.getRowCount())
+    {
+      resultChunk.addOffset(outputPosition);
+    }
+    resultChunk.setRowsReady(currentRow);
+  }
+
+  /**
+   * Mark the current cell as null in its column vector, if its column has
+   * one
+   */
+  private void addVectorNull()
+  {
+    if (resultChunk.getColumnVectorType(currentColumn) != null &&
+        currentRow < resultChunk.getRowCount())
+    {
+      resultChunk.setNullValue(currentRow, currentColumn);
+    }
+  }
+
+  /**
+   * Decode the value just copied to the chunk to its column vector, if its
+   * column has one. Values which do not fit the vector are only kept as text.
+   *
+   * @param start  position of the value in the chunk
+   * @param length length of the value
+   */
+  private void addVectorValue(int start, int length)
+  throws SnowflakeSQLException
+  {
+    ColumnVectorType type = resultChunk.getColumnVectorType(currentColumn);
+    if (type == null || currentRow >= resultChunk.getRowCount())
+    {
+      return;
+    }
+    if (type == ColumnVectorType.LONG)
+    {
+      decodeLong(start, length);
+    }
+    else
+    {
+      decodeDouble(start, length);
+    }
+  }
+
+  /**
+   * Decode a long the same way Long.parseLong does for ASCII digits
+   */
+  private void decodeLong(int start, int length) throws SnowflakeSQLException
+  {
+    final int end = start + length;
+    int pos = start;
+    if (length == 0 || length > 20)
+    {
+      return;
+    }
+
+    boolean negative = false;
+    byte first = resultChunk.get(pos);
+    if (first == 0x2d /* '-' */ || first == 0x2b /* '+' */)
+    {
+      negative = first == 0x2d;
+      if (++pos == end)
+      {
+        return;
+      }
+    }
+
+    // accumulate negatively to cover Long.MIN_VALUE
+    long value = 0;
+    for (; pos < end; pos++)
+    {
+      int digit = resultChunk.get(pos) - 0x30 /* '0' */;
+      if (digit < 0 || digit > 9 || value < Long.MIN_VALUE / 10)
+      {
+        return;
+      }
+      value *= 10;
+      if (value < Long.MIN_VALUE + digit)
+      {
+        return;
+      }
+      value -= digit;
+    }
+    if (!negative)
+    {
+      if (value == Long.MIN_VALUE)
+      {
+        return;
+      }
+      value = -value;
+    }
+    resultChunk.setLongValue(currentRow, currentColumn, value);
+  }
+
+  /**
+   * Decode a double to the value the getters return for its text. Plain
+   * decimals with at most 15 significant digits and a small exponent are
+   * computed exactly from the digits, anything else goes through
+   * Double.parseDouble.
+   */
+  private void decodeDouble(int start, int length) throws SnowflakeSQLException
+  {
+    if (length == 0 || length > MAX_DOUBLE_LENGTH)
+    {
+      return;
+    }
+    for (int i = 0; i < length; i++)
+    {
+      numberBuffer[i] = resultChunk.get(start + i);
+    }
+
+    double value = AsciiNumbers.parseDouble(numberBuffer, 0, length);
+    if (Double.isNaN(value))
+    {
+      try
+      {
+        value = Double.parseDouble(
+            new String(numberBuffer, 0, length, StandardCharsets.UTF_8));
+      }
+      catch (NumberFormatException ex)
+      {
+        // leave it to the getters to report
+        return;
+      }
+    }
+    resultChunk.setDoubleValue(currentRow, currentColumn, value);
+  }
+
   private boolean isNull() throws SnowflakeSQLException
   {
     int pos = outputPosition;
@@ -502,6 +822,16 @@ public class ResultJsonParserV2
 
   private void addByteArrayToOutput(byte[] src, int offset, int length) throws SnowflakeSQLException
   {
+    if (length == 0)
+    {
+      return;
+    }
+    if (outputPosition + length > outputDataLength)
+    {
+      throw new SnowflakeSQLException(SqlState.INTERNAL_ERROR,
+                                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                      "column chunk longer than expected");
+    }
     resultChunk.addBytes(src, offset, outputPosition, length);
     outputPosition += length;
   }
@@ -1630,7 +1630,7 @@ abstract class SnowflakeBaseResultSet implements ResultSet
     logger.debug(
         "public <T> T getObject(String columnLabel,Class<T> type)");
 
-    throw new SQLFeatureNotSupportedException();
+    return getObject(findColumn(columnLabel), type);
   }
 
   @Override
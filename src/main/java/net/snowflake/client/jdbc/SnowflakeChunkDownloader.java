@@ -12,42 +12,49 @@ import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.snowflake.client.core.HttpUtil;
 import net.snowflake.client.core.ObjectMapperFactory;
+import net.snowflake.client.core.SFSession;
 import net.snowflake.client.jdbc.SnowflakeResultChunk.DownloadState;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.common.core.SqlState;
 import org.apache.http.Header;
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.SequenceInputStream;
 import java.io.StringWriter;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Class for managing async download of offline result chunks
@@ -78,10 +85,28 @@ public class SnowflakeChunkDownloader
 
   private static final SFLogger logger =
       SFLoggerFactory.getLogger(SnowflakeChunkDownloader.class);
-  private static final int STREAM_BUFFER_SIZE = 1*1024*1024;
 
-  private SnowflakeResultChunk.ResultChunkDataCache chunkDataCache
-      = new SnowflakeResultChunk.ResultChunkDataCache();
+  // buffers, inflaters and parsers reused by the downloads of all results
+  private static final ChunkStreamPool streamPool =
+      ChunkStreamPool.getInstance();
+
+  // number of rows parsed by the object parser before the consumer is woken up
+  private static final int STREAMING_SIGNAL_ROWS = 1024;
+
+  // size and number of the buffers a pipeline stage reads ahead
+  private static final int PIPELINE_BUFFER_SIZE = 256 * 1024;
+  private static final int PIPELINE_BUFFER_COUNT = 4;
+
+  // range requests continuing the content of a chunk after its connection
+  // failed, and downloads of the whole chunk when it cannot be continued
+  private static final int MAX_CHUNK_RESUMES = 3;
+  private static final int MAX_CHUNK_RESTARTS = 2;
+
+  // sends the second request of a chunk once the first one is late, one
+  // thread for all downloaders
+  private static final ScheduledExecutorService hedgeTimer =
+      createHedgeTimer();
+
   private List<SnowflakeResultChunk> chunks = null;
 
   // index of next chunk to be consumed (it may not be ready yet)
@@ -90,14 +115,54 @@ public class SnowflakeChunkDownloader
   // index of next chunk to be downloaded
   private int nextChunkToDownload = 0;
 
-  // number of prefetch slots
-  private final int prefetchSlots;
+  // number of prefetch slots, twice the number of chunks downloaded at the
+  // same time, adapted to the speed of the consumer
+  private int prefetchSlots;
+
+  // adapts the number of chunks downloaded at the same time
+  private PrefetchController prefetchController;
+
+  // time the consumer asked for the previous chunk and the time it had
+  // waited for chunks at that point
+  private long lastChunkRequestMillis = 0;
+  private long lastChunkRequestWaitMillis = 0;
 
   // TRUE if JsonParserV2 should be used FALSE otherwise.
   private boolean useJsonParserV2;
 
-  // thread pool
-  private ThreadPoolExecutor executor;
+  // encoding of the chunks
+  private final QueryResultFormat queryResultFormat;
+
+  // TRUE if the consumer may read the rows of a chunk while it is still
+  // being parsed
+  private final boolean streamingChunks;
+
+  // read the network, inflate and parse a chunk on separate threads
+  private final boolean pipelinedChunks;
+
+  // sends a second request for chunks whose response is late, null if
+  // requests are not hedged
+  private final RequestHedger requestHedger;
+
+  // queue of this result in the JVM wide download scheduler
+  private ChunkDownloadScheduler.DownloadQueue downloadQueue;
+
+  // directory chunks are spilled to when the memory limit stops the
+  // prefetching, null if chunks are not spilled
+  private File spillDirectory = null;
+
+  // spill file of each chunk, null if the chunk is not spilled
+  private ChunkSpillFile[] spillFiles = null;
+
+  // chunks from nextChunkToDownload up to here are spilled
+  private int nextChunkToSpill = 0;
+
+  // uncompressed size of the chunks spilled but not loaded yet
+  private long spilledChunkSize = 0;
+
+  // the uncompressed size of the spilled chunks is limited to a multiple of
+  // the memory limit
+  private static final int SPILL_LIMIT_FACTOR = 4;
 
   // number of millis main thread waiting for chunks from downloader
   private long numberMillisWaitingForChunks = 0;
@@ -105,6 +170,13 @@ public class SnowflakeChunkDownloader
   // is the downloader terminated
   private boolean terminated = false;
 
+  // is the memory of the chunks released, so that download threads
+  // release the memory of their chunks themselves when they stop
+  private volatile boolean chunkMemoryReleased = false;
+
+  // number of chunks downloaded and parsed
+  private final AtomicInteger chunksParsed = new AtomicInteger(0);
+
   // number of millis spent on downloading result chunks
   private final AtomicLong totalMillisDownloadingChunks = new AtomicLong(0);
 
@@ -114,54 +186,73 @@ public class SnowflakeChunkDownloader
   // The query result master key
   private final String qrmk;
 
-  private Map<String, String> chunkHeadersMap = null;
+  // headers of the chunk requests, shared by all requests
+  private final Header[] chunkRequestHeaders;
 
   private final int networkTimeoutInMilli;
 
   private long memoryLimit;
 
-  // the current memory usage across JVM
-  private static Long currentMemoryUsage = 0L;
+  // the memory budget shared by all chunk downloaders across JVM
+  private static final ChunkMemoryBudget memoryBudget =
+      ChunkMemoryBudget.getInstance();
+
+  // memory reserved for each chunk, 0 if nothing is reserved
+  private AtomicLongArray reservedChunkMemory = new AtomicLongArray(0);
 
   public static long getCurrentMemoryUsage()
   {
-    synchronized (currentMemoryUsage)
-    {
-      return currentMemoryUsage.longValue();
-    }
+    return memoryBudget.getCurrentUsage();
+  }
+
+  /**
+   * Reserve memory for other buffers of a result, e.g. the rows of a sorted
+   * result, if it is available right now. The memory is shared with the
+   * chunks of all results.
+   *
+   * @param bytes       memory to reserve
+   * @param memoryLimit memory limit of the result
+   * @return true if the memory is reserved
+   */
+  public static boolean tryReserveMemory(long bytes, long memoryLimit)
+  {
+    return memoryBudget.tryReserve(bytes, memoryLimit);
+  }
+
+  /**
+   * Release memory reserved with tryReserveMemory
+   *
+   * @param bytes memory to release
+   */
+  public static void releaseMemory(long bytes)
+  {
+    memoryBudget.release(bytes);
   }
 
-  // The parameters used to wait for available memory:
-  // starting waiting time will be BASE_WAITING_MS * WAITING_SECS_MULTIPLIER = 100 ms
-  private long BASE_WAITING_MS = 50;
-  private long WAITING_SECS_MULTIPLIER = 2;
-  // the maximum waiting time
-  private long MAX_WAITING_MS = 30 * 1000;
-  // the default jitter ratio 10%
-  private long WAITING_JITTER_RATIO = 10;
+  // the interval to log while waiting for available memory
+  private static final long MEMORY_WAIT_LOG_INTERVAL_MS = 30 * 1000;
   /**
    * Timeout that main thread wait for downloading
    */
   private final long downloadedConditionTimeoutInSeconds = 3600;
 
   /**
-   * Create a pool of downloader threads.
+   * Create a factory of daemon threads which log uncaught exceptions
    *
-   * @param threadNamePrefix name of threads in pool
-   * @param parallel         number of thread in pool
-   * @return new thread pool
+   * @param threadNamePrefix name of the threads
+   * @return new thread factory
    */
-  private static ThreadPoolExecutor createChunkDownloaderExecutorService(
-      final String threadNamePrefix, final int parallel)
+  static ThreadFactory createThreadFactory(
+      final String threadNamePrefix)
   {
-    ThreadFactory threadFactory = new ThreadFactory()
+    return new ThreadFactory()
     {
-      private int threadCount = 1;
+      private final AtomicInteger threadCount = new AtomicInteger(1);
 
       public Thread newThread(final Runnable r)
       {
         final Thread thread = new Thread(r);
-        thread.setName(threadNamePrefix + threadCount++);
+        thread.setName(threadNamePrefix + threadCount.getAndIncrement());
 
         thread.setUncaughtExceptionHandler(
             new Thread.UncaughtExceptionHandler()
@@ -179,8 +270,6 @@ public class SnowflakeChunkDownloader
         return thread;
       }
     };
-    return (ThreadPoolExecutor) Executors.newFixedThreadPool(parallel,
-                                                             threadFactory);
   }
 
   public class Metrics
@@ -198,6 +287,175 @@ public class SnowflakeChunkDownloader
     }
   }
 
+  /**
+   * Adapts the number of chunks of a result downloaded at the same time to
+   * the speed of its consumer.
+   * <p>
+   * With n chunks downloaded at the same time, the consumer never waits if
+   * n times the time it spends on a chunk covers the time to download and
+   * parse a chunk. The controller moves the thread count one step per chunk
+   * towards that target, and grows it while the consumer still waits for
+   * chunks. A slow consumer thus ends up with few prefetched chunks holding
+   * memory, a fast one with as many as the limit allows.
+   */
+  static final class PrefetchController
+  {
+    // weight of the latest chunk in the average consuming time
+    private static final double SMOOTHING = 0.5;
+
+    private final int maxThreads;
+
+    private int threads;
+
+    // moving average of the millis the consumer spends on a chunk, negative
+    // until the first chunk is consumed
+    private double consumeMillis = -1;
+
+    /**
+     * @param initialThreads number of chunks downloaded at the same time
+     *                       at the start
+     * @param maxThreads     upper limit of the chunks downloaded at the
+     *                       same time
+     */
+    PrefetchController(int initialThreads, int maxThreads)
+    {
+      this.maxThreads = Math.max(1, maxThreads);
+      this.threads = Math.max(1, Math.min(initialThreads, this.maxThreads));
+    }
+
+    /**
+     * Adapt the thread count after a chunk was consumed
+     *
+     * @param consumeMillis millis the consumer spent on the chunk, without
+     *                      waiting
+     * @param waitMillis    millis the consumer waited for the chunk
+     * @param fetchMillis   average millis to download and parse a chunk, 0
+     *                      if no chunk is downloaded yet
+     * @return the new thread count
+     */
+    int update(long consumeMillis, long waitMillis, double fetchMillis)
+    {
+      this.consumeMillis = this.consumeMillis < 0 ?
+                           consumeMillis :
+                           SMOOTHING * consumeMillis +
+                           (1 - SMOOTHING) * this.consumeMillis;
+
+      int target = threads;
+      if (waitMillis > 0)
+      {
+        // the consumer is faster than the downloads
+        target = threads + 1;
+      }
+      else if (fetchMillis > 0)
+      {
+        target = (int) Math.ceil(fetchMillis / Math.max(1, this.consumeMillis));
+      }
+      target = Math.max(1, Math.min(target, maxThreads));
+      threads += Integer.signum(target - threads);
+      return threads;
+    }
+
+    int getThreads()
+    {
+      return threads;
+    }
+  }
+
+  /**
+   * Decides when a second request is sent for a chunk, from the response
+   * times of the chunks of the result fetched so far.
+   * <p>
+   * A few requests to the cloud storage take far longer than the others,
+   * and the consumer waits for such a chunk while the following ones are
+   * ready. If the response of a chunk takes longer than the given
+   * percentile of the response times, a second request usually answers
+   * before the first one.
+   */
+  static final class RequestHedger
+  {
+    // response times needed before requests are hedged
+    static final int MIN_SAMPLES = 5;
+
+    // number of the latest response times the percentile is taken from
+    private static final int MAX_SAMPLES = 128;
+
+    private final int percentile;
+
+    // latest response times, a ring buffer
+    private final long[] samples = new long[MAX_SAMPLES];
+
+    private int sampleCount = 0;
+
+    private int nextSample = 0;
+
+    private int hedgedRequests = 0;
+
+    private int hedgedWins = 0;
+
+    /**
+     * @param percentile percentile of the response times after which a
+     *                   second request is sent, between 1 and 99
+     */
+    RequestHedger(int percentile)
+    {
+      this.percentile = percentile;
+    }
+
+    /**
+     * @param millis millis until the response of a chunk arrived
+     */
+    synchronized void addResponseMillis(long millis)
+    {
+      samples[nextSample] = millis;
+      nextSample = (nextSample + 1) % MAX_SAMPLES;
+      sampleCount = Math.min(sampleCount + 1, MAX_SAMPLES);
+    }
+
+    /**
+     * @return millis after which a second request is sent, -1 if there are
+     * too few response times yet
+     */
+    synchronized long getHedgeDelayMillis()
+    {
+      if (sampleCount < MIN_SAMPLES)
+      {
+        return -1;
+      }
+      long[] sorted = Arrays.copyOf(samples, sampleCount);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile * sampleCount / 100.0) - 1;
+      return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * @param won true if the second request answered first
+     */
+    synchronized void addHedgedRequest(boolean won)
+    {
+      hedgedRequests++;
+      if (won)
+      {
+        hedgedWins++;
+      }
+    }
+
+    /**
+     * @return number of chunks a second request was sent for
+     */
+    synchronized int getHedgedRequests()
+    {
+      return hedgedRequests;
+    }
+
+    /**
+     * @return number of chunks the second request answered first for
+     */
+    synchronized int getHedgedWins()
+    {
+      return hedgedWins;
+    }
+  }
+
   /**
    * Constructor to initialize downloader
    *
@@ -209,6 +467,11 @@ public class SnowflakeChunkDownloader
    * @param networkTimeoutInMilli network timeout
    * @param useJsonParserV2         should JsonParserV2 be used instead of object
    * @param memoryLimit           memory limit for chunk buffer
+   * @param session               the session the result belongs to, used for
+   *                              client side result settings. It can be null.
+   * @param columnMetadata        metadata of the result columns. It can be
+   *                              null if no column vectors are needed.
+   * @param queryResultFormat     encoding of the chunks
    */
   public SnowflakeChunkDownloader(int colCount,
                                   JsonNode chunksData,
@@ -217,20 +480,29 @@ public class SnowflakeChunkDownloader
                                   JsonNode chunkHeaders,
                                   int networkTimeoutInMilli,
                                   boolean useJsonParserV2,
-                                  long memoryLimit)
+                                  long memoryLimit,
+                                  SFSession session,
+                                  List<SnowflakeColumnMetadata> columnMetadata,
+                                  QueryResultFormat queryResultFormat)
   throws SnowflakeSQLException
   {
     this.qrmk = qrmk;
     this.networkTimeoutInMilli = networkTimeoutInMilli;
     this.prefetchSlots = prefetchThreads * 2;
     this.useJsonParserV2 = useJsonParserV2;
+    this.queryResultFormat = queryResultFormat;
     this.memoryLimit = memoryLimit;
+    this.streamingChunks = session != null && session.isResultChunkStreaming();
+    this.pipelinedChunks = session != null && session.isResultChunkPipelining();
+    int hedgePercentile =
+        session != null ? session.getResultChunkHedgePercentile() : 0;
+    this.requestHedger =
+        hedgePercentile > 0 ? new RequestHedger(hedgePercentile) : null;
     logger.debug("qrmk = {}", qrmk);
 
+    List<Header> requestHeaders = new ArrayList<>(2);
     if (chunkHeaders != null && !chunkHeaders.isMissingNode())
     {
-      chunkHeadersMap = new HashMap<>(2);
-
       Iterator<Map.Entry<String, JsonNode>> chunkHeadersIter =
           chunkHeaders.fields();
 
@@ -241,10 +513,19 @@ public class SnowflakeChunkDownloader
         logger.debug("add header key={}, value={}",
                      chunkHeader.getKey(),
                      chunkHeader.getValue().asText());
-        chunkHeadersMap.put(chunkHeader.getKey(),
-                            chunkHeader.getValue().asText());
+        requestHeaders.add(new BasicHeader(chunkHeader.getKey(),
+                                           chunkHeader.getValue().asText()));
       }
     }
+    // Add SSE-C headers
+    if (requestHeaders.isEmpty() && qrmk != null)
+    {
+      requestHeaders.add(new BasicHeader(SSE_C_ALGORITHM, SSE_C_AES));
+      requestHeaders.add(new BasicHeader(SSE_C_KEY, qrmk));
+      logger.debug("Adding SSE-C headers");
+    }
+    chunkRequestHeaders =
+        requestHeaders.toArray(new Header[requestHeaders.size()]);
 
     // no chunk data
     if (chunksData == null)
@@ -253,54 +534,133 @@ public class SnowflakeChunkDownloader
       return;
     }
 
+    final boolean arrow = queryResultFormat == QueryResultFormat.ARROW;
+
+    // off heap storage is only supported by JsonParserV2
+    final boolean offHeap = session != null && session.isResultChunkOffHeap();
+    if (offHeap && !useJsonParserV2 && !arrow)
+    {
+      logger.debug("off heap result chunks require JsonParserV2, " +
+                   "using heap storage");
+    }
+
+    // column vectors are filled by JsonParserV2 if requested, Arrow values
+    // are always copied to vectors as there is no text to decode
+    SnowflakeResultChunk.ColumnVectorType[] columnVectorTypes = null;
+    if (columnMetadata != null &&
+        (arrow || (session != null && session.isResultColumnVectors() &&
+                   useJsonParserV2)))
+    {
+      columnVectorTypes = getColumnVectorTypes(columnMetadata);
+    }
+
     // number of chunks
     int numChunks = chunksData.size();
     // create the chunks array
     chunks = new ArrayList<>(numChunks);
+    reservedChunkMemory = new AtomicLongArray(numChunks);
+
+    if (session != null && session.getResultChunkSpillDirectory() != null)
+    {
+      File directory = new File(session.getResultChunkSpillDirectory());
+      if (directory.isDirectory())
+      {
+        spillDirectory = directory;
+        spillFiles = new ChunkSpillFile[numChunks];
+      }
+      else
+      {
+        logger.debug("result chunk spill directory {} does not exist, " +
+                     "chunks are not spilled", directory);
+      }
+    }
 
     // initialize chunks with url and row count
     for (int idx = 0; idx < numChunks; idx++)
     {
       JsonNode chunkNode = chunksData.get(idx);
 
-      SnowflakeResultChunk chunk =
+      SnowflakeResultChunk chunk = arrow ?
+          SnowflakeResultChunk.createArrowChunk(
+              chunkNode.path("url").asText(),
+              chunkNode.path("rowCount").asInt(),
+              colCount,
+              chunkNode.path("uncompressedSize").asInt()) :
           new SnowflakeResultChunk(
               chunkNode.path("url").asText(),
               chunkNode.path("rowCount").asInt(),
               colCount,
               chunkNode.path("uncompressedSize").asInt(),
-              useJsonParserV2);
+              useJsonParserV2,
+              offHeap);
+      chunk.setColumnVectorTypes(columnVectorTypes);
 
       logger.debug("add chunk, url={} rowCount={} uncompressedSize={} neededChunkMemory={}",
                    chunk.getUrl(), chunk.getRowCount(), chunk.getUncompressedSize(), chunk.computeNeededChunkMemory());
 
       chunks.add(chunk);
     }
-    // prefetch threads and slots from parameter settings
+    // prefetch threads and slots from parameter settings, adapted later to
+    // the consumer up to twice the prefetch threads
     int effectiveThreads = Math.min(prefetchThreads, numChunks);
+    prefetchController = new PrefetchController(
+        effectiveThreads, Math.min(prefetchThreads * 2, numChunks));
 
     logger.debug(
-        "#chunks: {} #threads:{} #slots:{} -> pool:{}",
+        "#chunks: {} #threads:{} #slots:{} -> quota:{}",
         numChunks, prefetchThreads, prefetchSlots, effectiveThreads);
 
-    // create thread pool
-    executor =
-        createChunkDownloaderExecutorService("result-chunk-downloader-",
-                                             effectiveThreads);
+    // the download threads are shared with all other results, the prefetch
+    // threads limit the chunks of this result downloaded at the same time
+    downloadQueue =
+        ChunkDownloadScheduler.getInstance().register(
+            prefetchController.getThreads());
 
     startNextDownloaders();
   }
 
   /**
-   * Submit download chunk tasks to executor.
+   * Choose the columns which are decoded to primitive vectors: integral
+   * FIXED columns to longs and REAL columns to doubles
+   *
+   * @param columnMetadata metadata of the result columns
+   * @return vector type per column, or null if no column has a vector
+   */
+  public static SnowflakeResultChunk.ColumnVectorType[] getColumnVectorTypes(
+      List<SnowflakeColumnMetadata> columnMetadata)
+  {
+    SnowflakeResultChunk.ColumnVectorType[] types =
+        new SnowflakeResultChunk.ColumnVectorType[columnMetadata.size()];
+    boolean hasVector = false;
+    for (int i = 0; i < types.length; i++)
+    {
+      SnowflakeColumnMetadata column = columnMetadata.get(i);
+      if (column.getBase() == SnowflakeType.INTEGER ||
+          (column.getBase() == SnowflakeType.FIXED && column.getScale() == 0))
+      {
+        types[i] = SnowflakeResultChunk.ColumnVectorType.LONG;
+      }
+      else if (column.getBase() == SnowflakeType.REAL)
+      {
+        types[i] = SnowflakeResultChunk.ColumnVectorType.DOUBLE;
+      }
+      hasVector |= types[i] != null;
+    }
+    return hasVector ? types : null;
+  }
+
+  /**
+   * Submit download chunk tasks to the download scheduler.
    * Number depends on thread and memory limit
    */
   private void startNextDownloaders() throws SnowflakeSQLException
   {
-    long waitingTime = BASE_WAITING_MS;
+    // the chunk the consumer waits for is downloaded before any prefetching
+    downloadQueue.setNextChunkToConsume(nextChunkToConsume);
 
     // submit the chunks to be downloaded up to the prefetch slot capacity
     // and limited by memory
+    boolean outOfMemory = false;
     while (nextChunkToDownload - nextChunkToConsume < prefetchSlots &&
            nextChunkToDownload < chunks.size())
     {
@@ -308,129 +668,234 @@ public class SnowflakeChunkDownloader
       final SnowflakeResultChunk nextChunk = chunks.get(nextChunkToDownload);
       final long neededChunkMemory = nextChunk.computeNeededChunkMemory();
 
-      // each time only one thread can enter this block
-      synchronized (currentMemoryUsage)
+      // make sure memoryLimit > neededChunkMemory; otherwise, the thread hangs
+      if (neededChunkMemory > memoryLimit)
       {
-        // make sure memoryLimit > neededChunkMemory; otherwise, the thread hangs
-        if (neededChunkMemory > memoryLimit)
+        if (logger.isDebugEnabled())
         {
-          if (logger.isDebugEnabled())
-          {
-            logger.debug("{}: reset memoryLimit from {} MB to current chunk size {} MB",
-                         Thread.currentThread().getName(),
-                         memoryLimit / 1024 / 1024,
-                         neededChunkMemory / 1024 / 1024);
-          }
-          memoryLimit = neededChunkMemory;
+          logger.debug("{}: reset memoryLimit from {} MB to current chunk size {} MB",
+                       Thread.currentThread().getName(),
+                       memoryLimit / 1024 / 1024,
+                       neededChunkMemory / 1024 / 1024);
         }
+        memoryLimit = neededChunkMemory;
+      }
 
-        // no memory allocate when memory is not enough for prefetch
-        if (currentMemoryUsage + neededChunkMemory > memoryLimit &&
-            nextChunkToDownload - nextChunkToConsume > 0)
+      // no memory allocate when memory is not enough for prefetch, but
+      // wait for memory when the consumer needs this chunk next
+      if (nextChunkToDownload - nextChunkToConsume > 0)
+      {
+        if (!memoryBudget.tryReserve(neededChunkMemory, memoryLimit))
         {
+          outOfMemory = true;
           break;
         }
+      }
+      else
+      {
+        waitForChunkMemory(neededChunkMemory);
+      }
+      reservedChunkMemory.set(nextChunkToDownload, neededChunkMemory);
 
-        // only allocate memory when the future usage is less than the limit
-        if (currentMemoryUsage + neededChunkMemory <= memoryLimit)
-        {
-          nextChunk.tryReuse(chunkDataCache);
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("{}: currentMemoryUsage in MB: {}, nextChunkToDownload: {}, nextChunkToConsume: {}, " +
+                     "newReservedMemory in B: {} ",
+                     Thread.currentThread().getName(),
+                     memoryBudget.getCurrentUsage() / 1024 / 1024,
+                     nextChunkToDownload,
+                     nextChunkToConsume,
+                     neededChunkMemory);
+      }
 
-          currentMemoryUsage += neededChunkMemory;
-          if (logger.isDebugEnabled())
-          {
-            logger.debug("{}: currentMemoryUsage in MB: {}, nextChunkToDownload: {}, nextChunkToConsume: {}, " +
-                         "newReservedMemory in B: {} ",
-                         Thread.currentThread().getName(),
-                         currentMemoryUsage / 1024 / 1024,
-                         nextChunkToDownload,
-                         nextChunkToConsume,
-                         neededChunkMemory);
-          }
+      logger.debug("submit chunk #{} for downloading, url={}",
+                   this.nextChunkToDownload, nextChunk.getUrl());
+
+      // a spilled chunk is loaded from its file once the file is written
+      ChunkSpillFile spillFile =
+          spillFiles != null ? spillFiles[nextChunkToDownload] : null;
+      Callable<Void> downloadCallable =
+          getDownloadChunkCallable(this,
+                                   nextChunk,
+                                   nextChunkToDownload,
+                                   chunkRequestHeaders,
+                                   networkTimeoutInMilli,
+                                   useJsonParserV2,
+                                   spillFile);
+      if (spillFile != null)
+      {
+        spilledChunkSize -= nextChunk.getUncompressedSize();
+      }
+      if (spillFile == null || !spillFile.deferUntilWritten(downloadCallable))
+      {
+        downloadQueue.submit(nextChunkToDownload, downloadCallable);
+      }
 
-          logger.debug("submit chunk #{} for downloading, url={}",
-                       this.nextChunkToDownload, nextChunk.getUrl());
+      // increment next chunk to download
+      nextChunkToDownload++;
+    }
 
-          executor.submit(getDownloadChunkCallable(this,
-                                                   nextChunk,
-                                                   qrmk, nextChunkToDownload,
-                                                   chunkHeadersMap,
-                                                   networkTimeoutInMilli,
-                                                   useJsonParserV2));
+    // keep downloading into files while the memory is used up
+    if (outOfMemory && spillDirectory != null)
+    {
+      spillNextChunks();
+    }
+  }
 
-          // increment next chunk to download
-          nextChunkToDownload++;
-          // make sure reset waiting time
-          waitingTime = BASE_WAITING_MS;
-          // go to next chunk
-          continue;
-        }
+  /**
+   * Submit the download of the chunks following the prefetched chunks into
+   * spill files, as long as the spill limit allows
+   */
+  private void spillNextChunks()
+  {
+    final long spillLimit = memoryLimit * SPILL_LIMIT_FACTOR;
+    nextChunkToSpill = Math.max(nextChunkToSpill, nextChunkToDownload);
+    while (nextChunkToSpill < chunks.size())
+    {
+      final SnowflakeResultChunk chunk = chunks.get(nextChunkToSpill);
+      if (spilledChunkSize > 0 &&
+          spilledChunkSize + chunk.getUncompressedSize() > spillLimit)
+      {
+        break;
       }
+      spilledChunkSize += chunk.getUncompressedSize();
 
-      // waiting when nextChunkToDownload is equal to nextChunkToConsume but reach memory limit
-      try
+      ChunkSpillFile spillFile = new ChunkSpillFile(spillDirectory);
+      spillFiles[nextChunkToSpill] = spillFile;
+
+      logger.debug("submit chunk #{} for spilling, url={}",
+                   nextChunkToSpill, chunk.getUrl());
+
+      downloadQueue.submit(nextChunkToSpill,
+                           getSpillChunkCallable(chunk, nextChunkToSpill,
+                                                 spillFile,
+                                                 chunkRequestHeaders,
+                                                 networkTimeoutInMilli));
+      nextChunkToSpill++;
+    }
+  }
+
+  /**
+   * Wait until the memory budget can hold the next chunk to consume. The
+   * waiting thread is woken up as soon as other chunks release their memory.
+   *
+   * @param neededChunkMemory memory needed by the chunk
+   * @throws SnowflakeSQLException if the waiting thread is interrupted
+   */
+  private void waitForChunkMemory(long neededChunkMemory)
+  throws SnowflakeSQLException
+  {
+    try
+    {
+      while (!memoryBudget.reserve(neededChunkMemory, memoryLimit,
+                                   MEMORY_WAIT_LOG_INTERVAL_MS,
+                                   TimeUnit.MILLISECONDS))
       {
-        waitingTime *= WAITING_SECS_MULTIPLIER;
-        waitingTime = waitingTime > MAX_WAITING_MS ? MAX_WAITING_MS : waitingTime;
-        long jitter = ThreadLocalRandom.current().nextLong(0, waitingTime / WAITING_JITTER_RATIO);
-        waitingTime += jitter;
         if (logger.isDebugEnabled())
         {
-          logger.debug("{} waiting for {}s: currentMemoryUsage in MB: {}, neededChunkMemory in MB: {}, " +
-                       "nextChunkToDownload: {}, nextChunkToConsume: {} ",
+          logger.debug("{} still waiting for memory: currentMemoryUsage in MB: {}, " +
+                       "neededChunkMemory in MB: {}, nextChunkToDownload: {}, " +
+                       "nextChunkToConsume: {} ",
                        Thread.currentThread().getName(),
-                       waitingTime / 1000.0,
-                       currentMemoryUsage / 1024 / 1024,
+                       memoryBudget.getCurrentUsage() / 1024 / 1024,
                        neededChunkMemory / 1024 / 1024,
                        nextChunkToDownload,
                        nextChunkToConsume);
         }
-        Thread.sleep(waitingTime);
-      }
-      catch (InterruptedException ie)
-      {
-        throw new SnowflakeSQLException(
-            SqlState.INTERNAL_ERROR,
-            ErrorCode.INTERNAL_ERROR.getMessageCode(),
-            "Waiting SnowflakeChunkDownloader has been interrupted.");
       }
     }
-
-    // clear the cache, we can't download more at the moment
-    // so we won't need them in the near future
-    chunkDataCache.clear();
+    catch (InterruptedException ie)
+    {
+      throw new SnowflakeSQLException(
+          SqlState.INTERNAL_ERROR,
+          ErrorCode.INTERNAL_ERROR.getMessageCode(),
+          "Waiting SnowflakeChunkDownloader has been interrupted.");
+    }
   }
 
-  private void releaseCurrentMemoryUsage(int chunkId, long releaseSize)
+  /**
+   * Release the memory reserved for a chunk. The memory of a chunk is only
+   * released once, no matter how often this is called.
+   *
+   * @param chunkId chunk index
+   */
+  private void releaseCurrentMemoryUsage(int chunkId)
   {
-    synchronized (currentMemoryUsage)
+    // has to be before reusing the memory
+    long releaseSize = reservedChunkMemory.getAndSet(chunkId, 0);
+    if (releaseSize == 0)
     {
-      // has to be before reusing the memory
-      currentMemoryUsage -= releaseSize;
-      if (logger.isDebugEnabled())
-      {
-        logger.debug("{}: currentMemoryUsage in MB: {}, released in MB: {}, chunk: {}",
-                     Thread.currentThread().getName(),
-                     currentMemoryUsage / 1024 / 1024,
-                     releaseSize,
-                     chunkId);
-      }
+      return;
     }
+    memoryBudget.release(releaseSize);
+    if (logger.isDebugEnabled())
+    {
+      logger.debug("{}: currentMemoryUsage in MB: {}, released in B: {}, chunk: {}",
+                   Thread.currentThread().getName(),
+                   memoryBudget.getCurrentUsage() / 1024 / 1024,
+                   releaseSize,
+                   chunkId);
+    }
+  }
+
+  /**
+   * Take over the memory reserved for the chunk returned last by
+   * getNextChunkToConsume, e.g. for a copy of its rows. The memory is not
+   * released when the chunk is freed, so it cannot go to the chunks
+   * prefetched meanwhile. The caller releases it with releaseMemory.
+   *
+   * @return memory taken over, 0 if the memory of the chunk is released
+   */
+  public long takeConsumedChunkMemory()
+  {
+    return nextChunkToConsume > 0 ?
+           reservedChunkMemory.getAndSet(nextChunkToConsume - 1, 0) : 0;
   }
 
   /**
-   * release all existing chunk memory usage before close
+   * release all existing chunk memory usage before close. The memory of a
+   * chunk still being downloaded is released by its download thread once
+   * it stops, as the thread may still fill the chunk until then.
    */
   public void releaseAllChunkMemoryUsage()
   {
-    if (chunks == null || chunks.size() == 0)
+    chunkMemoryReleased = true;
+    List<SnowflakeResultChunk> resultChunks = chunks;
+    for (int i = 0; i < reservedChunkMemory.length(); i++)
     {
-      return;
+      if (resultChunks == null)
+      {
+        releaseCurrentMemoryUsage(i);
+        continue;
+      }
+      SnowflakeResultChunk chunk = resultChunks.get(i);
+      chunk.getLock().lock();
+      try
+      {
+        if (chunk.getDownloadState() != DownloadState.IN_PROGRESS)
+        {
+          releaseCurrentMemoryUsage(i);
+        }
+      }
+      finally
+      {
+        chunk.getLock().unlock();
+      }
     }
+  }
 
-    for (int i = 0; i < chunks.size(); i++)
+  /**
+   * Release the memory of a chunk whose download thread stopped after the
+   * memory of all chunks was released. Called with the lock of the chunk
+   * held, after the download state of the chunk is final.
+   *
+   * @param chunkId chunk index
+   */
+  private void releaseStoppedChunkMemory(int chunkId)
+  {
+    if (chunkMemoryReleased)
     {
-      releaseCurrentMemoryUsage(i, chunks.get(i).computeNeededChunkMemory());
+      releaseCurrentMemoryUsage(chunkId);
     }
   }
 
@@ -458,23 +923,11 @@ public class SnowflakeChunkDownloader
       logger.debug("free chunk data for chunk #{}",
                    prevChunk);
 
-      long chunkMemUsage = chunks.get(prevChunk).computeNeededChunkMemory();
-      if (this.nextChunkToDownload < this.chunks.size())
-      {
-        // Reuse the set of object to avoid reallocation
-        // It is important to do this BEFORE starting the next download
-        chunkDataCache.add(this.chunks.get(prevChunk));
-      }
-      else
-      {
-        // clear the cache if we don't need it anymore
-        chunkDataCache.clear();
-      }
-
-      // Free any memory the previous chunk might hang on
+      // Give the blocks of the previous chunk back to the block pool, so
+      // the next downloads of any result reuse them
       this.chunks.get(prevChunk).freeData();
 
-      releaseCurrentMemoryUsage(prevChunk, chunkMemUsage);
+      releaseCurrentMemoryUsage(prevChunk);
 
     }
 
@@ -486,19 +939,19 @@ public class SnowflakeChunkDownloader
     }
 
     // prefetch next chunks
+    adaptPrefetching();
     startNextDownloaders();
 
     SnowflakeResultChunk currentChunk = this.chunks.get(nextChunkToConsume);
 
-    if (currentChunk.getDownloadState() == DownloadState.SUCCESS)
+    if (isReadyToConsume(currentChunk))
     {
       logger.debug("chunk #{} is ready to consume", nextChunkToConsume);
       nextChunkToConsume++;
       if (nextChunkToConsume == this.chunks.size())
       {
         // make sure to release the last chunk
-        releaseCurrentMemoryUsage(
-            nextChunkToConsume - 1, chunks.get(nextChunkToConsume - 1).computeNeededChunkMemory());
+        releaseCurrentMemoryUsage(nextChunkToConsume - 1);
       }
       return currentChunk;
     }
@@ -513,7 +966,7 @@ public class SnowflakeChunkDownloader
         currentChunk.getLock().lock();
         logger.debug("consumer get lock to check chunk state");
 
-        while (currentChunk.getDownloadState() != DownloadState.SUCCESS &&
+        while (!isReadyToConsume(currentChunk) &&
                currentChunk.getDownloadState() != DownloadState.FAILURE)
         {
           logger.debug("wait for chunk #{} to be ready, current"
@@ -556,7 +1009,7 @@ public class SnowflakeChunkDownloader
                          numberMillisWaitingForChunks,
                          Runtime.getRuntime().totalMemory(), Runtime.getRuntime().maxMemory(),
                          totalMillisDownloadingChunks.get(),
-                         totalMillisParsingChunks.get(), chunks.size(), currentMemoryUsage, memoryLimit,
+                         totalMillisParsingChunks.get(), chunks.size(), memoryBudget.getCurrentUsage(), memoryLimit,
                          nextChunkToDownload, nextChunkToConsume);
           }
 
@@ -583,8 +1036,7 @@ public class SnowflakeChunkDownloader
         if (nextChunkToConsume == this.chunks.size())
         {
           // make sure to release the last chunk
-          releaseCurrentMemoryUsage(
-              nextChunkToConsume - 1, chunks.get(nextChunkToConsume - 1).computeNeededChunkMemory());
+          releaseCurrentMemoryUsage(nextChunkToConsume - 1);
         }
         if (terminateDownloader)
         {
@@ -596,76 +1048,234 @@ public class SnowflakeChunkDownloader
   }
 
   /**
-   * terminate the downloader
-   *
-   * @return chunk downloader metrics collected over instance lifetime
+   * Adapt the number of chunks downloaded at the same time to the time the
+   * consumer spent on the previous chunk
    */
-  public Metrics terminate()
+  private void adaptPrefetching()
   {
-    if (!terminated)
+    long now = System.currentTimeMillis();
+    long waitMillis = numberMillisWaitingForChunks - lastChunkRequestWaitMillis;
+    long previousRequestMillis = lastChunkRequestMillis;
+    lastChunkRequestMillis = now;
+    lastChunkRequestWaitMillis = numberMillisWaitingForChunks;
+    if (nextChunkToConsume == 0)
     {
+      return;
+    }
 
-      logger.debug("Total milliseconds waiting for chunks: {}, " +
-                   "Total memory used: {}, total download time: {} millisec, " +
-                   "total parsing time: {} milliseconds, total chunks: {}",
-                   numberMillisWaitingForChunks,
-                   Runtime.getRuntime().totalMemory(), totalMillisDownloadingChunks.get(),
-                   totalMillisParsingChunks.get(), chunks.size());
-
-      if (executor != null)
-      {
-        executor.shutdownNow();
-        executor = null;
-      }
-      chunks = null;
-      chunkDataCache.clear();
-
-      terminated = true;
-      return new Metrics();
+    int parsed = chunksParsed.get();
+    double fetchMillis = parsed == 0 ? 0 :
+                         (double) (totalMillisDownloadingChunks.get() +
+                                   totalMillisParsingChunks.get()) / parsed;
+    int previousThreads = prefetchController.getThreads();
+    int threads = prefetchController.update(
+        now - previousRequestMillis - waitMillis, waitMillis, fetchMillis);
+    if (threads != previousThreads)
+    {
+      logger.debug("adapt prefetch threads from {} to {}, waited {} ms, " +
+                   "average fetch time {} ms",
+                   previousThreads, threads, waitMillis, fetchMillis);
+      prefetchSlots = threads * 2;
+      downloadQueue.setQuota(threads);
     }
-    return null;
   }
 
   /**
-   * add download time
+   * Check if a chunk can be handed to the consumer. Without streaming the
+   * chunk has to be parsed completely, otherwise the first row is enough.
    *
-   * @param downloadTime Time for downloading a single chunk
+   * @param chunk result chunk
+   * @return true if the consumer can start reading the chunk
    */
-  private void addDownloadTime(long downloadTime)
+  private boolean isReadyToConsume(SnowflakeResultChunk chunk)
   {
-    this.totalMillisDownloadingChunks.addAndGet(downloadTime);
+    return chunk.getDownloadState() == DownloadState.SUCCESS ||
+           (streamingChunks && chunk.getRowsReady() > 0 &&
+            chunk.getDownloadState() != DownloadState.FAILURE);
   }
 
   /**
-   * add parsing time
+   * Wait until the given number of leading rows of a chunk returned by
+   * getNextChunkToConsume is parsed. This only blocks when the chunk is
+   * handed over while it is still being parsed.
    *
-   * @param parsingTime Time for parsing a single chunk
+   * @param chunk result chunk being consumed
+   * @param rows  number of rows needed
+   * @throws InterruptedException  if the consumer was interrupted
+   * @throws SnowflakeSQLException if downloading or parsing the chunk failed
    */
-  private void addParsingTime(long parsingTime)
+  public void waitForChunkRows(SnowflakeResultChunk chunk, int rows)
+  throws InterruptedException, SnowflakeSQLException
   {
-    this.totalMillisParsingChunks.addAndGet(parsingTime);
-  }
+    if (chunk.getRowsReady() >= rows)
+    {
+      return;
+    }
 
-  /**
-   * Create a download callable that will be run in download thread
-   *
-   * @param downloader            object to download the chunk
-   * @param resultChunk           object contains information about the chunk will
-   *                              be downloaded
-   * @param qrmk                  Query Result Master Key
-   * @param chunkIndex            the index of the chunk which will be downloaded in array
-   *                              chunks. This is mainly for logging purpose
-   * @param chunkHeadersMap       contains headers needed to be added when downloading from s3
-   * @param networkTimeoutInMilli network timeout
-   * @param useJsonParserV2       use the json parser V2
-   * @return A callable responsible for downloading chunk
+    boolean failed = false;
+    chunk.getLock().lock();
+    try
+    {
+      while (chunk.getRowsReady() < rows &&
+             chunk.getDownloadState() != DownloadState.SUCCESS &&
+             chunk.getDownloadState() != DownloadState.FAILURE)
+      {
+        logger.debug("wait for row #{} of the chunk being consumed", rows - 1);
+
+        long startTime = System.currentTimeMillis();
+        if (!chunk.getDownloadCondition().await(downloadedConditionTimeoutInSeconds, TimeUnit.SECONDS))
+        {
+          chunk.setDownloadState(DownloadState.FAILURE);
+          chunk.setDownloadError(String.format("Timeout waiting for row #%d of the chunk being consumed",
+                                               rows - 1));
+        }
+        this.numberMillisWaitingForChunks +=
+            (System.currentTimeMillis() - startTime);
+      }
+
+      if (chunk.getDownloadState() == DownloadState.FAILURE)
+      {
+        failed = true;
+        logger.error("downloader encountered error: {}",
+                     chunk.getDownloadError());
+
+        throw new SnowflakeSQLException(SqlState.INTERNAL_ERROR,
+                                        ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                        chunk.getDownloadError());
+      }
+    }
+    finally
+    {
+      chunk.getLock().unlock();
+      if (failed)
+      {
+        logger.debug("Download result fail. Shut down the chunk downloader");
+        terminate();
+      }
+    }
+  }
+
+  /**
+   * terminate the downloader
+   *
+   * @return chunk downloader metrics collected over instance lifetime
+   */
+  public Metrics terminate()
+  {
+    if (!terminated)
+    {
+
+      logger.debug("Total milliseconds waiting for chunks: {}, " +
+                   "Total memory used: {}, total download time: {} millisec, " +
+                   "total parsing time: {} milliseconds, total chunks: {}",
+                   numberMillisWaitingForChunks,
+                   Runtime.getRuntime().totalMemory(), totalMillisDownloadingChunks.get(),
+                   totalMillisParsingChunks.get(), chunks.size());
+
+      if (downloadQueue != null)
+      {
+        downloadQueue.close();
+        downloadQueue = null;
+      }
+      // a failed or abandoned result must not keep its memory reserved
+      releaseAllChunkMemoryUsage();
+      releaseUnconsumedChunkData();
+      if (spillFiles != null)
+      {
+        for (ChunkSpillFile spillFile : spillFiles)
+        {
+          if (spillFile != null)
+          {
+            spillFile.delete();
+          }
+        }
+        spillFiles = null;
+      }
+      chunks = null;
+      logger.debug("chunk block pool: {}", ChunkBlockPool.getInstance());
+      logger.debug("chunk stream pool: {}", streamPool);
+      if (requestHedger != null)
+      {
+        logger.debug("hedged chunk requests: {}, answered first: {}",
+                     requestHedger.getHedgedRequests(),
+                     requestHedger.getHedgedWins());
+      }
+
+      terminated = true;
+      return new Metrics();
+    }
+    return null;
+  }
+
+  /**
+   * Give the blocks of the chunks downloaded but never handed to the
+   * consumer back to the block pool. Chunks still being downloaded keep
+   * their blocks, as their download threads may still write to them.
+   */
+  private void releaseUnconsumedChunkData()
+  {
+    for (int i = nextChunkToConsume; i < nextChunkToDownload; i++)
+    {
+      SnowflakeResultChunk chunk = chunks.get(i);
+      chunk.getLock().lock();
+      try
+      {
+        if (chunk.getDownloadState() == DownloadState.SUCCESS)
+        {
+          chunk.freeData();
+        }
+      }
+      finally
+      {
+        chunk.getLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * add download time
+   *
+   * @param downloadTime Time for downloading a single chunk
+   */
+  private void addDownloadTime(long downloadTime)
+  {
+    this.totalMillisDownloadingChunks.addAndGet(downloadTime);
+  }
+
+  /**
+   * add parsing time
+   *
+   * @param parsingTime Time for parsing a single chunk
+   */
+  private void addParsingTime(long parsingTime)
+  {
+    this.totalMillisParsingChunks.addAndGet(parsingTime);
+    this.chunksParsed.incrementAndGet();
+  }
+
+  /**
+   * Create a download callable that will be run in download thread
+   *
+   * @param downloader            object to download the chunk
+   * @param resultChunk           object contains information about the chunk will
+   *                              be downloaded
+   * @param chunkIndex            the index of the chunk which will be downloaded in array
+   *                              chunks. This is mainly for logging purpose
+   * @param chunkRequestHeaders   headers of the request, e.g. the SSE-C
+   *                              headers with the query result master key
+   * @param networkTimeoutInMilli network timeout
+   * @param useJsonParserV2       use the json parser V2
+   * @param spillFile             file the chunk is spilled to, or null if
+   *                              the chunk is downloaded
+   * @return A callable responsible for downloading chunk
    */
   private static Callable<Void> getDownloadChunkCallable(
       final SnowflakeChunkDownloader downloader,
       final SnowflakeResultChunk resultChunk,
-      final String qrmk, final int chunkIndex,
-      final Map<String, String> chunkHeadersMap,
-      final int networkTimeoutInMilli, boolean useJsonParserV2)
+      final int chunkIndex,
+      final Header[] chunkRequestHeaders,
+      final int networkTimeoutInMilli, boolean useJsonParserV2,
+      final ChunkSpillFile spillFile)
   {
     return new Callable<Void>()
     {
@@ -677,6 +1287,11 @@ public class SnowflakeChunkDownloader
           try
           {
             resultChunk.getLock().lock();
+            // the memory of the chunk is already released
+            if (downloader.chunkMemoryReleased)
+            {
+              return null;
+            }
             resultChunk.setDownloadState(DownloadState.IN_PROGRESS);
           }
           finally
@@ -684,148 +1299,34 @@ public class SnowflakeChunkDownloader
             resultChunk.getLock().unlock();
           }
 
-          logger.debug("Downloading chunk {}, url={}",
-                       chunkIndex, resultChunk.getUrl());
-
-          long startTime = System.currentTimeMillis();
-
-          HttpResponse response = getResultChunk(resultChunk.getUrl());
-
-          /*
-           * return error if we don't get a response or the response code
-           * means failure.
-           */
-          if (response == null
-              || response.getStatusLine().getStatusCode() != 200)
-          {
-            logger.error("Error fetching chunk from: {}",
-                         resultChunk.getUrl());
-
-            SnowflakeUtil.logResponseDetails(response, logger);
-
-            throw new SnowflakeSQLException(SqlState.IO_ERROR,
-                                            ErrorCode.NETWORK_ERROR
-                                                .getMessageCode(),
-                                            "Error encountered when downloading a result chunk: HTTP "
-                                            + "status="
-                                            + ((response != null)
-                                               ? response.getStatusLine().getStatusCode()
-                                               : "null response"));
-          }
-
-          InputStream jsonInputStream;
-          final HttpEntity entity = response.getEntity();
-          try
+          // a chunk is downloaded again if its content cannot be resumed,
+          // unless the consumer has already seen some of its rows
+          ChunkSpillFile source = spillFile;
+          for (int restarts = 0; ; restarts++)
           {
-            // read the chunk data
-            InputStream is =
-                new HttpUtil.HttpInputStream(entity.getContent());
-
-            // Determine the format of the response, if it is not
-            // either plain text or gzip, raise an error.
-            Header encoding = response.getFirstHeader("Content-Encoding");
-            if (encoding != null)
+            try
             {
-              if (encoding.getValue().equalsIgnoreCase("gzip"))
-              {
-                /* specify buffer size for GZIPInputStream */
-                is = new GZIPInputStream(is, STREAM_BUFFER_SIZE);
-              }
-              else
-              {
-                throw
-                    new SnowflakeSQLException(
-                        SqlState.INTERNAL_ERROR,
-                        ErrorCode.INTERNAL_ERROR.getMessageCode(),
-                        "Exception: unexpected compression got " +
-                        encoding.getValue());
-              }
+              downloadAndParse(source);
+              break;
             }
-
-            if (useJsonParserV2)
-            {
-              jsonInputStream = is;
-            }
-            else
+            catch (Exception ex)
             {
-              // Build a sequence of streams to wrap the input stream
-              // with '[' ... ']' to be able to plug this in the
-              // Jackson JSON parser.
-              // gzip stream uses 64KB
-              // no buffering as json parser does it internally
-              jsonInputStream =
-                  new SequenceInputStream(
-                      Collections.enumeration(Arrays.asList(
-                          new ByteArrayInputStream("[".getBytes(
-                              StandardCharsets.UTF_8)),
-                          is,
-                          new ByteArrayInputStream("]".getBytes(
-                              StandardCharsets.UTF_8)))));
-            }
-          }
-          catch (Exception ex)
-          {
-            logger.error(
-                "Failed to uncompress data: {}",
-                response);
-
-            throw ex;
-          }
-
-          // remember the download time
-          resultChunk.setDownloadTime(System.currentTimeMillis() - startTime);
-          downloader.addDownloadTime(resultChunk.getDownloadTime());
-
-          startTime = System.currentTimeMillis();
-
-          // trace the response if requested
-          logger.debug("Json response: {}", response);
-
-          JsonNode resultData = null;
+              if (restarts >= MAX_CHUNK_RESTARTS ||
+                  !isTransientFailure(ex) ||
+                  (downloader.streamingChunks &&
+                   resultChunk.getRowsReady() > 0))
+              {
+                throw ex;
+              }
+              logger.debug("Downloading chunk {} again after: {}",
+                           chunkIndex, ex);
+              resultChunk.resetData();
 
-          // parse the result json
-          try
-          {
-            if (downloader.useJsonParserV2)
-            {
-              parseJsonToChunkV2(jsonInputStream, resultChunk);
+              // the spill file may be what failed
+              source = null;
             }
-            else
-            {
-              parseJsonToChunk(jsonInputStream, resultChunk);
-            }
-          }
-          catch (Exception ex)
-          {
-            logger.error("Exception when parsing result", ex);
-
-            throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
-                                            ErrorCode.INTERNAL_ERROR
-                                                .getMessageCode(),
-                                            "Exception: " +
-                                            ex.getLocalizedMessage() +
-                                            "\nBad result json: " + response.toString());
-          }
-          finally
-          {
-            // close the buffer reader will close underlying stream
-            jsonInputStream.close();
           }
 
-          // add parsing time
-          resultChunk.setParseTime(System.currentTimeMillis() - startTime);
-          downloader.addParsingTime(resultChunk.getParseTime());
-
-          // remember the result data (it can be null if using rowsets)
-          resultChunk.setResultData(resultData);
-
-          logger.debug(
-              "Finished preparing chunk data for {}, " +
-              "total download time={}ms, total parse time={}ms",
-              resultChunk.getUrl(),
-              resultChunk.getDownloadTime(),
-              resultChunk.getParseTime());
-
           try
           {
             resultChunk.getLock().lock();
@@ -836,8 +1337,10 @@ public class SnowflakeChunkDownloader
                 "wake up consumer if it is waiting for a chunk to be "
                 + "ready");
 
+            resultChunk.setRowsReady(resultChunk.getRowCount());
             resultChunk.setDownloadState(DownloadState.SUCCESS);
             resultChunk.getDownloadCondition().signal();
+            downloader.releaseStoppedChunkMemory(chunkIndex);
           }
           finally
           {
@@ -863,6 +1366,7 @@ public class SnowflakeChunkDownloader
                 "wake up consumer if it is waiting for a chunk to be ready");
 
             resultChunk.getDownloadCondition().signal();
+            downloader.releaseStoppedChunkMemory(chunkIndex);
           }
           finally
           {
@@ -879,12 +1383,207 @@ public class SnowflakeChunkDownloader
 
           logger.error("Exception: ", ex);
         }
+        finally
+        {
+          if (spillFile != null)
+          {
+            spillFile.delete();
+          }
+        }
 
         return null;
       }
 
+      /**
+       * Download the content of the chunk, or read it from its spill file,
+       * and parse it into the chunk
+       *
+       * @param spilledChunk file the chunk is spilled to, or null if the
+       *                     chunk is downloaded
+       */
+      private void downloadAndParse(ChunkSpillFile spilledChunk)
+      throws Exception
+      {
+        logger.debug("Downloading chunk {}, url={}",
+                     chunkIndex, resultChunk.getUrl());
+
+        long startTime = System.currentTimeMillis();
+
+        // a spilled chunk is read from its file, unless the chunk could
+        // not be spilled
+        InputStream spilledContent =
+            spilledChunk != null ? spilledChunk.open() : null;
+
+        final Object response = spilledContent != null ?
+                                spilledChunk :
+                                getResultChunk(resultChunk.getUrl(),
+                                               chunkRequestHeaders,
+                                               networkTimeoutInMilli,
+                                               downloader.requestHedger);
+
+        InputStream jsonInputStream;
+        InputStream is = null;
+        try
+        {
+          final String encoding;
+          if (spilledContent != null)
+          {
+            is = spilledContent;
+            encoding = spilledChunk.isGzip() ? "gzip" : null;
+          }
+          else
+          {
+            // read the chunk data, continuing with a range request if the
+            // connection fails
+            HttpResponse httpResponse = (HttpResponse) response;
+            is = new HttpUtil.HttpInputStream(
+                new ResumableChunkStream(httpResponse, resultChunk.getUrl(),
+                                         chunkRequestHeaders,
+                                         networkTimeoutInMilli));
+
+            // read the network ahead of the inflater and the parser, if
+            // the cap of the download threads allows another thread
+            if (downloader.pipelinedChunks)
+            {
+              is = ReadAheadInputStream.readAhead(
+                  is, PIPELINE_BUFFER_SIZE, PIPELINE_BUFFER_COUNT,
+                  ChunkDownloadScheduler.getInstance());
+            }
+
+            Header encodingHeader =
+                httpResponse.getFirstHeader("Content-Encoding");
+            encoding = encodingHeader != null ?
+                       encodingHeader.getValue() : null;
+          }
+
+          // Determine the format of the response, if it is not
+          // either plain text or gzip, raise an error.
+          if (encoding != null)
+          {
+            if (encoding.equalsIgnoreCase("gzip"))
+            {
+              is = new PooledGZIPInputStream(is, streamPool);
+
+              // inflate ahead of the parser, if a thread is available
+              if (downloader.pipelinedChunks)
+              {
+                is = ReadAheadInputStream.readAhead(
+                    is, PIPELINE_BUFFER_SIZE, PIPELINE_BUFFER_COUNT,
+                    ChunkDownloadScheduler.getInstance());
+              }
+            }
+            else
+            {
+              throw
+                  new SnowflakeSQLException(
+                      SqlState.INTERNAL_ERROR,
+                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                      "Exception: unexpected compression got " +
+                      encoding);
+            }
+          }
+
+          if (useJsonParserV2 ||
+              downloader.queryResultFormat == QueryResultFormat.ARROW)
+          {
+            jsonInputStream = is;
+          }
+          else
+          {
+            // Build a sequence of streams to wrap the input stream
+            // with '[' ... ']' to be able to plug this in the
+            // Jackson JSON parser.
+            // gzip stream uses 64KB
+            // no buffering as json parser does it internally
+            jsonInputStream =
+                new SequenceInputStream(
+                    Collections.enumeration(Arrays.asList(
+                        new ByteArrayInputStream("[".getBytes(
+                            StandardCharsets.UTF_8)),
+                        is,
+                        new ByteArrayInputStream("]".getBytes(
+                            StandardCharsets.UTF_8)))));
+          }
+        }
+        catch (Exception ex)
+        {
+          logger.error(
+              "Failed to uncompress data: {}",
+              response);
+
+          // stops the pipeline stages reading ahead
+          if (is != null)
+          {
+            is.close();
+          }
+          throw ex;
+        }
+
+        // remember the download time
+        resultChunk.setDownloadTime(System.currentTimeMillis() - startTime);
+        downloader.addDownloadTime(resultChunk.getDownloadTime());
+
+        startTime = System.currentTimeMillis();
+
+        // trace the response if requested
+        logger.debug("Json response: {}", response);
+
+        JsonNode resultData = null;
+
+        // parse the result json
+        try
+        {
+          if (downloader.queryResultFormat == QueryResultFormat.ARROW)
+          {
+            new ResultArrowParser(jsonInputStream).parse(
+                resultChunk, downloader.streamingChunks);
+          }
+          else if (downloader.useJsonParserV2)
+          {
+            parseJsonToChunkV2(jsonInputStream, resultChunk,
+                               downloader.streamingChunks);
+          }
+          else
+          {
+            parseJsonToChunk(jsonInputStream, resultChunk,
+                             downloader.streamingChunks);
+          }
+        }
+        catch (Exception ex)
+        {
+          logger.error("Exception when parsing result", ex);
+
+          throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
+                                          ErrorCode.INTERNAL_ERROR
+                                              .getMessageCode(),
+                                          "Exception: " +
+                                          ex.getLocalizedMessage() +
+                                          "\nBad result json: " + response.toString());
+        }
+        finally
+        {
+          // close the buffer reader will close underlying stream
+          jsonInputStream.close();
+        }
+
+        // add parsing time
+        resultChunk.setParseTime(System.currentTimeMillis() - startTime);
+        downloader.addParsingTime(resultChunk.getParseTime());
+
+        // remember the result data (it can be null if using rowsets)
+        resultChunk.setResultData(resultData);
+
+        logger.debug(
+            "Finished preparing chunk data for {}, " +
+            "total download time={}ms, total parse time={}ms",
+            resultChunk.getUrl(),
+            resultChunk.getDownloadTime(),
+            resultChunk.getParseTime());
+      }
+
       private void parseJsonToChunkV2(InputStream jsonInputStream,
-                                    SnowflakeResultChunk resultChunk)
+                                      SnowflakeResultChunk resultChunk,
+                                      boolean streamingChunks)
       throws IOException, SnowflakeSQLException
       {
         /*
@@ -898,21 +1597,38 @@ public class SnowflakeChunkDownloader
          * The number of rows is known and the number of expected columns
          * is also known.
          */
-        ResultJsonParserV2 jp = new ResultJsonParserV2();
-        jp.startParsing(resultChunk);
+        ResultJsonParserV2 jp = streamPool.parsers.acquire();
+        byte[] buf = streamPool.buffers.acquire();
+        try
+        {
+          jp.startParsing(resultChunk);
+
+          int len;
+          int rowsSignaled = 0;
+          while ((len = jsonInputStream.read(buf)) != -1)
+          {
+            jp.continueParsing(ByteBuffer.wrap(buf, 0, len));
+
+            // let the consumer read the rows parsed so far
+            if (streamingChunks && resultChunk.getRowsReady() > rowsSignaled)
+            {
+              rowsSignaled = resultChunk.getRowsReady();
+              resultChunk.signalRowsReady();
+            }
+          }
 
-        byte[] buf = new byte[STREAM_BUFFER_SIZE];
-        int len;
-        while((len = jsonInputStream.read(buf)) != -1)
+          jp.endParsing();
+        }
+        finally
         {
-          jp.continueParsing(ByteBuffer.wrap(buf, 0, len));
+          streamPool.buffers.release(buf);
+          streamPool.parsers.release(jp);
         }
-
-        jp.endParsing();
       }
 
       private void parseJsonToChunk(InputStream jsonInputStream,
-                                    SnowflakeResultChunk resultChunk)
+                                    SnowflakeResultChunk resultChunk,
+                                    boolean streamingChunks)
       throws IOException, SnowflakeSQLException
       {
         /*
@@ -949,56 +1665,707 @@ public class SnowflakeChunkDownloader
           {
             // Position to the current row in the result
             resultChunk.addRow(mapper.readValue(jp, Object[].class));
+
+            // let the consumer read the rows parsed so far
+            if (streamingChunks &&
+                resultChunk.getRowsReady() % STREAMING_SIGNAL_ROWS == 0)
+            {
+              resultChunk.signalRowsReady();
+            }
           }
           resultChunk.ensureRowsComplete();
         }
       }
+    };
+  }
+
+  /**
+   * Create a callable that downloads the content of a chunk into its spill
+   * file. The chunk is loaded later, once the memory limit allows.
+   *
+   * @param resultChunk           chunk to download
+   * @param chunkIndex            index of the chunk, for logging
+   * @param spillFile             file the chunk is spilled to
+   * @param chunkRequestHeaders   headers of the request, e.g. the SSE-C
+   *                              headers with the query result master key
+   * @param networkTimeoutInMilli network timeout
+   * @return A callable responsible for spilling the chunk
+   */
+  private static Callable<Void> getSpillChunkCallable(
+      final SnowflakeResultChunk resultChunk,
+      final int chunkIndex,
+      final ChunkSpillFile spillFile,
+      final Header[] chunkRequestHeaders,
+      final int networkTimeoutInMilli)
+  {
+    return new Callable<Void>()
+    {
+      public Void call() throws Exception
+      {
+        Callable<?> deferredLoader;
+        try
+        {
+          logger.debug("Spilling chunk {}, url={}",
+                       chunkIndex, resultChunk.getUrl());
+
+          // the content is kept compressed in the file
+          HttpResponse response =
+              getResultChunk(resultChunk.getUrl(), chunkRequestHeaders,
+                             networkTimeoutInMilli);
+          Header encoding = response.getFirstHeader("Content-Encoding");
+          if (encoding != null && !encoding.getValue().equalsIgnoreCase("gzip"))
+          {
+            // reported when the chunk is downloaded again
+            deferredLoader = spillFile.fail();
+          }
+          else
+          {
+            deferredLoader = spillFile.write(
+                new HttpUtil.HttpInputStream(
+                    new ResumableChunkStream(response, resultChunk.getUrl(),
+                                             chunkRequestHeaders,
+                                             networkTimeoutInMilli)),
+                encoding != null);
+          }
+        }
+        catch (Throwable ex)
+        {
+          // the chunk is downloaded again when it is loaded
+          logger.debug("Failed to spill chunk {}: {}", chunkIndex, ex);
+          deferredLoader = spillFile.fail();
+        }
+
+        // the consumer has asked for the chunk while it was spilled
+        if (deferredLoader != null)
+        {
+          deferredLoader.call();
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Send the request for a result chunk
+   *
+   * @param chunkUrl              url of the chunk
+   * @param chunkRequestHeaders   headers of the request, e.g. the SSE-C
+   *                              headers with the query result master key
+   * @param networkTimeoutInMilli network timeout
+   * @return the response
+   * @throws SnowflakeSQLException if the chunk cannot be fetched
+   */
+  private static HttpResponse getResultChunk(String chunkUrl,
+                                             Header[] chunkRequestHeaders,
+                                             int networkTimeoutInMilli)
+  throws URISyntaxException, IOException, SnowflakeSQLException
+  {
+    return new ChunkRequest(chunkUrl, chunkRequestHeaders,
+                            networkTimeoutInMilli, 0, null).execute();
+  }
+
+  /**
+   * Send the request for a result chunk, and a second one if the response
+   * takes longer than the hedger allows. The response which arrives first
+   * is returned, the other request is aborted.
+   *
+   * @param chunkUrl              url of the chunk
+   * @param chunkRequestHeaders   headers of the request
+   * @param networkTimeoutInMilli network timeout
+   * @param requestHedger         response times of the result, null if
+   *                              requests are not hedged
+   * @return the response
+   * @throws SnowflakeSQLException if the chunk cannot be fetched
+   */
+  private static HttpResponse getResultChunk(String chunkUrl,
+                                             Header[] chunkRequestHeaders,
+                                             int networkTimeoutInMilli,
+                                             RequestHedger requestHedger)
+  throws URISyntaxException, IOException, SnowflakeSQLException
+  {
+    long hedgeDelayMillis =
+        requestHedger != null ? requestHedger.getHedgeDelayMillis() : -1;
+    ChunkRequest first = new ChunkRequest(chunkUrl, chunkRequestHeaders,
+                                          networkTimeoutInMilli, 0, null);
+    if (hedgeDelayMillis < 0)
+    {
+      HttpResponse response = first.execute();
+      if (requestHedger != null)
+      {
+        requestHedger.addResponseMillis(first.getResponseMillis());
+      }
+      return response;
+    }
+
+    ChunkRequest second = new ChunkRequest(chunkUrl, chunkRequestHeaders,
+                                           networkTimeoutInMilli, 0, null);
+    return new HedgedChunkRequest(chunkUrl, first, second)
+        .execute(hedgeDelayMillis, requestHedger);
+  }
+
+  private static ScheduledExecutorService createHedgeTimer()
+  {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+        1, createThreadFactory("result-chunk-hedge-timer-"));
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+
+  /**
+   * The two requests of a hedged chunk download. The download thread sends
+   * the first request itself. The second one is sent on a thread of the
+   * download scheduler once the first response is late, and only if the
+   * cap of the download threads allows another thread. The response which
+   * arrives first is used, the other request is aborted.
+   */
+  private static final class HedgedChunkRequest
+  {
+    private final String chunkUrl;
 
-      private HttpResponse getResultChunk(String chunkUrl) throws URISyntaxException, IOException, SnowflakeSQLException
+    private final ChunkRequest first;
+
+    private final ChunkRequest second;
+
+    // guarded by this
+    private boolean firstDone = false;
+    private Future<?> secondFuture = null;
+    private boolean secondDone = false;
+    private ChunkRequest winner = null;
+    private HttpResponse secondResponse = null;
+    private Throwable secondFailure = null;
+
+    private HedgedChunkRequest(String chunkUrl, ChunkRequest first,
+                               ChunkRequest second)
+    {
+      this.chunkUrl = chunkUrl;
+      this.first = first;
+      this.second = second;
+    }
+
+    /**
+     * Send the first request, and the second one after the given delay
+     *
+     * @param hedgeDelayMillis time the first response may take
+     * @param requestHedger    records the response times
+     * @return the response which arrived first
+     */
+    HttpResponse execute(long hedgeDelayMillis, RequestHedger requestHedger)
+    throws URISyntaxException, IOException, SnowflakeSQLException
+    {
+      ScheduledFuture<?> timer = hedgeTimer.schedule(new Runnable()
       {
-        URIBuilder uriBuilder = new URIBuilder(chunkUrl);
+        @Override
+        public void run()
+        {
+          sendSecond();
+        }
+      }, hedgeDelayMillis, TimeUnit.MILLISECONDS);
 
-        HttpGet httpRequest = new HttpGet(uriBuilder.build());
+      HttpResponse response = null;
+      Throwable failure = null;
+      try
+      {
+        response = first.execute();
+      }
+      catch (Throwable ex)
+      {
+        failure = ex;
+      }
+      timer.cancel(false);
 
-        if (chunkHeadersMap != null && chunkHeadersMap.size() != 0)
+      synchronized (this)
+      {
+        firstDone = true;
+        if (response != null && winner == null)
         {
-          for (Map.Entry<String, String> entry : chunkHeadersMap.entrySet())
+          winner = first;
+        }
+        boolean interrupted = false;
+        try
+        {
+          // the first request failed, or was abandoned as the second
+          // response arrived first
+          while (winner != first && secondFuture != null && !secondDone)
           {
-            logger.debug("Adding header key={}, value={}",
-                         entry.getKey(), entry.getValue());
-            httpRequest.addHeader(entry.getKey(), entry.getValue());
+            wait();
           }
         }
-        // Add SSE-C headers
-        else if (qrmk != null)
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          interrupted = true;
+        }
+
+        if (secondFuture != null && (winner != second || interrupted))
+        {
+          second.abandon();
+          secondFuture.cancel(true);
+        }
+        if (interrupted)
+        {
+          throw new InterruptedIOException(
+              "Interrupted while fetching " + chunkUrl);
+        }
+        if (winner == null)
         {
-          httpRequest.addHeader(SSE_C_ALGORITHM, SSE_C_AES);
-          httpRequest.addHeader(SSE_C_KEY, qrmk);
-          logger.debug("Adding SSE-C headers");
+          throw rethrowChunkRequestFailure(
+              failure != null ? failure : secondFailure);
         }
 
-        logger.debug("Fetching result: {}", resultChunk.getUrl());
+        requestHedger.addResponseMillis(winner.getResponseMillis());
+        if (secondFuture != null)
+        {
+          requestHedger.addHedgedRequest(winner == second);
+        }
+        return winner == first ? response : secondResponse;
+      }
+    }
 
-        //TODO move this s3 request to HttpUtil class. In theory, upper layer
-        //TODO does not need to know about http client
-        CloseableHttpClient httpClient = HttpUtil.getHttpClient();
+    /**
+     * Send the second request on a thread of the download scheduler, unless
+     * the first request is done already. Called by the hedge timer.
+     */
+    private synchronized void sendSecond()
+    {
+      if (firstDone)
+      {
+        return;
+      }
+      secondFuture = ChunkDownloadScheduler.getInstance().tryExecute(
+          new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              executeSecond();
+            }
+          });
+      if (secondFuture == null)
+      {
+        logger.debug("No thread for a second request for {}", chunkUrl);
+        return;
+      }
+      logger.debug("No response for {} in time, sending a second request",
+                   chunkUrl);
+    }
 
-        // fetch the result chunk
-        HttpResponse response =
-            RestRequest.execute(httpClient,
-                                httpRequest,
-                                networkTimeoutInMilli / 1000, // retry timeout
-                                0, // no socketime injection
-                                null, // no canceling
-                                false, // no cookie
-                                false, // no retry
-                                false // no request_guid
-            );
+    private void executeSecond()
+    {
+      HttpResponse response = null;
+      Throwable failure = null;
+      try
+      {
+        response = second.execute();
+      }
+      catch (Throwable ex)
+      {
+        failure = ex;
+        logger.debug("Second request for {} failed: {}", chunkUrl, ex);
+      }
 
-        logger.debug("Call returned for URL: {}",
-                     chunkUrl);
-        return response;
+      boolean won;
+      synchronized (this)
+      {
+        if (response != null && winner == null)
+        {
+          winner = second;
+        }
+        won = winner == second;
+        secondResponse = response;
+        secondFailure = failure;
+        secondDone = true;
+        notifyAll();
       }
-    };
+      if (won)
+      {
+        // the download thread stops waiting for the first response
+        first.abandon();
+      }
+      else if (response != null)
+      {
+        second.abandon();
+      }
+    }
+  }
+
+  /**
+   * @param failure failure of a chunk request
+   * @return never returns, the failure is thrown
+   */
+  private static IOException rethrowChunkRequestFailure(Throwable failure)
+  throws URISyntaxException, IOException, SnowflakeSQLException
+  {
+    if (failure instanceof SnowflakeSQLException)
+    {
+      throw (SnowflakeSQLException) failure;
+    }
+    if (failure instanceof IOException)
+    {
+      throw (IOException) failure;
+    }
+    if (failure instanceof URISyntaxException)
+    {
+      throw (URISyntaxException) failure;
+    }
+    if (failure instanceof RuntimeException)
+    {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error)
+    {
+      throw (Error) failure;
+    }
+    throw new IOException(failure);
+  }
+
+  /**
+   * @param failure failure of a chunk download
+   * @return true if the download may succeed when it is tried again, i.e.
+   * the network failed but the download was not interrupted
+   */
+  private static boolean isTransientFailure(Throwable failure)
+  {
+    if (Thread.currentThread().isInterrupted())
+    {
+      return false;
+    }
+    for (Throwable cause = failure; cause != null; cause = cause.getCause())
+    {
+      if (cause instanceof InterruptedIOException &&
+          !(cause instanceof SocketTimeoutException))
+      {
+        return false;
+      }
+      if (cause instanceof IOException)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Content of a chunk response. If the connection fails in the middle of
+   * the content, the rest of it is requested with a range request and read
+   * as if the connection had not failed. The content must be read as sent,
+   * not inflated by the http client, for the offsets to match.
+   * <p>
+   * If the server does not answer with the requested range, e.g. as the
+   * content has changed, the failure of the connection is thrown.
+   */
+  private static final class ResumableChunkStream extends InputStream
+  {
+    private final String chunkUrl;
+
+    private final Header[] chunkRequestHeaders;
+
+    private final int networkTimeoutInMilli;
+
+    // strong entity tag of the content, null if the response has none
+    private final String entityTag;
+
+    private final byte[] singleByte = new byte[1];
+
+    private HttpResponse response;
+
+    private InputStream content;
+
+    // number of bytes of the content read so far
+    private long position = 0;
+
+    private int resumes = 0;
+
+    ResumableChunkStream(HttpResponse response,
+                         String chunkUrl,
+                         Header[] chunkRequestHeaders,
+                         int networkTimeoutInMilli) throws IOException
+    {
+      this.chunkUrl = chunkUrl;
+      this.chunkRequestHeaders = chunkRequestHeaders;
+      this.networkTimeoutInMilli = networkTimeoutInMilli;
+      this.response = response;
+      this.content = response.getEntity().getContent();
+
+      // a weak entity tag cannot be used to continue the content
+      Header etag = response.getFirstHeader("ETag");
+      this.entityTag = etag != null && !etag.getValue().startsWith("W/") ?
+                       etag.getValue() : null;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      while (true)
+      {
+        if (content == null)
+        {
+          throw new IOException("Stream closed");
+        }
+        try
+        {
+          int n = content.read(b, off, len);
+          if (n > 0)
+          {
+            position += n;
+          }
+          return n;
+        }
+        catch (IOException ex)
+        {
+          resume(ex);
+        }
+      }
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+      return content != null ? content.available() : 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      if (content != null)
+      {
+        InputStream content = this.content;
+        this.content = null;
+        response = null;
+        content.close();
+      }
+    }
+
+    /**
+     * Request the rest of the content after the connection failed
+     *
+     * @param failure failure reading the content
+     * @throws IOException the failure if the content cannot be continued
+     */
+    private void resume(IOException failure) throws IOException
+    {
+      if (resumes >= MAX_CHUNK_RESUMES || !isTransientFailure(failure))
+      {
+        throw failure;
+      }
+      resumes++;
+
+      // the connection must not be reused
+      abort();
+
+      logger.debug("Continuing {} at byte {} after: {}",
+                   chunkUrl, position, failure);
+      HttpResponse resumed;
+      try
+      {
+        resumed = new ChunkRequest(chunkUrl, chunkRequestHeaders,
+                                   networkTimeoutInMilli, position,
+                                   entityTag).execute();
+      }
+      catch (URISyntaxException | IOException | SnowflakeSQLException ex)
+      {
+        failure.addSuppressed(ex);
+        throw failure;
+      }
+
+      // the server may send the whole content instead of the range
+      response = resumed;
+      Header contentRange = resumed.getFirstHeader("Content-Range");
+      if (resumed.getStatusLine().getStatusCode() != 206 ||
+          contentRange == null ||
+          !contentRange.getValue().startsWith("bytes " + position + "-"))
+      {
+        logger.debug("The content of {} cannot be continued, status={}",
+                     chunkUrl, resumed.getStatusLine().getStatusCode());
+        abort();
+        throw failure;
+      }
+      content = resumed.getEntity().getContent();
+    }
+
+    /**
+     * Close the connection of the response without reading the rest of the
+     * content
+     */
+    private void abort()
+    {
+      try
+      {
+        if (response instanceof Closeable)
+        {
+          ((Closeable) response).close();
+        }
+        else if (content != null)
+        {
+          content.close();
+        }
+      }
+      catch (IOException ex)
+      {
+        logger.debug("Failed to close the response of {}: {}",
+                     chunkUrl, ex);
+      }
+      response = null;
+      content = null;
+    }
+  }
+
+  /**
+   * One request for a result chunk, which can be abandoned from another
+   * thread when a hedged request wins
+   */
+  private static final class ChunkRequest implements Callable<HttpResponse>
+  {
+    private final String chunkUrl;
+
+    private final Header[] chunkRequestHeaders;
+
+    private final int networkTimeoutInMilli;
+
+    // first byte of the content requested, 0 for the whole content
+    private final long rangeStart;
+
+    // entity tag the content must still have for a range request, or null
+    private final String entityTag;
+
+    // stops the retries of an abandoned request
+    private final AtomicBoolean canceling = new AtomicBoolean(false);
+
+    // guarded by this
+    private HttpGet httpRequest = null;
+
+    private long responseMillis = -1;
+
+    private ChunkRequest(String chunkUrl,
+                         Header[] chunkRequestHeaders,
+                         int networkTimeoutInMilli,
+                         long rangeStart,
+                         String entityTag)
+    {
+      this.chunkUrl = chunkUrl;
+      this.chunkRequestHeaders = chunkRequestHeaders;
+      this.networkTimeoutInMilli = networkTimeoutInMilli;
+      this.rangeStart = rangeStart;
+      this.entityTag = entityTag;
+    }
+
+    @Override
+    public HttpResponse call() throws Exception
+    {
+      return execute();
+    }
+
+    /**
+     * @return millis until the response arrived, including retries
+     */
+    long getResponseMillis()
+    {
+      return responseMillis;
+    }
+
+    /**
+     * Abort the request, or close the connection of its response. The
+     * response must not be used afterwards.
+     */
+    synchronized void abandon()
+    {
+      canceling.set(true);
+      if (httpRequest != null)
+      {
+        httpRequest.abort();
+      }
+    }
+
+    HttpResponse execute()
+    throws URISyntaxException, IOException, SnowflakeSQLException
+    {
+      long startTime = System.currentTimeMillis();
+      HttpGet httpRequest = new HttpGet(new URI(chunkUrl));
+
+      // the headers are immutable, so all requests share them
+      httpRequest.setHeaders(chunkRequestHeaders);
+
+      // the content is inflated by the reader of the response, so that a
+      // failed download can continue at an offset of the content as sent
+      httpRequest.setConfig(
+          HttpUtil.getRequestConfigWithoutContentCompression());
+
+      // the rest of the content, if it has not changed
+      if (rangeStart > 0)
+      {
+        httpRequest.addHeader("Range", "bytes=" + rangeStart + "-");
+        if (entityTag != null)
+        {
+          httpRequest.addHeader("If-Range", entityTag);
+        }
+      }
+
+      synchronized (this)
+      {
+        if (canceling.get())
+        {
+          return null;
+        }
+        this.httpRequest = httpRequest;
+      }
+
+      logger.debug("Fetching result: {}", chunkUrl);
+
+      //TODO move this s3 request to HttpUtil class. In theory, upper layer
+      //TODO does not need to know about http client
+      CloseableHttpClient httpClient = HttpUtil.getHttpClient();
+
+      // fetch the result chunk
+      HttpResponse response =
+          RestRequest.execute(httpClient,
+                              httpRequest,
+                              networkTimeoutInMilli / 1000, // retry timeout
+                              0, // no socketime injection
+                              canceling, // set if the request is abandoned
+                              false, // no cookie
+                              false, // no retry
+                              false // no request_guid
+          );
+
+      logger.debug("Call returned for URL: {}",
+                   chunkUrl);
+
+      if (canceling.get())
+      {
+        // the other request of a hedged download won
+        httpRequest.abort();
+        return null;
+      }
+
+      /*
+       * return error if we don't get a response or the response code
+       * means failure.
+       */
+      int statusCode =
+          response != null ? response.getStatusLine().getStatusCode() : -1;
+      if (statusCode != 200 &&
+          !(statusCode == 206 && rangeStart > 0))
+      {
+        logger.error("Error fetching chunk from: {}", chunkUrl);
+
+        SnowflakeUtil.logResponseDetails(response, logger);
+
+        throw new SnowflakeSQLException(SqlState.IO_ERROR,
+                                        ErrorCode.NETWORK_ERROR
+                                            .getMessageCode(),
+                                        "Error encountered when downloading a result chunk: HTTP "
+                                        + "status="
+                                        + ((response != null)
+                                           ? response.getStatusLine().getStatusCode()
+                                           : "null response"));
+      }
+      responseMillis = System.currentTimeMillis() - startTime;
+      return response;
+    }
   }
 }
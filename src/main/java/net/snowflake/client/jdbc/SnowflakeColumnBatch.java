@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+/**
+ * Consecutive rows of a result stored column by column.
+ * <p>
+ * Integral and REAL columns which are decoded to primitive vectors are
+ * returned as long or double arrays. All other columns, and numeric columns
+ * with a value that does not fit the primitive type, are returned as the text
+ * the server sends for the cells, e.g. dates as days and timestamps as
+ * seconds since the epoch. A column may therefore be typed in one batch and
+ * text in the next one.
+ * <p>
+ * Column indexes start at 1 and row indexes at 0.
+ */
+public class SnowflakeColumnBatch
+{
+  private final int rowCount;
+
+  private final long[][] longs;
+
+  private final double[][] doubles;
+
+  private final String[][] strings;
+
+  private final boolean[][] nulls;
+
+  /**
+   * @param columnCount number of columns
+   * @param rowCount    number of rows
+   */
+  public SnowflakeColumnBatch(int columnCount, int rowCount)
+  {
+    this.rowCount = rowCount;
+    this.longs = new long[columnCount][];
+    this.doubles = new double[columnCount][];
+    this.strings = new String[columnCount][];
+    this.nulls = new boolean[columnCount][];
+  }
+
+  public int getRowCount()
+  {
+    return rowCount;
+  }
+
+  public int getColumnCount()
+  {
+    return nulls.length;
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return the values of the column, null if the column is not stored as
+   * longs in this batch. Null cells are 0.
+   */
+  public long[] getLongs(int columnIndex)
+  {
+    return longs[columnIndex - 1];
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return the values of the column, null if the column is not stored as
+   * doubles in this batch. Null cells are 0.
+   */
+  public double[] getDoubles(int columnIndex)
+  {
+    return doubles[columnIndex - 1];
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return the values of the column, null if the column is stored as
+   * primitive values in this batch
+   */
+  public String[] getStrings(int columnIndex)
+  {
+    return strings[columnIndex - 1];
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return true for every row with a null value in the column
+   */
+  public boolean[] getNulls(int columnIndex)
+  {
+    return nulls[columnIndex - 1];
+  }
+
+  public boolean isNull(int rowIndex, int columnIndex)
+  {
+    return nulls[columnIndex - 1][rowIndex];
+  }
+
+  public void setLongs(int columnIndex, long[] values, boolean[] nulls)
+  {
+    this.longs[columnIndex - 1] = values;
+    this.nulls[columnIndex - 1] = nulls;
+  }
+
+  public void setDoubles(int columnIndex, double[] values, boolean[] nulls)
+  {
+    this.doubles[columnIndex - 1] = values;
+    this.nulls[columnIndex - 1] = nulls;
+  }
+
+  public void setStrings(int columnIndex, String[] values, boolean[] nulls)
+  {
+    this.strings[columnIndex - 1] = values;
+    this.nulls[columnIndex - 1] = nulls;
+  }
+}
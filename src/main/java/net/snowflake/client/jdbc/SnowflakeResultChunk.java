@@ -9,12 +9,14 @@ import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.common.core.SqlState;
 
-import java.lang.ref.SoftReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -37,6 +39,88 @@ public class SnowflakeResultChunk
     FAILURE
   }
 
+  /**
+   * Primitive vector types numeric columns can be decoded to while parsing
+   */
+  public enum ColumnVectorType
+  {
+    LONG,
+    DOUBLE
+  }
+
+  /**
+   * The UTF-8 bytes of a cell, located without creating a String. The bytes
+   * are only valid until the cell is located again or the chunk is freed.
+   */
+  public static final class CellBytes
+  {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    // receives the bytes of a cell which are not in one heap block
+    private byte[] copy = new byte[64];
+
+    /**
+     * @return true if the cell is null
+     */
+    public boolean isNull()
+    {
+      return bytes == null;
+    }
+
+    /**
+     * @return the array holding the bytes, null if the cell is null
+     */
+    public byte[] getBytes()
+    {
+      return bytes;
+    }
+
+    /**
+     * @return position of the first byte in the array
+     */
+    public int getOffset()
+    {
+      return offset;
+    }
+
+    /**
+     * @return number of bytes
+     */
+    public int getLength()
+    {
+      return length;
+    }
+
+    private void setNull()
+    {
+      bytes = null;
+      offset = 0;
+      length = 0;
+    }
+
+    private void set(byte[] bytes, int offset, int length)
+    {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /**
+     * @return the array to copy the bytes to, it becomes the cell array
+     */
+    private byte[] copyBuffer(int length)
+    {
+      if (copy.length < length)
+      {
+        copy = new byte[Math.max(length, copy.length * 2)];
+      }
+      set(copy, 0, length);
+      return copy;
+    }
+  }
+
   // url for result chunk
   private final String url;
 
@@ -54,6 +138,10 @@ public class SnowflakeResultChunk
 
   private ResultChunkData data;
 
+  // how the data of a JSON chunk is stored
+  private boolean useJsonParserV2;
+  private boolean offHeap;
+
   // download time for the chunk
   private long downloadTime;
 
@@ -73,29 +161,87 @@ public class SnowflakeResultChunk
 
   private int currentRow;
 
+  // number of leading rows that are completely parsed and can be read by the
+  // consumer while the rest of the chunk is still being parsed
+  private volatile int rowsReady;
+
+  // vector type per column, null if no column is decoded to a vector
+  private ColumnVectorType[] columnVectorTypes;
+
+  // primitive vectors of the decoded columns, allocated when parsing starts
+  private ColumnVector[] columnVectors;
+
   public SnowflakeResultChunk(String url, int rowCount, int colCount,
                               int uncompressedSize, boolean useJsonParserV2)
   {
-    this.url = url;
-    this.rowCount = rowCount;
-    this.colCount = colCount;
-    this.uncompressedSize = uncompressedSize;
-    if (useJsonParserV2)
+    this(url, rowCount, colCount, uncompressedSize, useJsonParserV2, false);
+  }
+
+  /**
+   * @param url              url of the chunk
+   * @param rowCount         number of rows
+   * @param colCount         number of columns
+   * @param uncompressedSize uncompressed size in bytes
+   * @param useJsonParserV2  the chunk is parsed by ResultJsonParserV2
+   * @param offHeap          store the data in direct buffers. Only supported
+   *                         together with ResultJsonParserV2.
+   */
+  public SnowflakeResultChunk(String url, int rowCount, int colCount,
+                              int uncompressedSize, boolean useJsonParserV2,
+                              boolean offHeap)
+  {
+    this(url, rowCount, colCount, uncompressedSize);
+    this.useJsonParserV2 = useJsonParserV2;
+    this.offHeap = offHeap;
+    data = createJsonData();
+  }
+
+  private ResultChunkData createJsonData()
+  {
+    if (useJsonParserV2 && offHeap)
+    {
+      return new OffHeapResultChunkData(computeCharactersNeeded(),
+                                        rowCount, colCount);
+    }
+    else if (useJsonParserV2)
     {
-      data = new BlockResultChunkDataV2(computeCharactersNeeded(),
-                                      rowCount, colCount);
+      return new BlockResultChunkDataV2(computeCharactersNeeded(),
+                                        rowCount, colCount);
     }
     else
     {
-      data = new BlockResultChunkData(computeCharactersNeeded(),
-                                       rowCount * colCount);
+      return new BlockResultChunkData(computeCharactersNeeded(),
+                                      rowCount * colCount);
     }
   }
 
-  public void tryReuse(ResultChunkDataCache cache)
+  private SnowflakeResultChunk(String url, int rowCount, int colCount,
+                               int uncompressedSize)
   {
-    // Allocate chunk data, double necessary amount for later reuse
-    cache.reuseOrCreateResultData(data);
+    this.url = url;
+    this.rowCount = rowCount;
+    this.colCount = colCount;
+    this.uncompressedSize = uncompressedSize;
+  }
+
+  /**
+   * Create a chunk which is filled with the record batches of an Arrow result
+   * by ResultArrowParser
+   *
+   * @param url              url of the chunk
+   * @param rowCount         number of rows
+   * @param colCount         number of columns
+   * @param uncompressedSize uncompressed size in bytes
+   * @return the chunk
+   */
+  public static SnowflakeResultChunk createArrowChunk(String url, int rowCount,
+                                                      int colCount,
+                                                      int uncompressedSize)
+  {
+    SnowflakeResultChunk chunk =
+        new SnowflakeResultChunk(url, rowCount, colCount, uncompressedSize);
+    chunk.data = new ArrowResultChunkData(colCount, uncompressedSize);
+    return chunk;
   }
 
   /**
@@ -146,6 +292,22 @@ public class SnowflakeResultChunk
     return data.get(colCount * rowIdx + colIdx);
   }
 
+  /**
+   * Locate the UTF-8 bytes of a cell, so that its value can be parsed
+   * without creating a String
+   *
+   * @param rowIdx zero based row
+   * @param colIdx zero based column
+   * @param cell   receives the bytes of the cell
+   * @return false if the chunk does not store its cells as UTF-8 bytes, the
+   * cell is then only available from getCell
+   */
+  public final boolean getCellBytes(int rowIdx, int colIdx, CellBytes cell)
+  {
+    return resultData == null &&
+           data.getBytes(colCount * rowIdx + colIdx, cell);
+  }
+
   public final String getUrl()
   {
     return url;
@@ -201,6 +363,29 @@ public class SnowflakeResultChunk
       }
     }
     currentRow++;
+    rowsReady = currentRow;
+  }
+
+  /**
+   * Add the rows of an Arrow record batch and make them available to the
+   * consumer. The column vectors must already contain the values of the batch.
+   *
+   * @param batch record batch
+   * @throws SnowflakeSQLException if this is not an Arrow chunk
+   */
+  final void addArrowBatch(ResultArrowParser.ArrowBatch batch)
+  throws SnowflakeSQLException
+  {
+    if (!(data instanceof ArrowResultChunkData))
+    {
+      throw new SnowflakeSQLException(
+          SqlState.INTERNAL_ERROR,
+          ErrorCode.INTERNAL_ERROR.getMessageCode(),
+          "Arrow record batch added to a JSON chunk");
+    }
+    ((ArrowResultChunkData) data).addBatch(batch);
+    currentRow += batch.rowCount;
+    rowsReady = currentRow;
   }
 
   /**
@@ -232,7 +417,7 @@ public class SnowflakeResultChunk
    */
   public final long computeNeededChunkMemory()
   {
-    return data.computeNeededChunkMemory();
+    return data.computeNeededChunkMemory() + computeNeededVectorMemory();
   }
 
   public final void freeData()
@@ -242,6 +427,22 @@ public class SnowflakeResultChunk
       data.freeData();
     }
     resultData = null;
+    columnVectors = null;
+  }
+
+  /**
+   * Drop the rows added so far, so that the chunk can be parsed again from
+   * the start after its download failed. None of the rows may have been
+   * consumed.
+   */
+  final void resetData()
+  {
+    freeData();
+    data = data instanceof ArrowResultChunkData ?
+           new ArrowResultChunkData(colCount, uncompressedSize) :
+           createJsonData();
+    currentRow = 0;
+    rowsReady = 0;
   }
 
   public final int getColCount()
@@ -299,6 +500,231 @@ public class SnowflakeResultChunk
     this.downloadState = downloadState;
   }
 
+  /**
+   * Get the number of leading rows which are completely parsed. Reading any
+   * cell of those rows is safe even if the chunk is still being parsed.
+   *
+   * @return number of rows ready to be consumed
+   */
+  public int getRowsReady()
+  {
+    return rowsReady;
+  }
+
+  /**
+   * Publish the number of leading rows which are completely parsed. All cell
+   * data of those rows must be written before calling this.
+   *
+   * @param rowsReady number of rows ready to be consumed
+   */
+  public void setRowsReady(int rowsReady)
+  {
+    this.rowsReady = rowsReady;
+  }
+
+  /**
+   * Wake up the consumer if it is waiting for more rows of this chunk
+   */
+  public void signalRowsReady()
+  {
+    lock.lock();
+    try
+    {
+      downloadCondition.signalAll();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Decode the given columns to primitive vectors while parsing, in addition
+   * to the text data. Only supported by ResultJsonParserV2.
+   *
+   * @param columnVectorTypes vector type per column, null for columns kept
+   *                          as text only
+   */
+  public void setColumnVectorTypes(ColumnVectorType[] columnVectorTypes)
+  {
+    this.columnVectorTypes = columnVectorTypes;
+  }
+
+  /**
+   * @param colIdx zero based column
+   * @return the vector type of the column, or null if the column is only
+   * available as text
+   */
+  public final ColumnVectorType getColumnVectorType(int colIdx)
+  {
+    return columnVectorTypes == null ? null : columnVectorTypes[colIdx];
+  }
+
+  /**
+   * Allocate the column vectors. Called by the parser before the first row.
+   */
+  public void allocateColumnVectors()
+  {
+    if (columnVectorTypes == null || columnVectors != null)
+    {
+      return;
+    }
+    columnVectors = new ColumnVector[colCount];
+    for (int i = 0; i < colCount; i++)
+    {
+      if (columnVectorTypes[i] != null)
+      {
+        columnVectors[i] = new ColumnVector(columnVectorTypes[i], rowCount);
+      }
+    }
+  }
+
+  public void setLongValue(int rowIdx, int colIdx, long value)
+  {
+    ColumnVector vector = columnVectors[colIdx];
+    vector.longs[rowIdx] = value;
+    vector.decoded.set(rowIdx);
+  }
+
+  public void setDoubleValue(int rowIdx, int colIdx, double value)
+  {
+    ColumnVector vector = columnVectors[colIdx];
+    vector.doubles[rowIdx] = value;
+    vector.decoded.set(rowIdx);
+  }
+
+  public void setNullValue(int rowIdx, int colIdx)
+  {
+    ColumnVector vector = columnVectors[colIdx];
+    vector.nulls.set(rowIdx);
+    vector.decoded.set(rowIdx);
+  }
+
+  /**
+   * Check if a cell can be read from its column vector. A cell is not
+   * decoded if its column has no vector or its text does not fit the vector
+   * type, e.g. a number too large for a long.
+   *
+   * @param rowIdx zero based row
+   * @param colIdx zero based column
+   * @return true if the cell is decoded to its column vector
+   */
+  public final boolean isVectorValue(int rowIdx, int colIdx)
+  {
+    ColumnVector vector;
+    return columnVectors != null &&
+           (vector = columnVectors[colIdx]) != null &&
+           vector.decoded.get(rowIdx);
+  }
+
+  public final boolean isNullValue(int rowIdx, int colIdx)
+  {
+    return columnVectors[colIdx].nulls.get(rowIdx);
+  }
+
+  public final long getLongValue(int rowIdx, int colIdx)
+  {
+    return columnVectors[colIdx].longs[rowIdx];
+  }
+
+  public final double getDoubleValue(int rowIdx, int colIdx)
+  {
+    return columnVectors[colIdx].doubles[rowIdx];
+  }
+
+  /**
+   * Copy the long vector of a column for a range of rows
+   *
+   * @param colIdx  zero based column
+   * @param fromRow zero based first row
+   * @param values  receives the values, its length is the number of rows
+   * @param nulls   receives true for null values
+   * @return false if a row of the range is not decoded to a long vector, in
+   * which case nothing is copied
+   */
+  public final boolean copyLongValues(int colIdx, int fromRow, long[] values,
+                                      boolean[] nulls)
+  {
+    ColumnVector vector = getDecodedVector(colIdx, fromRow, values.length);
+    if (vector == null || vector.longs == null)
+    {
+      return false;
+    }
+    System.arraycopy(vector.longs, fromRow, values, 0, values.length);
+    copyNulls(vector, fromRow, nulls);
+    return true;
+  }
+
+  /**
+   * Copy the double vector of a column for a range of rows
+   *
+   * @param colIdx  zero based column
+   * @param fromRow zero based first row
+   * @param values  receives the values, its length is the number of rows
+   * @param nulls   receives true for null values
+   * @return false if a row of the range is not decoded to a double vector, in
+   * which case nothing is copied
+   */
+  public final boolean copyDoubleValues(int colIdx, int fromRow,
+                                        double[] values, boolean[] nulls)
+  {
+    ColumnVector vector = getDecodedVector(colIdx, fromRow, values.length);
+    if (vector == null || vector.doubles == null)
+    {
+      return false;
+    }
+    System.arraycopy(vector.doubles, fromRow, values, 0, values.length);
+    copyNulls(vector, fromRow, nulls);
+    return true;
+  }
+
+  /**
+   * @return the vector of the column if all rows of the range are decoded
+   */
+  private ColumnVector getDecodedVector(int colIdx, int fromRow, int count)
+  {
+    ColumnVector vector;
+    if (columnVectors == null || (vector = columnVectors[colIdx]) == null ||
+        vector.decoded.nextClearBit(fromRow) < fromRow + count)
+    {
+      return null;
+    }
+    return vector;
+  }
+
+  private static void copyNulls(ColumnVector vector, int fromRow,
+                                boolean[] nulls)
+  {
+    for (int i = vector.nulls.nextSetBit(fromRow);
+         i >= 0 && i < fromRow + nulls.length;
+         i = vector.nulls.nextSetBit(i + 1))
+    {
+      nulls[i - fromRow] = true;
+    }
+  }
+
+  /**
+   * Compute the memory necessary to store the column vectors of this chunk
+   *
+   * @return necessary memory in bytes
+   */
+  private long computeNeededVectorMemory()
+  {
+    long memory = 0;
+    if (columnVectorTypes != null)
+    {
+      for (ColumnVectorType type : columnVectorTypes)
+      {
+        if (type != null)
+        {
+          memory += rowCount * 8L // values
+                    + rowCount / 4L; // decoded and null bitmaps
+        }
+      }
+    }
+    return memory;
+  }
+
   public int computeCharactersNeeded()
   {
     // remove [ , ] characters, they won't be stored
@@ -342,6 +768,33 @@ public class SnowflakeResultChunk
     data.addBytes(src, offset, pos, length);
   }
 
+  /**
+   * Values of one column decoded to a primitive vector
+   */
+  private static class ColumnVector
+  {
+    ColumnVector(ColumnVectorType type, int rowCount)
+    {
+      if (type == ColumnVectorType.LONG)
+      {
+        longs = new long[rowCount];
+      }
+      else
+      {
+        doubles = new double[rowCount];
+      }
+      decoded = new BitSet(rowCount);
+      nulls = new BitSet(rowCount);
+    }
+
+    private long[] longs;
+    private double[] doubles;
+
+    // cells decoded to this vector, including nulls
+    private final BitSet decoded;
+    private final BitSet nulls;
+  }
+
   /**
    * This class abstracts the storage of the strings in one chunk.
    * To the user the class behaves similar to an ArrayList.
@@ -363,6 +816,15 @@ public class SnowflakeResultChunk
      */
     String get(int index);
 
+    /**
+     * Locate the UTF-8 bytes of an element
+     *
+     * @param index determines the element
+     * @param cell  receives the bytes
+     * @return false if the elements are not stored as UTF-8 bytes
+     */
+    boolean getBytes(int index, CellBytes cell);
+
     /**
      * Compute the necessary memory to store this chunk
      *
@@ -605,6 +1067,13 @@ public class SnowflakeResultChunk
       }
     }
 
+    @Override
+    public boolean getBytes(int index, CellBytes cell)
+    {
+      // stored as chars
+      return false;
+    }
+
     @Override
     public long computeNeededChunkMemory()
     {
@@ -617,6 +1086,10 @@ public class SnowflakeResultChunk
     @Override
     public void freeData()
     {
+      ChunkBlockPool pool = ChunkBlockPool.getInstance();
+      pool.charBlocks.releaseAll(data);
+      pool.metaBlocks.releaseAll(offsets);
+      pool.metaBlocks.releaseAll(lengths);
       data.clear();
       offsets.clear();
       lengths.clear();
@@ -650,28 +1123,29 @@ public class SnowflakeResultChunk
     private void allocateArrays()
     {
       logger.debug("allocating {} B for ResultChunk", computeNeededChunkMemory());
+      ChunkBlockPool pool = ChunkBlockPool.getInstance();
       while (data.size() < blockCount)
       {
-        data.add(new char[1 << blockLengthBits]);
+        data.add(pool.charBlocks.acquire());
       }
       while (offsets.size() < metaBlockCount)
       {
-        offsets.add(new int[1 << metaBlockLengthBits]);
-        lengths.add(new int[1 << metaBlockLengthBits]);
+        offsets.add(pool.metaBlocks.acquire());
+        lengths.add(pool.metaBlocks.acquire());
       }
       logger.debug("allocated {} B for ResultChunk", computeNeededChunkMemory());
     }
 
     // blocks for storing the string data
     int blockCount;
-    private static final int blockLengthBits = 24;
+    private static final int blockLengthBits = ChunkBlockPool.CHAR_BLOCK_BITS;
     private static int blockLength = 1 << blockLengthBits;
     private final ArrayList<char[]> data = new ArrayList<>();
     private int currentDatOffset = 0;
 
     // blocks for storing offsets and lengths
     int metaBlockCount;
-    private static int metaBlockLengthBits = 15;
+    private static int metaBlockLengthBits = ChunkBlockPool.META_BLOCK_BITS;
     private static int metaBlockLength = 1 << metaBlockLengthBits;
     private final ArrayList<int[]> offsets = new ArrayList<>();
     private final ArrayList<int[]> lengths = new ArrayList<>();
@@ -840,6 +1314,38 @@ public class SnowflakeResultChunk
       }
     }
 
+    @Override
+    public boolean getBytes(int index, CellBytes cell)
+    {
+      if (isNulls.get(getMetaBlock(index)).get(getMetaBlockIndex(index)))
+      {
+        cell.setNull();
+        return true;
+      }
+      final int offset = offsets.get(getMetaBlock(index))
+          [getMetaBlockIndex(index)];
+      final int length = getLength(index, offset);
+      if (spaceLeftOnBlock(offset) >= length)
+      {
+        cell.set(data.get(getBlock(offset)), getBlockOffset(offset), length);
+        return true;
+      }
+
+      // the cell continues on the next block
+      byte[] bytes = cell.copyBuffer(length);
+      int copied = 0;
+      while (copied < length)
+      {
+        final int copySize
+            = Math.min(length - copied, spaceLeftOnBlock(offset + copied));
+        System.arraycopy(data.get(getBlock(offset + copied)),
+                         getBlockOffset(offset + copied),
+                         bytes, copied, copySize);
+        copied += copySize;
+      }
+      return true;
+    }
+
     @Override
     public long computeNeededChunkMemory()
     {
@@ -854,6 +1360,10 @@ public class SnowflakeResultChunk
     @Override
     public void freeData()
     {
+      ChunkBlockPool pool = ChunkBlockPool.getInstance();
+      pool.dataBlocks.releaseAll(data);
+      pool.metaBlocks.releaseAll(offsets);
+      pool.nullBlocks.releaseAll(isNulls);
       data.clear();
       offsets.clear();
       isNulls.clear();
@@ -887,27 +1397,28 @@ public class SnowflakeResultChunk
     private void allocateArrays()
     {
       logger.debug("allocating {} B for ResultChunk", computeNeededChunkMemory());
+      ChunkBlockPool pool = ChunkBlockPool.getInstance();
       while (data.size() < blockCount)
       {
-        data.add(new byte[1 << blockLengthBits]);
+        data.add(pool.dataBlocks.acquire());
       }
       while (offsets.size() < metaBlockCount)
       {
-        offsets.add(new int[1 << metaBlockLengthBits]);
-        isNulls.add(new BitSet(1 << metaBlockLengthBits));
+        offsets.add(pool.metaBlocks.acquire());
+        isNulls.add(pool.nullBlocks.acquire());
       }
       logger.debug("allocated {} B for ResultChunk", computeNeededChunkMemory());
     }
 
     // blocks for storing the string data
     int blockCount;
-    private static final int blockLengthBits = 23;
+    private static final int blockLengthBits = ChunkBlockPool.DATA_BLOCK_BITS;
     private static int blockLength = 1 << blockLengthBits;
     private final ArrayList<byte[]> data = new ArrayList<>();
 
     // blocks for storing offsets and lengths
     int metaBlockCount;
-    private static int metaBlockLengthBits = 15;
+    private static int metaBlockLengthBits = ChunkBlockPool.META_BLOCK_BITS;
     private static int metaBlockLength = 1 << metaBlockLengthBits;
     private final ArrayList<int[]> offsets = new ArrayList<>();
     private final ArrayList<BitSet> isNulls = new ArrayList<>();
@@ -916,118 +1427,400 @@ public class SnowflakeResultChunk
     private int nextIndex = 0;
   }
   /**
-   * Cache the data, offset and length blocks
+   * OffHeapResultChunkData:
+   * Same layout as BlockResultChunkDataV2, but the data, offsets and null
+   * bitmaps live in direct buffers, so prefetched chunks do not occupy the
+   * Java heap. The buffers are freed when they are no longer referenced.
+   * <p>
+   * Readers copy cells through a duplicate of a block made for each read,
+   * so the chunk holds no reader state: rows of a chunk that is still
+   * being parsed, or read by several threads, do not disturb each other.
    */
-  static class ResultChunkDataCache
+  private static class OffHeapResultChunkData implements ResultChunkData
   {
-    /**
-     * Add the data to the cache.
-     * CAUTION: The result chunk is not usable afterward
-     *
-     * @param chunk add this to the cache
-     */
-    void add(SnowflakeResultChunk chunk)
+    OffHeapResultChunkData(int totalLength, int rowCount, int colCount)
     {
-      cache.add(new SoftReference<>(chunk.data));
-      chunk.data = null;
+      this.blockCount = getBlock(totalLength - 1) + 1;
+      this.rowCount = rowCount;
+      this.colCount = colCount;
+      this.metaBlockCount = getMetaBlock(this.rowCount * this.colCount - 1) + 1;
+    }
+
+    @Override
+    public void addOffset(int offset)
+    {
+      if (data.size() < blockCount || offsets.size() < metaBlockCount)
+      {
+        allocateArrays();
+      }
+      offsets.get(getMetaBlock(nextIndex))
+          .put(getMetaBlockIndex(nextIndex), offset);
+    }
+
+    @Override
+    public void setIsNull()
+    {
+      ByteBuffer nulls = isNulls.get(getMetaBlock(nextIndex));
+      int bit = getMetaBlockIndex(nextIndex);
+      nulls.put(bit >> 3, (byte) (nulls.get(bit >> 3) | (1 << (bit & 7))));
+    }
+
+    @Override
+    public void setLastLength(int len)
+    {
+      lastLength = len;
+    }
+
+    @Override
+    public byte getByte(int offset)
+    {
+      return data.get(getBlock(offset)).get(getBlockOffset(offset));
+    }
+
+    @Override
+    public void addByte(byte b, int pos)
+    {
+      if (data.size() < blockCount || offsets.size() < metaBlockCount)
+      {
+        allocateArrays();
+      }
+      data.get(getBlock(pos)).put(getBlockOffset(pos), b);
+    }
+
+    @Override
+    public void addBytes(byte[] src, int src_offset, int pos, int length)
+    {
+      if (data.size() < blockCount || offsets.size() < metaBlockCount)
+      {
+        allocateArrays();
+      }
+
+      int copied = 0;
+      while (copied < length)
+      {
+        final int copySize
+            = Math.min(length - copied, spaceLeftOnBlock(pos + copied));
+        ByteBuffer block = data.get(getBlock(pos + copied));
+        ((Buffer) block).position(getBlockOffset(pos + copied));
+        block.put(src, src_offset + copied, copySize);
+        copied += copySize;
+      }
+    }
+
+    @Override
+    public void nextIndex()
+    {
+      nextIndex++;
+    }
+
+    @Override
+    public void add(String string) throws SnowflakeSQLException
+    {
+      throw new SnowflakeSQLException(
+          SqlState.INTERNAL_ERROR,
+          ErrorCode.INTERNAL_ERROR
+              .getMessageCode(),
+          "Unimplemented");
+    }
+
+    private int getLength(int index, int offset)
+    {
+      if (index == rowCount * colCount - 1)
+      {
+        // last one
+        return lastLength;
+      }
+      else
+      {
+        int nextOffset = offsets.get(getMetaBlock(index + 1))
+            .get(getMetaBlockIndex(index + 1));
+        return nextOffset - offset;
+      }
+    }
+
+    @Override
+    public String get(int index)
+    {
+      final int bit = getMetaBlockIndex(index);
+      final byte nulls = isNulls.get(getMetaBlock(index)).get(bit >> 3);
+      if ((nulls & (1 << (bit & 7))) != 0)
+      {
+        return null;
+      }
+
+      final int offset = offsets.get(getMetaBlock(index)).get(bit);
+      final int length = getLength(index, offset);
+
+      byte[] cell = new byte[length];
+      copyCell(offset, cell, length);
+      return new String(cell, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean getBytes(int index, CellBytes cell)
+    {
+      final int bit = getMetaBlockIndex(index);
+      final byte nulls = isNulls.get(getMetaBlock(index)).get(bit >> 3);
+      if ((nulls & (1 << (bit & 7))) != 0)
+      {
+        cell.setNull();
+        return true;
+      }
+
+      final int offset = offsets.get(getMetaBlock(index)).get(bit);
+      final int length = getLength(index, offset);
+
+      copyCell(offset, cell.copyBuffer(length), length);
+      return true;
     }
 
     /**
-     * Creates a new ResultChunkData which reuses as much blocks as possible
-     *
-     * @param data fill this with reused blocks
+     * Copy a cell out of the direct buffers. The blocks are read through
+     * duplicates, as the bulk get of Java 8 reads from the position.
      */
-    void reuseOrCreateResultData(ResultChunkData data)
+    private void copyCell(int offset, byte[] cell, int length)
     {
-      List<SoftReference<ResultChunkData>> remove = new ArrayList<>();
-      try
+      int copied = 0;
+      while (copied < length)
       {
-        for (SoftReference<ResultChunkData> ref : cache)
-        {
-          ResultChunkData dat = ref.get();
-          if (dat == null)
-          {
-            remove.add(ref);
-            continue;
-          }
-          if (dat instanceof BlockResultChunkData)
-          {
-            BlockResultChunkData bTargetData = (BlockResultChunkData) data;
-            BlockResultChunkData bCachedDat = (BlockResultChunkData) dat;
-            if (bCachedDat.data.size() == 0 && bCachedDat.offsets.size() == 0)
-            {
-              remove.add(ref);
-              continue;
-            }
-
-            while (bTargetData.data.size() < bTargetData.blockCount && bCachedDat.data.size() > 0)
-            {
-              bTargetData.data.add(bCachedDat.data.remove(bCachedDat.data.size() - 1));
-            }
-            while (bTargetData.offsets.size() < bTargetData.metaBlockCount && bCachedDat.offsets.size() > 0)
-            {
-              bTargetData.offsets.add(bCachedDat.offsets.remove(bCachedDat.offsets.size() - 1));
-              bTargetData.lengths.add(bCachedDat.lengths.remove(bCachedDat.lengths.size() - 1));
-            }
-            if (bTargetData.data.size() == bTargetData.blockCount &&
-                bTargetData.offsets.size() == bTargetData.metaBlockCount)
-            {
-              return;
-            }
-          }
-          else if (dat instanceof BlockResultChunkDataV2)
-          {
-            BlockResultChunkDataV2 bTargetData = (BlockResultChunkDataV2) data;
-            BlockResultChunkDataV2 bCachedDat = (BlockResultChunkDataV2) dat;
-            if (bCachedDat.data.size() == 0 && bCachedDat.offsets.size() == 0)
-            {
-              remove.add(ref);
-              continue;
-            }
-
-            while (bTargetData.data.size() < bTargetData.blockCount && bCachedDat.data.size() > 0)
-            {
-              bTargetData.data.add(bCachedDat.data.remove(bCachedDat.data.size() - 1));
-            }
-            while (bTargetData.offsets.size() < bTargetData.metaBlockCount && bCachedDat.offsets.size() > 0)
-            {
-              bTargetData.offsets.add(bCachedDat.offsets.remove(bCachedDat.offsets.size() - 1));
-              bTargetData.isNulls.add(bCachedDat.isNulls.remove(bCachedDat.isNulls.size() - 1));
-            }
-            if (bTargetData.data.size() == bTargetData.blockCount &&
-                bTargetData.offsets.size() == bTargetData.metaBlockCount)
-            {
-              return;
-            }
-          }
-          else
-          {
-            remove.add(ref);
-          }
-        }
+        final int copySize
+            = Math.min(length - copied, spaceLeftOnBlock(offset + copied));
+        ByteBuffer block = data.get(getBlock(offset + copied)).duplicate();
+        ((Buffer) block).position(getBlockOffset(offset + copied));
+        block.get(cell, copied, copySize);
+        copied += copySize;
+      }
+    }
+
+    @Override
+    public long computeNeededChunkMemory()
+    {
+      long dataRequirement = blockCount * blockLength * 1L;
+      long metadataRequirement = metaBlockCount * metaBlockLength * 4L // offsets
+                                 + metaBlockCount * metaBlockLength / 8L // isNulls
+                                 + 1L; // lastLength
+
+      return dataRequirement + metadataRequirement;
+    }
+
+    @Override
+    public void freeData()
+    {
+      ChunkBlockPool pool = ChunkBlockPool.getInstance();
+      pool.directDataBlocks.releaseAll(data);
+      pool.directMetaBlocks.releaseAll(offsets);
+      pool.directNullBlocks.releaseAll(isNulls);
+      data.clear();
+      offsets.clear();
+      isNulls.clear();
+    }
+
+    private static int getBlock(int offset)
+    {
+      return offset >> blockLengthBits;
+    }
+
+    private static int getBlockOffset(int offset)
+    {
+      return offset & (blockLength - 1);
+    }
+
+    private static int spaceLeftOnBlock(int offset)
+    {
+      return blockLength - getBlockOffset(offset);
+    }
+
+    private static int getMetaBlock(int index)
+    {
+      return index >> metaBlockLengthBits;
+    }
+
+    private static int getMetaBlockIndex(int index)
+    {
+      return index & (metaBlockLength - 1);
+    }
+
+    private void addMetaBlock(IntBuffer offsetBlock, ByteBuffer nullBlock)
+    {
+      offsets.add(offsetBlock);
+      isNulls.add(nullBlock);
+    }
+
+    private void allocateArrays()
+    {
+      logger.debug("allocating {} B off heap for ResultChunk",
+                   computeNeededChunkMemory());
+      ChunkBlockPool pool = ChunkBlockPool.getInstance();
+      while (data.size() < blockCount)
+      {
+        data.add(pool.directDataBlocks.acquire());
       }
-      finally
+      while (offsets.size() < metaBlockCount)
       {
-        cache.removeAll(remove);
+        addMetaBlock(pool.directMetaBlocks.acquire(),
+                     pool.directNullBlocks.acquire());
       }
+      logger.debug("allocated {} B off heap for ResultChunk",
+                   computeNeededChunkMemory());
+    }
+
+    // blocks for storing the string data
+    int blockCount;
+    private static final int blockLengthBits = ChunkBlockPool.DATA_BLOCK_BITS;
+    private static int blockLength = 1 << blockLengthBits;
+    private final ArrayList<ByteBuffer> data = new ArrayList<>();
+
+    // blocks for storing offsets and null bitmaps
+    int metaBlockCount;
+    private static int metaBlockLengthBits = ChunkBlockPool.META_BLOCK_BITS;
+    private static int metaBlockLength = 1 << metaBlockLengthBits;
+    private final ArrayList<IntBuffer> offsets = new ArrayList<>();
+    private final ArrayList<ByteBuffer> isNulls = new ArrayList<>();
+    private int lastLength;
+    private int rowCount, colCount;
+    private int nextIndex = 0;
+  }
+
+  /**
+   * This implementation keeps the record batches of an Arrow result as they
+   * were received and converts a cell to text when it is accessed.
+   */
+  private static class ArrowResultChunkData implements ResultChunkData
+  {
+    ArrowResultChunkData(int colCount, long uncompressedSize)
+    {
+      this.colCount = colCount;
+      this.uncompressedSize = uncompressedSize;
     }
 
     /**
-     * Let GC collect all data hold by the cache
+     * Called by the parser thread while the consumer may read earlier batches
      */
-    void clear()
+    void addBatch(ResultArrowParser.ArrowBatch batch)
+    {
+      batches.add(batch);
+    }
+
+    @Override
+    public void add(String string) throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    @Override
+    public String get(int index)
+    {
+      final int row = index / colCount;
+      ResultArrowParser.ArrowBatch batch = lastBatch;
+      if (batch == null || row < batch.firstRow ||
+          row >= batch.firstRow + batch.rowCount)
+      {
+        batch = findBatch(row);
+        lastBatch = batch;
+      }
+      return batch.columns[index % colCount].getText(row - batch.firstRow);
+    }
+
+    @Override
+    public boolean getBytes(int index, CellBytes cell)
+    {
+      // the cells are converted to text when they are accessed
+      return false;
+    }
+
+    private ResultArrowParser.ArrowBatch findBatch(int row)
     {
-      for (SoftReference<ResultChunkData> ref : cache)
+      int low = 0;
+      int high = batches.size() - 1;
+      while (low < high)
       {
-        ResultChunkData dat = ref.get();
-        if (dat != null)
+        int mid = (low + high + 1) >>> 1;
+        if (batches.get(mid).firstRow <= row)
+        {
+          low = mid;
+        }
+        else
         {
-          dat.freeData();
+          high = mid - 1;
         }
       }
-      cache.clear();
+      return batches.get(low);
+    }
+
+    @Override
+    public long computeNeededChunkMemory()
+    {
+      // the batches hold the received buffers
+      return uncompressedSize;
+    }
+
+    @Override
+    public void freeData()
+    {
+      batches.clear();
+      lastBatch = null;
+    }
+
+    @Override
+    public void addOffset(int offset) throws SnowflakeSQLException
+    {
+      throw unimplemented();
     }
 
-    List<SoftReference<ResultChunkData>> cache = new LinkedList<>();
+    @Override
+    public void setIsNull() throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    @Override
+    public void setLastLength(int len) throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    @Override
+    public byte getByte(int offset) throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    @Override
+    public void addByte(byte b, int pos) throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    @Override
+    public void nextIndex() throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    @Override
+    public void addBytes(byte[] src, int src_offset, int pos, int length)
+    throws SnowflakeSQLException
+    {
+      throw unimplemented();
+    }
+
+    private static SnowflakeSQLException unimplemented()
+    {
+      return new SnowflakeSQLException(
+          SqlState.INTERNAL_ERROR,
+          ErrorCode.INTERNAL_ERROR
+              .getMessageCode(),
+          "Unimplemented");
+    }
+
+    private final int colCount;
+    private final long uncompressedSize;
+
+    // batches in row order, appended while the chunk is parsed
+    private final List<ResultArrowParser.ArrowBatch> batches =
+        new CopyOnWriteArrayList<>();
+
+    // batch of the last accessed row, rows are mostly read in order
+    private ResultArrowParser.ArrowBatch lastBatch;
   }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+/**
+ * One row of a result streamed with {@link SnowflakeResultSet#stream}.
+ * <p>
+ * The row is a view of a {@link SnowflakeColumnBatch}, so the cells are the
+ * values of the batch: numbers of primitive columns, otherwise the text the
+ * server sends, e.g. dates as days and timestamps as seconds since the
+ * epoch. Rows can be read from any thread.
+ * <p>
+ * Column indexes start at 1.
+ */
+public final class SnowflakeResultRow
+{
+  private final SnowflakeColumnBatch batch;
+
+  private final int rowIndex;
+
+  SnowflakeResultRow(SnowflakeColumnBatch batch, int rowIndex)
+  {
+    this.batch = batch;
+    this.rowIndex = rowIndex;
+  }
+
+  /**
+   * @return the batch holding the row
+   */
+  public SnowflakeColumnBatch getBatch()
+  {
+    return batch;
+  }
+
+  /**
+   * @return index of the row in its batch
+   */
+  public int getRowIndex()
+  {
+    return rowIndex;
+  }
+
+  public int getColumnCount()
+  {
+    return batch.getColumnCount();
+  }
+
+  public boolean isNull(int columnIndex)
+  {
+    return batch.isNull(rowIndex, columnIndex);
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return the cell as text, null for a null cell
+   */
+  public String getString(int columnIndex)
+  {
+    if (isNull(columnIndex))
+    {
+      return null;
+    }
+    long[] longs = batch.getLongs(columnIndex);
+    if (longs != null)
+    {
+      return String.valueOf(longs[rowIndex]);
+    }
+    double[] doubles = batch.getDoubles(columnIndex);
+    if (doubles != null)
+    {
+      return String.valueOf(doubles[rowIndex]);
+    }
+    return batch.getStrings(columnIndex)[rowIndex];
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return the cell as long, 0 for a null cell. A cell of a FLOAT column is
+   * truncated, the same whether the column is read as numbers or as text.
+   * @throws NumberFormatException if the text of the cell is not a number
+   */
+  public long getLong(int columnIndex)
+  {
+    if (isNull(columnIndex))
+    {
+      return 0;
+    }
+    long[] longs = batch.getLongs(columnIndex);
+    if (longs != null)
+    {
+      return longs[rowIndex];
+    }
+    double[] doubles = batch.getDoubles(columnIndex);
+    if (doubles != null)
+    {
+      return (long) doubles[rowIndex];
+    }
+    String text = batch.getStrings(columnIndex)[rowIndex];
+    try
+    {
+      return Long.parseLong(text);
+    }
+    catch (NumberFormatException ex)
+    {
+      return (long) parseDouble(text);
+    }
+  }
+
+  /**
+   * @param columnIndex column index
+   * @return the cell as double, 0 for a null cell. The text inf and -inf
+   * of a FLOAT cell is infinite, as for ResultSet.getDouble.
+   * @throws NumberFormatException if the text of the cell is not a number
+   */
+  public double getDouble(int columnIndex)
+  {
+    if (isNull(columnIndex))
+    {
+      return 0;
+    }
+    long[] longs = batch.getLongs(columnIndex);
+    if (longs != null)
+    {
+      return longs[rowIndex];
+    }
+    double[] doubles = batch.getDoubles(columnIndex);
+    if (doubles != null)
+    {
+      return doubles[rowIndex];
+    }
+    return parseDouble(batch.getStrings(columnIndex)[rowIndex]);
+  }
+
+  private static double parseDouble(String text)
+  {
+    if ("inf".equals(text))
+    {
+      return Double.POSITIVE_INFINITY;
+    }
+    else if ("-inf".equals(text))
+    {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return Double.parseDouble(text);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+/**
+ * Snowflake specific result set methods, available with
+ * {@code resultSet.unwrap(SnowflakeResultSet.class)}
+ */
+public interface SnowflakeResultSet
+{
+  /**
+   * Fetch the rows after the current row column by column. The batch holds
+   * at most maxRows rows and never spans two result chunks, so it can be
+   * smaller even if more rows follow. The last row of the batch becomes the
+   * current row, so batches and next() can be mixed.
+   *
+   * @param maxRows maximum number of rows
+   * @return the rows, null if there are no more rows
+   * @throws SQLException if the rows can not be fetched
+   */
+  SnowflakeColumnBatch nextBatch(int maxRows) throws SQLException;
+
+  /**
+   * Get a spliterator over the rows after the current row. Each split hands
+   * out the rows of the next result chunk, so the chunks can be processed
+   * in parallel while the following chunks are downloaded. The result set
+   * must not be used otherwise until the spliterator is done.
+   *
+   * @return the spliterator
+   * @throws SQLException if the result set is closed
+   */
+  Spliterator<SnowflakeResultRow> spliterator() throws SQLException;
+
+  /**
+   * Stream the rows after the current row, see {@link #spliterator()}
+   *
+   * @param parallel true for a parallel stream
+   * @return the stream of rows
+   * @throws SQLException if the result set is closed
+   */
+  Stream<SnowflakeResultRow> stream(boolean parallel) throws SQLException;
+}
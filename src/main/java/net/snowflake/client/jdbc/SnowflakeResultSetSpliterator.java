@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the rows after the current row of a result set.
+ * <p>
+ * Every split takes the next batch of rows from the result set, so rows are
+ * handed out chunk by chunk and a parallel stream processes several chunks
+ * at the same time while the chunk downloader fetches the next ones. The
+ * rows of one chunk can be split further. Rows are fetched from the result
+ * set by one thread at a time, the result set must not be used otherwise
+ * while the spliterator is in use.
+ */
+final class SnowflakeResultSetSpliterator implements Spliterator<SnowflakeResultRow>
+{
+  // maximum rows of a batch, so the rows of the base implementation, which
+  // reads rows one by one, are not all read by the first split
+  static final int MAX_BATCH_ROWS = 1 << 20;
+
+  private final SnowflakeResultSet resultSet;
+
+  // rows of the current batch not handed out yet, null if none
+  private BatchSpliterator current = null;
+
+  private boolean exhausted = false;
+
+  SnowflakeResultSetSpliterator(SnowflakeResultSet resultSet)
+  {
+    this.resultSet = resultSet;
+  }
+
+  /**
+   * @return the rows of the next batch of the result set, or null if all
+   * rows are fetched
+   */
+  private BatchSpliterator fetchBatch()
+  {
+    if (exhausted)
+    {
+      return null;
+    }
+    SnowflakeColumnBatch batch;
+    synchronized (resultSet)
+    {
+      try
+      {
+        batch = resultSet.nextBatch(MAX_BATCH_ROWS);
+      }
+      catch (SQLException ex)
+      {
+        throw new RuntimeException("failed to fetch result rows", ex);
+      }
+    }
+    if (batch == null)
+    {
+      exhausted = true;
+      return null;
+    }
+    return new BatchSpliterator(batch, 0, batch.getRowCount());
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super SnowflakeResultRow> action)
+  {
+    while (current == null || !current.tryAdvance(action))
+    {
+      current = fetchBatch();
+      if (current == null)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super SnowflakeResultRow> action)
+  {
+    do
+    {
+      if (current != null)
+      {
+        current.forEachRemaining(action);
+      }
+      current = fetchBatch();
+    }
+    while (current != null);
+  }
+
+  /**
+   * Hand out the rows of the current batch, or of the next one if all rows
+   * of the current batch are handed out
+   */
+  @Override
+  public Spliterator<SnowflakeResultRow> trySplit()
+  {
+    BatchSpliterator split = current;
+    current = null;
+    if (split == null || split.estimateSize() == 0)
+    {
+      split = fetchBatch();
+    }
+    return split;
+  }
+
+  @Override
+  public long estimateSize()
+  {
+    return exhausted && current == null ? 0 : Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics()
+  {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+
+  /**
+   * Rows of one batch
+   */
+  static final class BatchSpliterator implements Spliterator<SnowflakeResultRow>
+  {
+    private final SnowflakeColumnBatch batch;
+
+    private int nextRow;
+
+    private final int endRow;
+
+    BatchSpliterator(SnowflakeColumnBatch batch, int firstRow, int endRow)
+    {
+      this.batch = batch;
+      this.nextRow = firstRow;
+      this.endRow = endRow;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super SnowflakeResultRow> action)
+    {
+      if (nextRow >= endRow)
+      {
+        return false;
+      }
+      action.accept(new SnowflakeResultRow(batch, nextRow++));
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super SnowflakeResultRow> action)
+    {
+      while (nextRow < endRow)
+      {
+        action.accept(new SnowflakeResultRow(batch, nextRow++));
+      }
+    }
+
+    @Override
+    public Spliterator<SnowflakeResultRow> trySplit()
+    {
+      int half = (endRow - nextRow) >>> 1;
+      if (half == 0)
+      {
+        return null;
+      }
+      BatchSpliterator prefix =
+          new BatchSpliterator(batch, nextRow, nextRow + half);
+      nextRow += half;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize()
+    {
+      return endRow - nextRow;
+    }
+
+    @Override
+    public int characteristics()
+    {
+      return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+  }
+}
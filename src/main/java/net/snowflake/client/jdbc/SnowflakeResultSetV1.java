@@ -28,12 +28,16 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.Spliterator;
 import java.util.TimeZone;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Snowflake ResultSet implementation
  */
 class SnowflakeResultSetV1 extends SnowflakeBaseResultSet
+    implements SnowflakeResultSet
 {
   private final SFBaseResultSet sfBaseResultSet;
 
@@ -89,6 +93,40 @@ class SnowflakeResultSetV1 extends SnowflakeBaseResultSet
     }
   }
 
+  @Override
+  public SnowflakeColumnBatch nextBatch(int maxRows) throws SQLException
+  {
+    raiseSQLExceptionIfResultSetIsClosed();
+    if (maxRows <= 0)
+    {
+      throw new SnowflakeSQLException(ErrorCode.INVALID_PARAMETER_VALUE,
+                                      maxRows, "maxRows");
+    }
+    try
+    {
+      return sfBaseResultSet.nextBatch(maxRows);
+    }
+    catch (SFException ex)
+    {
+      throw new SnowflakeSQLException(
+          ex.getCause(), ex.getSqlState(), ex.getVendorCode(), ex.getParams());
+    }
+  }
+
+  @Override
+  public Spliterator<SnowflakeResultRow> spliterator() throws SQLException
+  {
+    raiseSQLExceptionIfResultSetIsClosed();
+    return new SnowflakeResultSetSpliterator(this);
+  }
+
+  @Override
+  public Stream<SnowflakeResultRow> stream(boolean parallel)
+  throws SQLException
+  {
+    return StreamSupport.stream(spliterator(), parallel);
+  }
+
   @Override
   public void close() throws SQLException
   {
@@ -282,6 +320,21 @@ class SnowflakeResultSetV1 extends SnowflakeBaseResultSet
     }
   }
 
+  @Override
+  public <T> T getObject(int columnIndex, Class<T> type) throws SQLException
+  {
+    raiseSQLExceptionIfResultSetIsClosed();
+    try
+    {
+      return sfBaseResultSet.getObject(columnIndex, type);
+    }
+    catch (SFException ex)
+    {
+      throw new SnowflakeSQLException(ex.getCause(),
+                                      ex.getSqlState(), ex.getVendorCode(), ex.getParams());
+    }
+  }
+
   public BigDecimal getBigDecimal(int columnIndex) throws SQLException
   {
     raiseSQLExceptionIfResultSetIsClosed();
@@ -366,6 +419,29 @@ class SnowflakeResultSetV1 extends SnowflakeBaseResultSet
     return sfBaseResultSet.isBeforeFirst();
   }
 
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException
+  {
+    logger.debug("public boolean isWrapperFor(Class<?> iface)");
+
+    return iface.isInstance(this);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException
+  {
+    logger.debug("public <T> T unwrap(Class<T> iface)");
+
+    if (!iface.isInstance(this))
+    {
+      throw new SQLException(
+          this.getClass().getName() + " not unwrappable from " + iface
+              .getName());
+    }
+    return (T) this;
+  }
+
   /**
    * Empty result set
    */
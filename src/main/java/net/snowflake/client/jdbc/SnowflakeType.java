@@ -14,6 +14,7 @@ import java.text.DateFormat;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TimeZone;
 
 /**
  * Type converters
@@ -250,6 +251,93 @@ public enum SnowflakeType
       String ret2 = synchronizeFormat(o, timestampTzFormat);
       return ret1 + nanos + ret2;
     }
+    return lexicalValueOf(o, c);
+  }
+
+  /**
+   * Returns a lexical value of an object that is suitable for Snowflake import
+   * serialization. Dates and times are formatted like the patterns of this
+   * class do with a calendar in the given time zone, but without a
+   * DateFormat, so the loaders running in parallel do not share a lock.
+   *
+   * @param o               Java object representing value in Snowflake.
+   * @param timeZone        time zone of dates, times and timestamps
+   * @param timeAsTimestamp true if a java.sql.Time is formatted like a date
+   * @return String representation of it that can be used for creating a load file
+   */
+  public static String lexicalValue(Object o, TimeZone timeZone,
+                                    boolean timeAsTimestamp)
+  {
+    if (o == null)
+    {
+      return null;
+    }
+
+    Class c = o.getClass();
+
+    if (c == Date.class || c == java.sql.Date.class ||
+        (c == java.sql.Time.class && timeAsTimestamp))
+    {
+      // DATE_OR_TIME_FORMAT_PATTERN
+      long millis = ((Date) o).getTime();
+      int offset = timeZone.getOffset(millis);
+      StringBuilder sb = new StringBuilder(29);
+      LexicalDateTime.appendDate(sb, millis + offset);
+      sb.append('T');
+      LexicalDateTime.appendTime(sb, millis + offset);
+      sb.append('.');
+      LexicalDateTime.appendMillis(sb, millis + offset);
+      LexicalDateTime.appendOffset(sb, offset);
+      return sb.toString();
+    }
+
+    if (c == java.sql.Time.class)
+    {
+      // TIME_FORMAT_PATTERN
+      long millis = ((Date) o).getTime();
+      int offset = timeZone.getOffset(millis);
+      StringBuilder sb = new StringBuilder(12);
+      LexicalDateTime.appendTime(sb, millis + offset);
+      sb.append('.');
+      LexicalDateTime.appendMillis(sb, millis + offset);
+      return sb.toString();
+    }
+
+    if (c == java.sql.Timestamp.class)
+    {
+      // TIMESTAMP_FORMAT_PATTERN, the nanoseconds as Timestamp.toString
+      // prints them and TIMESTAMP_FORMAT_TZ_PATTERN
+      Timestamp ts = (Timestamp) o;
+      long millis = ts.getTime();
+      int offset = timeZone.getOffset(millis);
+      StringBuilder sb = new StringBuilder(35);
+      LexicalDateTime.appendDate(sb, millis + offset);
+      sb.append('T');
+      LexicalDateTime.appendTime(sb, millis + offset);
+      sb.append('.');
+      int nanos = ts.getNanos();
+      if (nanos == 0)
+      {
+        sb.append('0');
+      }
+      else
+      {
+        LexicalDateTime.appendNanos(sb, nanos);
+        int end = sb.length();
+        while (sb.charAt(end - 1) == '0')
+        {
+          end--;
+        }
+        sb.setLength(end);
+      }
+      LexicalDateTime.appendOffset(sb, offset);
+      return sb.toString();
+    }
+    return lexicalValueOf(o, c);
+  }
+
+  private static String lexicalValueOf(Object o, Class c)
+  {
     if (c == Double.class)
     {
       return Double.toHexString((Double) o);
@@ -278,10 +366,13 @@ public enum SnowflakeType
     return String.valueOf(o);
   }
 
-  private static synchronized String synchronizeFormat(
-      Object o, DateFormat sdf)
+  private static String synchronizeFormat(Object o, DateFormat sdf)
   {
-    return sdf.format(o);
+    // a DateFormat is not thread safe, the callers may share the formats
+    synchronized (sdf)
+    {
+      return sdf.format(o);
+    }
   }
 
   public static String escapeForCSV(String value)
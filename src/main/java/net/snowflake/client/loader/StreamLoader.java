@@ -13,10 +13,6 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -137,25 +133,8 @@ public class StreamLoader implements Loader, Runnable
 
   private AtomicInteger _throttleCounter = new AtomicInteger(0);
 
-  private final GregorianCalendar _calendarUTC = new GregorianCalendar(
-      TimeZone.getTimeZone("UTC"));
-
-  private GregorianCalendar _calendarLocal;
-
-  /**
-   * Resets calendar when start the job.
-   */
-  private void resetCalendar()
-  {
-    _calendarUTC.clear();
-    _calendarLocal = new GregorianCalendar(TimeZone.getDefault());
-    _calendarLocal.clear();
-  }
-
-  private DateFormat _dateFormat;
-  private DateFormat _timeFormat;
-  private DateFormat _timestampFormat;
-  private DateFormat _timestampTzFormat;
+  // time zone of the dates, times and timestamps of the rows
+  private TimeZone _timeZone;
 
   public StreamLoader(Map<LoaderProperty, Object> properties,
                       Connection putConnection,
@@ -331,28 +310,10 @@ public class StreamLoader implements Loader, Runnable
     }
   }
 
-  private void initDateFormats()
+  private void initTimeZone()
   {
-    resetCalendar();
-
-    _dateFormat = new SimpleDateFormat(SnowflakeType.DATE_OR_TIME_FORMAT_PATTERN);
-    if (_mapTimeToTimestamp)
-    {
-      // same format for TIME to TIMESTAMP
-      _timeFormat = _dateFormat;
-    }
-    else
-    {
-      _timeFormat = new SimpleDateFormat(SnowflakeType.TIME_FORMAT_PATTERN);
-    }
-    _timestampFormat = new SimpleDateFormat(SnowflakeType.TIMESTAMP_FORMAT_PATTERN);
-    _timestampTzFormat = new SimpleDateFormat(SnowflakeType.TIMESTAMP_FORMAT_TZ_PATTERN);
-
-    Calendar cal = !_useLocalTimezone ? _calendarUTC : _calendarLocal;
-    _dateFormat.setCalendar(cal);
-    _timeFormat.setCalendar(cal);
-    _timestampFormat.setCalendar(cal);
-    _timestampTzFormat.setCalendar(cal);
+    _timeZone = !_useLocalTimezone ?
+                TimeZone.getTimeZone("UTC") : TimeZone.getDefault();
   }
 
   /**
@@ -371,7 +332,7 @@ public class StreamLoader implements Loader, Runnable
       return;
     }
 
-    initDateFormats();
+    initTimeZone();
 
     initQueues();
 
@@ -718,12 +679,8 @@ public class StreamLoader implements Loader, Runnable
         sb.append(',');
       }
       sb.append(SnowflakeType.escapeForCSV(
-          SnowflakeType.lexicalValue(
-              data[i],
-              _dateFormat,
-              _timeFormat,
-              _timestampFormat,
-              _timestampTzFormat)));
+          SnowflakeType.lexicalValue(data[i], _timeZone,
+                                     _mapTimeToTimestamp)));
     }
     return sb.toString().getBytes(UTF_8);
   }
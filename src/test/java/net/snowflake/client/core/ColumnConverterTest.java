@@ -0,0 +1,178 @@
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.SnowflakeColumnMetadata;
+import net.snowflake.client.jdbc.SnowflakeFixedView;
+import net.snowflake.client.jdbc.SnowflakeType;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ColumnConverter
+ */
+public class ColumnConverterTest
+{
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  private static SnowflakeColumnMetadata column(String name, int type,
+                                                int scale, SnowflakeType base)
+  {
+    return new SnowflakeColumnMetadata(name, type, true, 0, 38, scale,
+                                       base.name(), false, base, "", "", "");
+  }
+
+  /**
+   * A result set of the given rows with one column of each type
+   */
+  private static SFBaseResultSet resultSet(List<Object>... rows)
+  throws Exception
+  {
+    final List<SnowflakeColumnMetadata> columns = Arrays.asList(
+        column("S", Types.VARCHAR, 0, SnowflakeType.TEXT),
+        column("I", Types.INTEGER, 0, SnowflakeType.INTEGER),
+        column("N", Types.DECIMAL, 2, SnowflakeType.FIXED),
+        column("D", Types.DOUBLE, 0, SnowflakeType.REAL),
+        column("B", Types.BOOLEAN, 0, SnowflakeType.BOOLEAN),
+        column("DT", Types.DATE, 0, SnowflakeType.DATE),
+        column("TS", Types.TIMESTAMP, 3, SnowflakeType.TIMESTAMP_NTZ),
+        column("T", Types.TIME, 3, SnowflakeType.TIME));
+    final Iterator<List<Object>> iterator = Arrays.asList(rows).iterator();
+
+    return new SFFixedViewResultSet(new SnowflakeFixedView()
+    {
+      @Override
+      public List<SnowflakeColumnMetadata> describeColumns()
+      {
+        return columns;
+      }
+
+      @Override
+      public List<Object> getNextRow()
+      {
+        return iterator.hasNext() ? iterator.next() : null;
+      }
+
+      @Override
+      public int getTotalRows()
+      {
+        return rows.length;
+      }
+    }, null);
+  }
+
+  @Test
+  public void testGetObject() throws Throwable
+  {
+    SFBaseResultSet rs = resultSet(
+        Arrays.<Object>asList("abc", "42", "1.50", "2.5", "1", "18000",
+                              "1555113600.123", "3723.5"),
+        Collections.nCopies(8, null));
+
+    assertTrue(rs.next());
+    assertEquals("abc", rs.getObject(1));
+    assertEquals(42, rs.getObject(2));
+    assertEquals(new BigDecimal("1.50"), rs.getObject(3));
+    assertEquals(2.5, rs.getObject(4));
+    assertEquals(true, rs.getObject(5));
+    assertTrue(rs.getObject(6) instanceof Date);
+    assertTrue(rs.getObject(7) instanceof Timestamp);
+    assertTrue(rs.getObject(8) instanceof Time);
+
+    assertEquals("TRUE", rs.getString(5));
+    assertEquals("42", rs.getString(2));
+    assertEquals(new Date(18000 * 86400000L), rs.getDate(6, UTC));
+    assertEquals(new Timestamp(18000 * 86400000L), rs.getTimestamp(6, UTC));
+    assertEquals(new Timestamp(1555113600123L), rs.getTimestamp(7, UTC));
+    assertEquals(new Date(1555113600123L), rs.getDate(7, UTC));
+    assertEquals(new Time(3723500), rs.getTime(8));
+
+    assertEquals(Integer.valueOf(42), rs.getObject(2, Integer.class));
+    assertEquals("1.50", rs.getObject(3, String.class));
+    assertEquals(LocalDate.of(2019, 4, 14), rs.getObject(6, LocalDate.class));
+    assertEquals(LocalDateTime.of(2019, 4, 13, 0, 0, 0, 123000000),
+                 rs.getObject(7, LocalDateTime.class));
+    assertEquals(LocalTime.of(1, 2, 3, 500000000),
+                 rs.getObject(8, LocalTime.class));
+
+    assertTrue(rs.next());
+    for (int col = 1; col <= 8; col++)
+    {
+      assertNull(rs.getObject(col));
+      assertNull(rs.getObject(col, LocalDateTime.class));
+      assertNull(rs.getString(col));
+    }
+    assertNull(rs.getDate(6, UTC));
+    assertNull(rs.getTimestamp(7, UTC));
+    assertNull(rs.getTime(8));
+  }
+
+  @Test
+  public void testInvalidConversion() throws Throwable
+  {
+    SFBaseResultSet rs = resultSet(
+        Arrays.<Object>asList("abc", "42", "1.50", "2.5", "1", "18000",
+                              "1555113600.123", "3723.5"));
+    assertTrue(rs.next());
+
+    try
+    {
+      rs.getDate(2, UTC);
+      fail("an integer is not a date");
+    }
+    catch (SFException ex)
+    {
+      assertEquals(ErrorCode.INVALID_VALUE_CONVERT.getMessageCode().intValue(),
+                   ex.getVendorCode());
+    }
+    try
+    {
+      rs.getTime(6);
+      fail("a date is not a time");
+    }
+    catch (SFException ex)
+    {
+      assertEquals(ErrorCode.INVALID_VALUE_CONVERT.getMessageCode().intValue(),
+                   ex.getVendorCode());
+    }
+    try
+    {
+      rs.getObject(2, LocalDate.class);
+      fail("an integer is not a date");
+    }
+    catch (SFException ex)
+    {
+      assertEquals(ErrorCode.INVALID_VALUE_CONVERT.getMessageCode().intValue(),
+                   ex.getVendorCode());
+    }
+    try
+    {
+      rs.getObject(9);
+      fail("no column 9");
+    }
+    catch (SFException ex)
+    {
+      assertEquals(ErrorCode.COLUMN_DOES_NOT_EXIST.getMessageCode().intValue(),
+                   ex.getVendorCode());
+    }
+  }
+}
@@ -0,0 +1,334 @@
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.SnowflakeUtil;
+import net.snowflake.common.core.SFTimestamp;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for DateTimeDecoder
+ */
+public class DateTimeDecoderTest
+{
+  private static final String[] TIME_ZONES = {
+      "UTC", "America/Los_Angeles", "Asia/Kolkata", "Australia/Lord_Howe",
+      "Europe/London", "America/Sao_Paulo"};
+
+  private final DateTimeDecoder decoder = new DateTimeDecoder();
+
+  /**
+   * The text is decoded in the middle of a larger array
+   */
+  private static byte[] bytes(String text)
+  {
+    return ("xx" + text + "yy").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private Timestamp decodeTimestamp(String text, boolean timeZoneIndex,
+                                    TimeZone moveTo)
+  {
+    return decoder.decodeTimestamp(bytes(text), 2, text.length(),
+                                   timeZoneIndex, moveTo);
+  }
+
+  private Date decodeDate(String text, TimeZone tz)
+  {
+    return decoder.decodeDate(bytes(text), 2, text.length(), tz);
+  }
+
+  private Time decodeTime(String text, int scale)
+  {
+    return decoder.decodeTime(bytes(text), 2, text.length(), scale);
+  }
+
+  /**
+   * The timestamp SFBaseResultSet returns for the text
+   */
+  private static Timestamp expectedTimestamp(String text, int scale,
+                                             int internalType, TimeZone tz)
+  throws SFException
+  {
+    SFTimestamp sfTS = ResultUtil.getSFTimestamp(
+        text, scale, internalType, 1, TimeZone.getTimeZone("UTC"), null);
+    if (tz != null)
+    {
+      sfTS = sfTS.moveToTimeZone(tz);
+    }
+    return ResultUtil.adjustTimestamp(sfTS.getTimestamp());
+  }
+
+  private static String seconds(Random random, long bound, int scale)
+  {
+    long seconds = random.nextLong() % bound;
+    if (scale == 0)
+    {
+      return Long.toString(seconds);
+    }
+    String fraction = Integer.toString(1000000000 + random.nextInt(1000000000))
+        .substring(1, 1 + scale);
+    // -0.5 is before the epoch, like the server formats it
+    return (seconds == 0 && random.nextBoolean() ? "-0" : seconds) + "." +
+           fraction;
+  }
+
+  @Test
+  public void testTimestamp() throws SFException
+  {
+    Random random = new Random(11);
+    for (String id : TIME_ZONES)
+    {
+      TimeZone tz = TimeZone.getTimeZone(id);
+      for (int i = 0; i < 3000; i++)
+      {
+        int scale = random.nextInt(10);
+        // mostly around now, where the DST rules change
+        long bound = random.nextBoolean() ? 10000000000L : 2000000000L;
+        String text = seconds(random, bound, scale);
+
+        assertEquals(text, expectedTimestamp(text, scale, Types.TIMESTAMP, tz),
+                     decodeTimestamp(text, false, tz));
+        assertEquals(text,
+                     expectedTimestamp(text, scale,
+                                       SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_LTZ,
+                                       null),
+                     decodeTimestamp(text, false, null));
+
+        String withIndex = text + " " + random.nextInt(2881);
+        assertEquals(withIndex,
+                     expectedTimestamp(withIndex, scale,
+                                       SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ,
+                                       null),
+                     decodeTimestamp(withIndex, true, null));
+      }
+    }
+  }
+
+  /**
+   * Wall clock times which do not exist or exist twice in the time zone
+   */
+  @Test
+  public void testDaylightSavingTransitions() throws SFException
+  {
+    TimeZone tz = TimeZone.getTimeZone("America/Los_Angeles");
+    // 2019-03-10 and 2019-11-03, every 10 minutes of the day
+    for (long day : new long[]{17965, 18203})
+    {
+      for (long second = 0; second < 86400; second += 600)
+      {
+        String text = (day * 86400 + second) + ".123456789";
+        assertEquals(text, expectedTimestamp(text, 9, Types.TIMESTAMP, tz),
+                     decodeTimestamp(text, false, tz));
+        String date = Long.toString(day);
+        assertEquals(ResultUtil.getDate(date, tz, null),
+                     decodeDate(date, tz));
+      }
+    }
+  }
+
+  @Test
+  public void testDate() throws SFException
+  {
+    Random random = new Random(13);
+    for (String id : TIME_ZONES)
+    {
+      TimeZone tz = TimeZone.getTimeZone(id);
+      for (int i = 0; i < 3000; i++)
+      {
+        String text = Integer.toString(random.nextInt(200000) - 100000);
+        assertEquals(text, ResultUtil.getDate(text, tz, null),
+                     decodeDate(text, tz));
+      }
+    }
+  }
+
+  @Test
+  public void testTime() throws SFException
+  {
+    Random random = new Random(17);
+    for (int i = 0; i < 10000; i++)
+    {
+      int scale = random.nextInt(10);
+      // the server may send more digits than the scale
+      String text = seconds(random, 86400, random.nextInt(10)).replace("-", "");
+      assertEquals(text,
+                   new Time(ResultUtil.getSFTime(text, scale, null)
+                                .getFractionalSeconds(3)),
+                   decodeTime(text, scale));
+    }
+  }
+
+  /**
+   * The java.time value of a timestamp is the value of the java.sql
+   * Timestamp the getters return, and TIMESTAMP_TZ keeps its offset
+   */
+  private static Object expectedJavaTime(Class<?> type, SFTimestamp sfTS,
+                                         int internalType,
+                                         boolean honorClientTZ)
+  {
+    TimeZone tz = TimeZone.getDefault();
+    Timestamp ts = ResultUtil.adjustTimestamp(
+        internalType == Types.TIMESTAMP && honorClientTZ ?
+        sfTS.moveToTimeZone(tz).getTimestamp() : sfTS.getTimestamp());
+    if (type == Instant.class)
+    {
+      return ts.toInstant();
+    }
+    if (type == OffsetDateTime.class || type == ZonedDateTime.class)
+    {
+      ZonedDateTime zoned = ts.toInstant().atZone(tz.toZoneId());
+      if (internalType == SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ)
+      {
+        int offsetSeconds =
+            sfTS.getTimeZone().getOffset(ts.getTime()) / 1000;
+        if (Math.abs(offsetSeconds) > 18 * 3600)
+        {
+          // beyond the range of ZoneOffset
+          return null;
+        }
+        zoned = ts.toInstant()
+            .atOffset(ZoneOffset.ofTotalSeconds(offsetSeconds))
+            .toZonedDateTime();
+      }
+      return type == ZonedDateTime.class ? zoned : zoned.toOffsetDateTime();
+    }
+    LocalDateTime local = ts.toLocalDateTime();
+    if (type == LocalDateTime.class)
+    {
+      return local;
+    }
+    return type == LocalDate.class ?
+           local.toLocalDate() : local.toLocalTime();
+  }
+
+  @Test
+  public void testJavaTime() throws SFException
+  {
+    Random random = new Random(29);
+    int[] types = {Types.TIMESTAMP, SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_LTZ,
+                   SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ};
+    Class<?>[] classes = {Instant.class, LocalDateTime.class,
+                          OffsetDateTime.class, ZonedDateTime.class,
+                          LocalDate.class, LocalTime.class};
+    TimeZone defaultTimeZone = TimeZone.getDefault();
+    try
+    {
+      for (String id : TIME_ZONES)
+      {
+        TimeZone.setDefault(TimeZone.getTimeZone(id));
+        for (int i = 0; i < 1000; i++)
+        {
+          int scale = random.nextInt(10);
+          int type = types[random.nextInt(types.length)];
+          boolean timeZoneIndex =
+              type == SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ;
+          // since 1906, the local mean time of the zones before their
+          // standard time differs between java.util and java.time
+          String text = seconds(random, 2000000000L, scale);
+          if (timeZoneIndex)
+          {
+            text += " " + random.nextInt(2881);
+          }
+          assertTrue(text, decoder.parseTimestamp(bytes(text), 2,
+                                                  text.length(),
+                                                  timeZoneIndex));
+
+          SFTimestamp sfTS = ResultUtil.getSFTimestamp(
+              text, scale, type, 1, TimeZone.getTimeZone("UTC"), null);
+          assertEquals(text, sfTS.getSeconds().longValue(),
+                       decoder.getSeconds());
+          assertEquals(text, sfTS.getNanos(), decoder.getNanos());
+          for (Class<?> c : classes)
+          {
+            for (boolean honorClientTZ : new boolean[]{true, false})
+            {
+              assertEquals(text + " " + c.getSimpleName() + " " + id + " " +
+                           honorClientTZ,
+                           expectedJavaTime(c, sfTS, type, honorClientTZ),
+                           DateTimeDecoder.timestampToJavaTime(
+                               c, type, honorClientTZ, decoder.getSeconds(),
+                               decoder.getNanos(),
+                               decoder.getOffsetSeconds()));
+            }
+          }
+        }
+      }
+    }
+    finally
+    {
+      TimeZone.setDefault(defaultTimeZone);
+    }
+
+    // the wall clock time of TIMESTAMP_NTZ, and the offset of TIMESTAMP_TZ
+    String text = "1555113600.5";
+    assertTrue(decoder.parseTimestamp(bytes(text), 2, text.length(), false));
+    assertEquals(LocalDateTime.of(2019, 4, 13, 0, 0, 0, 500000000),
+                 DateTimeDecoder.timestampToJavaTime(
+                     LocalDateTime.class, Types.TIMESTAMP, true,
+                     decoder.getSeconds(), decoder.getNanos(), 0));
+    text = "1555113600.5 1980";
+    assertTrue(decoder.parseTimestamp(bytes(text), 2, text.length(), true));
+    assertEquals(OffsetDateTime.of(2019, 4, 13, 9, 0, 0, 500000000,
+                                   ZoneOffset.ofHours(9)),
+                 DateTimeDecoder.timestampToJavaTime(
+                     OffsetDateTime.class,
+                     SnowflakeUtil.EXTRA_TYPES_TIMESTAMP_TZ, true,
+                     decoder.getSeconds(), decoder.getNanos(),
+                     decoder.getOffsetSeconds()));
+
+    assertEquals(LocalDate.of(1969, 12, 31),
+                 DateTimeDecoder.dateToJavaTime(LocalDate.class, -1));
+    assertEquals(LocalTime.of(1, 2, 3, 450000000),
+                 DateTimeDecoder.timeToJavaTime(
+                     LocalTime.class,
+                     decoder.decodeNanoOfDay(bytes("3723.456"), 2, 8, 2)));
+    assertNull(DateTimeDecoder.timeToJavaTime(Instant.class, 0));
+  }
+
+  @Test
+  public void testFallback()
+  {
+    TimeZone tz = TimeZone.getTimeZone("UTC");
+
+    // before the Gregorian cutover, not seconds, or too many digits
+    for (String text : new String[]{
+        "", "-", ".5", "5.", "1.1234567891", "-20000000000", "abc",
+        "1e5", "1 1440", "99999999999999"})
+    {
+      assertNull(text, decodeTimestamp(text, false, tz));
+    }
+    // missing or invalid time zone index
+    for (String text : new String[]{"1", "1 ", "1 2881", "1 -1", "1 14a0"})
+    {
+      assertNull(text, decodeTimestamp(text, true, null));
+    }
+    for (String text : new String[]{"", "-", "1.5", "-200000", "12345678"})
+    {
+      assertNull(text, decodeDate(text, tz));
+    }
+    for (String text : new String[]{"", "-1", "86400", "1.", "a"})
+    {
+      assertNull(text, decodeTime(text, 3));
+    }
+    assertNull(decodeTime("1", 10));
+  }
+}
@@ -0,0 +1,147 @@
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import net.snowflake.client.jdbc.JsonRowset;
+import net.snowflake.client.jdbc.ResultJsonParserV2;
+import net.snowflake.client.jdbc.SnowflakeResultChunk;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for QueryResultReader
+ */
+public class QueryResultReaderTest
+{
+  private static final String RESPONSE =
+      "{\"data\":{\"parameters\":[{\"name\":\"TIMEZONE\"," +
+      "\"value\":\"UTC\"}],\"rowtype\":[{\"name\":\"A\"},{\"name\":\"B\"}]," +
+      "\"rowset\":[ [\"1\", \"a\\\"b\"], [null, \"é☺\"] ," +
+      "[\"-3\",null] ],\"total\":3,\"queryId\":\"q1\"}," +
+      "\"code\":null,\"message\":null,\"success\":true}";
+
+  private static JsonNode read(String json) throws IOException
+  {
+    return QueryResultReader.read(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testRead() throws Exception
+  {
+    JsonNode root = read(RESPONSE);
+
+    assertTrue(root.path("success").asBoolean());
+    assertTrue(root.path("code").isNull());
+    assertEquals("q1", root.path("data").path("queryId").asText());
+    assertEquals(3, root.path("data").path("total").asInt());
+    assertEquals("UTC", root.path("data").path("parameters").get(0)
+        .path("value").asText());
+    assertEquals(2, root.path("data").path("rowtype").size());
+
+    JsonNode rowset = root.path("data").path("rowset");
+    assertTrue(rowset instanceof POJONode);
+    JsonRowset jsonRowset = (JsonRowset) ((POJONode) rowset).getPojo();
+    assertEquals(3, jsonRowset.getRowCount());
+    assertEquals("[[\"1\",\"a\\\"b\"],[null,\"é☺\"],[\"-3\",null]]",
+                 jsonRowset.toString());
+
+    // the rows are written back as JSON
+    assertEquals(
+        ObjectMapperFactory.getObjectMapper().readTree(RESPONSE),
+        ObjectMapperFactory.getObjectMapper().readTree(
+            ObjectMapperFactory.getObjectMapper().writeValueAsString(root)));
+
+    SnowflakeResultChunk chunk =
+        ResultJsonParserV2.parseRowset(rowset, 2, null);
+    assertEquals(3, chunk.getRowsReady());
+    assertEquals("1", chunk.getCell(0, 0).toString());
+    assertEquals("a\"b", chunk.getCell(0, 1).toString());
+    assertNull(chunk.getCell(1, 0));
+    assertEquals("é☺", chunk.getCell(1, 1).toString());
+    assertEquals("-3", chunk.getCell(2, 0).toString());
+    assertNull(chunk.getCell(2, 1));
+  }
+
+  @Test
+  public void testReadOther() throws Exception
+  {
+    assertNull(read(""));
+
+    // no rows
+    JsonNode root = read("{\"data\":{\"rowset\":[]},\"success\":true}");
+    assertNull(ResultJsonParserV2.parseRowset(
+        root.path("data").path("rowset"), 2, null));
+
+    // not a query result
+    root = read("{\"data\":null,\"code\":\"390112\",\"success\":false}");
+    assertTrue(root.path("data").isNull());
+    assertEquals("390112", root.path("code").asText());
+    assertEquals(2, read("[1,2]").size());
+
+    try
+    {
+      read("{\"data\":{\"rowset\":[1]}}");
+      fail("a row must be an array");
+    }
+    catch (JsonProcessingException ex)
+    {
+      // expected
+    }
+    try
+    {
+      read("{\"data\":{\"rowset\":[[\"1\"]");
+      fail("the response is truncated");
+    }
+    catch (JsonProcessingException ex)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * A response that is not JSON is reported with the start of its body
+   */
+  @Test
+  public void testBadResponse() throws Exception
+  {
+    String page = "<html><body>502 Bad Gateway</body></html>";
+    try
+    {
+      read(page);
+      fail("the response is not JSON");
+    }
+    catch (QueryResultReader.BadResponseException ex)
+    {
+      assertEquals(page, ex.getResponsePrefix());
+    }
+
+    StringBuilder longPage = new StringBuilder("<html>");
+    while (longPage.length() < 3 * QueryResultReader.MAX_RESPONSE_PREFIX_BYTES)
+    {
+      longPage.append("<p>proxy error</p>");
+    }
+    try
+    {
+      read(longPage.toString());
+      fail("the response is not JSON");
+    }
+    catch (QueryResultReader.BadResponseException ex)
+    {
+      assertEquals(
+          longPage.substring(0, QueryResultReader.MAX_RESPONSE_PREFIX_BYTES) +
+          "...", ex.getResponsePrefix());
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.SnowflakeChunkDownloader;
+import net.snowflake.client.jdbc.SnowflakeType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ResultSetSorter
+ */
+public class ResultSetSorterTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testCompareCells()
+  {
+    // numbers by value, not as text
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.FIXED, "9", "10") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.FIXED, "-10", "-9") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.FIXED, "-1", "0") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.FIXED, "-2", "2") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.FIXED, "1.5", "1.25") > 0);
+    assertEquals(0, ResultSetSorter.compareCells(SnowflakeType.FIXED, "1.50", "1.5"));
+    assertEquals(0, ResultSetSorter.compareCells(SnowflakeType.FIXED, "-0", "0.0"));
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.FIXED, "1e3", "999") > 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.DATE, "-1", "17000") < 0);
+    assertTrue(ResultSetSorter.compareCells(
+        SnowflakeType.TIMESTAMP_NTZ, "99.000000001", "100.000000000") < 0);
+    assertTrue(ResultSetSorter.compareCells(
+        SnowflakeType.TIMESTAMP_TZ, "99.5 1980", "100.0 1440") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.REAL, "-inf", "-1e300") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.REAL, "2.5", "10") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.BOOLEAN, "0", "1") < 0);
+    assertTrue(ResultSetSorter.compareCells(SnowflakeType.TEXT, "10", "9") < 0);
+    assertTrue(ResultSetSorter.compareCells(null, "b", "a") > 0);
+  }
+
+  /**
+   * Rows of all chunks come out sorted, nulls last and equal rows in the
+   * order of the result, whether the runs are kept in memory or spilled
+   */
+  @Test
+  public void testSortChunks() throws IOException
+  {
+    final SnowflakeType[] types = {SnowflakeType.FIXED, SnowflakeType.TEXT,
+                                   SnowflakeType.FIXED};
+    Random random = new Random(11);
+    List<String[][]> chunks = new ArrayList<>();
+    List<String[]> expected = new ArrayList<>();
+    int sequence = 0;
+    for (int chunk = 0; chunk < 10; chunk++)
+    {
+      String[][] rows = new String[50 + random.nextInt(50)][];
+      for (int i = 0; i < rows.length; i++)
+      {
+        rows[i] = new String[]{
+            random.nextInt(10) == 0 ? null :
+            String.valueOf(random.nextInt(41) - 20),
+            random.nextInt(10) == 0 ? null : "text" + random.nextInt(5),
+            String.valueOf(sequence++)};
+        expected.add(rows[i]);
+      }
+      chunks.add(rows);
+    }
+    // the sequence number is the last key, so the expected order also
+    // checks that equal keys keep the order of the result
+    expected.sort(new ResultSetSorter.RowComparator(types));
+
+    final long initialMemoryUsage =
+        SnowflakeChunkDownloader.getCurrentMemoryUsage();
+    for (long memoryLimit : new long[]{Long.MAX_VALUE, 20000, 0})
+    {
+      try (ResultSetSorter sorter =
+               new ResultSetSorter(types, memoryLimit, folder.getRoot()))
+      {
+        for (String[][] rows : chunks)
+        {
+          sorter.add(copy(rows));
+        }
+        assertEquals(expected.size(), sorter.getRowCount());
+        if (memoryLimit == Long.MAX_VALUE)
+        {
+          assertEquals(0, sorter.getFileRunCount());
+        }
+        else
+        {
+          assertTrue(sorter.getFileRunCount() > 0);
+        }
+
+        String[] previous = null;
+        for (String[] row : expected)
+        {
+          String[] actual = sorter.next();
+          assertArrayEquals(row, actual);
+          if (previous != null && previous[0] != null)
+          {
+            assertTrue(actual[0] == null ||
+                       Integer.parseInt(previous[0]) <=
+                       Integer.parseInt(actual[0]));
+          }
+          previous = actual;
+        }
+        assertNull(sorter.next());
+      }
+      // the run files are deleted and the memory is released
+      assertEquals(0, folder.getRoot().list().length);
+      assertEquals(initialMemoryUsage,
+                   SnowflakeChunkDownloader.getCurrentMemoryUsage());
+    }
+  }
+
+  /**
+   * The runs held in memory are reserved from the memory budget of the
+   * chunks, a sorter spills its runs when the budget is used up by others
+   */
+  @Test
+  public void testMemoryBudget() throws IOException
+  {
+    final SnowflakeType[] types = {SnowflakeType.FIXED};
+    final long initialMemoryUsage =
+        SnowflakeChunkDownloader.getCurrentMemoryUsage();
+    final long memoryLimit = initialMemoryUsage + 100000;
+
+    ResultSetSorter first =
+        new ResultSetSorter(types, memoryLimit, folder.getRoot());
+    ResultSetSorter second =
+        new ResultSetSorter(types, memoryLimit, folder.getRoot());
+    try
+    {
+      for (int i = 0; i < 10; i++)
+      {
+        first.add(rows(100));
+      }
+      assertEquals(0, first.getFileRunCount());
+      long reserved =
+          SnowflakeChunkDownloader.getCurrentMemoryUsage() - initialMemoryUsage;
+      assertTrue(reserved > 0);
+
+      // the first sorter holds most of the budget
+      second.add(rows((int) ((memoryLimit - reserved) / 50)));
+      assertEquals(1, second.getFileRunCount());
+      assertEquals(initialMemoryUsage + reserved,
+                   SnowflakeChunkDownloader.getCurrentMemoryUsage());
+    }
+    finally
+    {
+      first.close();
+      second.close();
+    }
+    assertEquals(initialMemoryUsage,
+                 SnowflakeChunkDownloader.getCurrentMemoryUsage());
+  }
+
+  /**
+   * Rows added with the memory of their chunk are kept in memory even if
+   * the budget is used up by others
+   */
+  @Test
+  public void testReservedMemory() throws IOException
+  {
+    final SnowflakeType[] types = {SnowflakeType.FIXED};
+    final long initialMemoryUsage =
+        SnowflakeChunkDownloader.getCurrentMemoryUsage();
+
+    // the memory of a chunk, and no memory left for the sorter
+    final long chunkMemory = 100000;
+    assertTrue(SnowflakeChunkDownloader.tryReserveMemory(chunkMemory,
+                                                         Long.MAX_VALUE));
+    ResultSetSorter sorter = new ResultSetSorter(
+        types, initialMemoryUsage + chunkMemory, folder.getRoot());
+    try
+    {
+      sorter.add(rows(100), chunkMemory);
+      assertEquals(0, sorter.getFileRunCount());
+      assertEquals(initialMemoryUsage + chunkMemory,
+                   SnowflakeChunkDownloader.getCurrentMemoryUsage());
+
+      // rows without reserved memory are spilled
+      sorter.add(rows(100));
+      assertEquals(1, sorter.getFileRunCount());
+      assertEquals(initialMemoryUsage,
+                   SnowflakeChunkDownloader.getCurrentMemoryUsage());
+    }
+    finally
+    {
+      sorter.close();
+    }
+    assertEquals(initialMemoryUsage,
+                 SnowflakeChunkDownloader.getCurrentMemoryUsage());
+  }
+
+  /**
+   * Every MERGE_FAN_IN run files of a level are merged into one, so the
+   * number of files stays small when every chunk is spilled
+   */
+  @Test
+  public void testMergeFileRuns() throws IOException
+  {
+    final SnowflakeType[] types = {SnowflakeType.FIXED};
+    final int fanIn = ResultSetSorter.MERGE_FAN_IN;
+    Random random = new Random(17);
+    List<String[]> expected = new ArrayList<>();
+    try (ResultSetSorter sorter =
+             new ResultSetSorter(types, 0, folder.getRoot()))
+    {
+      for (int chunk = 1; chunk <= 3 * fanIn + 5; chunk++)
+      {
+        String[][] rows = new String[1 + random.nextInt(5)][];
+        for (int i = 0; i < rows.length; i++)
+        {
+          rows[i] = new String[]{String.valueOf(random.nextInt(1000))};
+          expected.add(rows[i]);
+        }
+        sorter.add(copy(rows));
+        assertEquals(chunk / fanIn + chunk % fanIn, sorter.getFileRunCount());
+        assertEquals(sorter.getFileRunCount(),
+                     folder.getRoot().list().length);
+      }
+      expected.sort(new ResultSetSorter.RowComparator(types));
+
+      for (String[] row : expected)
+      {
+        assertArrayEquals(row, sorter.next());
+      }
+      assertNull(sorter.next());
+    }
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  private static String[][] rows(int count)
+  {
+    String[][] rows = new String[count][];
+    for (int i = 0; i < count; i++)
+    {
+      rows[i] = new String[]{String.valueOf(count - i)};
+    }
+    return rows;
+  }
+
+  private static String[][] copy(String[][] rows)
+  {
+    String[][] copy = new String[rows.length][];
+    for (int i = 0; i < rows.length; i++)
+    {
+      copy[i] = Arrays.copyOf(rows[i], rows[i].length);
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,143 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for AsciiNumbers
+ */
+public class AsciiNumbersTest
+{
+  /**
+   * The text is parsed in the middle of a larger array
+   */
+  private static byte[] bytes(String text)
+  {
+    return ("xx" + text + "yy").getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static long parseLong(String text)
+  {
+    return AsciiNumbers.parseLong(bytes(text), 2, text.length());
+  }
+
+  private static int parseInt(String text)
+  {
+    return AsciiNumbers.parseInt(bytes(text), 2, text.length());
+  }
+
+  private static double parseDouble(String text)
+  {
+    return AsciiNumbers.parseDouble(bytes(text), 2, text.length());
+  }
+
+  private static BigDecimal parseBigDecimal(String text)
+  {
+    return AsciiNumbers.parseBigDecimal(bytes(text), 2, text.length());
+  }
+
+  @Test
+  public void testParseLong()
+  {
+    for (String text : new String[]{
+        "0", "-0", "+7", "42", "-42", "00000000000000000000001",
+        "9223372036854775807", "-9223372036854775808",
+        "2147483647", "-2147483648"})
+    {
+      assertEquals(text, Long.parseLong(text), parseLong(text));
+    }
+    assertEquals(Integer.MIN_VALUE, parseInt("-2147483648"));
+    assertEquals(123, parseInt("0123"));
+
+    for (String text : new String[]{
+        "", "-", "+", "1.0", "1e3", " 1", "9223372036854775808",
+        "-9223372036854775809", "99999999999999999999", "inf"})
+    {
+      try
+      {
+        parseLong(text);
+        fail("not a long: " + text);
+      }
+      catch (NumberFormatException ex)
+      {
+        // Long.parseLong rejects the text as well
+      }
+    }
+    try
+    {
+      parseInt("2147483648");
+      fail("not an int");
+    }
+    catch (NumberFormatException ex)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testParseDouble()
+  {
+    for (String text : new String[]{
+        "0", "-0", "1", "1.5", "-1.5", "0.1", ".5", "5.", "123456.789",
+        "1e10", "1.5E-7", "-2.5e+3", "999999999999999", "0.000001"})
+    {
+      assertEquals(text, Double.parseDouble(text), parseDouble(text), 0);
+    }
+    assertEquals(Double.POSITIVE_INFINITY, parseDouble("inf"), 0);
+    assertEquals(Double.NEGATIVE_INFINITY, parseDouble("-inf"), 0);
+    assertEquals(Double.doubleToLongBits(-0.0),
+                 Double.doubleToLongBits(parseDouble("-0")));
+
+    // left to Double.parseDouble
+    for (String text : new String[]{
+        "", "NaN", "1234567890123456", "1e400", "1e-30", "abc", "1.2.3",
+        "1e"})
+    {
+      assertTrue(text, Double.isNaN(parseDouble(text)));
+    }
+
+    // random decimals return exactly what Double.parseDouble returns
+    Random random = new Random(7);
+    for (int i = 0; i < 10000; i++)
+    {
+      String text = BigDecimal.valueOf(random.nextLong() % 1000000000000000L,
+                                       random.nextInt(20) - 4).toString();
+      double value = parseDouble(text);
+      if (!Double.isNaN(value))
+      {
+        assertEquals(text, Double.parseDouble(text), value, 0);
+      }
+    }
+  }
+
+  @Test
+  public void testParseBigDecimal()
+  {
+    for (String text : new String[]{
+        "0", "-0", "+1", "1.50", "-1.50", "0.000", ".5", "5.",
+        "123456789012345678", "-12345678.9012345678"})
+    {
+      BigDecimal value = parseBigDecimal(text);
+      // same unscaled value and scale
+      assertEquals(text, new BigDecimal(text), value);
+    }
+
+    // left to new BigDecimal(String)
+    for (String text : new String[]{
+        "", "-", ".", "1234567890123456789", "1E+5", "1.5e3", "inf", "1.2.3",
+        " 1"})
+    {
+      assertNull(text, parseBigDecimal(text));
+    }
+  }
+}
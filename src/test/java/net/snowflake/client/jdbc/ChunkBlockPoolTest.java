@@ -0,0 +1,117 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ChunkBlockPool
+ */
+public class ChunkBlockPoolTest
+{
+  private static final long DATA_BLOCK_BYTES =
+      1L << ChunkBlockPool.DATA_BLOCK_BITS;
+
+  @Test
+  public void testReuse()
+  {
+    ChunkBlockPool pool = new ChunkBlockPool(4 * DATA_BLOCK_BYTES, 60000);
+
+    byte[] first = pool.dataBlocks.acquire();
+    byte[] second = pool.dataBlocks.acquire();
+    assertEquals(1 << ChunkBlockPool.DATA_BLOCK_BITS, first.length);
+    assertEquals(0, pool.getHits());
+    assertEquals(2, pool.getMisses());
+
+    // the most recently freed block is reused first
+    pool.dataBlocks.release(first);
+    pool.dataBlocks.release(second);
+    assertEquals(2 * DATA_BLOCK_BYTES, pool.getIdleBytes());
+    assertSame(second, pool.dataBlocks.acquire());
+    assertSame(first, pool.dataBlocks.acquire());
+    assertEquals(2, pool.getHits());
+    assertEquals(0, pool.getIdleBytes());
+
+    // size classes do not share blocks
+    pool.dataBlocks.release(first);
+    assertEquals(0, pool.directDataBlocks.getIdleCount());
+    assertEquals(1 << ChunkBlockPool.META_BLOCK_BITS,
+                 pool.metaBlocks.acquire().length);
+    assertEquals(1, pool.dataBlocks.getIdleCount());
+  }
+
+  /**
+   * Null bitmaps are cleared before they are reused
+   */
+  @Test
+  public void testReset()
+  {
+    ChunkBlockPool pool = new ChunkBlockPool(DATA_BLOCK_BYTES, 60000);
+
+    BitSet nulls = pool.nullBlocks.acquire();
+    nulls.set(7);
+    pool.nullBlocks.release(nulls);
+    assertSame(nulls, pool.nullBlocks.acquire());
+    assertTrue(nulls.isEmpty());
+
+    ByteBuffer directNulls = pool.directNullBlocks.acquire();
+    directNulls.put(3, (byte) 0x10);
+    pool.directNullBlocks.release(directNulls);
+    assertSame(directNulls, pool.directNullBlocks.acquire());
+    assertEquals(0, directNulls.get(3));
+  }
+
+  /**
+   * The least recently freed blocks are evicted when the pool is full
+   */
+  @Test
+  public void testSizeLimit()
+  {
+    ChunkBlockPool pool = new ChunkBlockPool(2 * DATA_BLOCK_BYTES, 60000);
+
+    int[] meta = pool.metaBlocks.acquire();
+    byte[] first = pool.dataBlocks.acquire();
+    byte[] second = pool.dataBlocks.acquire();
+    pool.metaBlocks.release(meta);
+    pool.dataBlocks.release(first);
+    pool.dataBlocks.release(second);
+
+    assertEquals(1, pool.getEvictions());
+    assertEquals(0, pool.metaBlocks.getIdleCount());
+    assertEquals(2 * DATA_BLOCK_BYTES, pool.getIdleBytes());
+
+    pool.dataBlocks.release(pool.dataBlocks.acquire());
+    assertEquals(1, pool.getEvictions());
+
+    // a block larger than the pool is not kept
+    ChunkBlockPool empty = new ChunkBlockPool(0, 60000);
+    empty.dataBlocks.release(first);
+    assertEquals(0, empty.getIdleBytes());
+    assertEquals(1, empty.getEvictions());
+    assertNotSame(first, empty.dataBlocks.acquire());
+  }
+
+  /**
+   * Blocks not reused within the idle timeout are evicted
+   */
+  @Test
+  public void testIdleTimeout() throws InterruptedException
+  {
+    ChunkBlockPool pool = new ChunkBlockPool(4 * DATA_BLOCK_BYTES, 50);
+
+    int[] block = pool.metaBlocks.acquire();
+    pool.metaBlocks.release(block);
+    Thread.sleep(100);
+    assertNotSame(block, pool.metaBlocks.acquire());
+    assertEquals(1, pool.getEvictions());
+    assertEquals(0, pool.getIdleBytes());
+  }
+}
@@ -0,0 +1,311 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ChunkDownloadScheduler
+ */
+public class ChunkDownloadSchedulerTest
+{
+  private static final long TIMEOUT_SECONDS = 10;
+
+  /**
+   * Tasks which record their order and wait until released
+   */
+  private static class Tasks
+  {
+    private final List<String> started =
+        Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch finished;
+
+    Tasks(int count)
+    {
+      finished = new CountDownLatch(count);
+    }
+
+    Callable<Void> task(final String name)
+    {
+      return new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          started.add(name);
+          int now = running.incrementAndGet();
+          while (true)
+          {
+            int max = maxRunning.get();
+            if (now <= max || maxRunning.compareAndSet(max, now))
+            {
+              break;
+            }
+          }
+          try
+          {
+            release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+          }
+          finally
+          {
+            running.decrementAndGet();
+            finished.countDown();
+          }
+          return null;
+        }
+      };
+    }
+
+    void awaitStarted(int count) throws InterruptedException
+    {
+      long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+      while (started.size() < count && System.currentTimeMillis() < deadline)
+      {
+        Thread.sleep(10);
+      }
+      assertEquals(count, started.size());
+    }
+
+    void releaseAll() throws InterruptedException
+    {
+      release.countDown();
+      assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+  }
+
+  private static ChunkDownloadScheduler createScheduler(int maxThreads)
+  {
+    return new ChunkDownloadScheduler(maxThreads, 1000,
+                                      Executors.defaultThreadFactory());
+  }
+
+  @Test
+  public void testThreadCap() throws Exception
+  {
+    ChunkDownloadScheduler scheduler = createScheduler(3);
+    Tasks tasks = new Tasks(8);
+    ChunkDownloadScheduler.DownloadQueue[] queues = {
+        scheduler.register(4), scheduler.register(4)};
+    for (int i = 0; i < 8; i++)
+    {
+      queues[i % 2].submit(i / 2, tasks.task("task" + i));
+    }
+
+    tasks.awaitStarted(3);
+    Thread.sleep(100);
+    assertEquals(3, tasks.started.size());
+    assertEquals(3, scheduler.getThreadCount());
+
+    tasks.releaseAll();
+    assertEquals(3, tasks.maxRunning.get());
+  }
+
+  @Test
+  public void testQuota() throws Exception
+  {
+    ChunkDownloadScheduler scheduler = createScheduler(8);
+    Tasks tasks = new Tasks(5);
+    ChunkDownloadScheduler.DownloadQueue queue = scheduler.register(2);
+    queue.setNextChunkToConsume(-1);
+    for (int i = 0; i < 5; i++)
+    {
+      queue.submit(i, tasks.task("chunk" + i));
+    }
+
+    tasks.awaitStarted(2);
+    Thread.sleep(100);
+    assertEquals(2, tasks.started.size());
+
+    // the chunk the consumer needs runs even though the quota is used up
+    queue.setNextChunkToConsume(4);
+    tasks.awaitStarted(3);
+    assertEquals("chunk4", tasks.started.get(2));
+
+    tasks.releaseAll();
+    assertEquals(3, tasks.maxRunning.get());
+  }
+
+  @Test
+  public void testSetQuota() throws Exception
+  {
+    ChunkDownloadScheduler scheduler = createScheduler(8);
+    Tasks tasks = new Tasks(4);
+    ChunkDownloadScheduler.DownloadQueue queue = scheduler.register(1);
+    queue.setNextChunkToConsume(-1);
+    for (int i = 0; i < 4; i++)
+    {
+      queue.submit(i, tasks.task("chunk" + i));
+    }
+    tasks.awaitStarted(1);
+
+    queue.setQuota(3);
+    tasks.awaitStarted(3);
+    Thread.sleep(100);
+    assertEquals(3, tasks.started.size());
+
+    tasks.releaseAll();
+    assertEquals(3, tasks.maxRunning.get());
+  }
+
+  /**
+   * The chunk a consumer needs next runs before chunks which are only
+   * prefetched, and queues take turns
+   */
+  @Test
+  public void testPriorityAndFairness() throws Exception
+  {
+    ChunkDownloadScheduler scheduler = createScheduler(1);
+    Tasks tasks = new Tasks(7);
+
+    // keep the only thread busy while the tasks are queued
+    ChunkDownloadScheduler.DownloadQueue blocker = scheduler.register(1);
+    blocker.submit(0, tasks.task("blocker"));
+    tasks.awaitStarted(1);
+
+    ChunkDownloadScheduler.DownloadQueue a = scheduler.register(4);
+    ChunkDownloadScheduler.DownloadQueue b = scheduler.register(4);
+    a.setNextChunkToConsume(-1);
+    b.setNextChunkToConsume(-1);
+    a.submit(0, tasks.task("a0"));
+    a.submit(1, tasks.task("a1"));
+    a.submit(2, tasks.task("a2"));
+    b.submit(5, tasks.task("b5"));
+    b.submit(6, tasks.task("b6"));
+    b.submit(7, tasks.task("b7"));
+
+    // the consumer of b waits for chunk 6
+    b.setNextChunkToConsume(6);
+
+    tasks.releaseAll();
+    assertEquals(
+        Arrays.asList("blocker", "b6", "a0", "b5", "a1", "b7", "a2"),
+        tasks.started);
+  }
+
+  /**
+   * Helper tasks run on the download threads and count against the cap, a
+   * helper task is refused rather than queued when no thread is available
+   */
+  @Test
+  public void testHelperTasks() throws Exception
+  {
+    ChunkDownloadScheduler scheduler = createScheduler(2);
+    Tasks tasks = new Tasks(1);
+    ChunkDownloadScheduler.DownloadQueue queue = scheduler.register(1);
+    queue.submit(0, tasks.task("chunk0"));
+    tasks.awaitStarted(1);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    Runnable helper = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    Future<?> first = scheduler.tryExecute(helper);
+    assertNotNull(first);
+    assertNull(scheduler.tryExecute(helper));
+    assertEquals(2, scheduler.getThreadCount());
+
+    release.countDown();
+    first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    tasks.releaseAll();
+
+    // idle threads run helper tasks without starting another thread, once
+    // the threads are back from their tasks
+    long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+    Future<?> second;
+    while ((second = scheduler.tryExecute(helper)) == null &&
+           System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertNotNull(second);
+    second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertEquals(2, scheduler.getThreadCount());
+  }
+
+  @Test
+  public void testClose() throws Exception
+  {
+    ChunkDownloadScheduler scheduler = createScheduler(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicInteger dropped = new AtomicInteger();
+
+    ChunkDownloadScheduler.DownloadQueue queue = scheduler.register(1);
+    queue.submit(0, new Callable<Void>()
+    {
+      @Override
+      public Void call()
+      {
+        started.countDown();
+        try
+        {
+          Thread.sleep(TIMEOUT_SECONDS * 1000);
+        }
+        catch (InterruptedException ex)
+        {
+          interrupted.countDown();
+        }
+        return null;
+      }
+    });
+    queue.submit(1, new Callable<Void>()
+    {
+      @Override
+      public Void call()
+      {
+        dropped.incrementAndGet();
+        return null;
+      }
+    });
+
+    assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    queue.close();
+    assertTrue(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    // the thread is not interrupted when it runs the tasks of other queues
+    final CountDownLatch done = new CountDownLatch(1);
+    scheduler.register(1).submit(0, new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception
+      {
+        Thread.sleep(50);
+        done.countDown();
+        return null;
+      }
+    });
+    assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(0, dropped.get());
+  }
+}
@@ -0,0 +1,89 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ChunkMemoryBudget
+ */
+public class ChunkMemoryBudgetTest
+{
+  @Test
+  public void testTryReserve()
+  {
+    ChunkMemoryBudget budget = new ChunkMemoryBudget();
+
+    assertTrue(budget.tryReserve(60, 100));
+    assertFalse(budget.tryReserve(60, 100));
+    assertTrue(budget.tryReserve(40, 100));
+    assertEquals(100, budget.getCurrentUsage());
+
+    budget.release(60);
+    budget.release(40);
+    assertEquals(0, budget.getCurrentUsage());
+  }
+
+  /**
+   * A waiting reservation is woken up by a release and is not overtaken by
+   * non-blocking reservations
+   */
+  @Test
+  public void testReserveWaitsForRelease() throws Exception
+  {
+    final ChunkMemoryBudget budget = new ChunkMemoryBudget();
+    assertTrue(budget.tryReserve(80, 100));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+      Future<Boolean> waiting = executor.submit(new Callable<Boolean>()
+      {
+        @Override
+        public Boolean call() throws Exception
+        {
+          return budget.reserve(50, 100, 30, TimeUnit.SECONDS);
+        }
+      });
+
+      // wait until the reservation is queued
+      while (budget.tryReserve(0, 100))
+      {
+        Thread.sleep(10);
+      }
+      assertFalse(budget.tryReserve(10, 100));
+
+      budget.release(80);
+      assertTrue(waiting.get(30, TimeUnit.SECONDS));
+      assertEquals(50, budget.getCurrentUsage());
+      assertTrue(budget.tryReserve(10, 100));
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReserveTimeout() throws Exception
+  {
+    ChunkMemoryBudget budget = new ChunkMemoryBudget();
+    assertTrue(budget.tryReserve(80, 100));
+
+    assertFalse(budget.reserve(50, 100, 10, TimeUnit.MILLISECONDS));
+    assertEquals(80, budget.getCurrentUsage());
+
+    // the expired reservation does not block others
+    assertTrue(budget.tryReserve(20, 100));
+  }
+}
@@ -0,0 +1,219 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ChunkStreamPool and PooledGZIPInputStream
+ */
+public class ChunkStreamPoolTest
+{
+  @Test
+  public void testReuse()
+  {
+    ChunkStreamPool pool = new ChunkStreamPool(2, 60000);
+
+    byte[] first = pool.buffers.acquire();
+    byte[] second = pool.buffers.acquire();
+    byte[] third = pool.buffers.acquire();
+    assertEquals(ChunkStreamPool.BUFFER_SIZE, first.length);
+    assertEquals(3, pool.buffers.getAllocatedCount());
+    assertEquals(0, pool.buffers.getReusedCount());
+
+    // at most two idle buffers, the least recently freed one is dropped
+    pool.buffers.release(first);
+    pool.buffers.release(second);
+    pool.buffers.release(third);
+    assertEquals(2, pool.buffers.getIdleCount());
+    assertEquals(1, pool.buffers.getDroppedCount());
+    assertSame(third, pool.buffers.acquire());
+    assertSame(second, pool.buffers.acquire());
+    assertNotSame(first, pool.buffers.acquire());
+    assertEquals(2, pool.buffers.getReusedCount());
+    assertEquals(4, pool.buffers.getAllocatedCount());
+
+    // kinds do not share the idle objects
+    pool.inflaters.release(pool.inflaters.acquire());
+    assertEquals(0, pool.buffers.getIdleCount());
+    assertEquals(1, pool.inflaters.getIdleCount());
+    assertEquals(0, pool.parsers.getIdleCount());
+  }
+
+  @Test
+  public void testIdleTimeout() throws InterruptedException
+  {
+    ChunkStreamPool pool = new ChunkStreamPool(4, 10);
+
+    Inflater inflater = pool.inflaters.acquire();
+    pool.inflaters.release(inflater);
+    Thread.sleep(50);
+
+    // the expired inflater is dropped and its native memory released
+    assertNotSame(inflater, pool.inflaters.acquire());
+    assertEquals(1, pool.inflaters.getDroppedCount());
+    try
+    {
+      inflater.reset();
+      fail("the dropped inflater is ended");
+    }
+    catch (NullPointerException ex)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * A parser which failed in the middle of a chunk can parse the next one
+   */
+  @Test
+  public void testParserReset() throws Exception
+  {
+    ChunkStreamPool pool = new ChunkStreamPool(4, 60000);
+
+    ResultJsonParserV2 parser = pool.parsers.acquire();
+    SnowflakeResultChunk chunk =
+        new SnowflakeResultChunk(null, 2, 1, 32, true);
+    parser.startParsing(chunk);
+    parser.continueParsing(wrap("[\"1\"],[\"2"));
+    pool.parsers.release(parser);
+
+    assertSame(parser, pool.parsers.acquire());
+    chunk = new SnowflakeResultChunk(null, 2, 1, 32, true);
+    parser.startParsing(chunk);
+    parser.continueParsing(wrap("[\"3\"],[\"4\"]"));
+    parser.endParsing();
+    assertEquals("3", chunk.getCell(0, 0).toString());
+    assertEquals("4", chunk.getCell(1, 0).toString());
+    chunk.freeData();
+  }
+
+  private static ByteBuffer wrap(String json)
+  {
+    return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] gzip(byte[] data, int from, int to) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+    {
+      gzip.write(data, from, to - from);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[4000];
+    int n;
+    while ((n = in.read(buf, 0, buf.length)) != -1)
+    {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testGZIP() throws IOException
+  {
+    ChunkStreamPool pool = new ChunkStreamPool(4, 60000);
+    Random random = new Random(3);
+    byte[] data = new byte[3 * ChunkStreamPool.BUFFER_SIZE];
+    for (int i = 0; i < data.length; i++)
+    {
+      // compressible, but not too well
+      data[i] = (byte) ('a' + random.nextInt(8));
+    }
+
+    // one member, then concatenated members as some servers send them
+    byte[] single = gzip(data, 0, data.length);
+    ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+    concatenated.write(gzip(data, 0, 100));
+    concatenated.write(gzip(data, 100, 100));
+    concatenated.write(gzip(data, 100, data.length));
+
+    for (byte[] content : Arrays.asList(single, concatenated.toByteArray()))
+    {
+      try (InputStream in = new PooledGZIPInputStream(
+          new ByteArrayInputStream(content), pool))
+      {
+        assertArrayEquals(data, readAll(in));
+      }
+    }
+    // the inflater and the buffer are reused by the second stream
+    assertEquals(1, pool.inflaters.getAllocatedCount());
+    assertEquals(1, pool.inflaters.getReusedCount());
+    assertEquals(1, pool.buffers.getIdleCount());
+  }
+
+  @Test
+  public void testCorruptGZIP() throws IOException
+  {
+    ChunkStreamPool pool = new ChunkStreamPool(4, 60000);
+    byte[] data = "[\"1\",\"2\"],[\"3\",null]".getBytes(StandardCharsets.UTF_8);
+    byte[] content = gzip(data, 0, data.length);
+
+    try
+    {
+      new PooledGZIPInputStream(new ByteArrayInputStream(data), pool);
+      fail("not gzip");
+    }
+    catch (ZipException ex)
+    {
+      // expected
+    }
+    // the inflater and buffer are given back if the header is invalid
+    assertEquals(1, pool.inflaters.getIdleCount());
+    assertEquals(1, pool.buffers.getIdleCount());
+
+    byte[] corrupt = content.clone();
+    corrupt[corrupt.length - 5]++;
+    try (InputStream in = new PooledGZIPInputStream(
+        new ByteArrayInputStream(corrupt), pool))
+    {
+      readAll(in);
+      fail("the trailer does not match");
+    }
+    catch (ZipException ex)
+    {
+      assertEquals("Corrupt GZIP trailer", ex.getMessage());
+    }
+
+    byte[] truncated = Arrays.copyOf(content, content.length - 4);
+    InputStream in =
+        new PooledGZIPInputStream(new ByteArrayInputStream(truncated), pool);
+    try
+    {
+      readAll(in);
+      fail("the content is truncated");
+    }
+    catch (IOException ex)
+    {
+      // expected
+    }
+    in.close();
+    in.close();
+    assertEquals(1, pool.inflaters.getIdleCount());
+    assertEquals(1, pool.buffers.getIdleCount());
+  }
+}
@@ -0,0 +1,123 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for LexicalDateTime and SnowflakeType.lexicalValue
+ */
+public class LexicalDateTimeTest
+{
+  private static final String[] TIME_ZONES = {
+      "UTC", "America/Los_Angeles", "Asia/Kolkata", "Australia/Lord_Howe",
+      "Europe/Amsterdam", "Pacific/Chatham"};
+
+  private static DateFormat format(String pattern, TimeZone tz)
+  {
+    GregorianCalendar calendar = new GregorianCalendar(tz);
+    calendar.clear();
+    DateFormat format = new SimpleDateFormat(pattern);
+    format.setCalendar(calendar);
+    return format;
+  }
+
+  /**
+   * Milliseconds from 5000 BC to 12000 AD, mostly around now
+   */
+  private static long randomMillis(Random random)
+  {
+    long range = random.nextBoolean() ? 4000000000000L : 315000000000000L;
+    return random.nextLong() % range;
+  }
+
+  @Test
+  public void testLexicalValue()
+  {
+    Random random = new Random(19);
+    for (String id : TIME_ZONES)
+    {
+      TimeZone tz = TimeZone.getTimeZone(id);
+      DateFormat dateFormat =
+          format(SnowflakeType.DATE_OR_TIME_FORMAT_PATTERN, tz);
+      DateFormat timeFormat = format(SnowflakeType.TIME_FORMAT_PATTERN, tz);
+      DateFormat timestampFormat =
+          format(SnowflakeType.TIMESTAMP_FORMAT_PATTERN, tz);
+      DateFormat timestampTzFormat =
+          format(SnowflakeType.TIMESTAMP_FORMAT_TZ_PATTERN, tz);
+
+      for (int i = 0; i < 5000; i++)
+      {
+        long millis = randomMillis(random);
+        Timestamp ts = new Timestamp(millis);
+        switch (random.nextInt(3))
+        {
+          case 0:
+            ts.setNanos(0);
+            break;
+          case 1:
+            ts.setNanos(random.nextInt(1000) * 1000000);
+            break;
+          default:
+            ts.setNanos(random.nextInt(1000000000));
+        }
+
+        for (Object o : new Object[]{
+            new Date(millis), new java.sql.Date(millis), new Time(millis), ts})
+        {
+          assertEquals(o.getClass() + " " + millis + " " + id,
+                       SnowflakeType.lexicalValue(o, dateFormat, timeFormat,
+                                                  timestampFormat,
+                                                  timestampTzFormat),
+                       SnowflakeType.lexicalValue(o, tz, false));
+        }
+        assertEquals(SnowflakeType.lexicalValue(
+            new Time(millis), dateFormat, dateFormat, timestampFormat,
+            timestampTzFormat),
+                     SnowflakeType.lexicalValue(new Time(millis), tz, true));
+      }
+    }
+    assertEquals("1970-01-01T00:00:00.000Z",
+                 SnowflakeType.lexicalValue(new Date(0),
+                                            TimeZone.getTimeZone("UTC"),
+                                            false));
+  }
+
+  @Test
+  public void testAppend()
+  {
+    Random random = new Random(23);
+    TimeZone utc = TimeZone.getTimeZone("UTC");
+    DateFormat dateFormat = format("yyyy-MM-dd", utc);
+    DateFormat timeFormat = format("HH:mm:ss", utc);
+    for (int i = 0; i < 20000; i++)
+    {
+      long millis = randomMillis(random);
+      StringBuilder sb = new StringBuilder();
+      LexicalDateTime.appendDate(sb, millis);
+      sb.append(' ');
+      LexicalDateTime.appendTime(sb, millis);
+      assertEquals(Long.toString(millis),
+                   dateFormat.format(new Date(millis)) + " " +
+                   timeFormat.format(new Date(millis)),
+                   sb.toString());
+    }
+
+    StringBuilder sb = new StringBuilder();
+    LexicalDateTime.appendNanos(sb, 1200);
+    LexicalDateTime.appendOffset(sb, -(5 * 3600 + 30 * 60) * 1000);
+    LexicalDateTime.appendOffset(sb, 20000);
+    assertEquals("000001200-05:30+00:00", sb.toString());
+  }
+}
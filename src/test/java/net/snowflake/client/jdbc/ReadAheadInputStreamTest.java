@@ -0,0 +1,132 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ReadAheadInputStream
+ */
+public class ReadAheadInputStreamTest
+{
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testReadAll() throws IOException
+  {
+    byte[] data = new byte[100000];
+    new Random(1).nextBytes(data);
+
+    // reads of odd sizes span the buffers of the stream
+    try (InputStream in = new ReadAheadInputStream(
+        new ByteArrayInputStream(data), 1000, 3, executor))
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[777];
+      int len;
+      while ((len = in.read(buf, 0, buf.length)) != -1)
+      {
+        out.write(buf, 0, len);
+      }
+      assertEquals(-1, in.read());
+      assertArrayEquals(data, out.toByteArray());
+    }
+  }
+
+  /**
+   * The data read before a failure of the source is returned, then the
+   * failure is thrown
+   */
+  @Test
+  public void testSourceFailure() throws IOException
+  {
+    InputStream source = new InputStream()
+    {
+      private int count = 0;
+
+      @Override
+      public int read() throws IOException
+      {
+        if (count == 10)
+        {
+          throw new IOException("connection reset");
+        }
+        return count++;
+      }
+    };
+
+    try (InputStream in = new ReadAheadInputStream(source, 4, 2, executor))
+    {
+      for (int i = 0; i < 10; i++)
+      {
+        assertEquals(i, in.read());
+      }
+      in.read();
+      fail("failure of the source was not thrown");
+    }
+    catch (IOException ex)
+    {
+      assertEquals("connection reset", ex.getMessage());
+    }
+  }
+
+  /**
+   * Closing the stream before the source is read stops the reading thread
+   * and closes the source
+   */
+  @Test
+  public void testClose() throws Exception
+  {
+    final CountDownLatch sourceClosed = new CountDownLatch(1);
+    InputStream source = new InputStream()
+    {
+      @Override
+      public int read()
+      {
+        return 1;
+      }
+
+      @Override
+      public void close()
+      {
+        sourceClosed.countDown();
+      }
+    };
+
+    InputStream in = new ReadAheadInputStream(source, 16, 2, executor);
+    assertEquals(1, in.read());
+    in.close();
+    assertTrue(sourceClosed.await(10, TimeUnit.SECONDS));
+    try
+    {
+      in.read();
+      fail("closed stream was read");
+    }
+    catch (IOException ex)
+    {
+      // expected
+    }
+  }
+}
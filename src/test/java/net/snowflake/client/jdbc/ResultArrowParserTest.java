@@ -0,0 +1,188 @@
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.jdbc.SnowflakeResultChunk.ColumnVectorType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for ResultArrowParser.
+ * <p>
+ * The fixtures were written by the Arrow Java library and contain two record
+ * batches of the columns N NUMBER(38,0) as Int64, D NUMBER(9,2) as Int32,
+ * B NUMBER(38,0) as Decimal128, R REAL, S VARCHAR, BIN BINARY, BOOL BOOLEAN,
+ * DT DATE, TS TIMESTAMP_NTZ(9) as epoch and fraction struct, TZ
+ * TIMESTAMP_TZ(3) as epoch and timezone struct and TM TIME(9) as Int64.
+ * arrow_chunk_legacy.arrow uses the message framing without continuation
+ * markers.
+ */
+public class ResultArrowParserTest
+{
+  static final int COLUMN_COUNT = 11;
+
+  static final String[][] EXPECTED_CELLS = {
+      {"1", "1.50", "12345678901234567890123", "1.5", "a", "01AB", "1", "0",
+       "1565222234.123000000", "1565222234.123 1500", "3723.000000001"},
+      {null, "-0.05", "-1", "NaN", "", "", "0", "-1",
+       "-0.000000001", "-0.001 1440", "0.000000000"},
+      {"-9223372036854775808", null, null, "-inf", null, null, null, "18000",
+       null, null, null},
+      {"42", "0.00", "5", null, "ä★", "FF", "1", null,
+       "0.000000000", "0.000 1380", "86399.999999999"},
+      {"7", "123.45", "0", "0.1", "xyz", "00", "0", "1",
+       "5.000000001", "0.005 1440", "0.000000005"}};
+
+  static final ColumnVectorType[] VECTOR_TYPES = new ColumnVectorType[]{
+      ColumnVectorType.LONG, null, ColumnVectorType.LONG,
+      ColumnVectorType.DOUBLE, null, null, null, null, null, null, null};
+
+  @Test
+  public void testParseChunk() throws Exception
+  {
+    for (String fixture : Arrays.asList("arrow_chunk.arrow",
+                                        "arrow_chunk_legacy.arrow"))
+    {
+      SnowflakeResultChunk chunk = ResultArrowParser.parseChunk(
+          readFixture(fixture), COLUMN_COUNT, VECTOR_TYPES);
+
+      assertEquals(EXPECTED_CELLS.length, chunk.getRowCount());
+      assertEquals(EXPECTED_CELLS.length, chunk.getRowsReady());
+      assertCells(chunk);
+      assertVectors(chunk);
+    }
+  }
+
+  @Test
+  public void testParseStream() throws Exception
+  {
+    byte[] data = readFixture("arrow_chunk.arrow");
+    SnowflakeResultChunk chunk = SnowflakeResultChunk.createArrowChunk(
+        "", EXPECTED_CELLS.length, COLUMN_COUNT, data.length);
+    chunk.setColumnVectorTypes(VECTOR_TYPES);
+
+    new ResultArrowParser(new ByteArrayInputStream(data)).parse(chunk, false);
+
+    assertEquals(EXPECTED_CELLS.length, chunk.getRowsReady());
+    assertCells(chunk);
+    assertVectors(chunk);
+  }
+
+  @Test
+  public void testRowCountMismatch() throws Exception
+  {
+    byte[] data = readFixture("arrow_chunk.arrow");
+    SnowflakeResultChunk chunk = SnowflakeResultChunk.createArrowChunk(
+        "", EXPECTED_CELLS.length - 1, COLUMN_COUNT, data.length);
+    try
+    {
+      new ResultArrowParser(new ByteArrayInputStream(data)).parse(chunk, false);
+      fail("more rows than expected were accepted");
+    }
+    catch (SnowflakeSQLException ex)
+    {
+      assertEquals(ErrorCode.INTERNAL_ERROR.getMessageCode().intValue(),
+                   ex.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testTruncatedStream() throws Exception
+  {
+    byte[] data = readFixture("arrow_chunk.arrow");
+    try
+    {
+      ResultArrowParser.parseChunk(Arrays.copyOf(data, data.length / 2),
+                                   COLUMN_COUNT, null);
+      fail("truncated stream was accepted");
+    }
+    catch (SnowflakeSQLException ex)
+    {
+      assertEquals(ErrorCode.INTERNAL_ERROR.getMessageCode().intValue(),
+                   ex.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testCopyColumnVectors() throws Exception
+  {
+    SnowflakeResultChunk chunk = ResultArrowParser.parseChunk(
+        readFixture("arrow_chunk.arrow"), COLUMN_COUNT, VECTOR_TYPES);
+
+    long[] longs = new long[3];
+    boolean[] nulls = new boolean[3];
+    assertTrue(chunk.copyLongValues(0, 1, longs, nulls));
+    assertArrayEquals(new long[]{0, Long.MIN_VALUE, 42}, longs);
+    assertArrayEquals(new boolean[]{true, false, false}, nulls);
+
+    double[] doubles = new double[2];
+    nulls = new boolean[2];
+    assertTrue(chunk.copyDoubleValues(3, 3, doubles, nulls));
+    assertArrayEquals(new double[]{0, 0.1}, doubles, 0);
+    assertArrayEquals(new boolean[]{true, false}, nulls);
+
+    // the first decimal does not fit a long, text columns have no vector
+    assertFalse(chunk.copyLongValues(2, 0, new long[2], new boolean[2]));
+    assertTrue(chunk.copyLongValues(2, 1, new long[4], new boolean[4]));
+    assertFalse(chunk.copyLongValues(4, 0, new long[1], new boolean[1]));
+    assertFalse(chunk.copyDoubleValues(0, 0, new double[1], new boolean[1]));
+  }
+
+  static void assertCells(SnowflakeResultChunk chunk)
+  {
+    for (int row = 0; row < EXPECTED_CELLS.length; row++)
+    {
+      for (int col = 0; col < COLUMN_COUNT; col++)
+      {
+        assertEquals("row " + row + " column " + col,
+                     EXPECTED_CELLS[row][col], chunk.getCell(row, col));
+      }
+    }
+  }
+
+  static void assertVectors(SnowflakeResultChunk chunk)
+  {
+    assertEquals(1, chunk.getLongValue(0, 0));
+    assertTrue(chunk.isNullValue(1, 0));
+    assertEquals(Long.MIN_VALUE, chunk.getLongValue(2, 0));
+
+    // decimals out of the range of a long are left to the text conversion
+    assertFalse(chunk.isVectorValue(0, 2));
+    assertEquals(-1, chunk.getLongValue(1, 2));
+    assertTrue(chunk.isNullValue(2, 2));
+
+    assertEquals(1.5, chunk.getDoubleValue(0, 3), 0);
+    assertTrue(Double.isNaN(chunk.getDoubleValue(1, 3)));
+    assertEquals(Double.NEGATIVE_INFINITY, chunk.getDoubleValue(2, 3), 0);
+    assertTrue(chunk.isNullValue(3, 3));
+
+    assertFalse(chunk.isVectorValue(0, 1));
+    assertFalse(chunk.isVectorValue(0, 4));
+  }
+
+  static byte[] readFixture(String name) throws IOException
+  {
+    try (InputStream in = ResultArrowParserTest.class.getResourceAsStream(name))
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int len;
+      while ((len = in.read(buffer)) != -1)
+      {
+        out.write(buffer, 0, len);
+      }
+      return out.toByteArray();
+    }
+  }
+}
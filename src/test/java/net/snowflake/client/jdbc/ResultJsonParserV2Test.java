@@ -1,13 +1,28 @@
 package net.snowflake.client.jdbc;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.core.ObjectMapperFactory;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Copyright (c) 2018-2019 Snowflake Computing Inc. All rights reserved.
@@ -100,6 +115,122 @@ public class ResultJsonParserV2Test
 
   }
 
+  /**
+   * Consecutive unicode escapes split at every position, the bytes of an
+   * escape cached at the end of one buffer can end in the next escape
+   */
+  @Test
+  public void splitUnicodeEscapeTest() throws SnowflakeSQLException
+  {
+    String simple = "[\"\\u00e4\\ud841\\udf0e\\u2605\", \"a\\u00e4\\u00e4\\u00e4b\"]";
+    byte[] data = simple.getBytes(StandardCharsets.UTF_8);
+    for (int len = 1; len <= data.length; len++)
+    {
+      SnowflakeResultChunk chunk = new SnowflakeResultChunk("", 1, 2, data.length, true);
+      ResultJsonParserV2 jp = new ResultJsonParserV2();
+      jp.startParsing(chunk);
+      for (int i = 0; i < data.length; i += len)
+      {
+        jp.continueParsing(ByteBuffer.wrap(data, i, Math.min(len, data.length - i)));
+      }
+      jp.endParsing();
+      assertEquals("len " + len, "ä𠜎★", chunk.getCell(0, 0).toString());
+      assertEquals("len " + len, "aäääb", chunk.getCell(0, 1).toString());
+    }
+  }
+
+  /**
+   * The rows returned with the query response are parsed into a chunk
+   */
+  @Test
+  public void parseRowsetTest() throws Exception
+  {
+    JsonNode rowset = ObjectMapperFactory.getObjectMapper().readTree(
+        "[[\"1\", \"a\\\"b\\\\c\", null], " +
+        "[\"-22\", \"\u00e9\u263a\", \"x\"], " +
+        "[null, \"\", null]]");
+    SnowflakeResultChunk chunk = ResultJsonParserV2.parseRowset(
+        rowset, 3, new SnowflakeResultChunk.ColumnVectorType[]{
+            SnowflakeResultChunk.ColumnVectorType.LONG, null, null});
+
+    assertEquals(3, chunk.getRowCount());
+    assertEquals(3, chunk.getRowsReady());
+    assertEquals(1, chunk.getLongValue(0, 0));
+    assertEquals(-22, chunk.getLongValue(1, 0));
+    assertTrue(chunk.isNullValue(2, 0));
+    assertEquals("a\"b\\c", chunk.getCell(0, 1).toString());
+    assertEquals("\u00e9\u263a", chunk.getCell(1, 1).toString());
+    assertEquals("", chunk.getCell(2, 1).toString());
+    assertNull(chunk.getCell(0, 2));
+    assertEquals("x", chunk.getCell(1, 2).toString());
+    assertNull(chunk.getCell(2, 2));
+
+    assertNull(ResultJsonParserV2.parseRowset(
+        ObjectMapperFactory.getObjectMapper().readTree("[]"), 3, null));
+  }
+
+  /**
+   * Strings with quotes and backslashes at every offset of the 8 byte scan
+   * and values split at every position come out the same for both byte
+   * orders of the data
+   */
+  @Test
+  public void scanStringRunsTest() throws SnowflakeSQLException
+  {
+    final String[] pieces = {"a", "bcdefgh", " ", ",", "]", "\"", "\\",
+                             "\n", "ä", "☺", "ijklmnopqrstuvwxyz0123456789"};
+    final String[] escaped = {"a", "bcdefgh", " ", ",", "]", "\\\"", "\\\\",
+                              "\\n", "ä", "☺", "ijklmnopqrstuvwxyz0123456789"};
+    final int rowCount = 200;
+    Random random = new Random(7);
+    String[] strings = new String[rowCount];
+    long[] numbers = new long[rowCount];
+    StringBuilder json = new StringBuilder();
+    for (int row = 0; row < rowCount; row++)
+    {
+      StringBuilder value = new StringBuilder();
+      StringBuilder text = new StringBuilder();
+      int count = random.nextInt(12);
+      for (int i = 0; i < count; i++)
+      {
+        int piece = random.nextInt(pieces.length);
+        value.append(pieces[piece]);
+        text.append(escaped[piece]);
+      }
+      strings[row] = value.toString();
+      numbers[row] = random.nextLong();
+      json.append(row == 0 ? "" : ",").append("[\"").append(text)
+          .append("\", ").append(numbers[row]).append(",null]");
+    }
+    byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+
+    for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN,
+                                           ByteOrder.LITTLE_ENDIAN})
+    {
+      for (int len : new int[]{1, 3, 7, 8, 9, 64, 1000, data.length})
+      {
+        SnowflakeResultChunk chunk =
+            new SnowflakeResultChunk("", rowCount, 3, data.length, true);
+        ResultJsonParserV2 jp = new ResultJsonParserV2();
+        jp.startParsing(chunk);
+        for (int i = 0; i < data.length; i += len)
+        {
+          jp.continueParsing(ByteBuffer.wrap(
+              data, i, Math.min(len, data.length - i)).order(order));
+        }
+        jp.endParsing();
+        for (int row = 0; row < rowCount; row++)
+        {
+          String message = order + " len " + len + " row " + row;
+          assertEquals(message, strings[row], chunk.getCell(row, 0).toString());
+          assertEquals(message, String.valueOf(numbers[row]),
+                       chunk.getCell(row, 1).toString());
+          assertNull(message, chunk.getCell(row, 2));
+        }
+      }
+    }
+  }
+
   /**
    * Test the largest column size 16 MB
    * @throws SnowflakeSQLException
@@ -143,4 +274,245 @@ public class ResultJsonParserV2Test
     assertEquals(c.toString(), chunk.getCell(1, 0 ).toString());
     assertEquals(StringEscapeUtils.unescapeJava(s.toString()), chunk.getCell(1, 1 ).toString());
   }
+
+  /**
+   * Numeric columns are decoded to vectors with the same values the text
+   * would be parsed to, and values that do not fit stay text only
+   */
+  @Test
+  public void columnVectorTest() throws SnowflakeSQLException
+  {
+    String[] longs = {"0", "-17", "9223372036854775807", "-9223372036854775808",
+                      "9223372036854775808", "12345678901234567890123", "+5",
+                      null, "", "1.5"};
+    String[] doubles = {"0.1", "-1.25e-3", "inf", "-inf", "NaN",
+                        "1.7976931348623157E308", "123456789.123456789",
+                        null, "4.9E-324", "-0"};
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < longs.length; i++)
+    {
+      json.append(i == 0 ? "[" : ",[")
+          .append(longs[i] == null ? "null" : "\"" + longs[i] + "\"")
+          .append(", ")
+          .append(doubles[i] == null ? "null" : doubles[i].startsWith("N") ?
+                                                "\"" + doubles[i] + "\"" :
+                                                doubles[i])
+          .append("]");
+    }
+    byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+    SnowflakeResultChunk chunk =
+        new SnowflakeResultChunk("", longs.length, 2, data.length, true);
+    chunk.setColumnVectorTypes(new SnowflakeResultChunk.ColumnVectorType[]{
+        SnowflakeResultChunk.ColumnVectorType.LONG,
+        SnowflakeResultChunk.ColumnVectorType.DOUBLE});
+    ResultJsonParserV2 jp = new ResultJsonParserV2();
+    jp.startParsing(chunk);
+    for (int i = 0; i < data.length; i += 3)
+    {
+      jp.continueParsing(ByteBuffer.wrap(data, i, Math.min(3, data.length - i)));
+    }
+    jp.endParsing();
+
+    for (int i = 0; i < longs.length; i++)
+    {
+      assertEquals(longs[i], chunk.getCell(i, 0));
+      Long expected = null;
+      try
+      {
+        expected = longs[i] == null ? null : Long.parseLong(longs[i]);
+      }
+      catch (NumberFormatException ex)
+      {
+      }
+      if (longs[i] != null && expected == null)
+      {
+        assertFalse(chunk.isVectorValue(i, 0));
+        continue;
+      }
+      assertTrue(chunk.isVectorValue(i, 0));
+      assertEquals(longs[i] == null, chunk.isNullValue(i, 0));
+      if (expected != null)
+      {
+        assertEquals(expected.longValue(), chunk.getLongValue(i, 0));
+      }
+    }
+
+    for (int i = 0; i < doubles.length; i++)
+    {
+      assertTrue(chunk.isVectorValue(i, 1));
+      assertEquals(doubles[i] == null, chunk.isNullValue(i, 1));
+      if (doubles[i] != null)
+      {
+        double expected = "inf".equals(doubles[i]) ? Double.POSITIVE_INFINITY :
+                          "-inf".equals(doubles[i]) ? Double.NEGATIVE_INFINITY :
+                          Double.parseDouble(doubles[i]);
+        assertEquals(Double.doubleToLongBits(expected),
+                     Double.doubleToLongBits(chunk.getDoubleValue(i, 1)));
+      }
+    }
+  }
+
+  /**
+   * The fast decimal path must agree with Double.parseDouble
+   */
+  @Test
+  public void columnVectorDoubleTest() throws SnowflakeSQLException
+  {
+    Random random = new Random(42);
+    int rows = 5000;
+    String[] values = new String[rows];
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < rows; i++)
+    {
+      long digits = random.nextLong() % 1000000000000000L;
+      int scale = random.nextInt(20);
+      values[i] = new BigDecimal(BigInteger.valueOf(digits),
+                                scale).toPlainString();
+      json.append(i == 0 ? "[" : ",[").append("\"").append(values[i])
+          .append("\"]");
+    }
+    byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+    SnowflakeResultChunk chunk =
+        new SnowflakeResultChunk("", rows, 1, data.length, true);
+    chunk.setColumnVectorTypes(new SnowflakeResultChunk.ColumnVectorType[]{
+        SnowflakeResultChunk.ColumnVectorType.DOUBLE});
+    ResultJsonParserV2 jp = new ResultJsonParserV2();
+    jp.startParsing(chunk);
+    jp.continueParsing(ByteBuffer.wrap(data));
+    jp.endParsing();
+
+    for (int i = 0; i < rows; i++)
+    {
+      assertEquals(values[i], Double.parseDouble(values[i]),
+                   chunk.getDoubleValue(i, 0), 0.0);
+    }
+  }
+
+  /**
+   * The bytes of a cell are located without creating a String, on the heap
+   * and off heap
+   */
+  @Test
+  public void cellBytesTest() throws SnowflakeSQLException
+  {
+    String json = "[\"12\", null],[\"-3.50\", \"\u2605\"],[\"\", \"x\"]";
+    byte[] data = json.getBytes(StandardCharsets.UTF_8);
+    for (boolean offHeap : new boolean[]{false, true})
+    {
+      SnowflakeResultChunk chunk =
+          new SnowflakeResultChunk("", 3, 2, data.length, true, offHeap);
+      ResultJsonParserV2 jp = new ResultJsonParserV2();
+      jp.startParsing(chunk);
+      jp.continueParsing(ByteBuffer.wrap(data));
+      jp.endParsing();
+
+      SnowflakeResultChunk.CellBytes cell =
+          new SnowflakeResultChunk.CellBytes();
+      for (int row = 0; row < 3; row++)
+      {
+        for (int col = 0; col < 2; col++)
+        {
+          assertTrue(chunk.getCellBytes(row, col, cell));
+          Object text = chunk.getCell(row, col);
+          assertEquals(text == null, cell.isNull());
+          if (text != null)
+          {
+            assertEquals(text, new String(cell.getBytes(), cell.getOffset(),
+                                          cell.getLength(),
+                                          StandardCharsets.UTF_8));
+          }
+        }
+      }
+      assertTrue(chunk.getCellBytes(1, 0, cell));
+      assertEquals(new BigDecimal("-3.50"),
+                   AsciiNumbers.parseBigDecimal(cell.getBytes(),
+                                                cell.getOffset(),
+                                                cell.getLength()));
+      chunk.freeData();
+    }
+
+    // the first parser stores chars
+    SnowflakeResultChunk chunk = new SnowflakeResultChunk("", 1, 1, 8, false);
+    chunk.addRow(new Object[]{"1"});
+    assertFalse(chunk.getCellBytes(0, 0, new SnowflakeResultChunk.CellBytes()));
+  }
+
+  /**
+   * Threads reading the same off heap chunk at the same time see the same
+   * cells as a single reader
+   */
+  @Test
+  public void offHeapConcurrentReadersTest() throws Throwable
+  {
+    final int rows = 2000;
+    StringBuilder json = new StringBuilder();
+    final String[] expected = new String[rows];
+    for (int row = 0; row < rows; row++)
+    {
+      StringBuilder cell = new StringBuilder();
+      for (int i = 0; i < row % 50; i++)
+      {
+        cell.append((char) ('a' + (row + i) % 26));
+      }
+      expected[row] = cell.toString();
+      json.append(row == 0 ? "" : ",").append("[\"").append(cell)
+          .append("\"]");
+    }
+    byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+    final SnowflakeResultChunk chunk =
+        new SnowflakeResultChunk("", rows, 1, data.length, true, true);
+    ResultJsonParserV2 jp = new ResultJsonParserV2();
+    jp.startParsing(chunk);
+    jp.continueParsing(ByteBuffer.wrap(data));
+    jp.endParsing();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try
+    {
+      List<Future<Void>> readers = new ArrayList<>();
+      for (int t = 0; t < 4; t++)
+      {
+        final int first = t;
+        readers.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            SnowflakeResultChunk.CellBytes cell =
+                new SnowflakeResultChunk.CellBytes();
+            for (int pass = 0; pass < 20; pass++)
+            {
+              for (int i = 0; i < rows; i++)
+              {
+                int row = (first * 499 + i) % rows;
+                assertEquals(expected[row], chunk.getCell(row, 0));
+                assertTrue(chunk.getCellBytes(row, 0, cell));
+                assertEquals(expected[row],
+                             new String(cell.getBytes(), cell.getOffset(),
+                                        cell.getLength(),
+                                        StandardCharsets.UTF_8));
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> reader : readers)
+      {
+        try
+        {
+          reader.get();
+        }
+        catch (ExecutionException ex)
+        {
+          throw ex.getCause();
+        }
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+      chunk.freeData();
+    }
+  }
 }
@@ -1172,4 +1172,49 @@ public class ResultSetIT extends BaseJDBCTest
 
     con.close();
   }
+
+  @Test
+  public void testNextBatch() throws SQLException
+  {
+    Connection con = getConnection();
+    Statement statement = con.createStatement();
+
+    int rowCount = 200000;
+    ResultSet resultSet = statement.executeQuery(
+        "select seq8(), iff(seq8() % 3 = 0, null, 'x' || seq8()) " +
+        "from table(generator(rowcount=>" + rowCount + ")) order by 1");
+    SnowflakeResultSet snowflakeResultSet =
+        resultSet.unwrap(SnowflakeResultSet.class);
+
+    // mix a row fetched with next() and batches
+    assertTrue(resultSet.next());
+    assertEquals(0, resultSet.getLong(1));
+
+    long expected = 1;
+    SnowflakeColumnBatch batch;
+    while ((batch = snowflakeResultSet.nextBatch(10000)) != null)
+    {
+      assertTrue(batch.getRowCount() > 0);
+      assertTrue(batch.getRowCount() <= 10000);
+      long[] longs = batch.getLongs(1);
+      String[] strings = batch.getStrings(1);
+      for (int i = 0; i < batch.getRowCount(); i++, expected++)
+      {
+        assertFalse(batch.isNull(i, 1));
+        assertEquals(expected, longs != null ?
+                               longs[i] : Long.parseLong(strings[i]));
+        assertEquals(expected % 3 == 0, batch.isNull(i, 2));
+        if (expected % 3 != 0)
+        {
+          assertEquals("x" + expected, batch.getStrings(2)[i]);
+        }
+      }
+    }
+    assertEquals(rowCount, expected);
+    assertFalse(resultSet.next());
+
+    resultSet.close();
+    statement.close();
+    con.close();
+  }
 }
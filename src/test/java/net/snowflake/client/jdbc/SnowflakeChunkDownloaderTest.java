@@ -0,0 +1,945 @@
+package net.snowflake.client.jdbc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.snowflake.client.core.SFSession;
+import net.snowflake.client.core.SFSessionProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for SnowflakeChunkDownloader against a local HTTP server
+ */
+public class SnowflakeChunkDownloaderTest
+{
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private HttpServer server;
+
+  private ExecutorService serverExecutor;
+
+  // errors RestRequest logs for failed requests
+  private final List<String> requestErrors = new CopyOnWriteArrayList<>();
+
+  private final Handler requestErrorHandler = new Handler()
+  {
+    @Override
+    public void publish(LogRecord record)
+    {
+      if (record.getLevel().intValue() >= Level.WARNING.intValue())
+      {
+        requestErrors.add(record.getMessage());
+      }
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  };
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws IOException
+  {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    // requests are answered at the same time, a slow one does not hold
+    // back the others
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.start();
+    Logger.getLogger(RestRequest.class.getName())
+        .addHandler(requestErrorHandler);
+  }
+
+  @After
+  public void tearDown()
+  {
+    Logger.getLogger(RestRequest.class.getName())
+        .removeHandler(requestErrorHandler);
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  /**
+   * Rows of a chunk must be readable before the whole chunk is received
+   */
+  @Test
+  public void testStreamingChunk() throws Throwable
+  {
+    final String firstPart = "[\"1\", \"a\"],[\"2\", null],";
+    final String secondPart = "[\"3\", \"c\"]";
+    final CountDownLatch sendRest = new CountDownLatch(1);
+
+    server.createContext("/chunk0", new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+          out.write(firstPart.getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          sendRest.await(30, TimeUnit.SECONDS);
+          out.write(secondPart.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (InterruptedException ex)
+        {
+          throw new IOException(ex);
+        }
+      }
+    });
+
+    SFSession session = new SFSession();
+    session.addProperty(SFSessionProperty.RESULT_CHUNK_STREAMING, true);
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        session, chunk("/chunk0", 3, (firstPart + secondPart).length()));
+    try
+    {
+      SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+
+      // the rest of the chunk has not been sent yet
+      assertNotEquals(SnowflakeResultChunk.DownloadState.SUCCESS,
+                      chunk.getDownloadState());
+      assertTrue(chunk.getRowsReady() >= 1);
+      assertTrue(chunk.getRowsReady() < 3);
+      assertEquals("1", chunk.getCell(0, 0));
+      assertEquals("a", chunk.getCell(0, 1));
+
+      sendRest.countDown();
+      downloader.waitForChunkRows(chunk, 3);
+
+      assertEquals("2", chunk.getCell(1, 0));
+      assertNull(chunk.getCell(1, 1));
+      assertEquals("3", chunk.getCell(2, 0));
+      assertEquals("c", chunk.getCell(2, 1));
+      assertNull(downloader.getNextChunkToConsume());
+    }
+    finally
+    {
+      sendRest.countDown();
+      downloader.terminate();
+    }
+  }
+
+  /**
+   * Without streaming, a chunk is only handed over once it is parsed
+   */
+  @Test
+  public void testNonStreamingChunk() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[\"2\", null],[\"3\", \"c\"]";
+    serve("/chunk0", body);
+    serve("/chunk1", body);
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        new SFSession(),
+        chunk("/chunk0", 3, body.length()),
+        chunk("/chunk1", 3, body.length()));
+    try
+    {
+      for (int i = 0; i < 2; i++)
+      {
+        SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+        assertEquals(SnowflakeResultChunk.DownloadState.SUCCESS,
+                     chunk.getDownloadState());
+        assertEquals(3, chunk.getRowsReady());
+        assertEquals("3", chunk.getCell(2, 0));
+      }
+      assertNull(downloader.getNextChunkToConsume());
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+  }
+
+  /**
+   * Chunks stored off heap return the same cells, also when the buffers of a
+   * consumed chunk are reused for the next one
+   */
+  @Test
+  public void testOffHeapChunk() throws Throwable
+  {
+    final String body0 = "[\"1\", \"ä\"],[\"2\", null],[\"3\", \"c\"]";
+    final String body1 = "[\"4\", null],[\"5\", \"e\"],[\"6\", \"\"]";
+    serve("/chunk0", body0);
+    serve("/chunk1", body1);
+
+    SFSession session = new SFSession();
+    session.addProperty(SFSessionProperty.RESULT_CHUNK_OFF_HEAP, true);
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        session,
+        chunk("/chunk0", 3, body0.getBytes(StandardCharsets.UTF_8).length),
+        chunk("/chunk1", 3, body1.getBytes(StandardCharsets.UTF_8).length));
+    try
+    {
+      SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+      assertEquals("1", chunk.getCell(0, 0));
+      assertEquals("ä", chunk.getCell(0, 1));
+      assertNull(chunk.getCell(1, 1));
+      assertEquals("c", chunk.getCell(2, 1));
+
+      chunk = downloader.getNextChunkToConsume();
+      assertNull(chunk.getCell(0, 1));
+      assertEquals("5", chunk.getCell(1, 0));
+      assertEquals("e", chunk.getCell(1, 1));
+      assertEquals("", chunk.getCell(2, 1));
+      assertNull(downloader.getNextChunkToConsume());
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+  }
+
+  /**
+   * Integral columns are decoded to long vectors when column vectors are
+   * enabled, text columns are not
+   */
+  @Test
+  public void testColumnVectors() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[null, null],[\"-3\", \"c\"]";
+    serve("/chunk0", body);
+    serve("/chunk1", body);
+
+    SFSession session = new SFSession();
+    session.addProperty(SFSessionProperty.RESULT_COLUMN_VECTORS, true);
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        session, chunk("/chunk0", 3, body.length()));
+    try
+    {
+      SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+      assertEquals(SnowflakeResultChunk.ColumnVectorType.LONG,
+                   chunk.getColumnVectorType(0));
+      assertNull(chunk.getColumnVectorType(1));
+      assertEquals(1, chunk.getLongValue(0, 0));
+      assertTrue(chunk.isNullValue(1, 0));
+      assertEquals(-3, chunk.getLongValue(2, 0));
+      assertFalse(chunk.isVectorValue(0, 1));
+      assertEquals("-3", chunk.getCell(2, 0));
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+
+    downloader = createDownloader(
+        new SFSession(), chunk("/chunk1", 3, body.length()));
+    try
+    {
+      SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+      assertNull(chunk.getColumnVectorType(0));
+      assertFalse(chunk.isVectorValue(0, 0));
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+  }
+
+  /**
+   * The memory of every chunk is released exactly once, also when the result
+   * is closed before all chunks are consumed
+   */
+  @Test
+  public void testChunkMemoryReleased() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[\"2\", null],[\"3\", \"c\"]";
+    serve("/chunk0", body);
+    serve("/chunk1", body);
+    serve("/chunk2", body);
+
+    final long initialMemoryUsage =
+        SnowflakeChunkDownloader.getCurrentMemoryUsage();
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        new SFSession(),
+        chunk("/chunk0", 3, body.length()),
+        chunk("/chunk1", 3, body.length()));
+    while (downloader.getNextChunkToConsume() != null)
+    {
+    }
+    downloader.releaseAllChunkMemoryUsage();
+    downloader.terminate();
+    assertEquals(initialMemoryUsage,
+                 SnowflakeChunkDownloader.getCurrentMemoryUsage());
+
+    downloader = createDownloader(
+        new SFSession(),
+        chunk("/chunk0", 3, body.length()),
+        chunk("/chunk1", 3, body.length()),
+        chunk("/chunk2", 3, body.length()));
+    downloader.getNextChunkToConsume();
+    assertTrue(SnowflakeChunkDownloader.getCurrentMemoryUsage() >
+               initialMemoryUsage);
+    downloader.releaseAllChunkMemoryUsage();
+    downloader.releaseAllChunkMemoryUsage();
+    downloader.terminate();
+    // chunks still downloading release their memory when they stop
+    awaitMemoryUsage(initialMemoryUsage);
+  }
+
+  /**
+   * The memory of a chunk is not released while its download thread may
+   * still fill it, only once the thread stops
+   */
+  @Test
+  public void testChunkMemoryReleasedAfterDownload() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[\"2\", null],[\"3\", \"c\"]";
+    final CountDownLatch requested = new CountDownLatch(1);
+    final CountDownLatch sendBody = new CountDownLatch(1);
+    serve("/chunk0", body);
+    server.createContext("/chunk1", new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        requested.countDown();
+        try
+        {
+          sendBody.await(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+          throw new IOException(ex);
+        }
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+          out.write(data);
+        }
+      }
+    });
+
+    final long initialMemoryUsage =
+        SnowflakeChunkDownloader.getCurrentMemoryUsage();
+    SnowflakeChunkDownloader downloader = createDownloader(
+        new SFSession(),
+        chunk("/chunk0", 3, body.length()),
+        chunk("/chunk1", 3, body.length()));
+    try
+    {
+      downloader.getNextChunkToConsume();
+      assertTrue(requested.await(30, TimeUnit.SECONDS));
+
+      downloader.releaseAllChunkMemoryUsage();
+      downloader.terminate();
+      assertTrue(SnowflakeChunkDownloader.getCurrentMemoryUsage() >
+                 initialMemoryUsage);
+    }
+    finally
+    {
+      sendBody.countDown();
+    }
+    awaitMemoryUsage(initialMemoryUsage);
+  }
+
+  /**
+   * Wait until the memory usage of all chunks is back to the given value
+   */
+  private static void awaitMemoryUsage(long expected)
+  throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (SnowflakeChunkDownloader.getCurrentMemoryUsage() != expected &&
+           System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, SnowflakeChunkDownloader.getCurrentMemoryUsage());
+  }
+
+  /**
+   * Arrow chunks are read into the same cells as JSON chunks and their
+   * numeric columns are always available as vectors
+   */
+  @Test
+  public void testArrowChunk() throws Throwable
+  {
+    byte[] body = ResultArrowParserTest.readFixture("arrow_chunk.arrow");
+    serve("/chunk0", body);
+    serve("/chunk1",
+          ResultArrowParserTest.readFixture("arrow_chunk_legacy.arrow"));
+
+    SFSession session = new SFSession();
+    session.addProperty(SFSessionProperty.RESULT_CHUNK_STREAMING, true);
+
+    List<SnowflakeColumnMetadata> columnMetadata = Arrays.asList(
+        column("N", SnowflakeType.FIXED, 0),
+        column("D", SnowflakeType.FIXED, 2),
+        column("B", SnowflakeType.FIXED, 0),
+        column("R", SnowflakeType.REAL, 0),
+        column("S", SnowflakeType.TEXT, 0),
+        column("BIN", SnowflakeType.BINARY, 0),
+        column("BOOL", SnowflakeType.BOOLEAN, 0),
+        column("DT", SnowflakeType.DATE, 0),
+        column("TS", SnowflakeType.TIMESTAMP_NTZ, 9),
+        column("TZ", SnowflakeType.TIMESTAMP_TZ, 3),
+        column("TM", SnowflakeType.TIME, 9));
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        session, columnMetadata, QueryResultFormat.ARROW,
+        chunk("/chunk0", 5, body.length),
+        chunk("/chunk1", 5, body.length));
+    try
+    {
+      for (int i = 0; i < 2; i++)
+      {
+        SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+        downloader.waitForChunkRows(chunk, 5);
+        ResultArrowParserTest.assertCells(chunk);
+        ResultArrowParserTest.assertVectors(chunk);
+      }
+      assertNull(downloader.getNextChunkToConsume());
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+  }
+
+  /**
+   * Pipelined downloads read, inflate and parse a gzip chunk on separate
+   * threads and return the same cells as sequential downloads
+   */
+  @Test
+  public void testPipelinedChunk() throws Throwable
+  {
+    StringBuilder body = new StringBuilder();
+    final int rowCount = 50000;
+    for (int i = 0; i < rowCount; i++)
+    {
+      body.append(i == 0 ? "" : ",")
+          .append("[\"").append(i).append("\", ")
+          .append(i % 3 == 0 ? "null" : "\"v" + i + "\"").append("]");
+    }
+    byte[] data = body.toString().getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip))
+    {
+      out.write(data);
+    }
+    serveGzip("/chunk0", gzip.toByteArray());
+    serveGzip("/chunk1", gzip.toByteArray());
+
+    for (boolean pipelining : new boolean[]{true, false})
+    {
+      SFSession session = new SFSession();
+      session.addProperty(SFSessionProperty.RESULT_CHUNK_PIPELINING,
+                          pipelining);
+      session.addProperty(SFSessionProperty.RESULT_CHUNK_STREAMING, true);
+
+      SnowflakeChunkDownloader downloader = createDownloader(
+          session,
+          chunk("/chunk0", rowCount, data.length),
+          chunk("/chunk1", rowCount, data.length));
+      try
+      {
+        for (int c = 0; c < 2; c++)
+        {
+          SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+          downloader.waitForChunkRows(chunk, rowCount);
+          for (int i = 0; i < rowCount; i += 997)
+          {
+            assertEquals(String.valueOf(i), chunk.getCell(i, 0));
+            assertEquals(i % 3 == 0 ? null : "v" + i, chunk.getCell(i, 1));
+          }
+          assertEquals("v" + (rowCount - 1), chunk.getCell(rowCount - 1, 1));
+        }
+        assertNull(downloader.getNextChunkToConsume());
+      }
+      finally
+      {
+        downloader.terminate();
+      }
+    }
+  }
+
+  /**
+   * Chunks which do not fit into the memory limit are downloaded into spill
+   * files and loaded from there, each chunk is only downloaded once
+   */
+  @Test
+  public void testSpilledChunks() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[\"2\", null],[\"3\", \"c\"]";
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip))
+    {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    final int chunkCount = 4;
+    final AtomicInteger requests = new AtomicInteger();
+    ArrayNode chunksData = mapper.createArrayNode();
+    for (int i = 0; i < chunkCount; i++)
+    {
+      serveGzip("/chunk" + i, gzip.toByteArray(), requests);
+      chunksData.add(chunk("/chunk" + i, 3, body.length()));
+    }
+
+    File spillDirectory = tmpFolder.newFolder();
+    SFSession session = new SFSession();
+    session.addProperty(SFSessionProperty.RESULT_CHUNK_SPILL_DIRECTORY,
+                        spillDirectory.getPath());
+
+    // the memory limit is raised to the size of one chunk, so only the
+    // first chunk is loaded and the others are spilled
+    SnowflakeChunkDownloader downloader = new SnowflakeChunkDownloader(
+        2, chunksData, 2, null, null, 60000, true, 1, session, null,
+        QueryResultFormat.JSON);
+    try
+    {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (requests.get() < chunkCount &&
+             System.currentTimeMillis() < deadline)
+      {
+        Thread.sleep(10);
+      }
+      assertEquals(chunkCount, requests.get());
+
+      for (int i = 0; i < chunkCount; i++)
+      {
+        SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+        downloader.waitForChunkRows(chunk, 3);
+        assertEquals("1", chunk.getCell(0, 0));
+        assertNull(chunk.getCell(1, 1));
+        assertEquals("c", chunk.getCell(2, 1));
+      }
+      assertNull(downloader.getNextChunkToConsume());
+      assertEquals(chunkCount, requests.get());
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+    assertEquals(0, spillDirectory.list().length);
+  }
+
+  /**
+   * A chunk whose response is later than the response times of the other
+   * chunks is requested a second time, and the second response is used
+   */
+  @Test
+  public void testHedgedChunkRequest() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[\"2\", null],[\"3\", \"c\"]";
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip))
+    {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    final byte[] data = gzip.toByteArray();
+    final int chunkCount = 12;
+    final int slowChunk = 10;
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger slowRequests = new AtomicInteger();
+    ArrayNode chunksData = mapper.createArrayNode();
+    for (int i = 0; i < chunkCount; i++)
+    {
+      if (i == slowChunk)
+      {
+        // the first request does not answer until the test ends
+        server.createContext("/chunk" + i, new HttpHandler()
+        {
+          @Override
+          public void handle(HttpExchange exchange) throws IOException
+          {
+            if (slowRequests.incrementAndGet() == 1)
+            {
+              try
+              {
+                release.await(30, TimeUnit.SECONDS);
+              }
+              catch (InterruptedException ex)
+              {
+                throw new IOException(ex);
+              }
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+              out.write(data);
+            }
+          }
+        });
+      }
+      else
+      {
+        serveGzip("/chunk" + i, data);
+      }
+      chunksData.add(chunk("/chunk" + i, 3, body.length()));
+    }
+
+    SFSession session = new SFSession();
+    session.addProperty(SFSessionProperty.RESULT_CHUNK_HEDGE_PERCENTILE, 90);
+    SnowflakeChunkDownloader downloader = new SnowflakeChunkDownloader(
+        2, chunksData, 2, null, null, 60000, true, 100 * 1024 * 1024,
+        session, null, QueryResultFormat.JSON);
+    long startTime = System.currentTimeMillis();
+    try
+    {
+      for (int i = 0; i < chunkCount; i++)
+      {
+        SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+        downloader.waitForChunkRows(chunk, 3);
+        assertEquals("1", chunk.getCell(0, 0));
+        assertEquals("c", chunk.getCell(2, 1));
+      }
+      assertNull(downloader.getNextChunkToConsume());
+    }
+    finally
+    {
+      release.countDown();
+      downloader.terminate();
+    }
+    assertEquals(2, slowRequests.get());
+    assertTrue(System.currentTimeMillis() - startTime < 20000);
+
+    // the abandoned first request did not fail
+    assertEquals(Collections.<String>emptyList(), requestErrors);
+  }
+
+  /**
+   * A chunk whose connection fails in the middle of the content continues
+   * with a range request, and is downloaded again if the server does not
+   * support range requests
+   */
+  @Test
+  public void testInterruptedChunk() throws Throwable
+  {
+    final String body = "[\"1\", \"a\"],[\"2\", null],[\"3\", \"c\"]";
+    ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(gzip))
+    {
+      out.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    byte[] data = gzip.toByteArray();
+    AtomicInteger resumedRequests = new AtomicInteger();
+    List<String> ranges = new CopyOnWriteArrayList<>();
+    serveInterrupted("/chunk0", data, true, resumedRequests, ranges);
+    AtomicInteger restartedRequests = new AtomicInteger();
+    serveInterrupted("/chunk1", data, false, restartedRequests,
+                     new CopyOnWriteArrayList<String>());
+
+    SnowflakeChunkDownloader downloader = createDownloader(
+        new SFSession(),
+        chunk("/chunk0", 3, body.length()),
+        chunk("/chunk1", 3, body.length()));
+    try
+    {
+      for (int i = 0; i < 2; i++)
+      {
+        SnowflakeResultChunk chunk = downloader.getNextChunkToConsume();
+        assertEquals(SnowflakeResultChunk.DownloadState.SUCCESS,
+                     chunk.getDownloadState());
+        assertEquals(3, chunk.getRowsReady());
+        assertEquals("1", chunk.getCell(0, 0));
+        assertNull(chunk.getCell(1, 1));
+        assertEquals("c", chunk.getCell(2, 1));
+      }
+      assertNull(downloader.getNextChunkToConsume());
+    }
+    finally
+    {
+      downloader.terminate();
+    }
+
+    // the rest of the content, only if it has not changed
+    assertEquals(2, resumedRequests.get());
+    assertEquals(Arrays.asList("bytes=" + data.length / 2 + "- \"v1\""),
+                 ranges);
+
+    // the range is ignored, so the chunk is downloaded again
+    assertEquals(3, restartedRequests.get());
+
+    // the partial content of the range request is not an error
+    assertEquals(Collections.<String>emptyList(), requestErrors);
+  }
+
+  @Test
+  public void testRequestHedger()
+  {
+    SnowflakeChunkDownloader.RequestHedger hedger =
+        new SnowflakeChunkDownloader.RequestHedger(90);
+    for (int i = 1; i < SnowflakeChunkDownloader.RequestHedger.MIN_SAMPLES;
+         i++)
+    {
+      hedger.addResponseMillis(i * 10);
+    }
+    // too few response times yet
+    assertEquals(-1, hedger.getHedgeDelayMillis());
+
+    hedger.addResponseMillis(1000);
+    assertEquals(1000, hedger.getHedgeDelayMillis());
+    for (int i = 0; i < 15; i++)
+    {
+      hedger.addResponseMillis(20);
+    }
+    // 20 response times, the 18th is the 90th percentile
+    assertEquals(30, hedger.getHedgeDelayMillis());
+
+    // only the latest response times count
+    for (int i = 0; i < 200; i++)
+    {
+      hedger.addResponseMillis(5);
+    }
+    assertEquals(5, hedger.getHedgeDelayMillis());
+
+    hedger.addHedgedRequest(true);
+    hedger.addHedgedRequest(false);
+    assertEquals(2, hedger.getHedgedRequests());
+    assertEquals(1, hedger.getHedgedWins());
+  }
+
+  /**
+   * The number of chunks downloaded at the same time grows while the
+   * consumer waits and shrinks for a consumer slower than the downloads
+   */
+  @Test
+  public void testPrefetchController()
+  {
+    SnowflakeChunkDownloader.PrefetchController controller =
+        new SnowflakeChunkDownloader.PrefetchController(2, 4);
+    assertEquals(2, controller.getThreads());
+
+    // the consumer waits for every chunk, one step per chunk up to the limit
+    assertEquals(3, controller.update(10, 50, 0));
+    assertEquals(4, controller.update(10, 50, 0));
+    assertEquals(4, controller.update(10, 50, 0));
+
+    // a chunk takes 200 ms to fetch and 100 ms to consume, 2 downloads at
+    // the same time keep up with the consumer
+    controller = new SnowflakeChunkDownloader.PrefetchController(4, 8);
+    assertEquals(3, controller.update(100, 0, 200));
+    assertEquals(2, controller.update(100, 0, 200));
+    assertEquals(2, controller.update(100, 0, 200));
+
+    // a slow consumer needs a single download
+    assertEquals(1, controller.update(1000, 0, 200));
+    assertEquals(1, controller.update(1000, 0, 200));
+
+    // the consumer gets faster, the average consuming time follows it
+    // within a few chunks
+    assertEquals(1, controller.update(10, 0, 200));
+    assertEquals(1, controller.update(10, 0, 200));
+    assertEquals(2, controller.update(10, 0, 200));
+    assertEquals(3, controller.update(10, 0, 200));
+  }
+
+  /**
+   * Serve a fixed response body
+   *
+   * @param path URL path
+   * @param body response body
+   */
+  void serve(String path, final String body)
+  {
+    serve(path, body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  void serve(String path, final byte[] data)
+  {
+    server.createContext(path, new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+          out.write(data);
+        }
+      }
+    });
+  }
+
+  /**
+   * Serve a gzip compressed response body with its content encoding
+   *
+   * @param path URL path
+   * @param data compressed response body
+   */
+  void serveGzip(String path, final byte[] data)
+  {
+    serveGzip(path, data, new AtomicInteger());
+  }
+
+  void serveGzip(String path, final byte[] data, final AtomicInteger requests)
+  {
+    server.createContext(path, new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        requests.incrementAndGet();
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+          out.write(data);
+        }
+      }
+    });
+  }
+
+  /**
+   * Serve a gzip compressed response body, the connection of the first
+   * response is closed after half of the body
+   *
+   * @param path     URL path
+   * @param data     compressed response body
+   * @param ranges   true if range requests are supported
+   * @param requests number of requests
+   * @param received range and if-range headers of the range requests
+   */
+  void serveInterrupted(String path, final byte[] data, final boolean ranges,
+                        final AtomicInteger requests,
+                        final List<String> received)
+  {
+    server.createContext(path, new HttpHandler()
+    {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if (requests.incrementAndGet() == 1)
+        {
+          exchange.sendResponseHeaders(200, data.length);
+          OutputStream out = exchange.getResponseBody();
+          out.write(data, 0, data.length / 2);
+          out.flush();
+          // fewer bytes than announced, the connection is closed
+          exchange.close();
+        }
+        else if (range != null && ranges)
+        {
+          received.add(range + " " +
+                       exchange.getRequestHeaders().getFirst("If-Range"));
+          int start = Integer.parseInt(
+              range.substring("bytes=".length(), range.length() - 1));
+          exchange.getResponseHeaders().add(
+              "Content-Range",
+              "bytes " + start + "-" + (data.length - 1) + "/" + data.length);
+          exchange.sendResponseHeaders(206, data.length - start);
+          try (OutputStream out = exchange.getResponseBody())
+          {
+            out.write(data, start, data.length - start);
+          }
+        }
+        else
+        {
+          exchange.sendResponseHeaders(200, data.length);
+          try (OutputStream out = exchange.getResponseBody())
+          {
+            out.write(data);
+          }
+        }
+      }
+    });
+  }
+
+  ObjectNode chunk(String path, int rowCount, int uncompressedSize)
+  {
+    ObjectNode chunk = mapper.createObjectNode();
+    chunk.put("url", "http://localhost:" + server.getAddress().getPort() + path);
+    chunk.put("rowCount", rowCount);
+    chunk.put("uncompressedSize", uncompressedSize);
+    return chunk;
+  }
+
+  static SnowflakeColumnMetadata column(String name, SnowflakeType type,
+                                        int scale)
+  {
+    return new SnowflakeColumnMetadata(name, Types.OTHER, true, 0, 38, scale,
+                                       type.name(), false, type,
+                                       null, null, null);
+  }
+
+  static SnowflakeChunkDownloader createDownloader(SFSession session,
+                                                   JsonNode... chunks)
+  throws SnowflakeSQLException
+  {
+    // a NUMBER(38, 0) and a VARCHAR column
+    List<SnowflakeColumnMetadata> columnMetadata = Arrays.asList(
+        new SnowflakeColumnMetadata("N", Types.BIGINT, true, 0, 38, 0,
+                                    "NUMBER", true, SnowflakeType.FIXED,
+                                    null, null, null),
+        new SnowflakeColumnMetadata("S", Types.VARCHAR, true, 10, 0, 0,
+                                    "VARCHAR", false, SnowflakeType.TEXT,
+                                    null, null, null));
+    return createDownloader(session, columnMetadata, QueryResultFormat.JSON,
+                            chunks);
+  }
+
+  static SnowflakeChunkDownloader createDownloader(
+      SFSession session, List<SnowflakeColumnMetadata> columnMetadata,
+      QueryResultFormat queryResultFormat, JsonNode... chunks)
+  throws SnowflakeSQLException
+  {
+    ArrayNode chunksData = mapper.createArrayNode();
+    for (JsonNode chunk : chunks)
+    {
+      chunksData.add(chunk);
+    }
+    return new SnowflakeChunkDownloader(columnMetadata.size(), chunksData, 2,
+                                        null, null, 60000, true,
+                                        100 * 1024 * 1024, session,
+                                        columnMetadata, queryResultFormat);
+  }
+}
@@ -0,0 +1,187 @@
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright (c) 2019 Snowflake Computing Inc. All rights reserved.
+ * <p>
+ * Unit tests for SnowflakeResultSetSpliterator
+ */
+public class SnowflakeResultSetSpliteratorTest
+{
+  /**
+   * Result set returning batches of the given sizes. Column 1 holds the row
+   * number as long, column 2 as text and column 3 is null for odd rows.
+   */
+  private static class BatchResultSet implements SnowflakeResultSet
+  {
+    private final int[] batchSizes;
+    private int nextBatch = 0;
+    private long nextRow = 0;
+    private final AtomicInteger fetching = new AtomicInteger();
+    private volatile boolean concurrentFetch = false;
+
+    BatchResultSet(int... batchSizes)
+    {
+      this.batchSizes = batchSizes;
+    }
+
+    @Override
+    public SnowflakeColumnBatch nextBatch(int maxRows)
+    {
+      if (fetching.incrementAndGet() > 1)
+      {
+        concurrentFetch = true;
+      }
+      try
+      {
+        if (nextBatch >= batchSizes.length)
+        {
+          return null;
+        }
+        int rowCount = Math.min(maxRows, batchSizes[nextBatch++]);
+        long[] longs = new long[rowCount];
+        String[] strings = new String[rowCount];
+        boolean[] nulls = new boolean[rowCount];
+        boolean[] oddNulls = new boolean[rowCount];
+        for (int i = 0; i < rowCount; i++)
+        {
+          longs[i] = nextRow;
+          strings[i] = String.valueOf(nextRow);
+          oddNulls[i] = nextRow % 2 == 1;
+          nextRow++;
+        }
+        SnowflakeColumnBatch batch = new SnowflakeColumnBatch(3, rowCount);
+        batch.setLongs(1, longs, nulls);
+        batch.setStrings(2, strings, nulls);
+        batch.setStrings(3, strings.clone(), oddNulls);
+        return batch;
+      }
+      finally
+      {
+        fetching.decrementAndGet();
+      }
+    }
+
+    @Override
+    public Spliterator<SnowflakeResultRow> spliterator()
+    {
+      return new SnowflakeResultSetSpliterator(this);
+    }
+
+    @Override
+    public Stream<SnowflakeResultRow> stream(boolean parallel)
+    {
+      return StreamSupport.stream(spliterator(), parallel);
+    }
+  }
+
+  @Test
+  public void testSequential() throws SQLException
+  {
+    BatchResultSet resultSet = new BatchResultSet(3, 0, 5, 1);
+    List<String> rows = new ArrayList<>();
+    for (SnowflakeResultRow row :
+        resultSet.stream(false).collect(Collectors.toList()))
+    {
+      assertEquals(3, row.getColumnCount());
+      assertEquals(row.getLong(1), row.getLong(2));
+      assertEquals(row.getLong(1) % 2 == 1, row.isNull(3));
+      if (row.isNull(3))
+      {
+        assertNull(row.getString(3));
+        assertEquals(0, row.getLong(3));
+      }
+      rows.add(row.getString(1));
+    }
+    assertEquals(
+        LongStream.range(0, 9).mapToObj(String::valueOf)
+            .collect(Collectors.toList()),
+        rows);
+  }
+
+  /**
+   * FLOAT cells read as text have the values of the cells read as numbers
+   */
+  @Test
+  public void testFloatText()
+  {
+    String[] strings = {"inf", "-inf", "1.5", "-2.75", "NaN"};
+    double[] doubles = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                        1.5, -2.75, Double.NaN};
+    boolean[] nulls = new boolean[strings.length];
+    SnowflakeColumnBatch batch = new SnowflakeColumnBatch(2, strings.length);
+    batch.setStrings(1, strings, nulls);
+    batch.setDoubles(2, doubles, nulls);
+    for (int i = 0; i < strings.length; i++)
+    {
+      SnowflakeResultRow row = new SnowflakeResultRow(batch, i);
+      assertEquals(strings[i], row.getDouble(2), row.getDouble(1), 0);
+      assertEquals(strings[i], row.getLong(2), row.getLong(1));
+    }
+  }
+
+  /**
+   * Every split takes the next batch, the rows of a batch split further
+   */
+  @Test
+  public void testSplit()
+  {
+    BatchResultSet resultSet = new BatchResultSet(4, 6);
+    Spliterator<SnowflakeResultRow> rows = resultSet.spliterator();
+
+    Spliterator<SnowflakeResultRow> first = rows.trySplit();
+    assertEquals(4, first.estimateSize());
+    assertTrue(first.hasCharacteristics(Spliterator.SIZED));
+    Spliterator<SnowflakeResultRow> firstHalf = first.trySplit();
+    assertEquals(2, firstHalf.estimateSize());
+    assertEquals(2, first.estimateSize());
+
+    // the remaining rows start with the second batch
+    final List<Long> rest = new ArrayList<>();
+    rows.forEachRemaining(row -> rest.add(row.getLong(1)));
+    assertEquals(6, rest.size());
+    assertEquals(Long.valueOf(4), rest.get(0));
+    assertNull(rows.trySplit());
+    assertFalse(rows.tryAdvance(row -> rest.add(row.getLong(1))));
+    assertEquals(0, rows.estimateSize());
+  }
+
+  @Test
+  public void testParallel() throws SQLException
+  {
+    int[] batchSizes = new int[50];
+    long rowCount = 0;
+    for (int i = 0; i < batchSizes.length; i++)
+    {
+      batchSizes[i] = 100 + 37 * i;
+      rowCount += batchSizes[i];
+    }
+    BatchResultSet resultSet = new BatchResultSet(batchSizes);
+
+    List<Long> rows = resultSet.stream(true)
+        .map(row -> row.getLong(1))
+        .collect(Collectors.toList());
+
+    // the order of the result is kept
+    assertEquals(
+        LongStream.range(0, rowCount).boxed().collect(Collectors.toList()),
+        rows);
+    assertFalse(resultSet.concurrentFetch);
+  }
+}